@@ -0,0 +1,219 @@
+package cn.liulin.docx.benchmark;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.dml.wordprocessingDrawing.Inline;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.NumberingDefinitionsPart;
+import org.docx4j.wml.Drawing;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.docx4j.wml.RPr;
+import org.docx4j.wml.Style;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 基准测试文档生成器
+ * 按文档数量、页数、每页表格数和每个文档的图片数生成一组结构相近的docx文档，用于基准测试和容量评估。
+ * 生成的文档包含以下合并时需要处理的内容：
+ * 1. 同名但定义不同的自定义样式（奇偶文档不同），以及带默认字体大小的Normal样式
+ * 2. 引用编号定义的列表段落
+ * 3. 带行高的表格
+ * 4. 图片，第一张图片在所有文档中相同，其余图片每个文档各不相同
+ * 相同参数生成的语料保存在临时目录中，多次运行之间复用
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 19:05
+ */
+public class CorpusGenerator {
+
+    private static final String W = "xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"";
+
+    /**
+     * 每页的正文段落数
+     */
+    private static final int PARAGRAPHS_PER_PAGE = 20;
+
+    /**
+     * 每页的列表段落数
+     */
+    private static final int LIST_ITEMS_PER_PAGE = 3;
+
+    private static final int TABLE_ROWS = 4;
+    private static final int TABLE_COLUMNS = 3;
+
+    /**
+     * 生成或复用语料
+     *
+     * @param docCount 文档数量
+     * @param pages 每个文档的页数
+     * @param tablesPerPage 每页表格数
+     * @param imageCount 每个文档的图片数
+     * @return 按顺序排列的文档路径
+     */
+    public static List<String> generate(int docCount, int pages, int tablesPerPage, int imageCount) throws Exception {
+        Path dir = Paths.get(System.getProperty("java.io.tmpdir"), String.format("docx-merge-corpus-d%d-p%d-t%d-i%d",
+                docCount, pages, tablesPerPage, imageCount));
+        return generate(dir, docCount, pages, tablesPerPage, imageCount);
+    }
+
+    /**
+     * 在指定目录中生成语料，目录中已有的同名文档不再重新生成
+     *
+     * @param dir 输出目录
+     * @param docCount 文档数量
+     * @param pages 每个文档的页数
+     * @param tablesPerPage 每页表格数
+     * @param imageCount 每个文档的图片数
+     * @return 按顺序排列的文档路径
+     */
+    public static List<String> generate(Path dir, int docCount, int pages, int tablesPerPage, int imageCount) throws Exception {
+        Files.createDirectories(dir);
+        List<String> paths = new ArrayList<>();
+        for (int d = 0; d < docCount; d++) {
+            Path doc = dir.resolve(String.format("doc%05d.docx", d));
+            if (!Files.exists(doc)) {
+                // 先写入临时文件再改名，中途中断时不会留下不完整的文档
+                Path tmp = dir.resolve(doc.getFileName() + ".tmp");
+                createDocument(d, pages, tablesPerPage, imageCount).save(tmp.toFile());
+                Files.move(tmp, doc);
+            }
+            paths.add(doc.toString());
+        }
+        return paths;
+    }
+
+    private static WordprocessingMLPackage createDocument(int index, int pages, int tablesPerPage, int imageCount) throws Exception {
+        Random random = new Random(index);
+        WordprocessingMLPackage pkg = WordprocessingMLPackage.createPackage();
+        MainDocumentPart mdp = pkg.getMainDocumentPart();
+        NumberingDefinitionsPart ndp = new NumberingDefinitionsPart();
+        mdp.addTargetPart(ndp);
+        ndp.unmarshalDefaultNumbering();
+
+        // 同名自定义样式在奇偶文档中定义不同，合并时需要重命名
+        String color = index % 2 == 0 ? "00AA00" : "FF0000";
+        mdp.getStyleDefinitionsPart().getJaxbElement().getStyle().add((Style) XmlUtils.unmarshalString(
+                "<w:style " + W + " w:type=\"paragraph\" w:styleId=\"Custom\"><w:name w:val=\"Custom\"/>"
+                        + "<w:rPr><w:color w:val=\"" + color + "\"/></w:rPr></w:style>"));
+        for (Style style : mdp.getStyleDefinitionsPart().getJaxbElement().getStyle()) {
+            if ("Normal".equals(style.getStyleId())) {
+                style.setRPr((RPr) XmlUtils.unmarshalString("<w:rPr " + W + "><w:sz w:val=\"" + (20 + index % 3)
+                        + "\"/><w:szCs w:val=\"22\"/></w:rPr>"));
+            }
+        }
+
+        mdp.addStyledParagraphOfText("Title", "Document " + index);
+        int imagesAdded = 0;
+        for (int page = 0; page < pages; page++) {
+            mdp.addStyledParagraphOfText("Heading1", "Section " + (page + 1));
+            mdp.addStyledParagraphOfText("Custom", "Custom styled paragraph " + page + " in document " + index);
+            for (int i = 0; i < PARAGRAPHS_PER_PAGE; i++) {
+                mdp.addParagraphOfText(sentence(random));
+            }
+            for (int i = 0; i < LIST_ITEMS_PER_PAGE; i++) {
+                mdp.addObject(XmlUtils.unmarshalString("<w:p " + W + "><w:pPr><w:numPr><w:ilvl w:val=\"0\"/>"
+                        + "<w:numId w:val=\"1\"/></w:numPr><w:jc w:val=\"start\"/></w:pPr><w:r><w:t>List item " + i
+                        + "</w:t></w:r></w:p>"));
+            }
+            for (int t = 0; t < tablesPerPage; t++) {
+                mdp.addObject(XmlUtils.unmarshalString(table(random)));
+            }
+            // 图片均匀分布在各页
+            int imagesUntilThisPage = pages == 0 ? imageCount : imageCount * (page + 1) / pages;
+            for (; imagesAdded < imagesUntilThisPage; imagesAdded++) {
+                addImage(pkg, imagesAdded == 0 ? createImage(0) : createImage(index * 1000 + imagesAdded), index * 1000 + imagesAdded);
+            }
+            if (page < pages - 1) {
+                mdp.addObject(XmlUtils.unmarshalString("<w:p " + W + "><w:r><w:br w:type=\"page\"/></w:r></w:p>"));
+            }
+        }
+        return pkg;
+    }
+
+    private static String table(Random random) {
+        StringBuilder sb = new StringBuilder("<w:tbl " + W + "><w:tblPr><w:tblW w:w=\"5000\" w:type=\"pct\"/></w:tblPr><w:tblGrid>");
+        for (int c = 0; c < TABLE_COLUMNS; c++) {
+            sb.append("<w:gridCol w:w=\"3000\"/>");
+        }
+        sb.append("</w:tblGrid>");
+        for (int r = 0; r < TABLE_ROWS; r++) {
+            sb.append("<w:tr><w:trPr><w:trHeight w:val=\"400\"/></w:trPr>");
+            for (int c = 0; c < TABLE_COLUMNS; c++) {
+                sb.append("<w:tc><w:p><w:r><w:t>").append(random.nextInt(100000)).append("</w:t></w:r></w:p></w:tc>");
+            }
+            sb.append("</w:tr>");
+        }
+        return sb.append("</w:tbl>").toString();
+    }
+
+    private static String sentence(Random random) {
+        StringBuilder sb = new StringBuilder();
+        int words = 8 + random.nextInt(16);
+        for (int i = 0; i < words; i++) {
+            sb.append(i == 0 ? "" : " ").append(Integer.toString(random.nextInt(1 << 20), 36));
+        }
+        return sb.append('.').toString();
+    }
+
+    private static void addImage(WordprocessingMLPackage pkg, byte[] png, int id) throws Exception {
+        BinaryPartAbstractImage imagePart = BinaryPartAbstractImage.createImagePart(pkg, png);
+        Inline inline = imagePart.createImageInline("image" + id, "image" + id, id * 2 + 1, id * 2 + 2, false);
+        Drawing drawing = new Drawing();
+        drawing.getAnchorOrInline().add(inline);
+        R r = new R();
+        r.getContent().add(drawing);
+        P p = new P();
+        p.getContent().add(r);
+        pkg.getMainDocumentPart().addObject(p);
+    }
+
+    /**
+     * 生成内容由种子决定的PNG图片
+     */
+    private static byte[] createImage(int seed) throws Exception {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(64, 64, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, 64, 64);
+        for (int i = 0; i < 8; i++) {
+            g.setColor(new Color(random.nextInt(0xFFFFFF)));
+            g.fillRect(random.nextInt(56), random.nextInt(56), 8, 8);
+        }
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 生成语料到指定目录，用于在基准测试之外手动评估
+     * 参数：输出目录 文档数量 [每个文档的页数] [每页表格数] [每个文档的图片数]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("用法: CorpusGenerator <输出目录> <文档数量> [页数=5] [每页表格数=1] [图片数=2]");
+            System.exit(1);
+        }
+        List<String> paths = generate(new File(args[0]).toPath(), Integer.parseInt(args[1]),
+                args.length > 2 ? Integer.parseInt(args[2]) : 5,
+                args.length > 3 ? Integer.parseInt(args[3]) : 1,
+                args.length > 4 ? Integer.parseInt(args[4]) : 2);
+        System.out.println("已生成 " + paths.size() + " 个文档: " + args[0]);
+    }
+}
@@ -0,0 +1,72 @@
+package cn.liulin.docx.benchmark;
+
+import cn.liulin.docx.util.PreprocessDocumentUtil;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * 基准测试语料
+ * 语料规模由JMH参数控制，运行时可通过 -p docCount=200 -p pages=10 等参数覆盖
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 19:20
+ */
+@State(Scope.Benchmark)
+public class CorpusState {
+
+    /**
+     * 文档数量
+     */
+    @Param("10")
+    public int docCount;
+
+    /**
+     * 每个文档的页数
+     */
+    @Param("5")
+    public int pages;
+
+    /**
+     * 每页表格数
+     */
+    @Param("1")
+    public int tablesPerPage;
+
+    /**
+     * 每个文档的图片数
+     */
+    @Param("2")
+    public int imageCount;
+
+    /**
+     * 原始文档路径
+     */
+    public List<String> docPaths;
+
+    /**
+     * 预处理后的文档路径，供加载及之后的阶段使用
+     */
+    public List<String> processedPaths;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        docPaths = CorpusGenerator.generate(docCount, pages, tablesPerPage, imageCount);
+        processedPaths = PreprocessDocumentUtil.preprocessDocumentList(docPaths);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        for (String path : processedPaths) {
+            Files.deleteIfExists(Paths.get(path));
+        }
+    }
+}
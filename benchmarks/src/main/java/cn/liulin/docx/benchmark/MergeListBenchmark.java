@@ -0,0 +1,78 @@
+package cn.liulin.docx.benchmark;
+
+import cn.liulin.docx.DocxMerger;
+import cn.liulin.docx.MergeConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 端到端合并的基准测试
+ * 测量从原始文档到输出文件的完整耗时，包括预处理、加载、合并和保存
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 19:40
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+@State(Scope.Thread)
+public class MergeListBenchmark {
+
+    /**
+     * 是否使用流式输出
+     */
+    @Param({"false", "true"})
+    public boolean streaming;
+
+    /**
+     * 并发线程数，0表示使用可用CPU核数
+     */
+    @Param("0")
+    public int parallelism;
+
+    private DocxMerger merger;
+
+    /**
+     * 输出文件，每次调用覆盖上一次的结果
+     */
+    Path output;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        MergeConfig config = new MergeConfig();
+        config.setStreaming(streaming);
+        if (parallelism > 0) {
+            config.setParallelism(parallelism);
+        }
+        merger = new DocxMerger(config);
+        output = Files.createTempFile("docx-merge-benchmark", ".docx");
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(output);
+    }
+
+    @Benchmark
+    public void mergeList(CorpusState corpus) throws Exception {
+        merger.mergeList(corpus.docPaths, output.toString());
+    }
+}
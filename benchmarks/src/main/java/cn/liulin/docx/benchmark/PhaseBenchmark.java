@@ -0,0 +1,118 @@
+package cn.liulin.docx.benchmark;
+
+import cn.liulin.docx.util.DocumentFormatProfile;
+import cn.liulin.docx.util.FontMapperUtil;
+import cn.liulin.docx.util.NumberingMapperUtil;
+import cn.liulin.docx.util.PreprocessDocumentUtil;
+import cn.liulin.docx.util.ResourceCopierUtil;
+import cn.liulin.docx.util.StyleReMapperUtil;
+import cn.liulin.docx.util.TableFormatPreserverUtil;
+import cn.liulin.docx.util.WordProcessingUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并各阶段的基准测试
+ * 每个基准方法只测量一个阶段，会修改文档的阶段在每次调用前重新加载文档，加载时间不计入结果
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 19:30
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Dorg.slf4j.simpleLogger.defaultLogLevel=warn")
+public class PhaseBenchmark {
+
+    /**
+     * 每次调用前重新加载的文档
+     */
+    @State(Scope.Thread)
+    public static class LoadedDocs {
+        List<WordprocessingMLPackage> docList;
+
+        @Setup(Level.Invocation)
+        public void load(CorpusState corpus) throws Exception {
+            docList = WordProcessingUtils.loadDocList(corpus.processedPaths);
+        }
+    }
+
+    /**
+     * 预处理阶段产生的临时文件，每轮结束后删除
+     */
+    @State(Scope.Thread)
+    public static class PreprocessOutputs {
+        final List<String> paths = new ArrayList<>();
+
+        @TearDown(Level.Iteration)
+        public void clean() throws Exception {
+            for (String path : paths) {
+                Files.deleteIfExists(Paths.get(path));
+            }
+            paths.clear();
+        }
+    }
+
+    @Benchmark
+    public List<String> preprocessDocumentList(CorpusState corpus, PreprocessOutputs outputs) throws Exception {
+        List<String> processed = PreprocessDocumentUtil.preprocessDocumentList(corpus.docPaths);
+        outputs.paths.addAll(processed);
+        return processed;
+    }
+
+    @Benchmark
+    public List<WordprocessingMLPackage> loadDocList(CorpusState corpus) throws Exception {
+        return WordProcessingUtils.loadDocList(corpus.processedPaths);
+    }
+
+    @Benchmark
+    public List<Map<String, String>> mergeStyles(LoadedDocs docs) {
+        return StyleReMapperUtil.mergeStyles(docs.docList);
+    }
+
+    @Benchmark
+    public List<Map<BigInteger, BigInteger>> mapNumbering(LoadedDocs docs) {
+        return NumberingMapperUtil.mapNumbering(docs.docList);
+    }
+
+    @Benchmark
+    public List<Map<String, String>> copyImages(LoadedDocs docs) {
+        return ResourceCopierUtil.copyImages(docs.docList);
+    }
+
+    @Benchmark
+    public List<DocumentFormatProfile> applyDefaultFontSizes(LoadedDocs docs) {
+        List<DocumentFormatProfile> formatProfiles = TableFormatPreserverUtil.saveDocumentFormat(docs.docList);
+        FontMapperUtil.applyDocListDefaultFontSizesBeforeMerge(docs.docList, formatProfiles);
+        return formatProfiles;
+    }
+
+    /**
+     * 格式保存直接读取样式定义，不再遍历正文
+     */
+    @Benchmark
+    public List<DocumentFormatProfile> preserveTableFormat(LoadedDocs docs) {
+        return TableFormatPreserverUtil.saveDocumentFormat(docs.docList);
+    }
+}
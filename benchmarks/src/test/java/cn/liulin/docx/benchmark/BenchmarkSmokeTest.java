@@ -0,0 +1,115 @@
+package cn.liulin.docx.benchmark;
+
+import cn.liulin.docx.util.PreprocessDocumentUtil;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.wml.Tbl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * 基准测试冒烟测试：在很小的语料上将每个基准方法各执行一次，避免合并代码改动后基准测试在运行时才失败
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 17:10
+ */
+public class BenchmarkSmokeTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private CorpusState corpus;
+
+    @Before
+    public void setUp() throws Exception {
+        corpus = new CorpusState();
+        corpus.docCount = 2;
+        corpus.pages = 2;
+        corpus.tablesPerPage = 1;
+        corpus.imageCount = 2;
+        corpus.docPaths = CorpusGenerator.generate(folder.newFolder("corpus").toPath(), corpus.docCount, corpus.pages,
+                corpus.tablesPerPage, corpus.imageCount);
+        corpus.processedPaths = PreprocessDocumentUtil.preprocessDocumentList(corpus.docPaths);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        corpus.tearDown();
+    }
+
+    /**
+     * 语料中每个文档的表格和图片数量与参数一致
+     */
+    @Test
+    public void corpusMatchesParameters() throws Exception {
+        assertEquals(corpus.docCount, corpus.docPaths.size());
+        for (String path : corpus.docPaths) {
+            WordprocessingMLPackage doc = WordprocessingMLPackage.load(new File(path));
+            long tables = doc.getMainDocumentPart().getContent().stream()
+                    .filter(content -> XmlUtils.unwrap(content) instanceof Tbl).count();
+            long images = doc.getParts().getParts().values().stream()
+                    .filter(part -> part instanceof BinaryPartAbstractImage).count();
+            assertEquals(corpus.pages * corpus.tablesPerPage, tables);
+            assertEquals(corpus.imageCount, images);
+        }
+    }
+
+    @Test
+    public void phaseBenchmarksRun() throws Exception {
+        PhaseBenchmark benchmark = new PhaseBenchmark();
+        PhaseBenchmark.PreprocessOutputs outputs = new PhaseBenchmark.PreprocessOutputs();
+        assertEquals(corpus.docCount, benchmark.preprocessDocumentList(corpus, outputs).size());
+        outputs.clean();
+        assertEquals(corpus.docCount, benchmark.loadDocList(corpus).size());
+
+        assertEquals(corpus.docCount, benchmark.mergeStyles(loaded()).size());
+        assertEquals(corpus.docCount, benchmark.mapNumbering(loaded()).size());
+        List<Map<String, String>> relMaps = benchmark.copyImages(loaded());
+        assertFalse(relMaps.get(1).isEmpty());
+        assertEquals(corpus.docCount, benchmark.applyDefaultFontSizes(loaded()).size());
+        assertEquals(corpus.docCount, benchmark.preserveTableFormat(loaded()).size());
+    }
+
+    @Test
+    public void mergeListBenchmarkRuns() throws Exception {
+        for (boolean streaming : Arrays.asList(false, true)) {
+            MergeListBenchmark benchmark = new MergeListBenchmark();
+            benchmark.streaming = streaming;
+            benchmark.parallelism = 2;
+            benchmark.setUp();
+            try {
+                benchmark.mergeList(corpus);
+                WordprocessingMLPackage merged = WordprocessingMLPackage.load(benchmark.output.toFile());
+                long tables = merged.getMainDocumentPart().getContent().stream()
+                        .filter(content -> XmlUtils.unwrap(content) instanceof Tbl).count();
+                assertEquals(corpus.docCount * corpus.pages * corpus.tablesPerPage, tables);
+            } finally {
+                benchmark.tearDown();
+            }
+            assertFalse(Files.exists(benchmark.output));
+        }
+    }
+
+    /**
+     * 每个阶段基准调用前重新加载的文档
+     */
+    private PhaseBenchmark.LoadedDocs loaded() throws Exception {
+        PhaseBenchmark.LoadedDocs docs = new PhaseBenchmark.LoadedDocs();
+        docs.load(corpus);
+        return docs;
+    }
+}
@@ -0,0 +1,41 @@
+#!/usr/bin/env bash
+# 为fat jar生成AppCDS归档并验证启动耗时
+# 归档保存已解析的类元数据，JVM启动时直接映射，省去docx4j等依赖的类加载和校验，适合每个任务启动一个JVM的场景。
+# 需要JDK 13及以上版本（-XX:ArchiveClassesAtExit）；归档只能用于生成它的JDK，且运行时的classpath必须与生成时一致。
+#
+# 用法: scripts/appcds.sh [fat jar路径] [归档路径]
+#   mvn package -DskipTests -Pjaxb-ri
+#   scripts/appcds.sh target/docx-merge-0.0.1-SNAPSHOT-fat.jar
+#   java -XX:SharedArchiveFile=target/docx-merge-0.0.1-SNAPSHOT-fat.jsa -cp target/docx-merge-0.0.1-SNAPSHOT-fat.jar ...
+set -euo pipefail
+
+JAR=${1:-target/docx-merge-0.0.1-SNAPSHOT-fat.jar}
+ARCHIVE=${2:-${JAR%.jar}.jsa}
+JAVA=${JAVA:-java}
+WARM_UP_CLASS=cn.liulin.docx.util.WarmUpUtil
+
+if [ ! -f "$JAR" ]; then
+  echo "找不到 $JAR，请先执行 mvn package -DskipTests -Pjaxb-ri" >&2
+  exit 1
+fi
+
+VERSION=$("$JAVA" -version 2>&1 | sed -n 's/.*version "\([0-9]*\)\(\.[0-9]*\)*.*".*/\1/p' | head -1)
+if [ -z "$VERSION" ] || [ "$VERSION" -lt 13 ]; then
+  echo "生成AppCDS归档需要JDK 13及以上版本，当前: $("$JAVA" -version 2>&1 | head -1)" >&2
+  exit 1
+fi
+
+# 训练运行：执行预热合并，退出时把加载过的类写入归档
+rm -f "$ARCHIVE"
+"$JAVA" -XX:ArchiveClassesAtExit="$ARCHIVE" -Xshare:auto -cp "$JAR" "$WARM_UP_CLASS" 3
+echo "已生成归档: $ARCHIVE ($(du -h "$ARCHIVE" | cut -f1))"
+
+# 验证：-Xshare:on 在归档无法使用时直接报错；对比使用与不使用归档时首次合并的耗时
+now() { date +%s%N; }
+start=$(now)
+"$JAVA" -Xshare:off -cp "$JAR" "$WARM_UP_CLASS" 1 > /dev/null
+without=$(( ($(now) - start) / 1000000 ))
+start=$(now)
+"$JAVA" -XX:SharedArchiveFile="$ARCHIVE" -Xshare:on -cp "$JAR" "$WARM_UP_CLASS" 1 > /dev/null
+with=$(( ($(now) - start) / 1000000 ))
+echo "首次合并（含JVM启动）: 不使用归档 ${without} ms，使用归档 ${with} ms"
@@ -1,16 +1,47 @@
 package cn.liulin.docx;
 
+import cn.liulin.docx.metrics.MergeMetrics;
+import cn.liulin.docx.metrics.MergePhase;
+import cn.liulin.docx.metrics.PhaseMetrics;
+import cn.liulin.docx.metrics.PhaseTimer;
 import cn.liulin.docx.util.*;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
 import org.slf4j.Logger;
 
-import java.io.File;
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 
 /**
@@ -21,6 +52,48 @@ import java.util.Map;
 public class DocxMerger {
     private static final Logger logger = LoggerUtil.getLogger(DocxMerger.class);
 
+    /**
+     * 异步合并超时计时使用的线程
+     */
+    private static final ScheduledExecutorService TIMEOUT_SCHEDULER =
+            Executors.newSingleThreadScheduledExecutor(new NamedThreadFactory("docx-merge-timeout"));
+
+    /**
+     * 预检查未通过时异常消息中最多列出的文档数
+     */
+    private static final int MAX_REPORTED_PROBLEMS = 10;
+
+    private final MergeConfig config;
+
+    public DocxMerger() {
+        this(new MergeConfig());
+    }
+
+    public DocxMerger(MergeConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * 预热：初始化docx4j并使用生成的小文档执行几次完整合并
+     * 按任务启动JVM时，在接收第一个任务前调用可以缩短第一个任务的耗时
+     *
+     * @param config 合并配置，通常与实际任务使用相同的配置
+     * @param iterations 合并次数
+     * @return 预热耗时，单位毫秒
+     */
+    public static long warmUp(MergeConfig config, int iterations) throws Exception {
+        return WarmUpUtil.warmUp(config, iterations);
+    }
+
+    /**
+     * 使用默认配置预热
+     *
+     * @return 预热耗时，单位毫秒
+     */
+    public static long warmUp() throws Exception {
+        return warmUp(new MergeConfig(), 1);
+    }
+
     /**
      * 合并传入的多个文档
      *
@@ -28,112 +101,745 @@ public class DocxMerger {
      * @param outputPath 输出文档路径
      * @author liulin
      * @date 2025/10/15 15:13
+     * @see #mergeListWithMetrics(List, String)
      */
     public void mergeList(List<String> docPathList, String outputPath) throws Exception {
-        LoggerUtil.logMethodEntry(logger, "mergeList", docPathList, outputPath);
-        
+        mergeListWithMetrics(docPathList, outputPath);
+    }
+
+    /**
+     * 合并传入的多个文档并返回各阶段的度量数据
+     *
+     * @param docPathList 传入文档路径list
+     * @param outputPath 输出文档路径
+     * @return 各阶段的度量数据
+     */
+    public MergeMetrics mergeListWithMetrics(List<String> docPathList, String outputPath) throws Exception {
+        return mergeSources(DocumentSource.of(docPathList), outputPath);
+    }
+
+    /**
+     * 合并多个来源的文档到输出文件
+     *
+     * @param sourceList 待合并文档的来源
+     * @param outputPath 输出文档路径
+     * @return 各阶段的度量数据
+     */
+    public MergeMetrics mergeSources(List<DocumentSource> sourceList, String outputPath) throws Exception {
+        return merge(sourceList, MergeTarget.of(outputPath), new MergeMetrics(config.getListeners()));
+    }
+
+    /**
+     * 合并多个来源的文档并写入输出流
+     * 字节数组、输入流或通道来源的文档在内存中预处理和加载；同时开启内存模式时，保存阶段的压缩暂存区和流式合并的
+     * 正文暂存区也保存在内存中，整个合并过程不读写本地磁盘。方法返回时合并结果已全部写入并刷新，输出流由调用方负责关闭
+     *
+     * @param sourceList 待合并文档的来源
+     * @param out 输出流
+     * @return 各阶段的度量数据
+     */
+    public MergeMetrics mergeSources(List<DocumentSource> sourceList, OutputStream out) throws Exception {
+        return merge(sourceList, MergeTarget.of(out), new MergeMetrics(config.getListeners()));
+    }
+
+    /**
+     * 合并多个来源的文档并写入字节通道，通道由调用方负责关闭
+     *
+     * @param sourceList 待合并文档的来源
+     * @param channel 输出通道
+     * @return 各阶段的度量数据
+     * @see #mergeSources(List, OutputStream)
+     */
+    public MergeMetrics mergeSources(List<DocumentSource> sourceList, WritableByteChannel channel) throws Exception {
+        return mergeSources(sourceList, Channels.newOutputStream(channel));
+    }
+
+    /**
+     * 预检查多个文档，不预处理和加载文档
+     *
+     * @param docPathList 传入文档路径list
+     * @return 按输入顺序排列的预检查结果
+     * @see #scanSources(List)
+     */
+    public List<DocumentScan> scanList(List<String> docPathList) throws Exception {
+        return scanSources(DocumentSource.of(docPathList));
+    }
+
+    /**
+     * 预检查多个来源的文档，不预处理和加载文档
+     * 只读取各文档压缩包的中央目录、包关系和内容类型，按配置读取主文档XML，使用并发度个线程。
+     * 调度方可以根据结果中的大小、段落数等信息排序和分组，剔除无效的文档后再调用合并方法；
+     * 检查通过的结果缓存在文档来源上，用同一组来源合并时估算内存占用不再读取中央目录
+     *
+     * @param sourceList 待合并文档的来源
+     * @return 按输入顺序排列的预检查结果
+     */
+    public List<DocumentScan> scanSources(List<DocumentSource> sourceList) throws Exception {
+        ExecutorService scanExecutor = config.getParallelism() > 1 && sourceList.size() > 1
+                ? Executors.newFixedThreadPool(Math.min(config.getParallelism(), sourceList.size()),
+                new NamedThreadFactory("docx-merge-scan"))
+                : null;
         try {
-            logger.info("开始合并文档...");
+            return DocumentScanUtil.scanSourceList(sourceList, scanExecutor, config.isScanDocumentXml(),
+                    config.getMaxDocumentSize(), config.getMaxCompressionRatio());
+        } finally {
+            if (scanExecutor != null) {
+                scanExecutor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * 在指定的线程池中异步合并文档
+     *
+     * @param docPathList 传入文档路径list
+     * @param outputPath 输出文档路径
+     * @param executor 执行合并的线程池
+     * @return 合并结果
+     * @see #mergeListAsync(List, String, Executor, long, TimeUnit)
+     */
+    public CompletableFuture<MergeResult> mergeListAsync(List<String> docPathList, String outputPath, Executor executor) {
+        return mergeListAsync(docPathList, outputPath, executor, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 在指定的线程池中异步合并文档
+     * 合并在executor中执行，调用线程立即返回；在Java 21及以上版本中可以传入虚拟线程执行器。
+     * 合并进度通过{@link cn.liulin.docx.metrics.MergeListener#onProgress}回调。
+     * 调用返回结果的cancel方法、超时或以其他方式提前结束返回结果时合并被取消：
+     * 执行合并的线程被中断，等待后台加载等可中断的操作立即结束；不响应中断的步骤（如解析单个文档）执行完后，
+     * 合并在处理下一个文档或阶段前停止。未完成的输出文件被删除，合并停止后线程池中的线程才被释放
+     *
+     * @param docPathList 传入文档路径list
+     * @param outputPath 输出文档路径
+     * @param executor 执行合并的线程池
+     * @param timeout 超时时间，不大于0时不限制，超时后返回结果以TimeoutException结束
+     * @param unit 超时时间单位
+     * @return 合并结果
+     */
+    public CompletableFuture<MergeResult> mergeListAsync(List<String> docPathList, String outputPath, Executor executor,
+                                                         long timeout, TimeUnit unit) {
+        MergeMetrics metrics = new MergeMetrics(config.getListeners());
+        return submit(executor, timeout, unit, metrics, () -> new MergeResult(outputPath, docPathList.size(),
+                merge(DocumentSource.of(docPathList), MergeTarget.of(outputPath), metrics)));
+    }
+
+    /**
+     * 在指定的线程池中异步合并多个来源的文档并写入输出流
+     * 取消或超时后输出流中可能已经写入了部分内容，由调用方丢弃
+     *
+     * @param sourceList 待合并文档的来源
+     * @param out 输出流，由调用方负责关闭
+     * @param executor 执行合并的线程池
+     * @param timeout 超时时间，不大于0时不限制
+     * @param unit 超时时间单位
+     * @return 合并结果
+     * @see #mergeListAsync(List, String, Executor, long, TimeUnit)
+     */
+    public CompletableFuture<MergeResult> mergeSourcesAsync(List<DocumentSource> sourceList, OutputStream out,
+                                                            Executor executor, long timeout, TimeUnit unit) {
+        MergeMetrics metrics = new MergeMetrics(config.getListeners());
+        return submit(executor, timeout, unit, metrics, () -> new MergeResult(null, sourceList.size(),
+                merge(sourceList, MergeTarget.of(out), metrics)));
+    }
 
-            // 创建输出目录
-            File output = new File(outputPath);
-            if (!output.getParentFile().exists()) {
-                output.getParentFile().mkdirs();
-            }
-
-            // 分批处理文档，每批处理10个文档
-            WordprocessingMLPackage resultDoc = null;
-            List<String> batch = new ArrayList<>();
-            
-            for (int i = 0; i < docPathList.size(); i++) {
-                batch.add(docPathList.get(i));
-                
-                // 每10个文档处理一次，或者到达最后一个文档时处理
-                if (batch.size() >= 100 || i == docPathList.size() - 1) {
-                    if (resultDoc == null) {
-                        // 第一批文档，创建基础文档
-                        resultDoc = mergeBatch(batch, null);
-                    } else {
-                        // 后续批次，将结果合并到已有文档中
-                        resultDoc = mergeBatch(batch, resultDoc);
+    private CompletableFuture<MergeResult> submit(Executor executor, long timeout, TimeUnit unit, MergeMetrics metrics,
+                                                  Callable<MergeResult> task) {
+        CompletableFuture<MergeResult> future = new CompletableFuture<>();
+        // 正在执行合并的线程，只在合并执行期间设置，修改和中断都在其锁内进行，避免中断已经转去执行其他任务的线程
+        AtomicReference<Thread> worker = new AtomicReference<>();
+        if (timeout > 0) {
+            ScheduledFuture<?> timeoutTask = TIMEOUT_SCHEDULER.schedule(() -> future.completeExceptionally(
+                    new TimeoutException("合并超时: " + timeout + " " + unit)), timeout, unit);
+            future.whenComplete((result, e) -> timeoutTask.cancel(false));
+        }
+        // 返回结果被取消或超时后通知合并停止，并中断执行合并的线程
+        future.whenComplete((result, e) -> {
+            if (e != null) {
+                metrics.cancel();
+                synchronized (worker) {
+                    Thread thread = worker.get();
+                    if (thread != null) {
+                        thread.interrupt();
+                    }
+                }
+            }
+        });
+        try {
+            executor.execute(() -> {
+                synchronized (worker) {
+                    if (future.isDone()) {
+                        return;
+                    }
+                    worker.set(Thread.currentThread());
+                }
+                try {
+                    future.complete(task.call());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                } finally {
+                    synchronized (worker) {
+                        worker.set(null);
+                        // 清除合并结束前收到的中断，线程池中的线程继续执行其他任务
+                        Thread.interrupted();
                     }
-                    batch.clear();
-                    
-                    // 提示当前进度
-                    logger.info("已处理 {}/{} 个文档", Math.min(i + 1, docPathList.size()), docPathList.size());
                 }
+            });
+        } catch (RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    private MergeMetrics merge(List<DocumentSource> sourceList, MergeTarget target, MergeMetrics metrics) throws Exception {
+        LoggerUtil.logMethodEntry(logger, "mergeList", sourceList, target);
+        long start = System.nanoTime();
+        metrics.setTotalDocuments(sourceList.size());
+
+        // 预处理和加载阶段使用的线程池，并发度为1时在当前线程中顺序处理
+        ExecutorService loadExecutor = config.getParallelism() > 1
+                ? Executors.newFixedThreadPool(config.getParallelism(), new NamedThreadFactory("docx-merge-load"))
+                : null;
+        try {
+            logger.info("开始合并文档...");
+
+            // 创建输出目录，输出路径不含目录时使用当前目录
+            if (target.file != null) {
+                Path parent = target.file.toAbsolutePath().getParent();
+                if (parent != null) {
+                    Files.createDirectories(parent);
+                }
+            }
+
+            if (config.isPreScan()) {
+                preScan(sourceList, loadExecutor, metrics);
+            }
+
+            if (config.isStreaming()) {
+                mergeStreaming(sourceList, target, loadExecutor, metrics);
+                return complete(metrics, start);
+            }
+
+            AtomicInteger batchCounter = new AtomicInteger();
+            PartialMerge result;
+            if (config.isTreeMerge() && sourceList.size() > config.getTreeLeafSize()) {
+                result = mergeTree(sourceList, metrics, batchCounter);
+            } else {
+                result = mergeRange(sourceList, loadExecutor, config.getBatchMemoryBudget(), metrics, batchCounter);
             }
+            WordprocessingMLPackage resultDoc = result.doc;
 
             // 保存最终文档
-            resultDoc.save(output);
-            logger.info("文档已成功合并并保存到: {}", outputPath);
+            PhaseTimer timer = PhaseTimer.start();
+            if (target.file != null) {
+                PackageSaveUtil.save(resultDoc, target.file.toFile(), config.getParallelism(),
+                        config.getCompressionLevel(), config.isStoreCompressedMedia(), config.isInMemory());
+            } else {
+                PackageSaveUtil.save(resultDoc, target.openStream(), config.getParallelism(),
+                        config.getCompressionLevel(), config.isStoreCompressedMedia(), config.isInMemory());
+            }
+            PhaseMetrics save = timer.stop(MergePhase.SAVE, batchCounter.get() - 1);
+            save.setDocuments(sourceList.size());
+            save.setParts(resultDoc.getParts().getParts().size());
+            metrics.record(save);
+            logger.info("文档已成功合并并保存到: {}", target);
             resultDoc.reset();
-            
-            LoggerUtil.logMethodExit(logger, "mergeList", "合并完成");
+            if (config.getDocumentCache() != null) {
+                logger.info("预处理结果缓存: {}", config.getDocumentCache());
+            }
+
+            return complete(metrics, start);
         } catch (Exception e) {
+            // 输出到文件时先写入临时文件，成功后才移动到输出路径，失败或取消时输出路径保持原样
+            if (metrics.isCancelled()) {
+                logger.info("合并已取消: {}", target);
+                throw e;
+            }
             LoggerUtil.logMethodException(logger, "mergeList", e);
             throw e;
+        } finally {
+            if (loadExecutor != null) {
+                loadExecutor.shutdownNow();
+            }
         }
     }
     
+    /**
+     * 在预处理和加载任何文档之前预检查全部文档，有文档未通过时不开始合并
+     *
+     * @param sourceList 文档来源
+     * @param loadExecutor 预检查使用的线程池，为null时顺序处理
+     * @param metrics 度量数据
+     * @throws IllegalArgumentException 有文档未通过预检查时抛出，消息中列出各文档的问题
+     */
+    private void preScan(List<DocumentSource> sourceList, ExecutorService loadExecutor, MergeMetrics metrics) throws Exception {
+        PhaseTimer timer = PhaseTimer.start();
+        List<DocumentScan> scans = DocumentScanUtil.scanSourceList(sourceList, loadExecutor, config.isScanDocumentXml(),
+                config.getMaxDocumentSize(), config.getMaxCompressionRatio());
+        metrics.record(stop(timer, MergePhase.SCAN, 0, sourceList.size()));
+
+        long uncompressed = 0;
+        long media = 0;
+        List<DocumentScan> invalid = new ArrayList<>();
+        for (DocumentScan scan : scans) {
+            uncompressed += scan.getUncompressedSize();
+            media += scan.getMediaSize();
+            if (!scan.isValid()) {
+                invalid.add(scan);
+            }
+        }
+        if (!invalid.isEmpty()) {
+            StringBuilder message = new StringBuilder("有 ").append(invalid.size()).append(" 个文档未通过预检查");
+            for (int i = 0; i < invalid.size() && i < MAX_REPORTED_PROBLEMS; i++) {
+                message.append("; ").append(invalid.get(i).getName()).append(": ").append(invalid.get(i).getProblems());
+            }
+            if (invalid.size() > MAX_REPORTED_PROBLEMS) {
+                message.append("; ...");
+            }
+            throw new IllegalArgumentException(message.toString());
+        }
+        logger.info("预检查 {} 个文档，解压后共 {} MB，其中图片和嵌入对象 {} MB", scans.size(), uncompressed >> 20, media >> 20);
+    }
+
+    /**
+     * 结束度量记录并输出各阶段耗时
+     */
+    private MergeMetrics complete(MergeMetrics metrics, long start) {
+        metrics.complete(System.nanoTime() - start);
+        logger.info("合并各阶段耗时: {}", metrics);
+        LoggerUtil.logMethodExit(logger, "mergeList", "合并完成");
+        return metrics;
+    }
+
+    /**
+     * 按内存预算将一组连续的文档分批合并到同一个目标文档，所有批次共用样式、编号和媒体登记表
+     *
+     * @param sources 文档来源
+     * @param loadExecutor 预处理和加载文档使用的线程池，为null时顺序处理
+     * @param budget 每批文档预计占用内存的上限
+     * @param metrics 度量数据
+     * @param batchCounter 批次序号计数器
+     * @return 合并结果
+     */
+    private PartialMerge mergeRange(List<DocumentSource> sources, ExecutorService loadExecutor, long budget,
+                                    MergeMetrics metrics, AtomicInteger batchCounter) throws Exception {
+        PartialMerge result = new PartialMerge();
+        List<DocumentSource> batch = new ArrayList<>();
+        long batchCost = 0;
+
+        for (int i = 0; i < sources.size(); i++) {
+            metrics.checkCancelled();
+            DocumentSource source = sources.get(i);
+            long cost = MemoryEstimateUtil.estimateHeapCost(source, config.isInMemory());
+            if (cost > budget) {
+                logger.warn("文档 {} 预计占用 {} MB，超过批次内存上限，单独处理", source, cost >> 20);
+            }
+
+            // 加入该文档会超过内存上限时，先合并当前批次，已合并的文档随之释放
+            if (!batch.isEmpty() && batchCost + cost > budget) {
+                result.doc = mergeBatch(batch, result.doc, batchCost, result.styleRegistry, result.numberingRegistry,
+                        result.mediaRegistry, loadExecutor, metrics, batchCounter.getAndIncrement());
+                batch.clear();
+                batchCost = 0;
+                logger.info("已处理 {}/{} 个文档", i, sources.size());
+            }
+            batch.add(source);
+            batchCost += cost;
+        }
+        result.doc = mergeBatch(batch, result.doc, batchCost, result.styleRegistry, result.numberingRegistry,
+                result.mediaRegistry, loadExecutor, metrics, batchCounter.getAndIncrement());
+        result.documents = sources.size();
+        logger.info("已处理 {}/{} 个文档", sources.size(), sources.size());
+        return result;
+    }
+
+    /**
+     * 分治合并文档
+     * 将文档列表递归二分，不超过叶子大小的子区间在ForkJoinPool中并行合并，
+     * 再按输入顺序两两合并相邻子区间的结果，直到得到完整的合并文档。
+     * 同时合并的子区间数不超过并发度和子区间总数中的较小者，批次内存上限按该数量平分给每个子区间
+     *
+     * @param sourceList 文档来源
+     * @param metrics 度量数据
+     * @param batchCounter 批次序号计数器
+     * @return 合并结果
+     */
+    private PartialMerge mergeTree(List<DocumentSource> sourceList, MergeMetrics metrics, AtomicInteger batchCounter) throws Exception {
+        int concurrentLeaves = Math.min(config.getParallelism(), countLeaves(sourceList.size()));
+        long leafBudget = Math.max(1, config.getBatchMemoryBudget() / concurrentLeaves);
+        logger.info("使用分治合并 {} 个文档，子区间最多 {} 个文档，每个子区间的批次内存上限 {} MB", sourceList.size(),
+                config.getTreeLeafSize(), leafBudget >> 20);
+        ForkJoinPool pool = new ForkJoinPool(config.getParallelism(), p -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            thread.setName("docx-merge-tree-" + thread.getPoolIndex());
+            return thread;
+        }, null, false);
+        try {
+            return pool.invoke(new TreeMergeTask(sourceList, leafBudget, metrics, batchCounter));
+        } catch (CompletionException e) {
+            // 叶子任务的异常可能被逐层包装，与顺序合并一样抛出原始异常
+            Throwable cause = e;
+            while (cause instanceof CompletionException && cause.getCause() != null) {
+                cause = cause.getCause();
+            }
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * 计算分治合并按{@link TreeMergeTask}的二分方式得到的子区间数
+     */
+    private int countLeaves(int size) {
+        if (size <= config.getTreeLeafSize()) {
+            return 1;
+        }
+        return countLeaves(size / 2) + countLeaves(size - size / 2);
+    }
+
+    /**
+     * 将右侧的部分合并结果追加到左侧的部分合并结果
+     * 两侧的正文都已经规范化，这里只按左侧的登记表合并样式、编号和媒体资源并更新右侧正文中的引用，
+     * 右侧正文最后的节属性成为合并结果的节属性
+     *
+     * @param left 左侧结果，作为目标文档
+     * @param right 右侧结果，追加后释放
+     * @param metrics 度量数据
+     * @param batch 批次序号
+     * @return 合并后的左侧结果
+     */
+    private PartialMerge combine(PartialMerge left, PartialMerge right, MergeMetrics metrics, int batch) {
+        logger.info("合并相邻的部分结果，分别包含 {} 和 {} 个文档", left.documents, right.documents);
+        List<WordprocessingMLPackage> pair = Arrays.asList(left.doc, right.doc);
+        int documents = right.documents;
+
+        PhaseTimer timer = PhaseTimer.start();
+        Map<BigInteger, BigInteger> numIdMap = NumberingMapperUtil.mapNumbering(pair, left.numberingRegistry).get(1);
+        metrics.record(stop(timer, MergePhase.NUMBERING, batch, documents));
+
+        timer = PhaseTimer.start();
+        Map<String, String> styleIdMap = StyleReMapperUtil.mergeStyles(pair, left.styleRegistry, left.numberingRegistry,
+                right.styleRegistry).get(1);
+        PhaseMetrics stylesMetrics = stop(timer, MergePhase.STYLES, batch, documents);
+        stylesMetrics.setStyles(left.styleRegistry.size());
+        metrics.record(stylesMetrics);
+
+        timer = PhaseTimer.start();
+        WordProcessingUtils.remapHeaderFooterReferences(right.doc, styleIdMap, numIdMap);
+        Map<String, String> relMap = ResourceCopierUtil.copyRelationships(pair, left.mediaRegistry).get(1);
+        PhaseMetrics imagesMetrics = stop(timer, MergePhase.IMAGES, batch, documents);
+        imagesMetrics.setImages(relMap.size());
+        metrics.record(imagesMetrics);
+
+        timer = PhaseTimer.start();
+        WordProcessingUtils.remapReferences(right.doc, styleIdMap, numIdMap, relMap);
+        metrics.record(stop(timer, MergePhase.NORMALIZE, batch, documents));
+
+        timer = PhaseTimer.start();
+        WordProcessingUtils.addDocListToBase(left.doc.getMainDocumentPart(), pair);
+        right.doc.reset();
+        metrics.record(stop(timer, MergePhase.APPEND, batch, documents));
+
+        left.documents += right.documents;
+        return left;
+    }
+
     /**
      * 分批合并文档
-     * @param batchDocPaths 当前批次的文档路径
+     * @param batchSources 当前批次的文档来源
      * @param baseDoc 已有的基础文档，如果为null则创建新的
+     * @param batchCost 当前批次文档预计占用的内存
+     * @param styleRegistry 基础文档的样式登记表，用于跨批次合并样式
+     * @param numberingRegistry 基础文档的编号登记表，用于跨批次分配编号ID
+     * @param mediaRegistry 基础文档的媒体登记表，用于跨批次去除重复图片
+     * @param loadExecutor 预处理和加载文档使用的线程池，为null时顺序处理
+     * @param metrics 度量数据
+     * @param batch 批次序号
      * @return 合并后的文档
      */
-    private WordprocessingMLPackage mergeBatch(List<String> batchDocPaths, WordprocessingMLPackage baseDoc) throws Exception {
-        logger.info("开始处理批次，包含 {} 个文档", batchDocPaths.size());
-        
-        // 预处理原始文档
-        List<String> processedDocPathList = PreprocessDocumentUtil.preprocessDocumentList(batchDocPaths);
+    private WordprocessingMLPackage mergeBatch(List<DocumentSource> batchSources, WordprocessingMLPackage baseDoc, long batchCost,
+                                               StyleRegistry styleRegistry, NumberingRegistry numberingRegistry,
+                                               MediaRegistry mediaRegistry, ExecutorService loadExecutor,
+                                               MergeMetrics metrics, int batch) throws Exception {
+        logger.info("开始处理批次，包含 {} 个文档，预计占用 {} MB", batchSources.size(), batchCost >> 20);
+
+        // 并发预处理并加载当前批次数据，结果顺序与输入顺序一致
+        List<WordprocessingMLPackage> newDocList = WordProcessingUtils.preprocessAndLoadSourceList(batchSources, loadExecutor,
+                config.isInMemory(), config.getDocumentCache(), metrics, batch);
+        int documents = newDocList.size();
 
-        // 加载当前批次数据
-        List<WordprocessingMLPackage> docList = WordProcessingUtils.loadDocList(processedDocPathList);
+        // 保存新文档的样式格式信息（默认字体大小等），已合并的基础文档在之前的批次中处理过，不再重复处理
+        PhaseTimer timer = PhaseTimer.start();
+        List<DocumentFormatProfile> formatProfiles = TableFormatPreserverUtil.saveDocumentFormat(newDocList);
 
+        // 移除新文档的网格设置
+        WordProcessingUtils.removeDocumentGridSettingsList(newDocList);
+        metrics.record(stop(timer, MergePhase.FORMAT_CAPTURE, batch, documents));
+
+        List<WordprocessingMLPackage> docList = new ArrayList<>(newDocList.size() + 1);
         WordprocessingMLPackage resultDoc;
         if (baseDoc == null) {
             // 如果没有基础文档，使用第一个文档作为基础
-            resultDoc = docList.get(0);
+            resultDoc = newDocList.get(0);
         } else {
             // 如果已有基础文档，将其作为第一个文档
-            docList.add(0, baseDoc);
+            docList.add(baseDoc);
             resultDoc = baseDoc;
         }
+        docList.addAll(newDocList);
+        int newDocOffset = docList.size() - newDocList.size();
 
-        // 合并样式，以第一个文档的样式为基准
-        StyleReMapperUtil.mergeStyles(docList);
-
-        // 映射编号（避免列表编号混乱）
-        NumberingMapperUtil.mapNumbering(docList);
+        // 映射编号（避免列表编号混乱），样式中的numPr同时更新，合并样式时按更新后的编号比较定义
+        timer = PhaseTimer.start();
+        List<Map<BigInteger, BigInteger>> numIdMaps = NumberingMapperUtil.mapNumbering(docList, numberingRegistry);
+        metrics.record(stop(timer, MergePhase.NUMBERING, batch, documents));
 
-        // 复制图片、表格等资源（处理关系）
-        ResourceCopierUtil.copyImages(docList);
+        // 合并样式，以第一个文档的样式为基准，定义冲突的样式被重命名
+        timer = PhaseTimer.start();
+        List<Map<String, String>> styleIdMaps = StyleReMapperUtil.mergeStyles(docList, styleRegistry, numberingRegistry, null);
+        PhaseMetrics stylesMetrics = stop(timer, MergePhase.STYLES, batch, documents);
+        stylesMetrics.setStyles(styleRegistry.size());
+        metrics.record(stylesMetrics);
 
-        // 保存两个文档的格式信息（暂时保留但不处理表格边框）
-        Map<String, String> formatProperties = TableFormatPreserverUtil.saveDocumentFormat(docList);
+        // 复制图片、超链接、图表、页眉页脚等关系及其部件，关系引用在后续遍历中统一更新
+        // 页眉页脚先更新样式和编号引用，按处理后的内容去重
+        timer = PhaseTimer.start();
+        WordProcessingUtils.normalizeHeadersFooters(newDocList, formatProfiles,
+                styleIdMaps.subList(newDocOffset, styleIdMaps.size()),
+                numIdMaps.subList(newDocOffset, numIdMaps.size()));
+        List<Map<String, String>> relMaps = ResourceCopierUtil.copyRelationships(docList, mediaRegistry);
+        int images = 0;
+        for (Map<String, String> relMap : relMaps.subList(newDocOffset, relMaps.size())) {
+            images += relMap.size();
+        }
+        PhaseMetrics imagesMetrics = stop(timer, MergePhase.IMAGES, batch, documents);
+        imagesMetrics.setImages(images);
+        metrics.record(imagesMetrics);
 
-        // 在合并前应用默认字体大小
-        FontMapperUtil.applyDocListDefaultFontSizesBeforeMerge(docList, formatProperties);
+        // 单次遍历每个新文档：更新样式、编号和关系引用、应用默认字体大小、修复对齐元素
+        // 基础文档的内容在加入时已经处理完成，只有新文档需要处理，避免合并耗时随批次数平方增长
+        timer = PhaseTimer.start();
+        WordProcessingUtils.normalizeDocList(newDocList, formatProfiles,
+                styleIdMaps.subList(newDocOffset, styleIdMaps.size()),
+                numIdMaps.subList(newDocOffset, numIdMaps.size()),
+                relMaps.subList(newDocOffset, relMaps.size()));
+        metrics.record(stop(timer, MergePhase.NORMALIZE, batch, documents));
 
         // 获取基础文档的主要部分
+        timer = PhaseTimer.start();
         MainDocumentPart main1 = resultDoc.getMainDocumentPart();
 
-        // 移除文档网格设置
-        WordProcessingUtils.removeDocumentGridSettingsList(docList);
-
         // 将合并doc 的所有内容追加到 doc1
         WordProcessingUtils.addDocListToBase(main1, docList);
 
-        // 清理临时文件
-        for (String s : processedDocPathList) {
-            Files.deleteIfExists(Paths.get(s));
-        }
-
         for (int i = 1; i < docList.size(); i++) {
             docList.get(i).reset();
         }
+        metrics.record(stop(timer, MergePhase.APPEND, batch, documents));
+        metrics.documentsMerged(documents, batch);
         logger.info("批次处理完成");
         return resultDoc;
     }
-}
\ No newline at end of file
+
+    /**
+     * 部分合并结果：合并后的目标文档及其样式、编号和媒体登记表
+     */
+    private static class PartialMerge {
+        WordprocessingMLPackage doc;
+        final StyleRegistry styleRegistry = new StyleRegistry();
+        final NumberingRegistry numberingRegistry = new NumberingRegistry();
+        final MediaRegistry mediaRegistry = new MediaRegistry();
+        int documents;
+    }
+
+    /**
+     * 分治合并任务，子区间不超过叶子大小时顺序合并，否则二分后并行合并两半再合并结果
+     */
+    private class TreeMergeTask extends RecursiveTask<PartialMerge> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<DocumentSource> sources;
+        private final long leafBudget;
+        private final MergeMetrics metrics;
+        private final AtomicInteger batchCounter;
+
+        TreeMergeTask(List<DocumentSource> sources, long leafBudget, MergeMetrics metrics, AtomicInteger batchCounter) {
+            this.sources = sources;
+            this.leafBudget = leafBudget;
+            this.metrics = metrics;
+            this.batchCounter = batchCounter;
+        }
+
+        @Override
+        protected PartialMerge compute() {
+            if (sources.size() <= config.getTreeLeafSize()) {
+                try {
+                    // 子区间之间已经并行，子区间内部顺序加载
+                    return mergeRange(sources, null, leafBudget, metrics, batchCounter);
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }
+            int mid = sources.size() / 2;
+            TreeMergeTask leftTask = new TreeMergeTask(sources.subList(0, mid), leafBudget, metrics, batchCounter);
+            leftTask.fork();
+            PartialMerge right = new TreeMergeTask(sources.subList(mid, sources.size()), leafBudget, metrics,
+                    batchCounter).compute();
+            PartialMerge left = leftTask.join();
+            return combine(left, right, metrics, batchCounter.getAndIncrement());
+        }
+    }
+
+    /**
+     * 结束阶段计时并记录处理的文档数量
+     */
+    static PhaseMetrics stop(PhaseTimer timer, MergePhase phase, int batch, int documents) {
+        PhaseMetrics phaseMetrics = timer.stop(phase, batch);
+        phaseMetrics.setDocuments(documents);
+        return phaseMetrics;
+    }
+
+    /**
+     * 流式合并文档
+     * 文档逐个交给{@link StreamingMergeWriter}处理，使用线程池时最多提前预处理并加载并发度个文档，
+     * 且预先加载的文档预计占用的内存不超过批次内存上限，已写出的文档立即释放，内存中同时存在的文档数量不随文档总数增长
+     *
+     * @param sourceList 文档来源
+     * @param target 输出目标
+     * @param loadExecutor 预处理和加载文档使用的线程池，为null时顺序处理
+     * @param metrics 度量数据
+     */
+    private void mergeStreaming(List<DocumentSource> sourceList, MergeTarget target, ExecutorService loadExecutor,
+                                MergeMetrics metrics) throws Exception {
+        logger.info("使用流式输出合并 {} 个文档", sourceList.size());
+        Deque<Future<WordprocessingMLPackage>> pending = new ArrayDeque<>();
+        Deque<Long> pendingCosts = new ArrayDeque<>();
+        long pendingCost = 0;
+        long nextCost = -1;
+        int next = 0;
+        try (StreamingMergeWriter writer = target.openWriter(config, metrics)) {
+            for (int i = 0; i < sourceList.size(); i++) {
+                metrics.checkCancelled();
+                WordprocessingMLPackage doc;
+                if (loadExecutor == null) {
+                    doc = WordProcessingUtils.preprocessAndLoad(sourceList.get(i), config.isInMemory(),
+                            config.getDocumentCache(), metrics, 0);
+                } else {
+                    // 保持预取窗口，后台加载后续文档的同时处理当前文档
+                    while (next < sourceList.size() && pending.size() < config.getParallelism()) {
+                        DocumentSource source = sourceList.get(next);
+                        if (nextCost < 0) {
+                            nextCost = MemoryEstimateUtil.estimateHeapCost(source, config.isInMemory());
+                        }
+                        // 预先加载的文档会超过内存上限时暂停预取，等待已加载的文档写出后再继续
+                        if (!pending.isEmpty() && pendingCost + nextCost > config.getBatchMemoryBudget()) {
+                            break;
+                        }
+                        pending.add(loadExecutor.submit(() -> WordProcessingUtils.preprocessAndLoad(source, config.isInMemory(),
+                                config.getDocumentCache(), metrics, 0)));
+                        pendingCosts.add(nextCost);
+                        pendingCost += nextCost;
+                        nextCost = -1;
+                        next++;
+                    }
+                    doc = getLoaded(pending.poll());
+                    pendingCost -= pendingCosts.poll();
+                }
+                writer.append(doc, i == sourceList.size() - 1);
+                metrics.documentsMerged(1, 0);
+                if (i > 0) {
+                    // 第一个文档作为汇总样式、编号和关系的目标文档，由writer负责释放
+                    doc.reset();
+                }
+                if ((i + 1) % 100 == 0 || i == sourceList.size() - 1) {
+                    logger.info("已处理 {}/{} 个文档", i + 1, sourceList.size());
+                }
+            }
+            writer.finish();
+        } finally {
+            for (Future<WordprocessingMLPackage> future : pending) {
+                future.cancel(true);
+            }
+        }
+        logger.info("文档已成功合并并保存到: {}", target);
+    }
+
+    private static WordprocessingMLPackage getLoaded(Future<WordprocessingMLPackage> future) throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 合并输出目标：输出文件或调用方提供的输出流
+     */
+    private static class MergeTarget {
+        final Path file;
+        final OutputStream stream;
+
+        private MergeTarget(Path file, OutputStream stream) {
+            this.file = file;
+            this.stream = stream;
+        }
+
+        static MergeTarget of(String outputPath) {
+            if (outputPath == null || outputPath.isEmpty()) {
+                throw new IllegalArgumentException("输出文档路径不能为空");
+            }
+            return new MergeTarget(Paths.get(outputPath), null);
+        }
+
+        static MergeTarget of(OutputStream out) {
+            if (out == null) {
+                throw new IllegalArgumentException("输出流不能为空");
+            }
+            return new MergeTarget(null, out);
+        }
+
+        /**
+         * 打开写入调用方输出流的缓冲流，关闭时只刷新不关闭调用方的输出流
+         */
+        OutputStream openStream() {
+            return new BufferedOutputStream(new NonClosingOutputStream(stream), 64 * 1024);
+        }
+
+        StreamingMergeWriter openWriter(MergeConfig config, MergeMetrics metrics) throws IOException {
+            return file != null ? new StreamingMergeWriter(file.toString(), config, metrics)
+                    : new StreamingMergeWriter(openStream(), config, metrics);
+        }
+
+        @Override
+        public String toString() {
+            return file != null ? file.toString() : "输出流";
+        }
+    }
+
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
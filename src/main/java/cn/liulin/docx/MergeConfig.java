@@ -0,0 +1,309 @@
+package cn.liulin.docx;
+
+import cn.liulin.docx.metrics.MergeListener;
+import cn.liulin.docx.util.DocumentCache;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.Deflater;
+
+/**
+ * 文档合并配置
+ * 用于控制合并过程中的并发度等运行参数，未设置的参数使用默认值
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 09:12
+ */
+public class MergeConfig {
+    /**
+     * 预处理和加载阶段的并发线程数，默认为可用CPU核数
+     */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * 是否在内存中完成预处理和保存，开启后预处理结果和保存时的压缩暂存区不落盘
+     */
+    private boolean inMemory = false;
+
+    /**
+     * 是否使用流式输出，开启后文档正文在处理完成后立即写入输出文件，不再保留在内存中
+     */
+    private boolean streaming = false;
+
+    /**
+     * 输出文件的压缩级别，默认为Deflater的默认级别
+     */
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+
+    /**
+     * 是否以不压缩的方式保存PNG、JPEG、GIF等本身已经压缩过的图片
+     */
+    private boolean storeCompressedMedia = true;
+
+    /**
+     * 每批同时加载的文档预计占用的堆内存上限，默认为最大堆内存的四分之一
+     */
+    private long batchMemoryBudget = Runtime.getRuntime().maxMemory() / 4;
+
+    /**
+     * 是否使用分治合并
+     */
+    private boolean treeMerge = false;
+
+    /**
+     * 分治合并时顺序合并的子区间最多包含的文档数
+     */
+    private int treeLeafSize = 64;
+
+    /**
+     * 是否在加载任何文档之前预检查全部输入文档，设置了大小或压缩比上限时总是预检查
+     */
+    private boolean preScan = false;
+
+    /**
+     * 预检查时是否读取主文档XML
+     */
+    private boolean scanDocumentXml = false;
+
+    /**
+     * 单个文档解压后的大小上限，默认不限制
+     */
+    private long maxDocumentSize = 0;
+
+    /**
+     * 单个条目的压缩比上限，默认不检查
+     */
+    private long maxCompressionRatio = 0;
+
+    /**
+     * 预处理结果缓存，默认不使用
+     */
+    private DocumentCache documentCache;
+
+    /**
+     * 接收各阶段度量数据的监听器
+     */
+    private final List<MergeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * 设置预处理和加载阶段的并发线程数，设置为1时按顺序逐个处理
+     *
+     * @param parallelism 并发线程数，必须大于0
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("并发线程数必须大于0: " + parallelism);
+        }
+        this.parallelism = parallelism;
+    }
+
+    public boolean isInMemory() {
+        return inMemory;
+    }
+
+    /**
+     * 设置是否在内存中完成预处理
+     * 开启后预处理和保存都不再创建临时文件，适用于临时磁盘较小或较慢的环境，但每个文档会额外占用与其压缩包大小相当的内存。
+     * 非文件来源的文档（{@link cn.liulin.docx.util.DocumentSource}）无论是否开启都在内存中预处理
+     *
+     * @param inMemory 是否在内存中完成预处理
+     */
+    public void setInMemory(boolean inMemory) {
+        this.inMemory = inMemory;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * 设置是否使用流式输出
+     * 开启后每个文档的正文在规范化后直接序列化到输出文件，图片写出后即释放，
+     * 堆内存峰值取决于单个最大的输入文档而不是全部文档的总大小。
+     * 样式、编号和关系等部件仍在内存中汇总，在合并结束时写出
+     *
+     * @param streaming 是否使用流式输出
+     */
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    /**
+     * 设置输出文件的压缩级别
+     * 级别越低压缩越快、输出文件越大，批量生成后很快被再次处理的文档可以使用1等较低的级别
+     *
+     * @param compressionLevel 压缩级别，取值为-1（默认级别）到9
+     */
+    public void setCompressionLevel(int compressionLevel) {
+        if (compressionLevel < Deflater.DEFAULT_COMPRESSION || compressionLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("压缩级别必须在-1到9之间: " + compressionLevel);
+        }
+        this.compressionLevel = compressionLevel;
+    }
+
+    public boolean isStoreCompressedMedia() {
+        return storeCompressedMedia;
+    }
+
+    /**
+     * 设置是否以不压缩的方式保存已经压缩过的图片
+     * PNG、JPEG、GIF再次压缩几乎不能减小体积，只会消耗CPU，默认直接存储
+     *
+     * @param storeCompressedMedia 是否直接存储已压缩的图片
+     */
+    public void setStoreCompressedMedia(boolean storeCompressedMedia) {
+        this.storeCompressedMedia = storeCompressedMedia;
+    }
+
+    public long getBatchMemoryBudget() {
+        return batchMemoryBudget;
+    }
+
+    /**
+     * 设置每批同时加载的文档预计占用的堆内存上限
+     * 根据每个文档压缩包中各条目的大小估算其加载后的内存占用，加入下一个文档会超过上限时先合并当前批次并释放已合并的文档。
+     * 流式合并时限制预先加载的文档总量。单个文档超过上限时单独成批
+     *
+     * @param batchMemoryBudget 内存上限字节数，必须大于0
+     */
+    public void setBatchMemoryBudget(long batchMemoryBudget) {
+        if (batchMemoryBudget <= 0) {
+            throw new IllegalArgumentException("批次内存上限必须大于0: " + batchMemoryBudget);
+        }
+        this.batchMemoryBudget = batchMemoryBudget;
+    }
+
+    public boolean isTreeMerge() {
+        return treeMerge;
+    }
+
+    /**
+     * 设置是否使用分治合并
+     * 开启后文档列表被递归二分，各子区间在并发线程数大小的ForkJoinPool中并行合并，再按输入顺序两两合并相邻的结果。
+     * 同时合并的子区间平分批次内存上限，但多个子区间的合并结果同时保存在内存中，
+     * 适用于文档数量很多、需要利用多个CPU核的场景；开启流式输出时不生效
+     *
+     * @param treeMerge 是否使用分治合并
+     */
+    public void setTreeMerge(boolean treeMerge) {
+        this.treeMerge = treeMerge;
+    }
+
+    public int getTreeLeafSize() {
+        return treeLeafSize;
+    }
+
+    /**
+     * 设置分治合并时顺序合并的子区间最多包含的文档数，文档总数不超过该值时不进行分治
+     *
+     * @param treeLeafSize 子区间文档数，必须大于0
+     */
+    public void setTreeLeafSize(int treeLeafSize) {
+        if (treeLeafSize < 1) {
+            throw new IllegalArgumentException("子区间文档数必须大于0: " + treeLeafSize);
+        }
+        this.treeLeafSize = treeLeafSize;
+    }
+
+    public boolean isPreScan() {
+        return preScan || scanDocumentXml || maxDocumentSize > 0 || maxCompressionRatio > 0;
+    }
+
+    /**
+     * 设置是否在加载任何文档之前预检查全部输入文档，默认不预检查，
+     * 设置了{@link #setMaxDocumentSize(long)}、{@link #setMaxCompressionRatio(long)}或{@link #setScanDocumentXml(boolean)}时总是预检查
+     * 预检查只读取每个文档压缩包的中央目录、包关系和内容类型，已加密、损坏、不是Word文档或超过大小、压缩比上限的文档
+     * 在合并开始前就以IllegalArgumentException报告，而不是在其他文档已经预处理和加载之后才失败。
+     * 预检查统计的条目大小同时用于估算内存占用，不会重复读取中央目录
+     *
+     * @param preScan 是否预检查
+     * @see cn.liulin.docx.util.DocumentScanUtil
+     */
+    public void setPreScan(boolean preScan) {
+        this.preScan = preScan;
+    }
+
+    public boolean isScanDocumentXml() {
+        return scanDocumentXml;
+    }
+
+    /**
+     * 设置预检查时是否读取主文档XML，开启时同时开启预检查
+     * 开启后用StAX流式读取一遍主文档，检查XML是否完整并统计段落、表格数量，不创建JAXB对象，耗时与解压主文档相当
+     *
+     * @param scanDocumentXml 是否读取主文档XML
+     */
+    public void setScanDocumentXml(boolean scanDocumentXml) {
+        this.scanDocumentXml = scanDocumentXml;
+    }
+
+    public long getMaxDocumentSize() {
+        return maxDocumentSize;
+    }
+
+    /**
+     * 设置单个文档解压后的大小上限，设置后合并前总是预检查，超过上限的文档不合并
+     *
+     * @param maxDocumentSize 上限字节数，为0时不限制
+     */
+    public void setMaxDocumentSize(long maxDocumentSize) {
+        if (maxDocumentSize < 0) {
+            throw new IllegalArgumentException("文档大小上限不能小于0: " + maxDocumentSize);
+        }
+        this.maxDocumentSize = maxDocumentSize;
+    }
+
+    public long getMaxCompressionRatio() {
+        return maxCompressionRatio;
+    }
+
+    /**
+     * 设置单个条目的压缩比上限，设置后合并前总是预检查，解压后超过1 MB且压缩比超过上限的条目视为压缩炸弹，文档不合并。
+     * 大量空段落、重复表格等正常文档的document.xml压缩比也可能超过100:1，只处理不可信来源的文档时开启，
+     * 需要限制内存时优先使用{@link #setMaxDocumentSize(long)}
+     *
+     * @param maxCompressionRatio 压缩比上限，为0时不检查
+     */
+    public void setMaxCompressionRatio(long maxCompressionRatio) {
+        if (maxCompressionRatio < 0) {
+            throw new IllegalArgumentException("压缩比上限不能小于0: " + maxCompressionRatio);
+        }
+        this.maxCompressionRatio = maxCompressionRatio;
+    }
+
+    public DocumentCache getDocumentCache() {
+        return documentCache;
+    }
+
+    /**
+     * 设置预处理结果缓存
+     * 同一个缓存对象可以在多次合并之间共用，经常重复合并的文档命中缓存后跳过读取和预处理
+     *
+     * @param documentCache 缓存，为null时不使用缓存
+     */
+    public void setDocumentCache(DocumentCache documentCache) {
+        this.documentCache = documentCache;
+    }
+
+    public List<MergeListener> getListeners() {
+        return listeners;
+    }
+
+    /**
+     * 添加合并过程监听器，每个阶段执行完成后收到该阶段的耗时、CPU时间、分配字节数和处理数量
+     *
+     * @param listener 监听器
+     */
+    public void addListener(MergeListener listener) {
+        listeners.add(listener);
+    }
+}
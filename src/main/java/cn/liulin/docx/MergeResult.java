@@ -0,0 +1,56 @@
+package cn.liulin.docx;
+
+import cn.liulin.docx.metrics.MergeMetrics;
+
+/**
+ * 异步合并的结果
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 22:30
+ */
+public class MergeResult {
+    private final String outputPath;
+    private final int documentCount;
+    private final MergeMetrics metrics;
+
+    public MergeResult(String outputPath, int documentCount, MergeMetrics metrics) {
+        this.outputPath = outputPath;
+        this.documentCount = documentCount;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 获取输出文档路径，输出到流或通道时为null
+     */
+    public String getOutputPath() {
+        return outputPath;
+    }
+
+    /**
+     * 获取合并的文档数量
+     */
+    public int getDocumentCount() {
+        return documentCount;
+    }
+
+    /**
+     * 获取各阶段的度量数据
+     */
+    public MergeMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * 获取合并总耗时
+     */
+    public long getElapsedNanos() {
+        return metrics.getTotalWallNanos();
+    }
+
+    @Override
+    public String toString() {
+        return "MergeResult{outputPath=" + outputPath + ", documentCount=" + documentCount
+                + ", elapsedMs=" + getElapsedNanos() / 1_000_000 + "}";
+    }
+}
@@ -0,0 +1,605 @@
+package cn.liulin.docx;
+
+import cn.liulin.docx.metrics.MergeMetrics;
+import cn.liulin.docx.metrics.MergePhase;
+import cn.liulin.docx.metrics.PhaseMetrics;
+import cn.liulin.docx.metrics.PhaseTimer;
+import cn.liulin.docx.util.*;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.wml.Body;
+import org.slf4j.Logger;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * 流式合并输出
+ * 第一个追加的文档作为目标文档，负责汇总样式、编号、图片和关系；
+ * 每个文档在规范化后立即将正文序列化到压缩后的word/document.xml暂存区，图片直接写入输出压缩包并释放，
+ * 文档本身随即可以被回收。合并结束时将暂存的正文原样写入输出压缩包，再写出目标文档的其余部件。
+ * 这样堆内存峰值只取决于单个最大的输入文档以及汇总的样式、编号等部件，而不是全部文档的总大小。
+ * 输出到文件时先写入同一目录下的临时文件，{@link #finish()}成功后才移动到输出路径，
+ * 未完成就关闭时删除临时文件，输出路径上不会出现不完整的文档
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 14:20
+ */
+public class StreamingMergeWriter implements Closeable {
+    private static final Logger logger = LoggerUtil.getLogger(StreamingMergeWriter.class);
+
+    private static final String DOCUMENT_ENTRY = "word/document.xml";
+    private static final byte[] BODY_START = "<w:body>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] DOCUMENT_END = "</w:body></w:document>".getBytes(StandardCharsets.UTF_8);
+
+    private final MergeConfig config;
+    private final MergeMetrics metrics;
+    private final ZipArchiveOutputStream zipOutputStream;
+
+    /**
+     * 输出文件及写入中的临时文件，输出到流时为null
+     */
+    private final Path outputFile;
+    private final Path partialFile;
+
+    /**
+     * 正文暂存区，使用不带头部的deflate格式，合并结束时无需重新压缩即可写入输出压缩包
+     */
+    private final Path spoolFile;
+    private final ByteArrayOutputStream spoolBuffer;
+    private final CRC32 crc = new CRC32();
+    private final Deflater deflater;
+    private final CountingOutputStream compressedCounter;
+    private final CountingOutputStream spool;
+
+    /**
+     * 已经写入输出压缩包的二进制部件名称
+     */
+    private final Set<String> writtenEntries = new HashSet<>();
+
+    private final StyleRegistry styleRegistry = new StyleRegistry();
+    private final NumberingRegistry numberingRegistry = new NumberingRegistry();
+    private final MediaRegistry mediaRegistry = new MediaRegistry();
+
+    private WordprocessingMLPackage target;
+    private byte[] targetRoot;
+    private int docCount;
+    private boolean finished;
+
+    /**
+     * 创建流式合并输出
+     *
+     * @param outputPath 输出文档路径
+     * @param config 合并配置，内存模式下正文暂存区和目标文档的其余部件均保存在内存中
+     */
+    public StreamingMergeWriter(String outputPath, MergeConfig config) throws IOException {
+        this(outputPath, config, new MergeMetrics(config.getListeners()));
+    }
+
+    /**
+     * 创建流式合并输出，各阶段的度量数据记录到指定对象中
+     *
+     * @param outputPath 输出文档路径
+     * @param config 合并配置
+     * @param metrics 度量数据
+     */
+    public StreamingMergeWriter(String outputPath, MergeConfig config, MergeMetrics metrics) throws IOException {
+        this(Paths.get(outputPath), PackageSaveUtil.createPartialFile(Paths.get(outputPath)), config, metrics);
+    }
+
+    private StreamingMergeWriter(Path outputFile, Path partialFile, MergeConfig config, MergeMetrics metrics)
+            throws IOException {
+        this(openZip(partialFile), outputFile, partialFile, config, metrics);
+    }
+
+    /**
+     * 创建输出到流的流式合并输出，输出流在关闭时一并关闭
+     * 输出流不能定位，每个条目的大小和校验值在写入条目数据后以数据描述符记录
+     *
+     * @param out 输出流
+     * @param config 合并配置
+     * @param metrics 度量数据
+     */
+    public StreamingMergeWriter(OutputStream out, MergeConfig config, MergeMetrics metrics) throws IOException {
+        this(new ZipArchiveOutputStream(out), null, null, config, metrics);
+    }
+
+    private StreamingMergeWriter(ZipArchiveOutputStream zipOutputStream, Path outputFile, Path partialFile,
+                                 MergeConfig config, MergeMetrics metrics) throws IOException {
+        this.outputFile = outputFile;
+        this.partialFile = partialFile;
+        this.config = config;
+        this.metrics = metrics;
+        deflater = new Deflater(config.getCompressionLevel(), true);
+        if (config.isInMemory()) {
+            spoolFile = null;
+            spoolBuffer = new ByteArrayOutputStream();
+            compressedCounter = new CountingOutputStream(spoolBuffer);
+        } else {
+            spoolFile = Files.createTempFile("docx-merge-body", ".tmp");
+            spoolBuffer = null;
+            compressedCounter = new CountingOutputStream(new BufferedOutputStream(Files.newOutputStream(spoolFile), 64 * 1024));
+        }
+        spool = new CountingOutputStream(new CheckedOutputStream(
+                new DeflaterOutputStream(compressedCounter, deflater, 64 * 1024), crc));
+        this.zipOutputStream = zipOutputStream;
+        zipOutputStream.setLevel(config.getCompressionLevel());
+    }
+
+    /**
+     * 追加一个文档，文档正文在方法返回前已写入暂存区，调用方随后可以释放该文档
+     *
+     * @param doc 已预处理并加载的文档
+     * @param last 是否为最后一个文档，最后一个文档的节属性作为整个合并文档的节属性
+     */
+    public void append(WordprocessingMLPackage doc, boolean last) throws Exception {
+        if (finished) {
+            throw new IllegalStateException("合并输出已结束");
+        }
+        docCount++;
+        List<WordprocessingMLPackage> single = Collections.singletonList(doc);
+
+        // 保存样式格式信息并移除网格设置，与批量合并中的处理顺序一致
+        PhaseTimer timer = PhaseTimer.start();
+        List<DocumentFormatProfile> formatProfiles = TableFormatPreserverUtil.saveDocumentFormat(single);
+        WordProcessingUtils.removeDocumentGridSettingsList(single);
+        metrics.record(DocxMerger.stop(timer, MergePhase.FORMAT_CAPTURE, 0, 1));
+
+        Map<String, String> styleIdMap = Collections.emptyMap();
+        Map<BigInteger, BigInteger> numIdMap = Collections.emptyMap();
+        Map<String, String> relMap = Collections.emptyMap();
+        if (target == null) {
+            target = doc;
+            // 目标文档的图片写出后会释放数据，需要先登记其内容摘要，页眉页脚按处理后的内容登记
+            WordProcessingUtils.normalizeHeadersFooters(single, formatProfiles, Collections.singletonList(styleIdMap),
+                    Collections.singletonList(numIdMap));
+            mediaRegistry.registerExisting(target);
+        } else {
+            List<WordprocessingMLPackage> pair = Arrays.asList(target, doc);
+            // 先映射编号，样式按更新后的numPr比较定义
+            timer = PhaseTimer.start();
+            numIdMap = NumberingMapperUtil.mapNumbering(pair, numberingRegistry).get(1);
+            metrics.record(DocxMerger.stop(timer, MergePhase.NUMBERING, 0, 1));
+
+            timer = PhaseTimer.start();
+            styleIdMap = StyleReMapperUtil.mergeStyles(pair, styleRegistry, numberingRegistry, null).get(1);
+            PhaseMetrics stylesMetrics = DocxMerger.stop(timer, MergePhase.STYLES, 0, 1);
+            stylesMetrics.setStyles(styleRegistry.size());
+            metrics.record(stylesMetrics);
+
+            timer = PhaseTimer.start();
+            WordProcessingUtils.normalizeHeadersFooters(single, formatProfiles, Collections.singletonList(styleIdMap),
+                    Collections.singletonList(numIdMap));
+            relMap = ResourceCopierUtil.copyRelationships(pair, mediaRegistry).get(1);
+            PhaseMetrics imagesMetrics = DocxMerger.stop(timer, MergePhase.IMAGES, 0, 1);
+            imagesMetrics.setImages(relMap.size());
+            metrics.record(imagesMetrics);
+        }
+        timer = PhaseTimer.start();
+        WordProcessingUtils.normalizeDocList(single, formatProfiles, Collections.singletonList(styleIdMap),
+                Collections.singletonList(numIdMap), Collections.singletonList(relMap));
+        metrics.record(DocxMerger.stop(timer, MergePhase.NORMALIZE, 0, 1));
+
+        timer = PhaseTimer.start();
+        MainDocumentPart mainDocumentPart = doc.getMainDocumentPart();
+        if (!last) {
+            WordProcessingUtils.moveBodySectPrToLastParagraph(mainDocumentPart);
+        }
+        writeBody(mainDocumentPart);
+        writeNewBinaryParts();
+
+        if (doc == target) {
+            // 目标文档的正文已写入暂存区，清空以释放内存，其余部件在合并结束时写出
+            mainDocumentPart.getJaxbElement().getBody().getContent().clear();
+            mainDocumentPart.getJaxbElement().getBody().setSectPr(null);
+        }
+        metrics.record(DocxMerger.stop(timer, MergePhase.APPEND, 0, 1));
+        logger.debug("文档{}已写入输出", docCount);
+    }
+
+    /**
+     * 结束合并，写出正文和目标文档的其余部件
+     */
+    public void finish() throws Exception {
+        if (finished) {
+            return;
+        }
+        if (target == null) {
+            throw new IllegalStateException("没有需要合并的文档");
+        }
+        finished = true;
+
+        PhaseTimer timer = PhaseTimer.start();
+        spool.write(DOCUMENT_END);
+        spool.close();
+        deflater.end();
+        writeDocumentEntry();
+
+        // 修复样式中的对齐元素后保存目标文档，正文和已写出的二进制部件不再重复写入
+        WordProcessingUtils.fixJustificationElements(target);
+        copyRemainingEntries();
+        zipOutputStream.finish();
+        if (partialFile != null) {
+            zipOutputStream.close();
+            PackageSaveUtil.moveIntoPlace(partialFile, outputFile);
+        }
+        PhaseMetrics save = DocxMerger.stop(timer, MergePhase.SAVE, 0, docCount);
+        save.setParts(target.getParts().getParts().size());
+        metrics.record(save);
+        logger.info("流式合并完成，共 {} 个文档", docCount);
+    }
+
+    /**
+     * 获取各阶段的度量数据
+     */
+    public MergeMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (!finished) {
+                spool.close();
+                deflater.end();
+            }
+            zipOutputStream.close();
+        } finally {
+            if (spoolFile != null) {
+                Files.deleteIfExists(spoolFile);
+            }
+            if (partialFile != null) {
+                // 已完成时临时文件已经移动到输出路径
+                Files.deleteIfExists(partialFile);
+            }
+            if (target != null) {
+                target.reset();
+            }
+        }
+    }
+
+    /**
+     * 打开写入临时文件的压缩输出流，打开失败时删除临时文件
+     */
+    private static ZipArchiveOutputStream openZip(Path partialFile) throws IOException {
+        try {
+            return new ZipArchiveOutputStream(partialFile);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(partialFile);
+            throw e;
+        }
+    }
+
+    /**
+     * 将文档正文写入暂存区
+     * 优先截取整个文档序列化结果中的body部分，根元素的命名空间声明与目标文档不一致时逐个元素序列化
+     */
+    private void writeBody(MainDocumentPart mainDocumentPart) throws Exception {
+        BodyExtractingOutputStream extractor = new BodyExtractingOutputStream(spool, targetRoot);
+        try {
+            mainDocumentPart.marshal(extractor);
+        } catch (Exception e) {
+            if (!extractor.rootMismatch) {
+                throw e;
+            }
+        }
+        if (targetRoot == null) {
+            // 第一个文档的根元素作为合并文档的根元素
+            targetRoot = extractor.root.toByteArray();
+        }
+        if (extractor.rootMismatch) {
+            logger.debug("文档{}根元素与目标文档不一致，逐个元素序列化正文", docCount);
+            Body body = mainDocumentPart.getJaxbElement().getBody();
+            for (Object o : body.getContent()) {
+                spool.write(XmlUtils.marshaltoString(o, true, false).getBytes(StandardCharsets.UTF_8));
+            }
+            if (body.getSectPr() != null) {
+                spool.write(XmlUtils.marshaltoString(body.getSectPr(), true, false).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * 将目标文档中尚未写出的二进制部件（图片等）直接写入输出压缩包，写出后释放其数据
+     */
+    private void writeNewBinaryParts() throws IOException {
+        for (Map.Entry<PartName, Part> entry : target.getParts().getParts().entrySet()) {
+            String entryName = entry.getKey().getName().substring(1);
+            if (!(entry.getValue() instanceof BinaryPart) || writtenEntries.contains(entryName)) {
+                continue;
+            }
+            BinaryPart binaryPart = (BinaryPart) entry.getValue();
+            byte[] data = binaryPart.getBytes();
+            ZipArchiveEntry zipEntry = new ZipArchiveEntry(entryName);
+            if (config.isStoreCompressedMedia() && PackageSaveUtil.isCompressedMedia(binaryPart.getContentType())) {
+                // 已压缩的图片直接存储
+                CRC32 entryCrc = new CRC32();
+                entryCrc.update(data);
+                zipEntry.setMethod(ZipArchiveEntry.STORED);
+                zipEntry.setSize(data.length);
+                zipEntry.setCrc(entryCrc.getValue());
+            } else {
+                zipEntry.setMethod(ZipArchiveEntry.DEFLATED);
+            }
+            zipOutputStream.putArchiveEntry(zipEntry);
+            zipOutputStream.write(data);
+            zipOutputStream.closeArchiveEntry();
+            binaryPart.setBinaryData(new byte[0]);
+            writtenEntries.add(entryName);
+        }
+    }
+
+    /**
+     * 将暂存的正文作为已压缩的条目写入输出压缩包
+     */
+    private void writeDocumentEntry() throws IOException {
+        ZipArchiveEntry entry = new ZipArchiveEntry(DOCUMENT_ENTRY);
+        entry.setMethod(ZipArchiveEntry.DEFLATED);
+        entry.setCrc(crc.getValue());
+        entry.setSize(spool.count);
+        entry.setCompressedSize(compressedCounter.count);
+        try (InputStream in = spoolFile != null
+                ? new BufferedInputStream(Files.newInputStream(spoolFile), 64 * 1024)
+                : new ByteArrayInputStream(spoolBuffer.toByteArray())) {
+            zipOutputStream.addRawArchiveEntry(entry, in);
+        }
+        logger.debug("正文写入完成，原始大小 {}，压缩后 {}", spool.count, compressedCounter.count);
+    }
+
+    /**
+     * 保存目标文档，并将除正文和已写出部件以外的条目原样复制到输出压缩包
+     */
+    private void copyRemainingEntries() throws Exception {
+        ZipFile.Builder builder = ZipFile.builder();
+        Path savedFile = null;
+        if (config.isInMemory()) {
+            ByteArrayOutputStream saved = new ByteArrayOutputStream();
+            saveTarget(saved);
+            builder.setByteArray(saved.toByteArray());
+        } else {
+            savedFile = Files.createTempFile("docx-merge-parts", ".docx");
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(savedFile), 64 * 1024)) {
+                saveTarget(out);
+            }
+            builder.setPath(savedFile);
+        }
+        try (ZipFile zipFile = builder.get()) {
+            zipFile.copyRawEntries(zipOutputStream,
+                    e -> !DOCUMENT_ENTRY.equals(e.getName()) && !writtenEntries.contains(e.getName()));
+        } finally {
+            if (savedFile != null) {
+                Files.deleteIfExists(savedFile);
+            }
+        }
+    }
+
+    /**
+     * 使用合并配置中的并发度和压缩级别保存目标文档
+     */
+    private void saveTarget(OutputStream out) throws Exception {
+        PackageSaveUtil.save(target, out, config.getParallelism(), config.getCompressionLevel(),
+                config.isStoreCompressedMedia(), config.isInMemory());
+    }
+
+    /**
+     * 记录写入字节数的输出流
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+    }
+
+    /**
+     * 从整个文档的序列化结果中截取body内的内容写入暂存区
+     * 根元素（包括XML声明和命名空间声明）被记录下来：第一个文档的根元素连同body开始标签写入暂存区，
+     * 之后文档的根元素与其比较，不一致时中止序列化，由调用方改为逐个元素序列化
+     */
+    private static class BodyExtractingOutputStream extends OutputStream {
+        private static final byte[] BODY_TAG = "<w:body".getBytes(StandardCharsets.UTF_8);
+        private static final byte[] BODY_END = "</w:body>".getBytes(StandardCharsets.UTF_8);
+
+        private static final byte[] COMMENT_START = "<!--".getBytes(StandardCharsets.UTF_8);
+        private static final byte[] COMMENT_END = "-->".getBytes(StandardCharsets.UTF_8);
+
+        private static final int ROOT = 0;
+        private static final int BODY_TAG_ATTRS = 1;
+        private static final int BODY_LEADING = 2;
+        private static final int BODY_COMMENT = 3;
+        private static final int BODY = 4;
+        private static final int DONE = 5;
+
+        private final OutputStream out;
+        private final byte[] expectedRoot;
+        private final ByteArrayOutputStream root = new ByteArrayOutputStream();
+        private boolean rootMismatch;
+        private int state = ROOT;
+        private int matched;
+        private int previous;
+
+        BodyExtractingOutputStream(OutputStream out, byte[] expectedRoot) {
+            this.out = out;
+            this.expectedRoot = expectedRoot;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            int end = off + len;
+            int i = off;
+            while (i < end && state != DONE) {
+                if (state == ROOT) {
+                    i = scanRoot(b, i, end);
+                } else if (state == BODY_TAG_ATTRS) {
+                    i = scanBodyTag(b, i, end);
+                } else if (state == BODY_LEADING) {
+                    i = scanLeading(b, i, end);
+                } else if (state == BODY_COMMENT) {
+                    i = scanComment(b, i, end);
+                } else {
+                    i = scanBody(b, i, end);
+                }
+            }
+        }
+
+        private int scanRoot(byte[] b, int i, int end) throws IOException {
+            for (; i < end; i++) {
+                byte c = b[i];
+                root.write(c);
+                if (c == BODY_TAG[matched]) {
+                    matched++;
+                } else {
+                    matched = c == BODY_TAG[0] ? 1 : 0;
+                }
+                if (matched == BODY_TAG.length) {
+                    matched = 0;
+                    byte[] rootBytes = root.toByteArray();
+                    root.reset();
+                    root.write(rootBytes, 0, rootBytes.length - BODY_TAG.length);
+                    if (expectedRoot == null) {
+                        root.writeTo(out);
+                        out.write(BODY_START);
+                    } else if (!Arrays.equals(expectedRoot, root.toByteArray())) {
+                        rootMismatch = true;
+                        throw new IOException("文档根元素与目标文档不一致");
+                    }
+                    state = BODY_TAG_ATTRS;
+                    return i + 1;
+                }
+            }
+            return i;
+        }
+
+        private int scanBodyTag(byte[] b, int i, int end) {
+            for (; i < end; i++) {
+                if (b[i] == '>') {
+                    // <w:body/>表示正文为空
+                    state = previous == '/' ? DONE : BODY_LEADING;
+                    return i + 1;
+                }
+                previous = b[i];
+            }
+            return i;
+        }
+
+        /**
+         * docx4j在序列化body时会在开头写入版本注释，合并时只保留第一个文档的注释
+         */
+        private int scanLeading(byte[] b, int i, int end) throws IOException {
+            for (; i < end; i++) {
+                if (b[i] != COMMENT_START[matched]) {
+                    // 不是注释，已匹配的部分属于正文内容
+                    state = BODY;
+                    int partial = matched;
+                    matched = 0;
+                    if (partial > 0) {
+                        write(COMMENT_START, 0, partial);
+                    }
+                    return i;
+                }
+                if (++matched == COMMENT_START.length) {
+                    if (expectedRoot == null) {
+                        out.write(COMMENT_START);
+                    }
+                    matched = 0;
+                    state = BODY_COMMENT;
+                    return i + 1;
+                }
+            }
+            return i;
+        }
+
+        private int scanComment(byte[] b, int i, int end) throws IOException {
+            int start = i;
+            for (; i < end; i++) {
+                byte c = b[i];
+                if (c == COMMENT_END[matched]) {
+                    matched++;
+                } else {
+                    matched = c == COMMENT_END[0] ? 1 : 0;
+                }
+                if (matched == COMMENT_END.length) {
+                    matched = 0;
+                    state = BODY;
+                    i++;
+                    break;
+                }
+            }
+            if (expectedRoot == null) {
+                out.write(b, start, i - start);
+            }
+            return i;
+        }
+
+        private int scanBody(byte[] b, int i, int end) throws IOException {
+            int start = i;
+            for (; i < end; i++) {
+                byte c = b[i];
+                if (c == BODY_END[matched]) {
+                    if (matched == 0 && i > start) {
+                        out.write(b, start, i - start);
+                    }
+                    matched++;
+                    if (matched == BODY_END.length) {
+                        state = DONE;
+                        return end;
+                    }
+                    start = i + 1;
+                } else {
+                    if (matched > 0) {
+                        // 部分匹配的结束标签实际上属于正文内容
+                        out.write(BODY_END, 0, matched);
+                        start = i;
+                    }
+                    matched = 0;
+                    if (c == BODY_END[0]) {
+                        if (i > start) {
+                            out.write(b, start, i - start);
+                        }
+                        matched = 1;
+                        start = i + 1;
+                    }
+                }
+            }
+            if (matched == 0 && i > start) {
+                out.write(b, start, i - start);
+            }
+            return i;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package cn.liulin.docx.metrics;
+
+/**
+ * 合并过程监听器
+ * 每个阶段执行完成后回调，可将度量数据转发到Micrometer等指标系统，例如：
+ * <pre>
+ * config.addListener(m -&gt; registry.timer("docx.merge.phase", "phase", m.getPhase().name())
+ *         .record(m.getWallNanos(), TimeUnit.NANOSECONDS));
+ * </pre>
+ * 预处理和加载阶段在线程池中按文档分别回调，监听器需要是线程安全的，且不应执行耗时操作
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 20:20
+ */
+public interface MergeListener {
+
+    /**
+     * 阶段执行完成
+     *
+     * @param metrics 本次执行的度量数据
+     */
+    void onPhase(PhaseMetrics metrics);
+
+    /**
+     * 合并进度变化，文档加载事件可能在多个线程中同时回调
+     *
+     * @param progress 进度事件
+     */
+    default void onProgress(MergeProgress progress) {
+    }
+
+    /**
+     * 合并完成
+     *
+     * @param metrics 整个合并过程的度量数据
+     */
+    default void onComplete(MergeMetrics metrics) {
+    }
+}
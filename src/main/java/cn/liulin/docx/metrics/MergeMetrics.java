@@ -0,0 +1,228 @@
+package cn.liulin.docx.metrics;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一次合并过程的度量数据
+ * 按（阶段、批次）汇总各阶段的耗时、CPU时间、分配字节数以及处理的文档、部件、图片和样式数量，
+ * 可通过{@link #toJson()}导出，每条记录同时转发给注册的{@link MergeListener}。
+ * 合并过程中的每个步骤都会经过度量记录，因此同时负责发出进度事件和检查合并是否已被取消
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 20:25
+ */
+public class MergeMetrics {
+    private static final Logger logger = LoggerFactory.getLogger(MergeMetrics.class);
+
+    private final List<MergeListener> listeners;
+    private final Map<String, PhaseMetrics> phases = new LinkedHashMap<>();
+    private long totalWallNanos = -1;
+    private final AtomicInteger loadedDocuments = new AtomicInteger();
+    private final AtomicInteger mergedDocuments = new AtomicInteger();
+    private volatile int totalDocuments;
+    private volatile boolean cancelled;
+
+    public MergeMetrics() {
+        this(Collections.emptyList());
+    }
+
+    /**
+     * @param listeners 接收每条度量记录的监听器
+     */
+    public MergeMetrics(Collection<MergeListener> listeners) {
+        this.listeners = new ArrayList<>(listeners);
+    }
+
+    /**
+     * 记录一次阶段执行，可在多个线程中同时调用
+     *
+     * @param metrics 阶段度量数据
+     * @throws CancellationException 合并已被取消
+     */
+    public void record(PhaseMetrics metrics) {
+        checkCancelled();
+        synchronized (phases) {
+            String key = metrics.getPhase().name() + '#' + metrics.getBatch();
+            PhaseMetrics existing = phases.get(key);
+            if (existing == null) {
+                phases.put(key, metrics.copy(metrics.getBatch()));
+            } else {
+                existing.add(metrics);
+            }
+        }
+        for (MergeListener listener : listeners) {
+            try {
+                listener.onPhase(metrics);
+            } catch (RuntimeException e) {
+                // 监听器异常不影响合并
+                logger.warn("合并监听器处理失败: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 设置待合并的文档总数，用于计算进度
+     */
+    public void setTotalDocuments(int totalDocuments) {
+        this.totalDocuments = totalDocuments;
+    }
+
+    /**
+     * 记录一个文档已预处理并加载，可在多个线程中同时调用
+     *
+     * @param docPath 文档路径，非文件来源的文档为文档名称
+     * @param batch 批次序号
+     */
+    public void documentLoaded(String docPath, int batch) {
+        notifyProgress(new MergeProgress(MergeProgress.Stage.LOADED, batch, docPath,
+                loadedDocuments.incrementAndGet(), totalDocuments));
+    }
+
+    /**
+     * 记录若干文档已追加到合并结果
+     *
+     * @param documents 本次追加的文档数量
+     * @param batch 批次序号
+     */
+    public void documentsMerged(int documents, int batch) {
+        notifyProgress(new MergeProgress(MergeProgress.Stage.MERGED, batch, null,
+                mergedDocuments.addAndGet(documents), totalDocuments));
+    }
+
+    private void notifyProgress(MergeProgress progress) {
+        for (MergeListener listener : listeners) {
+            try {
+                listener.onProgress(progress);
+            } catch (RuntimeException e) {
+                logger.warn("合并监听器处理失败: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 请求取消合并
+     * 取消是协作式的：合并在下一次记录阶段或处理下一个文档前抛出{@link CancellationException}，正在执行的单个步骤不会被中断
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * 检查合并是否已被取消
+     *
+     * @throws CancellationException 合并已被取消
+     */
+    public void checkCancelled() {
+        if (cancelled) {
+            throw new CancellationException("合并已取消");
+        }
+    }
+
+    /**
+     * 结束记录并通知监听器
+     *
+     * @param totalWallNanos 合并总耗时
+     */
+    public void complete(long totalWallNanos) {
+        this.totalWallNanos = totalWallNanos;
+        for (MergeListener listener : listeners) {
+            try {
+                listener.onComplete(this);
+            } catch (RuntimeException e) {
+                logger.warn("合并监听器处理失败: {}", e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * 获取合并总耗时，合并未完成时为-1
+     */
+    public long getTotalWallNanos() {
+        return totalWallNanos;
+    }
+
+    /**
+     * 获取按阶段和批次汇总的度量数据，按首次记录的顺序排列
+     */
+    public List<PhaseMetrics> getPhases() {
+        synchronized (phases) {
+            List<PhaseMetrics> list = new ArrayList<>(phases.size());
+            for (PhaseMetrics metrics : phases.values()) {
+                list.add(metrics.copy(metrics.getBatch()));
+            }
+            return list;
+        }
+    }
+
+    /**
+     * 获取各阶段在所有批次中的合计，批次序号为-1
+     */
+    public Map<MergePhase, PhaseMetrics> getTotals() {
+        Map<MergePhase, PhaseMetrics> totals = new EnumMap<>(MergePhase.class);
+        synchronized (phases) {
+            for (PhaseMetrics metrics : phases.values()) {
+                PhaseMetrics total = totals.get(metrics.getPhase());
+                if (total == null) {
+                    totals.put(metrics.getPhase(), metrics.copy(-1));
+                } else {
+                    total.add(metrics);
+                }
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * 导出为JSON
+     *
+     * @return 包含总耗时、各阶段合计和按批次明细的JSON字符串
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\"totalWallNanos\":").append(totalWallNanos).append(",\"totals\":[");
+        appendJson(sb, getTotals().values());
+        sb.append("],\"phases\":[");
+        appendJson(sb, getPhases());
+        return sb.append("]}").toString();
+    }
+
+    private static void appendJson(StringBuilder sb, Collection<PhaseMetrics> list) {
+        boolean first = true;
+        for (PhaseMetrics metrics : list) {
+            if (!first) {
+                sb.append(',');
+            }
+            first = false;
+            metrics.appendJson(sb);
+        }
+    }
+
+    /**
+     * 各阶段合计耗时的简要说明，用于日志输出
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("总耗时 ").append(totalWallNanos / 1_000_000).append(" ms");
+        for (PhaseMetrics metrics : getTotals().values()) {
+            sb.append(", ").append(metrics.getPhase()).append(' ').append(metrics.getWallNanos() / 1_000_000).append(" ms");
+        }
+        return sb.toString();
+    }
+}
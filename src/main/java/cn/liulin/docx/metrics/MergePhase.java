@@ -0,0 +1,51 @@
+package cn.liulin.docx.metrics;
+
+/**
+ * 合并阶段
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 20:05
+ */
+public enum MergePhase {
+    /**
+     * 预检查：读取各文档压缩包的中央目录、包关系和内容类型，检查文档是否可以合并
+     */
+    SCAN,
+    /**
+     * 预处理：改写docx4j不兼容的标签
+     */
+    PREPROCESS,
+    /**
+     * 加载：docx4j解析文档包
+     */
+    LOAD,
+    /**
+     * 格式保存：读取默认字体大小等格式信息，并移除网格设置
+     */
+    FORMAT_CAPTURE,
+    /**
+     * 样式合并
+     */
+    STYLES,
+    /**
+     * 编号映射
+     */
+    NUMBERING,
+    /**
+     * 图片、超链接、图表、页眉页脚等关系及其部件复制
+     */
+    IMAGES,
+    /**
+     * 规范化：单次遍历正文，更新样式、编号和关系引用，应用默认字体大小，修复对齐元素
+     */
+    NORMALIZE,
+    /**
+     * 追加：将文档正文追加到目标文档，流式合并时为写入暂存区
+     */
+    APPEND,
+    /**
+     * 保存：写出合并后的文档
+     */
+    SAVE
+}
@@ -0,0 +1,81 @@
+package cn.liulin.docx.metrics;
+
+/**
+ * 合并进度事件
+ * 每个文档预处理并加载完成后发出{@link Stage#LOADED}事件，文档内容追加到合并结果后发出{@link Stage#MERGED}事件：
+ * 批量合并按批次发出，流式合并按文档发出
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 22:20
+ */
+public class MergeProgress {
+
+    /**
+     * 进度事件类型
+     */
+    public enum Stage {
+        /**
+         * 文档已预处理并加载
+         */
+        LOADED,
+        /**
+         * 文档已追加到合并结果
+         */
+        MERGED
+    }
+
+    private final Stage stage;
+    private final int batch;
+    private final String docPath;
+    private final int completedDocuments;
+    private final int totalDocuments;
+
+    /**
+     * @param stage 事件类型
+     * @param batch 批次序号，流式合并为0
+     * @param docPath 加载完成的文档路径，非文件来源的文档为文档名称，合并事件为null
+     * @param completedDocuments 该类型事件累计完成的文档数量
+     * @param totalDocuments 文档总数
+     */
+    public MergeProgress(Stage stage, int batch, String docPath, int completedDocuments, int totalDocuments) {
+        this.stage = stage;
+        this.batch = batch;
+        this.docPath = docPath;
+        this.completedDocuments = completedDocuments;
+        this.totalDocuments = totalDocuments;
+    }
+
+    public Stage getStage() {
+        return stage;
+    }
+
+    public int getBatch() {
+        return batch;
+    }
+
+    public String getDocPath() {
+        return docPath;
+    }
+
+    public int getCompletedDocuments() {
+        return completedDocuments;
+    }
+
+    public int getTotalDocuments() {
+        return totalDocuments;
+    }
+
+    /**
+     * 获取完成比例，范围0到1
+     */
+    public double getFraction() {
+        return totalDocuments <= 0 ? 1 : (double) completedDocuments / totalDocuments;
+    }
+
+    @Override
+    public String toString() {
+        return "MergeProgress{stage=" + stage + ", batch=" + batch + ", completed=" + completedDocuments
+                + "/" + totalDocuments + (docPath != null ? ", docPath=" + docPath : "") + "}";
+    }
+}
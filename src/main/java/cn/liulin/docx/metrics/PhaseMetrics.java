@@ -0,0 +1,156 @@
+package cn.liulin.docx.metrics;
+
+/**
+ * 单个合并阶段的度量数据
+ * 同一批次中多次执行的同一阶段（如每个文档各执行一次的预处理和加载）在{@link MergeMetrics}中累加为一条记录，
+ * 此时耗时为各次执行耗时之和。
+ * CPU时间和分配字节数只统计执行该阶段的线程，JVM不支持时为-1
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 20:10
+ */
+public class PhaseMetrics {
+    private final MergePhase phase;
+    private final int batch;
+    private long wallNanos;
+    private long cpuNanos;
+    private long allocatedBytes;
+    private int invocations = 1;
+    private long documents;
+    private long parts;
+    private long images;
+    private long styles;
+
+    /**
+     * @param phase 合并阶段
+     * @param batch 批次序号，从0开始，流式合并为0，各批次的合计为-1
+     * @param wallNanos 耗时
+     * @param cpuNanos CPU时间
+     * @param allocatedBytes 分配的堆内存字节数
+     */
+    public PhaseMetrics(MergePhase phase, int batch, long wallNanos, long cpuNanos, long allocatedBytes) {
+        this.phase = phase;
+        this.batch = batch;
+        this.wallNanos = wallNanos;
+        this.cpuNanos = cpuNanos;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * 累加另一条同阶段记录
+     */
+    void add(PhaseMetrics other) {
+        wallNanos += other.wallNanos;
+        cpuNanos = cpuNanos < 0 || other.cpuNanos < 0 ? -1 : cpuNanos + other.cpuNanos;
+        allocatedBytes = allocatedBytes < 0 || other.allocatedBytes < 0 ? -1 : allocatedBytes + other.allocatedBytes;
+        invocations += other.invocations;
+        documents += other.documents;
+        parts += other.parts;
+        images += other.images;
+        // 样式数量是目标文档中的样式总数，取最新值
+        styles = Math.max(styles, other.styles);
+    }
+
+    PhaseMetrics copy(int newBatch) {
+        PhaseMetrics copy = new PhaseMetrics(phase, newBatch, wallNanos, cpuNanos, allocatedBytes);
+        copy.invocations = invocations;
+        copy.documents = documents;
+        copy.parts = parts;
+        copy.images = images;
+        copy.styles = styles;
+        return copy;
+    }
+
+    void appendJson(StringBuilder sb) {
+        sb.append("{\"phase\":\"").append(phase.name()).append('"')
+                .append(",\"batch\":").append(batch)
+                .append(",\"wallNanos\":").append(wallNanos)
+                .append(",\"cpuNanos\":").append(cpuNanos)
+                .append(",\"allocatedBytes\":").append(allocatedBytes)
+                .append(",\"invocations\":").append(invocations)
+                .append(",\"documents\":").append(documents)
+                .append(",\"parts\":").append(parts)
+                .append(",\"images\":").append(images)
+                .append(",\"styles\":").append(styles)
+                .append('}');
+    }
+
+    public MergePhase getPhase() {
+        return phase;
+    }
+
+    public int getBatch() {
+        return batch;
+    }
+
+    public long getWallNanos() {
+        return wallNanos;
+    }
+
+    public long getCpuNanos() {
+        return cpuNanos;
+    }
+
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * 获取累加的执行次数
+     */
+    public int getInvocations() {
+        return invocations;
+    }
+
+    public long getDocuments() {
+        return documents;
+    }
+
+    /**
+     * 设置处理的文档数量
+     */
+    public void setDocuments(long documents) {
+        this.documents = documents;
+    }
+
+    public long getParts() {
+        return parts;
+    }
+
+    /**
+     * 设置处理的部件数量：加载阶段为加载的部件数，保存阶段为写出的部件数
+     */
+    public void setParts(long parts) {
+        this.parts = parts;
+    }
+
+    public long getImages() {
+        return images;
+    }
+
+    /**
+     * 设置处理的关系引用数量
+     */
+    public void setImages(long images) {
+        this.images = images;
+    }
+
+    public long getStyles() {
+        return styles;
+    }
+
+    /**
+     * 设置目标文档中的样式数量
+     */
+    public void setStyles(long styles) {
+        this.styles = styles;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        appendJson(sb);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,75 @@
+package cn.liulin.docx.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+/**
+ * 阶段计时器
+ * 记录当前线程开始时的时间、CPU时间和已分配字节数，结束时生成{@link PhaseMetrics}，必须在同一线程中开始和结束
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 20:15
+ */
+public class PhaseTimer {
+    private static final ThreadMXBean THREAD_BEAN = ManagementFactory.getThreadMXBean();
+
+    /**
+     * HotSpot等JVM提供的扩展接口，支持统计线程分配的字节数
+     */
+    private static final com.sun.management.ThreadMXBean ALLOCATION_BEAN =
+            THREAD_BEAN instanceof com.sun.management.ThreadMXBean
+                    && ((com.sun.management.ThreadMXBean) THREAD_BEAN).isThreadAllocatedMemorySupported()
+                    ? (com.sun.management.ThreadMXBean) THREAD_BEAN : null;
+
+    private static final boolean CPU_TIME_SUPPORTED = THREAD_BEAN.isCurrentThreadCpuTimeSupported();
+
+    private final long startWall;
+    private final long startCpu;
+    private final long startAllocated;
+
+    private PhaseTimer() {
+        startWall = System.nanoTime();
+        startCpu = cpuTime();
+        startAllocated = allocatedBytes();
+    }
+
+    /**
+     * 在当前线程中开始计时
+     */
+    public static PhaseTimer start() {
+        return new PhaseTimer();
+    }
+
+    /**
+     * 结束计时
+     *
+     * @param phase 合并阶段
+     * @param batch 批次序号，流式合并为0
+     * @return 阶段度量数据，调用方可继续设置处理的文档、部件等数量
+     */
+    public PhaseMetrics stop(MergePhase phase, int batch) {
+        long wall = System.nanoTime() - startWall;
+        long cpu = startCpu < 0 ? -1 : cpuTime() - startCpu;
+        long allocated = startAllocated < 0 ? -1 : allocatedBytes() - startAllocated;
+        return new PhaseMetrics(phase, batch, wall, cpu, allocated);
+    }
+
+    private static long cpuTime() {
+        if (!CPU_TIME_SUPPORTED) {
+            return -1;
+        }
+        try {
+            return THREAD_BEAN.getCurrentThreadCpuTime();
+        } catch (UnsupportedOperationException e) {
+            return -1;
+        }
+    }
+
+    private static long allocatedBytes() {
+        if (ALLOCATION_BEAN == null || !ALLOCATION_BEAN.isThreadAllocatedMemoryEnabled()) {
+            return -1;
+        }
+        return ALLOCATION_BEAN.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+}
@@ -0,0 +1,140 @@
+package cn.liulin.docx.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 合并服务的本地客户端
+ * 将合并任务提交给{@link MergeServer}并等待结果，可在测试或脚本中代替直接调用DocxMerger。
+ * 请求带上服务启动时写入令牌文件的令牌，客户端需要与服务以同一用户运行才能读取令牌文件
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 22:50
+ */
+public class MergeClient {
+    private final String baseUrl;
+    private final int readTimeoutMillis;
+    private final String token;
+
+    /**
+     * 从端口对应的默认令牌文件读取令牌
+     *
+     * @param port 服务端口
+     */
+    public MergeClient(int port) throws IOException {
+        this(port, MergeServer.defaultTokenFile(port));
+    }
+
+    /**
+     * @param port 服务端口
+     * @param tokenFile 服务的令牌文件
+     */
+    public MergeClient(int port, Path tokenFile) throws IOException {
+        this("http://127.0.0.1:" + port, 0, MergeServer.readToken(tokenFile));
+    }
+
+    /**
+     * @param baseUrl 服务地址，如http://127.0.0.1:8765
+     * @param readTimeoutMillis 等待合并结果的最长毫秒数，为0时不限制
+     * @param token 服务的令牌
+     */
+    public MergeClient(String baseUrl, int readTimeoutMillis, String token) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.readTimeoutMillis = readTimeoutMillis;
+        this.token = token;
+    }
+
+    /**
+     * 提交合并任务并等待完成
+     *
+     * @param docPathList 待合并文档路径，需要是服务所在机器上的路径
+     * @param outputPath 输出文档路径，需要在服务的输出根目录之内，相对路径相对于输出根目录
+     * @param timeoutMillis 服务端的合并超时毫秒数，为0时不限制
+     * @return 服务返回的JSON结果
+     * @throws IOException 请求失败或服务返回错误状态时抛出，异常信息包含状态码和服务返回的内容
+     */
+    public String merge(List<String> docPathList, String outputPath, long timeoutMillis) throws IOException {
+        StringBuilder body = new StringBuilder(outputPath).append('\n');
+        for (String docPath : docPathList) {
+            body.append(docPath).append('\n');
+        }
+        String path = timeoutMillis > 0 ? "/merge?timeout=" + timeoutMillis : "/merge";
+        return request("POST", path, body.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 查询服务状态
+     *
+     * @return 服务返回的JSON状态
+     */
+    public String health() throws IOException {
+        return request("GET", "/health", null);
+    }
+
+    private String request(String method, String path, byte[] body) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        try {
+            connection.setRequestMethod(method);
+            connection.setConnectTimeout(5000);
+            connection.setReadTimeout(readTimeoutMillis);
+            connection.setRequestProperty("Authorization", "Bearer " + token);
+            if (body != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+                connection.setFixedLengthStreamingMode(body.length);
+                try (OutputStream out = connection.getOutputStream()) {
+                    out.write(body);
+                }
+            }
+            int status = connection.getResponseCode();
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            String response = in == null ? "" : readFully(in);
+            if (status != 200) {
+                throw new IOException("合并服务返回 " + status + ": " + response);
+            }
+            return response;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = input.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 提交一个合并任务
+     * 参数：[--port 端口] 输出文档路径 待合并文档路径...，令牌从端口对应的默认令牌文件读取
+     */
+    public static void main(String[] args) throws Exception {
+        List<String> list = new ArrayList<>(Arrays.asList(args));
+        int port = MergeServer.DEFAULT_PORT;
+        if (list.size() >= 2 && "--port".equals(list.get(0))) {
+            port = Integer.parseInt(list.get(1));
+            list = list.subList(2, list.size());
+        }
+        if (list.size() < 2) {
+            System.err.println("用法: MergeClient [--port 端口] 输出文档路径 待合并文档路径...");
+            System.exit(2);
+        }
+        System.out.println(new MergeClient(port).merge(list.subList(1, list.size()), list.get(0), 0));
+    }
+}
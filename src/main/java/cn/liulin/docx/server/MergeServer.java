@@ -0,0 +1,459 @@
+package cn.liulin.docx.server;
+
+import cn.liulin.docx.DocxMerger;
+import cn.liulin.docx.MergeConfig;
+import cn.liulin.docx.MergeResult;
+import cn.liulin.docx.util.DocumentCache;
+import cn.liulin.docx.util.LoggerUtil;
+import cn.liulin.docx.util.NamedThreadFactory;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 常驻合并服务
+ * 在本机回环地址上提供HTTP接口，启动时通过{@link DocxMerger#warmUp(MergeConfig, int)}完成docx4j的初始化和类加载，
+ * 之后的合并任务不再承担这部分冷启动开销，适合大量只包含少数文档的合并。
+ * 任务在固定并发度的线程池中执行，等待队列有界，队列已满时直接拒绝。
+ * <p>
+ * 接口：
+ * <ul>
+ *     <li>POST /merge：请求体为UTF-8文本，第一行为输出文档路径，之后每行一个待合并文档路径；
+ *     可通过查询参数timeout指定超时毫秒数。合并完成后返回200和JSON结果，队列已满返回503，超时返回504（返回时合并线程已被中断，
+ *     合并在当前步骤结束后停止并删除未完成的输出文件，之后才释放并发名额），
+ *     请求无效或有文档未通过预检查返回400，合并失败返回500</li>
+ *     <li>GET /health：返回服务状态</li>
+ * </ul>
+ * 文档路径为服务进程所在机器上的路径，服务只监听回环地址。
+ * 本机的其他用户和浏览器中的网页同样可以访问回环地址，因此/merge还要求：
+ * <ul>
+ *     <li>请求头Authorization为"Bearer 令牌"，令牌在启动时随机生成，写入只有当前用户可读写（0600）的令牌文件，
+ *     缺少或不匹配返回401</li>
+ *     <li>请求不带Origin头，浏览器发出的跨域请求总是带有Origin，带有时返回403</li>
+ *     <li>Content-Type为text/plain，否则返回415</li>
+ *     <li>输出文档路径在启动时指定的输出根目录之内，相对路径相对于输出根目录，越界返回403</li>
+ * </ul>
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 22:40
+ */
+public class MergeServer {
+    private static final Logger logger = LoggerUtil.getLogger(MergeServer.class);
+
+    public static final int DEFAULT_PORT = 8765;
+
+    private static final String BEARER = "Bearer ";
+
+    private final MergeConfig config;
+    private final DocxMerger merger;
+    private final ThreadPoolExecutor jobExecutor;
+    private final ExecutorService httpExecutor;
+    private final HttpServer httpServer;
+    private final Path outputRoot;
+    private final Path tokenFile;
+    private final String token;
+    private final AtomicLong completedJobs = new AtomicLong();
+    private final AtomicLong failedJobs = new AtomicLong();
+    private final AtomicLong rejectedJobs = new AtomicLong();
+
+    /**
+     * 创建合并服务，调用{@link #start()}后开始接收任务
+     *
+     * @param port 监听端口，为0时自动分配
+     * @param config 所有任务共用的合并配置
+     * @param concurrency 同时执行的任务数
+     * @param queueCapacity 等待执行的任务数上限
+     * @param outputRoot 输出根目录，输出文档只能写在该目录之内，需要已经存在
+     * @param tokenFile 令牌文件，为null时使用{@link #defaultTokenFile(int)}
+     */
+    public MergeServer(int port, MergeConfig config, int concurrency, int queueCapacity, Path outputRoot,
+                       Path tokenFile) throws IOException {
+        if (!Files.isDirectory(outputRoot)) {
+            throw new IllegalArgumentException("输出根目录不存在: " + outputRoot);
+        }
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("并发任务数必须大于0: " + concurrency);
+        }
+        if (queueCapacity < 0) {
+            throw new IllegalArgumentException("等待队列长度不能小于0: " + queueCapacity);
+        }
+        this.config = config;
+        this.outputRoot = outputRoot.toRealPath();
+        this.merger = new DocxMerger(config);
+        this.jobExecutor = new ThreadPoolExecutor(concurrency, concurrency, 0, TimeUnit.MILLISECONDS,
+                queueCapacity == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueCapacity),
+                new NamedThreadFactory("docx-merge-job"));
+        // 请求处理线程等待任务完成，数量由任务线程池的容量限制
+        this.httpExecutor = Executors.newCachedThreadPool(new NamedThreadFactory("docx-merge-http"));
+        this.httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        httpServer.setExecutor(httpExecutor);
+        httpServer.createContext("/merge", this::handleMerge);
+        httpServer.createContext("/health", this::handleHealth);
+        this.tokenFile = tokenFile != null ? tokenFile : defaultTokenFile(getPort());
+        this.token = newToken();
+    }
+
+    /**
+     * 端口对应的默认令牌文件，位于用户目录下的.docx-merge目录中，{@link MergeClient}按端口读取同一文件
+     *
+     * @param port 服务端口
+     */
+    public static Path defaultTokenFile(int port) {
+        return Paths.get(System.getProperty("user.home"), ".docx-merge", "merge-server-" + port + ".token");
+    }
+
+    /**
+     * 预热docx4j后开始接收任务
+     */
+    public void start() throws Exception {
+        logger.info("预热完成，耗时 {} ms", DocxMerger.warmUp(config, 1));
+        writeToken(tokenFile, token);
+        httpServer.start();
+        logger.info("合并服务已启动: http://127.0.0.1:{}/merge，并发任务数 {}，输出根目录 {}，令牌文件 {}", getPort(),
+                jobExecutor.getMaximumPoolSize(), outputRoot, tokenFile);
+    }
+
+    /**
+     * 停止接收任务，等待正在执行的任务完成
+     *
+     * @param timeoutSeconds 等待的最长秒数
+     */
+    public void stop(int timeoutSeconds) throws InterruptedException {
+        httpServer.stop(0);
+        jobExecutor.shutdown();
+        if (!jobExecutor.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+            jobExecutor.shutdownNow();
+        }
+        httpExecutor.shutdownNow();
+        try {
+            Files.deleteIfExists(tokenFile);
+        } catch (IOException e) {
+            logger.warn("删除令牌文件失败: {}", tokenFile, e);
+        }
+        logger.info("合并服务已停止，完成 {} 个任务，失败 {} 个，拒绝 {} 个", completedJobs.get(), failedJobs.get(),
+                rejectedJobs.get());
+    }
+
+    /**
+     * 获取实际监听的端口
+     */
+    public int getPort() {
+        return httpServer.getAddress().getPort();
+    }
+
+    /**
+     * 获取令牌文件路径
+     */
+    public Path getTokenFile() {
+        return tokenFile;
+    }
+
+    private void handleMerge(HttpExchange exchange) throws IOException {
+        try {
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                send(exchange, 405, error("只支持POST请求"));
+                return;
+            }
+            if (exchange.getRequestHeaders().containsKey("Origin")) {
+                send(exchange, 403, error("不接受浏览器跨域请求"));
+                return;
+            }
+            if (!isAuthorized(exchange.getRequestHeaders().getFirst("Authorization"))) {
+                send(exchange, 401, error("令牌缺失或不匹配"));
+                return;
+            }
+            String contentType = exchange.getRequestHeaders().getFirst("Content-Type");
+            if (contentType == null || !contentType.toLowerCase(Locale.ROOT).startsWith("text/plain")) {
+                send(exchange, 415, error("请求体类型必须为text/plain"));
+                return;
+            }
+            List<String> lines = readLines(exchange);
+            if (lines.size() < 2) {
+                send(exchange, 400, error("请求体第一行为输出文档路径，之后每行一个待合并文档路径"));
+                return;
+            }
+            String outputPath = resolveOutputPath(lines.get(0));
+            if (outputPath == null) {
+                send(exchange, 403, error("输出路径不在输出根目录之内: " + lines.get(0)));
+                return;
+            }
+            List<String> docPaths = lines.subList(1, lines.size());
+
+            CompletableFuture<MergeResult> future;
+            try {
+                long timeout = parseTimeout(exchange.getRequestURI().getQuery());
+                future = merger.mergeListAsync(docPaths, outputPath, jobExecutor, timeout, TimeUnit.MILLISECONDS);
+            } catch (IllegalArgumentException e) {
+                send(exchange, 400, error(e.getMessage()));
+                return;
+            }
+            try {
+                MergeResult result = future.get();
+                completedJobs.incrementAndGet();
+                send(exchange, 200, "{\"outputPath\":" + quote(result.getOutputPath())
+                        + ",\"documents\":" + result.getDocumentCount()
+                        + ",\"elapsedMs\":" + result.getElapsedNanos() / 1_000_000
+                        + ",\"metrics\":" + result.getMetrics().toJson() + "}");
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RejectedExecutionException) {
+                    rejectedJobs.incrementAndGet();
+                    send(exchange, 503, error("任务队列已满"));
+                } else if (cause instanceof IllegalArgumentException) {
+                    failedJobs.incrementAndGet();
+                    send(exchange, 400, error(cause.getMessage()));
+                } else if (cause instanceof TimeoutException) {
+                    failedJobs.incrementAndGet();
+                    send(exchange, 504, error(cause.getMessage() + "，合并已中断，未完成的输出文件会被删除"));
+                } else {
+                    failedJobs.incrementAndGet();
+                    logger.warn("合并任务失败: {}", outputPath, cause);
+                    send(exchange, 500, error(String.valueOf(cause)));
+                }
+            } catch (CancellationException e) {
+                failedJobs.incrementAndGet();
+                send(exchange, 500, error("合并已取消"));
+            } catch (InterruptedException e) {
+                future.cancel(true);
+                Thread.currentThread().interrupt();
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleHealth(HttpExchange exchange) throws IOException {
+        try {
+            send(exchange, 200, "{\"status\":\"UP\",\"activeJobs\":" + jobExecutor.getActiveCount()
+                    + ",\"queuedJobs\":" + jobExecutor.getQueue().size()
+                    + ",\"completedJobs\":" + completedJobs.get()
+                    + ",\"failedJobs\":" + failedJobs.get()
+                    + ",\"rejectedJobs\":" + rejectedJobs.get() + "}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private boolean isAuthorized(String authorization) {
+        if (authorization == null || !authorization.startsWith(BEARER)) {
+            return false;
+        }
+        byte[] expected = token.getBytes(StandardCharsets.UTF_8);
+        byte[] actual = authorization.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8);
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    /**
+     * 将请求中的输出路径解析为输出根目录之内的绝对路径
+     * 最近的已存在上级目录按真实路径比较，经符号链接指向根目录之外时同样拒绝；输出文件本身是符号链接或目录时拒绝
+     *
+     * @return 输出文档的绝对路径，在输出根目录之外时返回null
+     */
+    private String resolveOutputPath(String requested) throws IOException {
+        Path output = outputRoot.resolve(requested).normalize();
+        if (!output.startsWith(outputRoot) || output.equals(outputRoot)
+                || Files.isSymbolicLink(output) || Files.isDirectory(output, LinkOption.NOFOLLOW_LINKS)) {
+            return null;
+        }
+        Path existing = output.getParent();
+        while (!Files.exists(existing)) {
+            existing = existing.getParent();
+        }
+        return existing.toRealPath().startsWith(outputRoot) ? output.toString() : null;
+    }
+
+    private static String newToken() {
+        byte[] bytes = new byte[32];
+        new SecureRandom().nextBytes(bytes);
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(String.format("%02x", b & 0xff));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 写入令牌文件，文件以0600权限新建，不支持POSIX权限的文件系统上只保留所有者的读写权限
+     */
+    private static void writeToken(Path tokenFile, String token) throws IOException {
+        Path dir = tokenFile.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Files.deleteIfExists(tokenFile);
+        if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+            Files.createFile(tokenFile, PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+        } else {
+            Files.createFile(tokenFile);
+            File file = tokenFile.toFile();
+            file.setReadable(false, false);
+            file.setReadable(true, true);
+            file.setWritable(false, false);
+            file.setWritable(true, true);
+        }
+        Files.write(tokenFile, token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 读取令牌文件
+     *
+     * @param tokenFile 令牌文件
+     */
+    public static String readToken(Path tokenFile) throws IOException {
+        return new String(Files.readAllBytes(tokenFile), StandardCharsets.UTF_8).trim();
+    }
+
+    private static List<String> readLines(HttpExchange exchange) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    lines.add(line);
+                }
+            }
+        }
+        return lines;
+    }
+
+    private static long parseTimeout(String query) {
+        if (query == null) {
+            return 0;
+        }
+        for (String param : query.split("&")) {
+            if (param.startsWith("timeout=")) {
+                try {
+                    return Long.parseLong(param.substring("timeout=".length()));
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("超时时间无效: " + param);
+                }
+            }
+        }
+        return 0;
+    }
+
+    private static void send(HttpExchange exchange, int status, String json) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String error(String message) {
+        return "{\"error\":" + quote(message) + "}";
+    }
+
+    static String quote(String value) {
+        if (value == null) {
+            return "null";
+        }
+        StringBuilder sb = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    /**
+     * 启动合并服务
+     * 参数：--port 端口（默认8765）、--concurrency 并发任务数（默认2）、--queue 等待队列长度（默认16）、
+     * --parallelism 每个任务的加载并发度（默认1）、--cache-mb 预处理结果缓存大小（默认0，不使用缓存）、
+     * --output-root 输出根目录（默认当前目录）、--token-file 令牌文件（默认{@link #defaultTokenFile(int)}）
+     */
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        int concurrency = 2;
+        int queueCapacity = 16;
+        int parallelism = 1;
+        long cacheMb = 0;
+        Path outputRoot = Paths.get("");
+        Path tokenFile = null;
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--port":
+                    port = Integer.parseInt(value);
+                    break;
+                case "--concurrency":
+                    concurrency = Integer.parseInt(value);
+                    break;
+                case "--queue":
+                    queueCapacity = Integer.parseInt(value);
+                    break;
+                case "--parallelism":
+                    parallelism = Integer.parseInt(value);
+                    break;
+                case "--cache-mb":
+                    cacheMb = Long.parseLong(value);
+                    break;
+                case "--output-root":
+                    outputRoot = Paths.get(value);
+                    break;
+                case "--token-file":
+                    tokenFile = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("未知参数: " + args[i]);
+            }
+        }
+        MergeConfig config = new MergeConfig();
+        config.setParallelism(parallelism);
+        if (cacheMb > 0) {
+            config.setDocumentCache(new DocumentCache(cacheMb << 20));
+        }
+        MergeServer server = new MergeServer(port, config, concurrency, queueCapacity, outputRoot.toAbsolutePath(),
+                tokenFile);
+        server.start();
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                server.stop(30);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "docx-merge-shutdown"));
+        // 服务线程均为守护线程，主线程保持运行
+        Thread.currentThread().join();
+    }
+}
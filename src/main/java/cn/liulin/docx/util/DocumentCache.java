@@ -0,0 +1,311 @@
+package cn.liulin.docx.util;
+
+import org.slf4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 预处理结果缓存
+ * 封面、法律声明、附录等经常重复合并的文档，预处理后的文档包按文件路径、修改时间和大小（或文件内容摘要）缓存，
+ * 再次合并时跳过读取和预处理。合并过程会修改加载后的文档，因此缓存的是预处理后的文档包数据而不是文档对象，
+ * 每次命中都重新加载出一个独立的文档，缓存内容不会被合并修改。
+ * 命中只省去读取原始文档和预处理的开销，解压和解析文档包（JAXB反序列化）仍然在每次加载时进行。
+ * 缓存按总字节数限制大小，超过上限时淘汰最久未使用的条目；指定溢出目录时数据保存在该目录中而不占用堆内存。
+ * 同一个缓存可以在多次合并、多个线程之间共用，溢出文件的读写和删除都在锁外进行，不会阻塞其他线程的查找
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 21:30
+ */
+public class DocumentCache {
+    private static final Logger logger = LoggerUtil.getLogger(DocumentCache.class);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final long maxBytes;
+    private final Path spillDirectory;
+    private final boolean contentKey;
+
+    /**
+     * 溢出文件序号，同一缓存键被淘汰后再次缓存时使用新的文件，不会删除或覆盖正在读取的旧文件
+     */
+    private final AtomicLong fileSequence = new AtomicLong();
+
+    /**
+     * 缓存键到条目的映射，按访问顺序排列，最久未使用的条目在最前面
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long totalBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * 创建堆内缓存，按文件路径、修改时间和大小识别文档
+     *
+     * @param maxBytes 缓存的最大字节数
+     */
+    public DocumentCache(long maxBytes) {
+        this(maxBytes, null, false);
+    }
+
+    /**
+     * 创建缓存
+     *
+     * @param maxBytes 缓存的最大字节数
+     * @param spillDirectory 溢出目录，不为null时缓存数据保存在该目录中
+     * @param contentKey 是否按文件内容摘要识别文档，开启后不同路径下内容相同的文档共用缓存，但每次查找需要读取整个文件
+     */
+    public DocumentCache(long maxBytes, Path spillDirectory, boolean contentKey) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("缓存大小必须大于0: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+        this.spillDirectory = spillDirectory;
+        this.contentKey = contentKey;
+    }
+
+    /**
+     * 生成文档的缓存键
+     *
+     * @param docPath 原始文档路径
+     * @return 缓存键
+     */
+    public String key(String docPath) throws IOException {
+        Path path = Paths.get(docPath).toAbsolutePath().normalize();
+        if (contentKey) {
+            try (InputStream in = Files.newInputStream(path)) {
+                return "sha256:" + digest(in);
+            }
+        }
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        return path + "#" + attributes.lastModifiedTime().toMillis() + "#" + attributes.size();
+    }
+
+    /**
+     * 生成文档的缓存键，非文件来源的文档没有路径和修改时间，始终按内容摘要识别
+     *
+     * @param source 原始文档
+     * @return 缓存键
+     */
+    public String key(DocumentSource source) throws IOException {
+        if (source.getPath() != null) {
+            return key(source.getPath().toString());
+        }
+        try (InputStream in = source.openStream()) {
+            return "sha256:" + digest(in);
+        }
+    }
+
+    /**
+     * 查找预处理后的文档包
+     *
+     * @param key 缓存键
+     * @return 预处理后的文档包数据，未缓存时返回null
+     */
+    public byte[] get(String key) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry == null) {
+                misses++;
+                return null;
+            }
+            hits++;
+            if (entry.data != null) {
+                return entry.data;
+            }
+        }
+        try {
+            return Files.readAllBytes(entry.file);
+        } catch (IOException e) {
+            // 溢出文件被外部删除或在读取前被淘汰时视为未缓存
+            logger.warn("读取缓存文件失败: {}", entry.file, e);
+            boolean removed;
+            synchronized (this) {
+                removed = entries.remove(key, entry);
+                if (removed) {
+                    totalBytes -= entry.size;
+                }
+                hits--;
+                misses++;
+            }
+            if (removed) {
+                deleteFile(entry);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 缓存预处理后的文档包，超过缓存上限的单个文档不缓存
+     *
+     * @param key 缓存键
+     * @param data 预处理后的文档包数据，调用方之后不能再修改
+     */
+    public void put(String key, byte[] data) throws IOException {
+        synchronized (this) {
+            if (data.length > maxBytes || entries.containsKey(key)) {
+                return;
+            }
+        }
+        Entry entry = new Entry(data.length);
+        if (spillDirectory == null) {
+            entry.data = data;
+        } else {
+            Files.createDirectories(spillDirectory);
+            entry.file = spillDirectory.resolve(digest(key.getBytes(StandardCharsets.UTF_8)) + "-"
+                    + fileSequence.incrementAndGet() + ".docx");
+            Files.write(entry.file, data);
+        }
+
+        List<Entry> released = new ArrayList<>();
+        synchronized (this) {
+            if (entries.containsKey(key)) {
+                // 其他线程在写文件期间缓存了同一文档
+                released.add(entry);
+            } else {
+                entries.put(key, entry);
+                totalBytes += entry.size;
+
+                // 淘汰最久未使用的条目
+                Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+                while (totalBytes > maxBytes && iterator.hasNext()) {
+                    Entry eldest = iterator.next().getValue();
+                    iterator.remove();
+                    totalBytes -= eldest.size;
+                    released.add(eldest);
+                    evictions++;
+                }
+            }
+        }
+        for (Entry releasedEntry : released) {
+            deleteFile(releasedEntry);
+        }
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void clear() {
+        List<Entry> released;
+        synchronized (this) {
+            released = new ArrayList<>(entries.values());
+            entries.clear();
+            totalBytes = 0;
+        }
+        for (Entry entry : released) {
+            deleteFile(entry);
+        }
+    }
+
+    /**
+     * 获取命中次数
+     */
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    /**
+     * 获取未命中次数
+     */
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * 获取因超过缓存上限而淘汰的条目数
+     */
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * 获取缓存的文档数量
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * 获取缓存占用的字节数
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "DocumentCache{size=" + entries.size() + ", bytes=" + totalBytes + ", hits=" + hits
+                + ", misses=" + misses + ", evictions=" + evictions + "}";
+    }
+
+    private static void deleteFile(Entry entry) {
+        if (entry.file != null) {
+            try {
+                Files.deleteIfExists(entry.file);
+            } catch (IOException e) {
+                logger.warn("删除缓存文件失败: {}", entry.file, e);
+            }
+        }
+    }
+
+    private static String digest(InputStream in) throws IOException {
+        MessageDigest messageDigest = newDigest();
+        byte[] buffer = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(buffer)) > 0) {
+            messageDigest.update(buffer, 0, n);
+        }
+        return hex(messageDigest.digest());
+    }
+
+    private static String digest(byte[] data) {
+        return hex(newDigest().digest(data));
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] hash) {
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * 缓存条目，数据保存在堆内存或溢出文件中
+     */
+    private static class Entry {
+        final long size;
+        byte[] data;
+        Path file;
+
+        Entry(long size) {
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.StyleDefinitionsPart;
+import org.docx4j.wml.DocDefaults;
+import org.docx4j.wml.HpsMeasure;
+import org.docx4j.wml.RPr;
+import org.docx4j.wml.Style;
+import org.docx4j.wml.Styles;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 单个文档的格式信息
+ * 直接从样式定义对象中读取默认段落样式(Normal样式)的运行属性，Normal样式中没有定义的属性取文档默认值(docDefaults)。
+ * 只读取调用方声明的属性，未声明的属性为null
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 21:55
+ */
+public class DocumentFormatProfile {
+    private BigInteger fontSize;
+    private BigInteger fontSizeCs;
+    private Set<String> sizedStyleIds = Collections.emptySet();
+
+    /**
+     * 读取文档的格式信息，必须在合并样式之前调用，合并样式时冲突的样式会被重命名
+     *
+     * @param doc 文档
+     * @param properties 需要读取的属性
+     * @return 文档的格式信息
+     */
+    public static DocumentFormatProfile capture(WordprocessingMLPackage doc, Set<FormatProperty> properties) {
+        DocumentFormatProfile profile = new DocumentFormatProfile();
+        StyleDefinitionsPart stylePart = doc.getMainDocumentPart().getStyleDefinitionsPart();
+        if (properties.isEmpty() || stylePart == null || stylePart.getJaxbElement() == null) {
+            return profile;
+        }
+        Styles styles = stylePart.getJaxbElement();
+        Style normalStyle = findNormalStyle(styles);
+        RPr styleRPr = normalStyle == null ? null : normalStyle.getRPr();
+        RPr defaultRPr = findDefaultRPr(styles);
+
+        if (properties.contains(FormatProperty.DEFAULT_FONT_SIZE)) {
+            profile.fontSize = firstNonNull(value(styleRPr == null ? null : styleRPr.getSz()),
+                    value(defaultRPr == null ? null : defaultRPr.getSz()));
+            profile.fontSizeCs = firstNonNull(value(styleRPr == null ? null : styleRPr.getSzCs()),
+                    value(defaultRPr == null ? null : defaultRPr.getSzCs()));
+            profile.sizedStyleIds = findSizedStyleIds(styles, normalStyle);
+        }
+        return profile;
+    }
+
+    /**
+     * 查找Normal样式，没有名为Normal的段落样式时使用默认段落样式
+     */
+    private static Style findNormalStyle(Styles styles) {
+        Style defaultStyle = null;
+        for (Style style : styles.getStyle()) {
+            if (!"paragraph".equals(style.getType())) {
+                continue;
+            }
+            if (style.getName() != null && "Normal".equals(style.getName().getVal())) {
+                return style;
+            }
+            if (defaultStyle == null && style.isDefault()) {
+                defaultStyle = style;
+            }
+        }
+        return defaultStyle;
+    }
+
+    /**
+     * 查找自身或其基于(basedOn)的样式中定义了字体大小的段落样式、字符样式和表格样式
+     * 基于链到达Normal样式时停止，Normal样式的字体大小就是默认字体大小
+     */
+    private static Set<String> findSizedStyleIds(Styles styles, Style normalStyle) {
+        Map<String, Style> styleMap = new HashMap<>();
+        for (Style style : styles.getStyle()) {
+            if (style.getStyleId() != null) {
+                styleMap.put(style.getStyleId(), style);
+            }
+        }
+        Set<String> sizedStyleIds = new HashSet<>();
+        for (Style style : styles.getStyle()) {
+            String type = style.getType();
+            if (style.getStyleId() == null || !"paragraph".equals(type) && !"character".equals(type) && !"table".equals(type)) {
+                continue;
+            }
+            // 限制基于链的长度，避免循环引用
+            Style current = style;
+            for (int depth = 0; current != null && current != normalStyle && depth < styleMap.size(); depth++) {
+                if (current.getRPr() != null && current.getRPr().getSz() != null) {
+                    sizedStyleIds.add(style.getStyleId());
+                    break;
+                }
+                current = current.getBasedOn() == null ? null : styleMap.get(current.getBasedOn().getVal());
+            }
+        }
+        return sizedStyleIds;
+    }
+
+    private static RPr findDefaultRPr(Styles styles) {
+        DocDefaults docDefaults = styles.getDocDefaults();
+        if (docDefaults == null || docDefaults.getRPrDefault() == null) {
+            return null;
+        }
+        return docDefaults.getRPrDefault().getRPr();
+    }
+
+    private static BigInteger value(HpsMeasure measure) {
+        return measure == null ? null : measure.getVal();
+    }
+
+    private static <T> T firstNonNull(T first, T second) {
+        return first != null ? first : second;
+    }
+
+    /**
+     * 获取默认字体大小，单位为半磅
+     */
+    public BigInteger getFontSize() {
+        return fontSize;
+    }
+
+    /**
+     * 获取默认复杂字体大小，单位为半磅
+     */
+    public BigInteger getFontSizeCs() {
+        return fontSizeCs;
+    }
+
+    /**
+     * 判断样式自身或其基于的样式是否定义了字体大小，使用这类样式的文字不应用默认字体大小
+     *
+     * @param styleId 合并前的段落样式、字符样式或表格样式ID
+     */
+    public boolean isSizedStyle(String styleId) {
+        return styleId != null && sizedStyleIds.contains(styleId);
+    }
+
+    @Override
+    public String toString() {
+        return "DocumentFormatProfile{fontSize=" + fontSize + ", fontSizeCs=" + fontSizeCs + "}";
+    }
+}
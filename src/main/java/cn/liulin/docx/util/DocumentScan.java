@@ -0,0 +1,206 @@
+package cn.liulin.docx.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 单个文档的预检查结果
+ * 由{@link DocumentScanUtil}只读取压缩包的中央目录、包关系和内容类型得到，调度方可以据此在加载任何文档之前
+ * 排序、分批或剔除输入文档。段落数和表格数只在读取了主文档XML时有效，否则为-1
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 10:20
+ */
+public class DocumentScan {
+    private final String name;
+    private final List<String> problems = new ArrayList<>();
+    private long fileSize;
+    private int entryCount;
+    private long uncompressedSize;
+    private long compressedSize;
+    private long xmlSize;
+    private long mediaSize;
+    private String mainPartName;
+    private long mainPartSize = -1;
+    private int paragraphs = -1;
+    private int tables = -1;
+    private int sections = -1;
+    private long heapCost;
+
+    DocumentScan(String name) {
+        this.name = name;
+    }
+
+    /**
+     * 获取文档名称
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 文档是否可以合并，即预检查没有发现问题
+     */
+    public boolean isValid() {
+        return problems.isEmpty();
+    }
+
+    /**
+     * 获取预检查发现的问题，如文档已加密、压缩包损坏、缺少主文档等
+     */
+    public List<String> getProblems() {
+        return Collections.unmodifiableList(problems);
+    }
+
+    /**
+     * 获取文档压缩包的大小，单位为字节
+     */
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    /**
+     * 获取压缩包中的条目数
+     */
+    public int getEntryCount() {
+        return entryCount;
+    }
+
+    /**
+     * 获取所有条目解压后的总大小
+     */
+    public long getUncompressedSize() {
+        return uncompressedSize;
+    }
+
+    /**
+     * 获取所有条目压缩后的总大小
+     */
+    public long getCompressedSize() {
+        return compressedSize;
+    }
+
+    /**
+     * 获取XML部件和关系部件解压后的总大小
+     */
+    public long getXmlSize() {
+        return xmlSize;
+    }
+
+    /**
+     * 获取图片和嵌入对象（word/media、word/embeddings下的条目）解压后的总大小
+     */
+    public long getMediaSize() {
+        return mediaSize;
+    }
+
+    /**
+     * 获取主文档部件在压缩包中的条目名，如word/document.xml，未找到时为null
+     */
+    public String getMainPartName() {
+        return mainPartName;
+    }
+
+    /**
+     * 获取主文档部件解压后的大小，未找到主文档时为-1
+     */
+    public long getMainPartSize() {
+        return mainPartSize;
+    }
+
+    /**
+     * 获取正文中的段落数（含表格中的段落），未读取主文档XML时为-1
+     */
+    public int getParagraphs() {
+        return paragraphs;
+    }
+
+    /**
+     * 获取正文中的表格数（含嵌套表格），未读取主文档XML时为-1
+     */
+    public int getTables() {
+        return tables;
+    }
+
+    /**
+     * 获取正文中的节数，未读取主文档XML时为-1
+     */
+    public int getSections() {
+        return sections;
+    }
+
+    /**
+     * 获取文档加载后预计占用的堆内存，不含内存中预处理的额外开销
+     *
+     * @see MemoryEstimateUtil#estimateHeapCost(DocumentSource, boolean)
+     */
+    public long getHeapCost() {
+        return heapCost;
+    }
+
+    void addProblem(String problem) {
+        problems.add(problem);
+    }
+
+    void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    void setEntryCount(int entryCount) {
+        this.entryCount = entryCount;
+    }
+
+    void setUncompressedSize(long uncompressedSize) {
+        this.uncompressedSize = uncompressedSize;
+    }
+
+    void setCompressedSize(long compressedSize) {
+        this.compressedSize = compressedSize;
+    }
+
+    void setXmlSize(long xmlSize) {
+        this.xmlSize = xmlSize;
+    }
+
+    void setMediaSize(long mediaSize) {
+        this.mediaSize = mediaSize;
+    }
+
+    void setMainPart(String mainPartName, long mainPartSize) {
+        this.mainPartName = mainPartName;
+        this.mainPartSize = mainPartSize;
+    }
+
+    void setCounts(int paragraphs, int tables, int sections) {
+        this.paragraphs = paragraphs;
+        this.tables = tables;
+        this.sections = sections;
+    }
+
+    void setHeapCost(long heapCost) {
+        this.heapCost = heapCost;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("DocumentScan{name=").append(name)
+                .append(", fileSize=").append(fileSize)
+                .append(", entries=").append(entryCount)
+                .append(", uncompressedSize=").append(uncompressedSize)
+                .append(", xmlSize=").append(xmlSize)
+                .append(", mediaSize=").append(mediaSize)
+                .append(", mainPartSize=").append(mainPartSize);
+        if (paragraphs >= 0) {
+            sb.append(", paragraphs=").append(paragraphs)
+                    .append(", tables=").append(tables)
+                    .append(", sections=").append(sections);
+        }
+        sb.append(", heapCostMb=").append(heapCost >> 20);
+        if (!problems.isEmpty()) {
+            sb.append(", problems=").append(problems);
+        }
+        return sb.append('}').toString();
+    }
+}
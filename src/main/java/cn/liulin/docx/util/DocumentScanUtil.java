@@ -0,0 +1,364 @@
+package cn.liulin.docx.util;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+import org.slf4j.Logger;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 文档预检查工具
+ * 在预处理和加载之前只读取文档压缩包的文件头、中央目录、包关系和内容类型，不创建任何JAXB对象，
+ * 用于尽早发现已加密、损坏、不是Word文档或解压后过大的输入，并统计各类部件的大小供调度方排序和分批。
+ * 压缩比检查默认关闭：大量空段落等高度重复的XML压缩比可以远超100:1，只在调用方指定上限时检查
+ * 可选地用StAX流式读取一遍主文档XML，统计段落、表格和节的数量并检查XML是否完整
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 10:45
+ */
+public class DocumentScanUtil {
+    private static final Logger logger = LoggerUtil.getLogger(DocumentScanUtil.class);
+
+    /**
+     * OLE复合文档的文件头，加密的docx和旧版doc都是这种格式
+     */
+    private static final byte[] CFB_MAGIC = {(byte) 0xD0, (byte) 0xCF, 0x11, (byte) 0xE0, (byte) 0xA1, (byte) 0xB1, 0x1A, (byte) 0xE1};
+
+    /**
+     * zip本地文件头
+     */
+    private static final byte[] ZIP_MAGIC = {0x50, 0x4B, 0x03, 0x04};
+
+    /**
+     * 解压后超过该大小的条目才检查压缩比，较小的条目即使压缩比很高也不会占用过多内存
+     */
+    private static final long RATIO_CHECK_MIN_SIZE = 1024 * 1024;
+
+    private static final String PACKAGE_RELS = "_rels/.rels";
+    private static final String CONTENT_TYPES = "[Content_Types].xml";
+    private static final String OFFICE_DOCUMENT_REL =
+            "http://schemas.openxmlformats.org/officeDocument/2006/relationships/officeDocument";
+    private static final String WORDML_NAMESPACE = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+
+    /**
+     * JDK自带的StAX实现不保证线程安全，每个线程使用各自的工厂
+     */
+    private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = ThreadLocal.withInitial(() -> {
+        XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    });
+
+    /**
+     * 并发预检查文档来源列表
+     *
+     * @param sourceList 文档来源列表
+     * @param executor 执行预检查的线程池，为null时在当前线程中按顺序处理
+     * @param readDocument 是否读取主文档XML统计段落和表格数量
+     * @param maxUncompressedSize 单个文档解压后的大小上限，不大于0时不限制
+     * @param maxCompressionRatio 单个条目的压缩比上限，不大于0时不检查
+     * @return 按输入顺序排列的预检查结果
+     */
+    public static List<DocumentScan> scanSourceList(List<DocumentSource> sourceList, ExecutorService executor,
+                                                    boolean readDocument, long maxUncompressedSize,
+                                                    long maxCompressionRatio) throws Exception {
+        List<DocumentScan> scans = new ArrayList<>(sourceList.size());
+        if (executor == null) {
+            for (DocumentSource source : sourceList) {
+                scans.add(scan(source, readDocument, maxUncompressedSize, maxCompressionRatio));
+            }
+            return scans;
+        }
+
+        List<Future<DocumentScan>> futures = new ArrayList<>(sourceList.size());
+        for (DocumentSource source : sourceList) {
+            futures.add(executor.submit(() -> scan(source, readDocument, maxUncompressedSize, maxCompressionRatio)));
+        }
+        try {
+            for (Future<DocumentScan> future : futures) {
+                scans.add(future.get());
+            }
+        } catch (ExecutionException | InterruptedException e) {
+            for (Future<DocumentScan> future : futures) {
+                future.cancel(true);
+            }
+            if (e instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
+            throw e;
+        }
+        return scans;
+    }
+
+    /**
+     * 预检查单个文档，文档的问题记录在返回结果中，不抛出异常。
+     * 检查通过时结果缓存在文档来源上，随后估算内存占用时不再打开压缩包
+     *
+     * @param source 文档来源
+     * @param readDocument 是否读取主文档XML统计段落和表格数量
+     * @param maxUncompressedSize 解压后的大小上限，不大于0时不限制
+     * @param maxCompressionRatio 单个条目的压缩比上限，不大于0时不检查
+     * @return 预检查结果
+     */
+    public static DocumentScan scan(DocumentSource source, boolean readDocument, long maxUncompressedSize,
+                                    long maxCompressionRatio) {
+        DocumentScan scan = new DocumentScan(source.getName());
+        try {
+            scan.setFileSize(source.size());
+            byte[] header = readHeader(source, CFB_MAGIC.length);
+            if (startsWith(header, CFB_MAGIC)) {
+                scan.addProblem("文档已加密或为旧版doc格式");
+            } else if (!startsWith(header, ZIP_MAGIC)) {
+                scan.addProblem("不是有效的docx压缩包");
+            } else {
+                try (ZipFile zipFile = source.openZip()) {
+                    scanPackage(zipFile, scan, readDocument, maxUncompressedSize, maxCompressionRatio);
+                }
+            }
+        } catch (NoSuchFileException e) {
+            scan.addProblem("文档不存在");
+        } catch (IOException e) {
+            scan.addProblem("无法读取文档: " + e.getMessage());
+        }
+
+        if (scan.isValid()) {
+            source.setScan(scan);
+            logger.debug("文档预检查通过: {}", scan);
+        } else {
+            logger.warn("文档预检查未通过: {}", scan);
+        }
+        return scan;
+    }
+
+    private static void scanPackage(ZipFile zipFile, DocumentScan scan, boolean readDocument,
+                                    long maxUncompressedSize, long maxCompressionRatio) throws IOException {
+        int entryCount = 0;
+        long uncompressed = 0;
+        long compressed = 0;
+        long xmlSize = 0;
+        long mediaSize = 0;
+        long heapCost = MemoryEstimateUtil.PACKAGE_OVERHEAD;
+        boolean unreadable = false;
+
+        Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+        while (entries.hasMoreElements()) {
+            ZipArchiveEntry entry = entries.nextElement();
+            if (entry.isDirectory()) {
+                continue;
+            }
+            entryCount++;
+            String name = entry.getName();
+            long size = Math.max(entry.getSize(), 0);
+            long compressedSize = Math.max(entry.getCompressedSize(), 0);
+            uncompressed += size;
+            compressed += compressedSize;
+            heapCost += MemoryEstimateUtil.entryHeapCost(name, size);
+            if (MemoryEstimateUtil.isXml(name)) {
+                xmlSize += size;
+            } else if (name.startsWith("word/media/") || name.startsWith("word/embeddings/")) {
+                mediaSize += size;
+            }
+
+            if (!unreadable && !zipFile.canReadEntryData(entry)) {
+                unreadable = true;
+                scan.addProblem(entry.getGeneralPurposeBit().usesEncryption()
+                        ? "条目已加密: " + name
+                        : "条目使用了不支持的压缩方法: " + name);
+            }
+            if (maxCompressionRatio > 0 && size > RATIO_CHECK_MIN_SIZE && size > compressedSize * maxCompressionRatio) {
+                scan.addProblem("条目压缩比异常，解压后 " + (size >> 20) + " MB: " + name);
+            }
+        }
+        scan.setEntryCount(entryCount);
+        scan.setUncompressedSize(uncompressed);
+        scan.setCompressedSize(compressed);
+        scan.setXmlSize(xmlSize);
+        scan.setMediaSize(mediaSize);
+        scan.setHeapCost(heapCost);
+
+        if (maxUncompressedSize > 0 && uncompressed > maxUncompressedSize) {
+            scan.addProblem("解压后大小 " + (uncompressed >> 20) + " MB 超过上限 " + (maxUncompressedSize >> 20) + " MB");
+        }
+        if (!scan.isValid()) {
+            return;
+        }
+
+        if (zipFile.getEntry(PACKAGE_RELS) == null || zipFile.getEntry(CONTENT_TYPES) == null) {
+            scan.addProblem("缺少包关系或内容类型部件，不是有效的docx文档");
+            return;
+        }
+        try {
+            String mainPartName = findMainPartName(zipFile);
+            if (mainPartName == null) {
+                scan.addProblem("包关系中没有主文档");
+                return;
+            }
+            ZipArchiveEntry mainEntry = zipFile.getEntry(mainPartName);
+            if (mainEntry == null) {
+                scan.addProblem("主文档部件不存在: " + mainPartName);
+                return;
+            }
+            scan.setMainPart(mainPartName, Math.max(mainEntry.getSize(), 0));
+            String contentType = findContentType(zipFile, mainPartName);
+            if (contentType == null || !contentType.endsWith(".main+xml")
+                    || !(contentType.contains("wordprocessingml") || contentType.contains("ms-word"))) {
+                scan.addProblem("主文档不是Word文档: " + contentType);
+                return;
+            }
+            if (readDocument) {
+                countElements(zipFile, mainEntry, scan);
+            }
+        } catch (XMLStreamException e) {
+            // 条目数据损坏时解压错误被StAX包装为XMLStreamException
+            if (e.getNestedException() instanceof IOException) {
+                scan.addProblem("条目数据损坏: " + e.getNestedException().getMessage());
+            } else {
+                scan.addProblem("XML格式错误: " + e.getMessage().replaceAll("\\s+", " "));
+            }
+        }
+    }
+
+    /**
+     * 从包关系中查找主文档部件的条目名
+     */
+    private static String findMainPartName(ZipFile zipFile) throws IOException, XMLStreamException {
+        ZipArchiveEntry entry = zipFile.getEntry(PACKAGE_RELS);
+        if (entry == null) {
+            return null;
+        }
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() == XMLStreamConstants.START_ELEMENT
+                            && "Relationship".equals(reader.getLocalName())
+                            && OFFICE_DOCUMENT_REL.equals(reader.getAttributeValue(null, "Type"))
+                            && !"External".equals(reader.getAttributeValue(null, "TargetMode"))) {
+                        String target = reader.getAttributeValue(null, "Target");
+                        return target == null ? null : stripLeadingSlash(target);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 从内容类型部件中查找部件的内容类型，优先使用按部件名覆盖的类型，其次使用按扩展名的默认类型
+     */
+    private static String findContentType(ZipFile zipFile, String partName) throws IOException, XMLStreamException {
+        ZipArchiveEntry entry = zipFile.getEntry(CONTENT_TYPES);
+        if (entry == null) {
+            return null;
+        }
+        String extension = partName.substring(partName.lastIndexOf('.') + 1);
+        String defaultType = null;
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                        continue;
+                    }
+                    if ("Override".equals(reader.getLocalName())
+                            && partName.equalsIgnoreCase(stripLeadingSlash(reader.getAttributeValue(null, "PartName")))) {
+                        return reader.getAttributeValue(null, "ContentType");
+                    }
+                    if ("Default".equals(reader.getLocalName())
+                            && extension.equalsIgnoreCase(reader.getAttributeValue(null, "Extension"))) {
+                        defaultType = reader.getAttributeValue(null, "ContentType");
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        return defaultType;
+    }
+
+    /**
+     * 流式读取主文档XML，统计段落、表格和节的数量，同时检查条目数据和XML是否完整
+     */
+    private static void countElements(ZipFile zipFile, ZipArchiveEntry entry, DocumentScan scan)
+            throws IOException, XMLStreamException {
+        int paragraphs = 0;
+        int tables = 0;
+        int sections = 0;
+        try (InputStream in = zipFile.getInputStream(entry)) {
+            XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(in);
+            try {
+                while (reader.hasNext()) {
+                    if (reader.next() != XMLStreamConstants.START_ELEMENT
+                            || !WORDML_NAMESPACE.equals(reader.getNamespaceURI())) {
+                        continue;
+                    }
+                    switch (reader.getLocalName()) {
+                        case "p":
+                            paragraphs++;
+                            break;
+                        case "tbl":
+                            tables++;
+                            break;
+                        case "sectPr":
+                            sections++;
+                            break;
+                        default:
+                            break;
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+        scan.setCounts(paragraphs, tables, sections);
+    }
+
+    private static byte[] readHeader(DocumentSource source, int length) throws IOException {
+        byte[] header = new byte[length];
+        int read = 0;
+        try (InputStream in = source.openStream()) {
+            int n;
+            while (read < length && (n = in.read(header, read, length - read)) > 0) {
+                read += n;
+            }
+        }
+        if (read < length) {
+            byte[] shorter = new byte[read];
+            System.arraycopy(header, 0, shorter, 0, read);
+            return shorter;
+        }
+        return header;
+    }
+
+    private static boolean startsWith(byte[] data, byte[] prefix) {
+        if (data.length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (data[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String stripLeadingSlash(String name) {
+        return name != null && name.startsWith("/") ? name.substring(1) : name;
+    }
+}
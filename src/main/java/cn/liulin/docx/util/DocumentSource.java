@@ -0,0 +1,321 @@
+package cn.liulin.docx.util;
+
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 待合并文档的来源
+ * 除本地文件外，文档还可以来自字节数组、输入流或可定位的字节通道，非文件来源的文档在内存中完成预处理和加载，
+ * 整个合并过程不需要先写入本地磁盘。
+ * 预处理前需要估算内存占用、计算缓存键，文档内容可能被读取多次：输入流在第一次读取时完整读入内存；
+ * 字节通道每次从头读取，合并期间调用方不能同时使用该通道，通道由调用方负责关闭
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 23:20
+ */
+public abstract class DocumentSource {
+    private final String name;
+
+    /**
+     * 最近一次预检查的结果，估算内存占用时复用，避免再次读取压缩包的中央目录
+     */
+    private volatile DocumentScan scan;
+
+    private DocumentSource(String name) {
+        if (name == null || name.isEmpty()) {
+            throw new IllegalArgumentException("文档名称不能为空");
+        }
+        this.name = name;
+    }
+
+    /**
+     * 本地文件
+     *
+     * @param docPath 文档路径
+     */
+    public static DocumentSource of(String docPath) {
+        return new FileSource(docPath);
+    }
+
+    /**
+     * 字节数组，合并期间不能修改数组内容
+     *
+     * @param name 文档名称，用于日志和进度通知
+     * @param data docx文档内容
+     */
+    public static DocumentSource of(String name, byte[] data) {
+        if (data == null) {
+            throw new IllegalArgumentException("文档内容不能为空: " + name);
+        }
+        return new BytesSource(name, data);
+    }
+
+    /**
+     * 输入流，第一次读取时完整读入内存并关闭输入流
+     *
+     * @param name 文档名称，用于日志和进度通知
+     * @param in docx文档内容
+     */
+    public static DocumentSource of(String name, InputStream in) {
+        if (in == null) {
+            throw new IllegalArgumentException("输入流不能为空: " + name);
+        }
+        return new StreamSource(name, in);
+    }
+
+    /**
+     * 可定位的字节通道，如对象存储SDK提供的按范围读取的通道，预处理时只读取压缩包的中央目录和需要的条目
+     *
+     * @param name 文档名称，用于日志和进度通知
+     * @param channel docx文档内容，由调用方负责关闭
+     */
+    public static DocumentSource of(String name, SeekableByteChannel channel) {
+        if (channel == null) {
+            throw new IllegalArgumentException("字节通道不能为空: " + name);
+        }
+        return new ChannelSource(name, channel);
+    }
+
+    /**
+     * 将文档路径列表转换为文档来源列表
+     *
+     * @param docPathList 文档路径list
+     */
+    public static List<DocumentSource> of(List<String> docPathList) {
+        List<DocumentSource> sources = new ArrayList<>(docPathList.size());
+        for (String docPath : docPathList) {
+            sources.add(of(docPath));
+        }
+        return sources;
+    }
+
+    /**
+     * 获取文档名称，文件来源为文档路径
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * 获取文档路径，非文件来源返回null
+     */
+    public Path getPath() {
+        return null;
+    }
+
+    /**
+     * 获取文档大小，单位为字节
+     */
+    public abstract long size() throws IOException;
+
+    /**
+     * 以压缩包方式打开文档，关闭返回的压缩包不会关闭调用方提供的通道
+     */
+    public abstract ZipFile openZip() throws IOException;
+
+    /**
+     * 从头读取文档内容
+     */
+    public abstract InputStream openStream() throws IOException;
+
+    DocumentScan getScan() {
+        return scan;
+    }
+
+    void setScan(DocumentScan scan) {
+        this.scan = scan;
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+
+    private static class FileSource extends DocumentSource {
+        private final Path path;
+
+        FileSource(String docPath) {
+            super(docPath);
+            this.path = Paths.get(docPath);
+        }
+
+        @Override
+        public Path getPath() {
+            return path;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return Files.size(path);
+        }
+
+        @Override
+        public ZipFile openZip() throws IOException {
+            return ZipFile.builder().setPath(path).get();
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return Files.newInputStream(path);
+        }
+    }
+
+    private static class BytesSource extends DocumentSource {
+        private final byte[] data;
+
+        BytesSource(String name, byte[] data) {
+            super(name);
+            this.data = data;
+        }
+
+        @Override
+        public long size() {
+            return data.length;
+        }
+
+        @Override
+        public ZipFile openZip() throws IOException {
+            return ZipFile.builder().setByteArray(data).get();
+        }
+
+        @Override
+        public InputStream openStream() {
+            return new ByteArrayInputStream(data);
+        }
+    }
+
+    private static class StreamSource extends DocumentSource {
+        private InputStream in;
+        private byte[] data;
+
+        StreamSource(String name, InputStream in) {
+            super(name);
+            this.in = in;
+        }
+
+        /**
+         * 第一次调用时读入全部内容，zip的中央目录位于文件末尾，无法边读边处理
+         */
+        private synchronized byte[] data() throws IOException {
+            if (data == null) {
+                try (InputStream input = in) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(input.available(), 64 * 1024));
+                    byte[] buffer = new byte[64 * 1024];
+                    int n;
+                    while ((n = input.read(buffer)) > 0) {
+                        out.write(buffer, 0, n);
+                    }
+                    data = out.toByteArray();
+                }
+                in = null;
+            }
+            return data;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return data().length;
+        }
+
+        @Override
+        public ZipFile openZip() throws IOException {
+            return ZipFile.builder().setByteArray(data()).get();
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            return new ByteArrayInputStream(data());
+        }
+    }
+
+    private static class ChannelSource extends DocumentSource {
+        private final SeekableByteChannel channel;
+
+        ChannelSource(String name, SeekableByteChannel channel) {
+            super(name);
+            this.channel = new NonClosingChannel(channel);
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public ZipFile openZip() throws IOException {
+            return ZipFile.builder().setSeekableByteChannel(channel).get();
+        }
+
+        @Override
+        public InputStream openStream() throws IOException {
+            channel.position(0);
+            return Channels.newInputStream(channel);
+        }
+    }
+
+    /**
+     * 关闭时不关闭被包装的通道，通道的生命周期由调用方管理
+     */
+    private static class NonClosingChannel implements SeekableByteChannel {
+        private final SeekableByteChannel channel;
+
+        NonClosingChannel(SeekableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return channel.read(dst);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return channel.write(src);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return channel.position();
+        }
+
+        @Override
+        public SeekableByteChannel position(long newPosition) throws IOException {
+            channel.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return channel.size();
+        }
+
+        @Override
+        public SeekableByteChannel truncate(long size) throws IOException {
+            channel.truncate(size);
+            return this;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // 不关闭调用方的通道
+        }
+    }
+}
@@ -0,0 +1,164 @@
+package cn.liulin.docx.util;
+
+import org.slf4j.Logger;
+import org.w3c.dom.Element;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.XmlType;
+import javax.xml.datatype.XMLGregorianCalendar;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 文档对象树遍历工具
+ * 直接在docx4j的JAXB对象树上进行一次深度优先遍历，并把每个节点分发给已注册的遍历步骤，
+ * 用于替代"序列化为字符串-正则替换-重新解析"的处理方式。
+ * 与docx4j自带的TraversalUtil不同，这里会进入段落、表格、运行等元素的属性对象（如pPr、rPr、trPr），
+ * 因此jc、sz、trHeight、blip等属性节点也能被步骤处理到。
+ * docx4j无法绑定而以DOM形式保留的扩展内容（xsd:any）作为一个Element节点分发，不再进入其子元素
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 10:12
+ */
+public class DocumentTraversalUtil {
+    private static final Logger logger = LoggerUtil.getLogger(DocumentTraversalUtil.class);
+
+    /**
+     * 每个JAXB类需要继续遍历的字段，按类缓存以避免重复反射
+     */
+    private static final Map<Class<?>, Field[]> FIELD_CACHE = new ConcurrentHashMap<>();
+
+    private static final TraversalStep<?>[] NO_STEPS = new TraversalStep<?>[0];
+
+    /**
+     * 遍历对象树，将每个节点分发给类型匹配的步骤
+     * 节点按文档顺序先序访问，即父节点总是先于其子节点被处理
+     *
+     * @param root 遍历的根节点，通常为Document、Styles等部件的JAXB对象
+     * @param steps 遍历步骤列表
+     */
+    public static void traverse(Object root, List<? extends TraversalStep<?>> steps) {
+        if (root == null || steps.isEmpty()) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        new Walker(steps).walk(root);
+        logger.debug("文档遍历完成，共 {} 个步骤，耗时 {} ms", steps.size(), System.currentTimeMillis() - start);
+    }
+
+    /**
+     * 单次遍历的状态，缓存每个节点类型对应的步骤
+     */
+    private static class Walker {
+        private final List<? extends TraversalStep<?>> steps;
+        private final Map<Class<?>, TraversalStep<?>[]> dispatchCache = new HashMap<>();
+
+        Walker(List<? extends TraversalStep<?>> steps) {
+            this.steps = steps;
+        }
+
+        void walk(Object node) {
+            if (node == null) {
+                return;
+            }
+            if (node instanceof JAXBElement) {
+                walk(((JAXBElement<?>) node).getValue());
+                return;
+            }
+            if (node instanceof List) {
+                List<?> list = (List<?>) node;
+                // 使用下标遍历，步骤在列表中追加节点时不会抛出并发修改异常
+                for (int i = 0; i < list.size(); i++) {
+                    walk(list.get(i));
+                }
+                return;
+            }
+            Class<?> nodeClass = node.getClass();
+            if (node instanceof Element) {
+                dispatch(node, nodeClass);
+                return;
+            }
+            if (!isJaxbType(nodeClass)) {
+                return;
+            }
+
+            dispatch(node, nodeClass);
+
+            for (Field field : getFields(nodeClass)) {
+                try {
+                    walk(field.get(node));
+                } catch (IllegalAccessException e) {
+                    logger.debug("无法读取字段 {}.{}", nodeClass.getName(), field.getName());
+                }
+            }
+        }
+
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        private void dispatch(Object node, Class<?> nodeClass) {
+            TraversalStep<?>[] matched = dispatchCache.get(nodeClass);
+            if (matched == null) {
+                List<TraversalStep<?>> list = new ArrayList<>();
+                for (TraversalStep<?> step : steps) {
+                    if (step.getNodeType().isAssignableFrom(nodeClass)) {
+                        list.add(step);
+                    }
+                }
+                matched = list.isEmpty() ? NO_STEPS : list.toArray(new TraversalStep<?>[0]);
+                dispatchCache.put(nodeClass, matched);
+            }
+            for (TraversalStep step : matched) {
+                step.visit(node);
+            }
+        }
+    }
+
+    /**
+     * 判断是否为需要遍历的JAXB对象（枚举值视为叶子节点）
+     */
+    private static boolean isJaxbType(Class<?> clazz) {
+        return !clazz.isEnum() && clazz.isAnnotationPresent(XmlType.class);
+    }
+
+    /**
+     * 获取JAXB类中可能包含子节点的字段，包括父类中声明的字段
+     * 排除静态字段、parent等@XmlTransient字段以及字符串、数字等叶子类型字段
+     */
+    private static Field[] getFields(Class<?> clazz) {
+        Field[] fields = FIELD_CACHE.get(clazz);
+        if (fields != null) {
+            return fields;
+        }
+        List<Field> list = new ArrayList<>();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+                        || field.isAnnotationPresent(XmlTransient.class) || isLeafType(field.getType())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                list.add(field);
+            }
+        }
+        fields = list.toArray(new Field[0]);
+        FIELD_CACHE.put(clazz, fields);
+        return fields;
+    }
+
+    private static boolean isLeafType(Class<?> type) {
+        return type.isPrimitive() || type.isEnum() || type.isArray()
+                || type == String.class || type == Boolean.class
+                || type == BigInteger.class || type == BigDecimal.class
+                || Number.class.isAssignableFrom(type)
+                || XMLGregorianCalendar.class.isAssignableFrom(type);
+    }
+}
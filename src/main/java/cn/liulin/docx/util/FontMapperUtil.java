@@ -1,14 +1,24 @@
 package cn.liulin.docx.util;
 
-import org.docx4j.XmlUtils;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
-import org.docx4j.wml.Document;
+import org.docx4j.wml.HpsMeasure;
+import org.docx4j.wml.P;
+import org.docx4j.wml.PPr;
+import org.docx4j.wml.R;
+import org.docx4j.wml.RPr;
+import org.docx4j.wml.Tbl;
+import org.docx4j.wml.TblPr;
+import org.jvnet.jaxb2_commons.ppp.Child;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.regex.Matcher;
+import java.util.Set;
 
 /**
  * @author liulin
@@ -18,89 +28,114 @@ import java.util.regex.Matcher;
 public class FontMapperUtil {
     private static final Logger logger = LoggerFactory.getLogger(FontMapperUtil.class);
 
+    /**
+     * 应用默认字体大小需要在合并前保存的格式属性
+     */
+    public static final Set<FormatProperty> REQUIRED_FORMAT_PROPERTIES =
+            Collections.unmodifiableSet(EnumSet.of(FormatProperty.DEFAULT_FONT_SIZE));
+
     /**
      * 为文档列表中的每个文档应用默认字体大小，确保在合并前所有文档具有一致的字体格式
      * 该方法会遍历文档列表，为每个文档调用字体大小应用方法
-     * 
+     *
      * @param docList 包含WordprocessingMLPackage对象的文档列表
-     * @param formatProperties 包含格式属性的映射，用于获取每个文档的默认字体大小信息
+     * @param formatProfiles 每个文档的格式信息，用于获取每个文档的默认字体大小
      */
-    public static void applyDocListDefaultFontSizesBeforeMerge(List<WordprocessingMLPackage> docList, Map<String, String> formatProperties) {
+    public static void applyDocListDefaultFontSizesBeforeMerge(List<WordprocessingMLPackage> docList,
+                                                               List<DocumentFormatProfile> formatProfiles) {
         logger.info("开始在合并前应用默认字体大小...");
         // 遍历文档列表，为每个文档应用默认字体大小
         for (int i = 0; i < docList.size(); i++) {
-            applyDefaultFontSizesBeforeMerge(docList.get(i), formatProperties, "doc" + (i + 1));
+            DocumentTraversalUtil.traverse(docList.get(i).getMainDocumentPart().getJaxbElement(),
+                    createDefaultFontSizeSteps(formatProfiles.get(i), "文档" + (i + 1)));
         }
         logger.info("合并前默认字体大小应用完成");
     }
 
     /**
-     * 在合并前处理表格中的默认字体大小
-     * 只有当单元格中没有<w:sz>或<w:szCs>时才添加默认字体大小
+     * 创建在合并前处理默认字体大小的遍历步骤
+     * 没有<w:sz>的运行元素补充默认字体大小，没有<w:rPr>的运行元素同时创建rPr，没有<w:szCs>时同时补充复杂字体大小。
+     * 段落样式、字符样式或所在表格的表格样式定义了字体大小的文字保持不变，字体大小仍由样式决定。
+     * 步骤直接修改运行元素对象，只为被修改的运行元素创建新对象
+     *
+     * @param formatProfile 文档的格式信息
+     * @param docLabel 日志中标识文档的名称，如"文档1"
+     * @return 遍历步骤列表，没有找到默认字体大小时为空
      */
-    private static void applyDefaultFontSizesBeforeMerge(WordprocessingMLPackage doc, Map<String, String> formatProperties, String docPrefix) {
-        try {
-            logger.info("开始为{}应用默认字体大小...", docPrefix);
+    public static List<TraversalStep<?>> createDefaultFontSizeSteps(DocumentFormatProfile formatProfile, String docLabel) {
+        // 默认字体大小取Normal样式中的定义，没有时取文档默认值
+        BigInteger size = formatProfile.getFontSize();
+        BigInteger sizeCs = formatProfile.getFontSizeCs();
 
-            // 获取文档的XML内容
-            String xmlContent = XmlUtils.marshaltoString(doc.getMainDocumentPart().getJaxbElement(), true, true);
+        logger.debug("{}默认字体大小: {} {}", docLabel, size, (sizeCs != null ? " (szCs: " + sizeCs + ")" : ""));
 
-            // 查找默认字体大小
-            String defaultSize = formatProperties.get(docPrefix + "_default_sz");
-            String defaultStyleSize = formatProperties.get(docPrefix + "_default_style_sz");
-            String defaultStyleSizeCs = formatProperties.get(docPrefix + "_default_style_szCs");
-
-            String effectiveSize = defaultSize != null ? defaultSize : defaultStyleSize;
-            // 只有在使用默认样式时才有
-
-            logger.debug("{}默认字体大小: {} {}", docPrefix, effectiveSize,
-                    (defaultStyleSizeCs != null ? " (szCs: " + defaultStyleSizeCs + ")" : ""));
+        if (size == null) {
+            logger.warn("{}没有找到默认字体大小，跳过处理", docLabel);
+            return new ArrayList<>();
+        }
 
-            if (effectiveSize == null) {
-                logger.warn("{}没有找到默认字体大小，跳过处理", docPrefix);
+        // 段落和表格先于其中的运行元素、并且在其样式引用被重新映射之前被访问，因此在访问段落和表格时按合并前的样式ID判断
+        Set<Object> sizedContainers = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<TraversalStep<?>> steps = new ArrayList<>();
+        steps.add(TraversalStep.of(P.class, p -> {
+            PPr pPr = p.getPPr();
+            if (pPr != null && pPr.getPStyle() != null && formatProfile.isSizedStyle(pPr.getPStyle().getVal())) {
+                sizedContainers.add(p);
+            }
+        }));
+        steps.add(TraversalStep.of(Tbl.class, tbl -> {
+            TblPr tblPr = tbl.getTblPr();
+            if (tblPr != null && tblPr.getTblStyle() != null && formatProfile.isSizedStyle(tblPr.getTblStyle().getVal())) {
+                sizedContainers.add(tbl);
+            }
+        }));
+        steps.add(TraversalStep.of(R.class, r -> {
+            RPr rPr = r.getRPr();
+            // 已有<w:sz>或字体大小由样式决定时不处理
+            if (rPr != null && (rPr.getSz() != null
+                    || rPr.getRStyle() != null && formatProfile.isSizedStyle(rPr.getRStyle().getVal()))
+                    || isSizedByAncestor(r, sizedContainers)) {
                 return;
             }
+            if (rPr == null) {
+                rPr = new RPr();
+                rPr.setParent(r);
+                r.setRPr(rPr);
+            }
+            rPr.setSz(createHpsMeasure(size));
+            if (sizeCs != null && rPr.getSzCs() == null) {
+                rPr.setSzCs(createHpsMeasure(sizeCs));
+            }
+        }));
+        return steps;
+    }
 
-            // 处理表格单元格中的<w:r>元素，在<w:rPr>中添加字体大小
-            Matcher matcher = PatternConst.R_PATTERN.matcher(xmlContent);
-
-            StringBuffer sb = new StringBuffer();
-
-            while (matcher.find()) {
-                String rStart = matcher.group(1);
-                String rPrContent = matcher.group(2);
-                String rPrEnd = matcher.group(3);
-
-                // 只有在<w:rPr>中没有<w:sz>和<w:szCs>时才添加默认字体大小
-                if (!rPrContent.contains("<w:sz ")) {
-                    // 构建字体大小定义
-                    StringBuilder fontSizeDefinition = new StringBuilder();
-                    fontSizeDefinition.append("<w:sz w:val=\"").append(effectiveSize).append("\"/>");
-
-                    if (defaultStyleSizeCs != null && !rPrContent.contains("<w:szCs ")) {
-                        fontSizeDefinition.append("<w:szCs w:val=\"").append(defaultStyleSizeCs).append("\"/>");
-                    }
-
-                    // 在<w:rPr>中插入字体大小定义
-                    String modifiedRprContent = rPrContent + fontSizeDefinition;
-                    matcher.appendReplacement(sb, rStart + modifiedRprContent + rPrEnd);
-                    logger.debug("为{}运行元素添加默认字体大小: {} {}", docPrefix, effectiveSize,
-                            (defaultStyleSizeCs != null ? " (szCs: " + defaultStyleSizeCs + ")" : ""));
-                } else {
-                    matcher.appendReplacement(sb, matcher.group(0));
+    /**
+     * 判断运行元素的字体大小是否由所在段落或表格的样式决定
+     * 按运行元素自身的父节点链查找最近的段落，文本框等嵌套在其他段落中的内容以其自身所在的段落为准；
+     * 段落样式没有定义字体大小时，再以最近的表格的表格样式为准
+     *
+     * @param sizedContainers 样式定义了字体大小的段落和表格
+     */
+    private static boolean isSizedByAncestor(R r, Set<Object> sizedContainers) {
+        boolean paragraphFound = false;
+        for (Object parent = r.getParent(); parent != null;
+             parent = parent instanceof Child ? ((Child) parent).getParent() : null) {
+            if (!paragraphFound && parent instanceof P) {
+                if (sizedContainers.contains(parent)) {
+                    return true;
                 }
+                paragraphFound = true;
+            } else if (parent instanceof Tbl) {
+                return sizedContainers.contains(parent);
             }
-
-            matcher.appendTail(sb);
-            String result = sb.toString();
-
-            // 将更新后的内容重新设置到文档中
-            Document document = (Document) XmlUtils.unmarshalString(result);
-            doc.getMainDocumentPart().setJaxbElement(document);
-
-            logger.info("{}默认字体大小应用完成", docPrefix);
-        } catch (Exception e) {
-            logger.error("为{}应用默认字体大小时出错: {}", docPrefix, e.getMessage(), e);
         }
+        return false;
+    }
+
+    private static HpsMeasure createHpsMeasure(BigInteger value) {
+        HpsMeasure measure = new HpsMeasure();
+        measure.setVal(value);
+        return measure;
     }
-}
\ No newline at end of file
+}
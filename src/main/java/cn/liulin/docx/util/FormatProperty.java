@@ -0,0 +1,17 @@
+package cn.liulin.docx.util;
+
+/**
+ * 合并前可保存的文档格式属性
+ * 使用格式信息的处理步骤声明自己需要的属性，{@link TableFormatPreserverUtil#saveDocumentFormat(java.util.List, java.util.Set)}
+ * 只读取声明过的属性
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 21:50
+ */
+public enum FormatProperty {
+    /**
+     * 默认字体大小(sz)和复杂字体大小(szCs)
+     */
+    DEFAULT_FONT_SIZE
+}
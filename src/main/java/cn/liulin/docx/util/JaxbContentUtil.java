@@ -0,0 +1,168 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.XmlUtils;
+import org.w3c.dom.Node;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.annotation.XmlTransient;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JAXB对象内容摘要工具
+ * 直接按字段遍历JAXB对象树计算内容摘要，用于判断样式、编号等定义是否相同，
+ * 无需把对象序列化为XML字符串再比较
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 16:05
+ */
+public class JaxbContentUtil {
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 每个类参与摘要计算的字段，按类缓存以避免重复反射
+     */
+    private static final Map<Class<?>, Field[]> FIELD_CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * 计算对象内容的SHA-256摘要，内容相同的对象摘要相同
+     *
+     * @param root 对象
+     * @return 十六进制摘要
+     */
+    public static String digest(Object root) {
+        return digest(root, Collections.emptySet());
+    }
+
+    /**
+     * 计算对象内容的SHA-256摘要，忽略根对象上指定名称的字段（如样式的styleId和name）
+     *
+     * @param root 对象
+     * @param ignoredRootFields 根对象上不参与计算的字段名称
+     * @return 十六进制摘要
+     */
+    public static String digest(Object root, Collection<String> ignoredRootFields) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        if (root == null) {
+            update(messageDigest, "null");
+        } else {
+            update(messageDigest, root.getClass().getName());
+            updateFields(messageDigest, root, ignoredRootFields);
+        }
+        byte[] hash = messageDigest.digest();
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static void updateValue(MessageDigest messageDigest, Object value) {
+        if (value == null) {
+            update(messageDigest, "null");
+            return;
+        }
+        if (value instanceof JAXBElement) {
+            JAXBElement<?> element = (JAXBElement<?>) value;
+            update(messageDigest, "E" + element.getName());
+            updateValue(messageDigest, element.getValue());
+            return;
+        }
+        if (value instanceof List) {
+            List<?> list = (List<?>) value;
+            update(messageDigest, "L" + list.size());
+            for (Object item : list) {
+                updateValue(messageDigest, item);
+            }
+            return;
+        }
+        if (value instanceof Node) {
+            update(messageDigest, "N" + XmlUtils.w3CDomNodeToString((Node) value));
+            return;
+        }
+        Class<?> valueClass = value.getClass();
+        if (valueClass.isArray()) {
+            int length = Array.getLength(value);
+            update(messageDigest, "A" + length);
+            for (int i = 0; i < length; i++) {
+                updateValue(messageDigest, Array.get(value, i));
+            }
+            return;
+        }
+        if (isLeafType(valueClass)) {
+            update(messageDigest, "V" + value);
+            return;
+        }
+        update(messageDigest, "O" + valueClass.getName());
+        updateFields(messageDigest, value, Collections.emptySet());
+    }
+
+    private static void updateFields(MessageDigest messageDigest, Object object, Collection<String> ignoredFields) {
+        for (Field field : getFields(object.getClass())) {
+            if (ignoredFields.contains(field.getName())) {
+                continue;
+            }
+            update(messageDigest, field.getName());
+            try {
+                updateValue(messageDigest, field.get(object));
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException("无法读取字段 " + field, e);
+            }
+        }
+    }
+
+    private static void update(MessageDigest messageDigest, String token) {
+        messageDigest.update(token.getBytes(StandardCharsets.UTF_8));
+        messageDigest.update((byte) 0);
+    }
+
+    /**
+     * 获取参与摘要计算的字段，包括父类中声明的字段，排除静态字段和parent等@XmlTransient字段
+     */
+    private static Field[] getFields(Class<?> clazz) {
+        Field[] fields = FIELD_CACHE.get(clazz);
+        if (fields != null) {
+            return fields;
+        }
+        List<Field> list = new ArrayList<>();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                int modifiers = field.getModifiers();
+                if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers)
+                        || field.isAnnotationPresent(XmlTransient.class)) {
+                    continue;
+                }
+                field.setAccessible(true);
+                list.add(field);
+            }
+        }
+        fields = list.toArray(new Field[0]);
+        FIELD_CACHE.put(clazz, fields);
+        return fields;
+    }
+
+    /**
+     * 字符串、数字、枚举等直接按值参与计算的类型
+     */
+    private static boolean isLeafType(Class<?> type) {
+        return type.isEnum() || type.getName().startsWith("java.") || type.getName().startsWith("javax.");
+    }
+}
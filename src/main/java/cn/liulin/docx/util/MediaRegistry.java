@@ -0,0 +1,307 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FooterPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.openpackaging.parts.relationships.RelationshipsPart;
+import org.docx4j.relationships.Relationship;
+import org.slf4j.Logger;
+
+import javax.xml.bind.JAXBException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 媒体资源登记表
+ * 以关系类型和内容摘要为键记录已经复制到目标文档中的独立部件（图片、OLE对象、嵌入的文档包等没有下级关系的二进制部件，
+ * 以及页眉页脚）及其关系ID，内容相同的图片（如每份报告中都有的公司标志、签章）和页眉页脚（如相同的信头）
+ * 在目标文档中只保存一份，所有引用都指向同一个关系。页眉页脚中的图片同样按内容复用目标文档中已有的部件。
+ * 外部关系（超链接、链接的图片）以关系类型和目标地址为键登记，相同的链接只创建一个关系。
+ * 一次合并过程使用同一个登记表，跨批次保持有效
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 15:10
+ */
+public class MediaRegistry {
+    private static final Logger logger = LoggerUtil.getLogger(MediaRegistry.class);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 关系类型和内容摘要到目标文档主文档部件中关系ID的映射
+     */
+    private final Map<String, String> relIdByDigest = new HashMap<>();
+
+    /**
+     * 关系类型和内容摘要到目标文档中部件的映射，用于页眉页脚等部件的下级部件复用已有部件
+     */
+    private final Map<String, Part> partByDigest = new HashMap<>();
+
+    /**
+     * 关系类型和外部目标地址到目标文档主文档部件中关系ID的映射
+     */
+    private final Map<String, String> relIdByTarget = new HashMap<>();
+
+    private boolean seeded;
+    private int hits;
+
+    /**
+     * 登记目标文档中已有的独立部件和外部关系，只在第一次调用时生效
+     * 流式合并会在媒体部件写出后释放其数据，因此需要在释放前调用
+     *
+     * @param target 目标文档
+     */
+    public void registerExisting(WordprocessingMLPackage target) {
+        if (seeded) {
+            return;
+        }
+        seeded = true;
+        RelationshipsPart relPart = target.getMainDocumentPart().getRelationshipsPart();
+        if (relPart == null) {
+            return;
+        }
+        for (Relationship rel : relPart.getRelationships().getRelationship()) {
+            if ("External".equals(rel.getTargetMode())) {
+                relIdByTarget.putIfAbsent(key(rel.getType(), rel.getTarget()), rel.getId());
+                continue;
+            }
+            Part part = relPart.getPart(rel);
+            String digest = digest(part);
+            if (digest != null) {
+                relIdByDigest.putIfAbsent(key(rel.getType(), digest), rel.getId());
+                partByDigest.putIfAbsent(key(rel.getType(), digest), part);
+                registerChildren(part);
+            }
+        }
+        logger.debug("目标文档已有 {} 个不同的独立部件，{} 个外部关系", relIdByDigest.size(), relIdByTarget.size());
+    }
+
+    /**
+     * 登记页眉页脚中引用的图片等部件
+     */
+    private void registerChildren(Part part) {
+        RelationshipsPart relPart = part.getRelationshipsPart(false);
+        if (relPart == null) {
+            return;
+        }
+        for (Relationship rel : relPart.getRelationships().getRelationship()) {
+            if ("External".equals(rel.getTargetMode())) {
+                continue;
+            }
+            Part child = relPart.getPart(rel);
+            String digest = digest(child);
+            if (digest != null) {
+                partByDigest.putIfAbsent(key(rel.getType(), digest), child);
+            }
+        }
+    }
+
+    /**
+     * 查找关系类型和内容都相同的独立部件在目标文档中的关系ID
+     *
+     * @param relationshipType 关系类型
+     * @param digest 内容摘要
+     * @return 关系ID，未登记时返回null
+     */
+    public String find(String relationshipType, String digest) {
+        String relId = relIdByDigest.get(key(relationshipType, digest));
+        if (relId != null) {
+            hits++;
+        }
+        return relId;
+    }
+
+    /**
+     * 登记新复制到目标文档中的独立部件
+     *
+     * @param relationshipType 关系类型
+     * @param digest 内容摘要
+     * @param relId 目标文档中的关系ID
+     */
+    public void register(String relationshipType, String digest, String relId) {
+        relIdByDigest.put(key(relationshipType, digest), relId);
+    }
+
+    /**
+     * 查找关系类型和内容都相同的部件，不论其由目标文档中的哪个部件引用
+     *
+     * @param relationshipType 关系类型
+     * @param digest 内容摘要
+     * @return 目标文档中的部件，未登记时返回null
+     */
+    public Part findPart(String relationshipType, String digest) {
+        Part part = partByDigest.get(key(relationshipType, digest));
+        if (part != null) {
+            hits++;
+        }
+        return part;
+    }
+
+    /**
+     * 登记新复制到目标文档中的部件
+     *
+     * @param relationshipType 关系类型
+     * @param digest 内容摘要
+     * @param part 目标文档中的部件
+     */
+    public void registerPart(String relationshipType, String digest, Part part) {
+        partByDigest.put(key(relationshipType, digest), part);
+    }
+
+    /**
+     * 查找关系类型和目标地址都相同的外部关系在目标文档中的关系ID
+     *
+     * @param relationshipType 关系类型
+     * @param target 外部目标地址
+     * @return 关系ID，未登记时返回null
+     */
+    public String findExternal(String relationshipType, String target) {
+        String relId = relIdByTarget.get(key(relationshipType, target));
+        if (relId != null) {
+            hits++;
+        }
+        return relId;
+    }
+
+    /**
+     * 登记新创建在目标文档中的外部关系
+     *
+     * @param relationshipType 关系类型
+     * @param target 外部目标地址
+     * @param relId 目标文档中的关系ID
+     */
+    public void registerExternal(String relationshipType, String target, String relId) {
+        relIdByTarget.put(key(relationshipType, target), relId);
+    }
+
+    /**
+     * 获取登记的不同独立部件和外部关系数量
+     */
+    public int size() {
+        return partByDigest.size() + relIdByTarget.size();
+    }
+
+    /**
+     * 获取因内容或地址重复而复用已有关系的次数
+     */
+    public int getHits() {
+        return hits;
+    }
+
+    /**
+     * 计算可按内容去重的部件的摘要
+     * 没有下级关系的二进制部件按数据计算摘要；页眉页脚按序列化后的XML以及各个关系的类型、ID和目标的摘要计算，
+     * 其中引用了图表等非独立部件时不去重。其余部件（图表、SmartArt、自定义XML数据等）引用了各自的下级部件
+     * 或需要保持独立，返回null
+     *
+     * @param part 部件
+     * @return 十六进制摘要，部件不能按内容去重时返回null
+     */
+    public static String digest(Part part) {
+        if (part instanceof BinaryPart) {
+            return hasRelationships(part) ? null : digest(((BinaryPart) part).getBuffer());
+        }
+        if (part instanceof HeaderPart || part instanceof FooterPart) {
+            try {
+                return digestHeaderFooter((JaxbXmlPart<?>) part);
+            } catch (Docx4JException | JAXBException e) {
+                logger.debug("无法计算页眉页脚的摘要: {}", part.getPartName(), e);
+            }
+        }
+        return null;
+    }
+
+    private static String digestHeaderFooter(JaxbXmlPart<?> part) throws Docx4JException, JAXBException {
+        List<Relationship> relationships = new ArrayList<>();
+        RelationshipsPart relPart = part.getRelationshipsPart(false);
+        if (relPart != null) {
+            relationships.addAll(relPart.getRelationships().getRelationship());
+            relationships.sort(Comparator.comparing(Relationship::getId));
+        }
+        MessageDigest messageDigest = newMessageDigest();
+        for (Relationship rel : relationships) {
+            String target;
+            if ("External".equals(rel.getTargetMode())) {
+                target = rel.getTarget();
+            } else {
+                target = digest(relPart.getPart(rel));
+                if (target == null) {
+                    return null;
+                }
+            }
+            messageDigest.update((rel.getId() + ' ' + rel.getType() + ' ' + rel.getTargetMode() + ' ' + target + '\n')
+                    .getBytes(StandardCharsets.UTF_8));
+        }
+        part.marshal(new DigestOutputStream(NullOutputStream.INSTANCE, messageDigest));
+        return hex(messageDigest.digest());
+    }
+
+    /**
+     * 计算媒体内容的SHA-256摘要，直接读取部件的数据缓冲区，不复制数据
+     *
+     * @param data 媒体内容
+     * @return 十六进制摘要
+     */
+    public static String digest(ByteBuffer data) {
+        MessageDigest messageDigest = newMessageDigest();
+        ByteBuffer buffer = data.duplicate();
+        buffer.rewind();
+        messageDigest.update(buffer);
+        return hex(messageDigest.digest());
+    }
+
+    private static MessageDigest newMessageDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] hash) {
+        char[] chars = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            chars[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+    private static boolean hasRelationships(Part part) {
+        RelationshipsPart relPart = part.getRelationshipsPart(false);
+        return relPart != null && !relPart.getRelationships().getRelationship().isEmpty();
+    }
+
+    private static String key(String relationshipType, String digest) {
+        return relationshipType + '#' + digest;
+    }
+
+    /**
+     * 丢弃所有写入数据的输出流，序列化结果只用于计算摘要
+     */
+    private static class NullOutputStream extends OutputStream {
+        static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
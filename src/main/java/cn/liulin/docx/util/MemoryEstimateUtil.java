@@ -0,0 +1,89 @@
+package cn.liulin.docx.util;
+
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
+import java.util.Enumeration;
+
+/**
+ * 文档内存占用估算工具
+ * 只读取压缩包的中央目录，根据各条目的压缩前后大小估算文档加载后占用的堆内存，不解压任何条目。
+ * XML部件加载后展开为JAXB对象树，占用的内存是原始大小的数倍；图片等二进制部件按原始大小保存在内存中。
+ * 文档已经过{@link DocumentScanUtil}预检查时直接使用预检查统计的大小，不再打开压缩包
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 20:50
+ */
+public class MemoryEstimateUtil {
+
+    /**
+     * XML部件加载为JAXB对象树后相对于原始大小的膨胀倍数
+     */
+    private static final int XML_EXPANSION_FACTOR = 8;
+
+    /**
+     * 每个文档包固定的内存开销：部件对象、关系、内容类型等
+     */
+    static final long PACKAGE_OVERHEAD = 256 * 1024;
+
+    /**
+     * 估算文档加载后占用的堆内存
+     *
+     * @param docPath 文档路径
+     * @param inMemory 是否在内存中预处理，内存模式下预处理结果在加载期间同时占用内存
+     * @return 估算的字节数
+     */
+    public static long estimateHeapCost(String docPath, boolean inMemory) throws Exception {
+        return estimateHeapCost(DocumentSource.of(docPath), inMemory);
+    }
+
+    /**
+     * 估算文档加载后占用的堆内存，非文件来源的文档始终在内存中预处理
+     *
+     * @param source 文档来源
+     * @param inMemory 是否在内存中预处理
+     * @return 估算的字节数
+     */
+    public static long estimateHeapCost(DocumentSource source, boolean inMemory) throws Exception {
+        long cost = PACKAGE_OVERHEAD;
+        long compressed = 0;
+        DocumentScan scan = source.getScan();
+        if (scan != null) {
+            cost = scan.getHeapCost();
+            compressed = scan.getCompressedSize();
+        } else {
+            try (ZipFile zipFile = source.openZip()) {
+                Enumeration<ZipArchiveEntry> entries = zipFile.getEntries();
+                while (entries.hasMoreElements()) {
+                    ZipArchiveEntry entry = entries.nextElement();
+                    if (entry.isDirectory()) {
+                        continue;
+                    }
+                    compressed += Math.max(entry.getCompressedSize(), 0);
+                    cost += entryHeapCost(entry.getName(), Math.max(entry.getSize(), 0));
+                }
+            }
+        }
+        if (inMemory || source.getPath() == null) {
+            cost += compressed;
+        }
+        return cost;
+    }
+
+    /**
+     * 估算单个条目加载后占用的堆内存
+     *
+     * @param name 条目名
+     * @param size 解压后的大小
+     * @return 估算的字节数
+     */
+    static long entryHeapCost(String name, long size) {
+        return isXml(name) ? size * XML_EXPANSION_FACTOR : size;
+    }
+
+    static boolean isXml(String name) {
+        String lower = name.toLowerCase();
+        return lower.endsWith(".xml") || lower.endsWith(".rels");
+    }
+}
@@ -0,0 +1,195 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.CommentsPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.EndnotesPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FootnotesPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.wml.CTEndnotes;
+import org.docx4j.wml.CTFootnotes;
+import org.docx4j.wml.CTFtnEdn;
+import org.docx4j.wml.CTFtnEdnRef;
+import org.docx4j.wml.CommentRangeEnd;
+import org.docx4j.wml.CommentRangeStart;
+import org.docx4j.wml.Comments;
+import org.docx4j.wml.R;
+import org.docx4j.wml.STFtnEdn;
+import org.slf4j.Logger;
+
+import javax.xml.bind.JAXBElement;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * 脚注、尾注和批注合并工具
+ * 这些部件的内容按ID被正文引用，不能像图片等部件一样作为独立部件复制到目标文档。
+ * 源文档的脚注、尾注和批注追加到目标文档对应的部件中并重新分配ID，正文中的引用同时更新。
+ * 批注的扩展信息（commentsExtended、commentsIds、people）不合并，追加的批注不保留答复关系和完成状态
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 17:20
+ */
+public class NoteMergerUtil {
+    private static final Logger logger = LoggerUtil.getLogger(NoteMergerUtil.class);
+
+    /**
+     * 将源文档的脚注、尾注和批注追加到目标文档
+     * 目标文档没有对应部件时创建新部件，脚注和尾注的分隔符等特殊条目只在新建部件时复制。
+     * 部件内容直接与源文档共享而不深拷贝，其中的样式和编号引用需要在调用前更新，
+     * 参见{@link WordProcessingUtils#normalizeHeadersFooters}；内容引用的图片、超链接等关系复制到目标部件并更新引用
+     *
+     * @param targetMain 目标文档的主文档部件
+     * @param sourceMain 源文档的主文档部件，正文中的脚注、尾注和批注引用被更新为目标文档中的ID
+     * @param mediaRegistry 目标文档的登记表，内容相同的独立部件直接复用
+     */
+    public static void mergeNotes(MainDocumentPart targetMain, MainDocumentPart sourceMain,
+                                  MediaRegistry mediaRegistry) throws Exception {
+        Map<BigInteger, BigInteger> footnoteIds = Collections.emptyMap();
+        FootnotesPart sourceFootnotes = sourceMain.getFootnotesPart();
+        if (sourceFootnotes != null && sourceFootnotes.getJaxbElement() != null) {
+            FootnotesPart targetFootnotes = targetMain.getFootnotesPart();
+            boolean created = targetFootnotes == null;
+            if (created) {
+                targetFootnotes = new FootnotesPart();
+                targetFootnotes.setJaxbElement(new CTFootnotes());
+                targetMain.addTargetPart(targetFootnotes);
+            }
+            footnoteIds = appendNotes(sourceFootnotes, sourceFootnotes.getJaxbElement().getFootnote(),
+                    targetFootnotes, targetFootnotes.getJaxbElement().getFootnote(), created,
+                    CTFtnEdn::getId, CTFtnEdn::setId, NoteMergerUtil::isSeparator, mediaRegistry);
+        }
+
+        Map<BigInteger, BigInteger> endnoteIds = Collections.emptyMap();
+        EndnotesPart sourceEndnotes = sourceMain.getEndNotesPart();
+        if (sourceEndnotes != null && sourceEndnotes.getJaxbElement() != null) {
+            EndnotesPart targetEndnotes = targetMain.getEndNotesPart();
+            boolean created = targetEndnotes == null;
+            if (created) {
+                targetEndnotes = new EndnotesPart();
+                targetEndnotes.setJaxbElement(new CTEndnotes());
+                targetMain.addTargetPart(targetEndnotes);
+            }
+            endnoteIds = appendNotes(sourceEndnotes, sourceEndnotes.getJaxbElement().getEndnote(),
+                    targetEndnotes, targetEndnotes.getJaxbElement().getEndnote(), created,
+                    CTFtnEdn::getId, CTFtnEdn::setId, NoteMergerUtil::isSeparator, mediaRegistry);
+        }
+
+        Map<BigInteger, BigInteger> commentIds = Collections.emptyMap();
+        CommentsPart sourceComments = sourceMain.getCommentsPart();
+        if (sourceComments != null && sourceComments.getJaxbElement() != null) {
+            CommentsPart targetComments = targetMain.getCommentsPart();
+            if (targetComments == null) {
+                targetComments = new CommentsPart();
+                targetComments.setJaxbElement(new Comments());
+                targetMain.addTargetPart(targetComments);
+            }
+            commentIds = appendNotes(sourceComments, sourceComments.getJaxbElement().getComment(),
+                    targetComments, targetComments.getJaxbElement().getComment(), false,
+                    Comments.Comment::getId, Comments.Comment::setId, comment -> false, mediaRegistry);
+        }
+
+        List<TraversalStep<?>> steps = createReferenceSteps(footnoteIds, endnoteIds, commentIds);
+        if (!steps.isEmpty()) {
+            DocumentTraversalUtil.traverse(sourceMain.getJaxbElement(), steps);
+            logger.debug("合并脚注 {} 个、尾注 {} 个、批注 {} 个", footnoteIds.size(), endnoteIds.size(), commentIds.size());
+        }
+    }
+
+    /**
+     * 将源部件中的条目追加到目标部件，普通条目使用目标部件中最大ID之后的新ID
+     *
+     * @param copySpecial 是否复制特殊条目，目标部件是新建的时为true
+     * @return 旧ID到新ID的映射
+     */
+    private static <T> Map<BigInteger, BigInteger> appendNotes(JaxbXmlPart<?> sourcePart, List<T> sourceNotes,
+                                                               JaxbXmlPart<?> targetPart, List<T> targetNotes,
+                                                               boolean copySpecial, Function<T, BigInteger> getId,
+                                                               BiConsumer<T, BigInteger> setId, Predicate<T> special,
+                                                               MediaRegistry mediaRegistry) throws Exception {
+        List<T> appended = new ArrayList<>();
+        if (copySpecial) {
+            for (T note : sourceNotes) {
+                if (special.test(note)) {
+                    targetNotes.add(note);
+                    appended.add(note);
+                }
+            }
+        }
+        // 特殊条目加入后再确定新ID的起点，旧版本Word中分隔符的ID为0和1
+        BigInteger next = BigInteger.ONE;
+        for (T note : targetNotes) {
+            BigInteger id = getId.apply(note);
+            if (id != null && id.compareTo(next) >= 0) {
+                next = id.add(BigInteger.ONE);
+            }
+        }
+        Map<BigInteger, BigInteger> idMap = new HashMap<>();
+        for (T note : sourceNotes) {
+            if (special.test(note)) {
+                continue;
+            }
+            BigInteger id = getId.apply(note);
+            if (id != null) {
+                idMap.put(id, next);
+            }
+            setId.accept(note, next);
+            next = next.add(BigInteger.ONE);
+            targetNotes.add(note);
+            appended.add(note);
+        }
+
+        Map<String, String> relMap = ResourceCopierUtil.copyPartRelationships(sourcePart, targetPart, mediaRegistry);
+        List<TraversalStep<?>> steps = ResourceCopierUtil.createRelationshipReferenceSteps(relMap);
+        if (!steps.isEmpty()) {
+            DocumentTraversalUtil.traverse(appended, steps);
+        }
+        return idMap;
+    }
+
+    private static boolean isSeparator(CTFtnEdn note) {
+        return note.getType() != null && note.getType() != STFtnEdn.NORMAL;
+    }
+
+    /**
+     * 创建更新正文中脚注、尾注和批注引用的遍历步骤
+     * 脚注引用和尾注引用是同一个类型，按其所在JAXBElement的元素名区分
+     */
+    private static List<TraversalStep<?>> createReferenceSteps(Map<BigInteger, BigInteger> footnoteIds,
+                                                               Map<BigInteger, BigInteger> endnoteIds,
+                                                               Map<BigInteger, BigInteger> commentIds) {
+        List<TraversalStep<?>> steps = new ArrayList<>();
+        if (!footnoteIds.isEmpty() || !endnoteIds.isEmpty()) {
+            steps.add(TraversalStep.of(R.class, r -> {
+                for (Object content : r.getContent()) {
+                    if (content instanceof JAXBElement && ((JAXBElement<?>) content).getValue() instanceof CTFtnEdnRef) {
+                        JAXBElement<?> element = (JAXBElement<?>) content;
+                        CTFtnEdnRef ref = (CTFtnEdnRef) element.getValue();
+                        Map<BigInteger, BigInteger> idMap = "endnoteReference".equals(element.getName().getLocalPart())
+                                ? endnoteIds : footnoteIds;
+                        ref.setId(remap(idMap, ref.getId()));
+                    }
+                }
+            }));
+        }
+        if (!commentIds.isEmpty()) {
+            steps.add(TraversalStep.of(CommentRangeStart.class, start -> start.setId(remap(commentIds, start.getId()))));
+            steps.add(TraversalStep.of(CommentRangeEnd.class, end -> end.setId(remap(commentIds, end.getId()))));
+            steps.add(TraversalStep.of(R.CommentReference.class,
+                    reference -> reference.setId(remap(commentIds, reference.getId()))));
+        }
+        return steps;
+    }
+
+    private static BigInteger remap(Map<BigInteger, BigInteger> idMap, BigInteger id) {
+        BigInteger newId = id == null ? null : idMap.get(id);
+        return newId != null ? newId : id;
+    }
+}
@@ -1,99 +1,177 @@
 package cn.liulin.docx.util;
 
 import org.docx4j.openpackaging.parts.WordprocessingML.NumberingDefinitionsPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.StyleDefinitionsPart;
+import org.docx4j.wml.Lvl;
 import org.docx4j.wml.Numbering;
-import org.docx4j.wml.P;
-import org.docx4j.wml.PPr;
+import org.docx4j.wml.PPrBase;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.List;
+import java.util.Set;
 
 public class NumberingMapperUtil {
     private static final Logger logger = LoggerFactory.getLogger(NumberingMapperUtil.class);
 
     /**
      * 将 doc2 的编号定义合并到 doc1，并重映射 numId 避免冲突
+     *
+     * @param docPath 文档列表，第一个文档作为目标文档
+     * @return 与文档列表下标一一对应的旧numId到新numId的映射，第一个文档对应空映射
      */
-    public static void mapNumbering(List<WordprocessingMLPackage> docPath) {
-        try {
-            NumberingDefinitionsPart ndp1 = docPath.get(0).getMainDocumentPart().getNumberingDefinitionsPart();
-
-            // 如果其中一个文档没有编号定义部分，则创建一个新的
-            if (ndp1 == null) {
-                logger.debug("为文档1创建编号定义部分");
-                ndp1 = new NumberingDefinitionsPart();
-                ndp1.setJaxbElement(new Numbering());
-                docPath.get(0).getMainDocumentPart().addTargetPart(ndp1);
-            }
-
-            Numbering numbering1 = ndp1.getJaxbElement();
-            // 1. 找出 doc1 中最大的 numId
-            BigInteger maxNumId = BigInteger.ZERO;
-            List<Numbering.Num> nums1 = numbering1.getNum();
-            for (Numbering.Num num : nums1) {
-                BigInteger id = num.getNumId();
-                if (id != null && id.compareTo(maxNumId) > 0) {
-                    maxNumId = id;
-                }
-            }
-
-            // 2. 映射表：旧 numId -> 新 numId
-            Map<BigInteger, BigInteger> numIdMap = new HashMap<>();
+    public static List<Map<BigInteger, BigInteger>> mapNumbering(List<WordprocessingMLPackage> docPath) {
+        return mapNumbering(docPath, new NumberingRegistry());
+    }
 
+    /**
+     * 将后续文档的编号定义合并到第一个文档
+     * 每个文档使用独立的映射表，新的numId和abstractNumId单调递增分配；
+     * 抽象编号按内容去重，复用已被其他文档使用的抽象编号时为该文档的第一个编号实例添加起始值覆盖，使各文档的列表重新开始编号。
+     * 文档正文中的numPr引用不在此处修改，由{@link #createNumberingReferenceStep(Map)}在文档遍历时统一更新，
+     * 样式中的numPr引用在此处直接更新
+     *
+     * @param docPath 文档列表，第一个文档作为目标文档
+     * @param numberingRegistry 目标文档的编号登记表，多个批次合并到同一目标文档时应使用同一个登记表
+     * @return 与文档列表下标一一对应的旧numId到新numId的映射，第一个文档对应空映射
+     */
+    public static List<Map<BigInteger, BigInteger>> mapNumbering(List<WordprocessingMLPackage> docPath,
+                                                                 NumberingRegistry numberingRegistry) {
+        List<Map<BigInteger, BigInteger>> numIdMaps = new ArrayList<>(docPath.size());
+        for (int i = 0; i < docPath.size(); i++) {
+            numIdMaps.add(new HashMap<>());
+        }
+        try {
             for (int i = 1; i < docPath.size(); i++) {
                 NumberingDefinitionsPart tempNdp = docPath.get(i).getMainDocumentPart().getNumberingDefinitionsPart();
-                if (tempNdp == null) {
-                    logger.warn("合并文档缺少编号定义部分，跳过编号映射");
+                if (tempNdp == null || tempNdp.getJaxbElement() == null) {
+                    logger.debug("文档 {} 没有编号定义部分，跳过编号映射", i);
                     continue;
                 }
-                Numbering tempNumbering = tempNdp.getJaxbElement();
-                // 3. 遍历 doc2 的编号，重映射 numId 并合并到 doc1
-                List<Numbering.Num> tempNums = tempNumbering.getNum();
-                for (Numbering.Num num : tempNums) {
-                    BigInteger oldId = num.getNumId();
-                    if (oldId == null) {
-                        continue;
-                    }
+                if (!numberingRegistry.isRegistered()) {
+                    numberingRegistry.registerExisting(getOrCreateNumbering(docPath.get(0)));
+                }
+                Map<BigInteger, BigInteger> numIdMap = numIdMaps.get(i);
+                mapDocumentNumbering(tempNdp.getJaxbElement(), numberingRegistry, numIdMap);
 
-                    // 新 ID = max + 1 + oldId（确保唯一）
-                    BigInteger newId = maxNumId.add(BigInteger.ONE).add(oldId);
+                // 样式中也可能通过numPr引用编号（如多级标题样式）
+                StyleDefinitionsPart stylePart = docPath.get(i).getMainDocumentPart().getStyleDefinitionsPart();
+                TraversalStep<?> step = createNumberingReferenceStep(numIdMap);
+                if (stylePart != null && step != null) {
+                    DocumentTraversalUtil.traverse(stylePart.getJaxbElement(), Collections.singletonList(step));
+                }
+                logger.debug("文档 {} 编号映射完成，共处理 {} 个编号", i, numIdMap.size());
+            }
+            logger.debug("编号映射完成，复用相同抽象编号 {} 次", numberingRegistry.getReused());
+        } catch (Exception e) {
+            logger.error("编号映射失败：", e);
+        }
+        return numIdMaps;
+    }
 
-                    // 修改 numId
-                    num.setNumId(newId);
+    /**
+     * 获取目标文档的编号定义，如果没有编号定义部分，则创建一个新的
+     */
+    private static Numbering getOrCreateNumbering(WordprocessingMLPackage doc) throws Exception {
+        NumberingDefinitionsPart ndp1 = doc.getMainDocumentPart().getNumberingDefinitionsPart();
+        if (ndp1 == null) {
+            logger.debug("为文档1创建编号定义部分");
+            ndp1 = new NumberingDefinitionsPart();
+            ndp1.setJaxbElement(new Numbering());
+            doc.getMainDocumentPart().addTargetPart(ndp1);
+        }
+        return ndp1.getJaxbElement();
+    }
 
-                    // 记录映射
-                    numIdMap.put(oldId, newId);
+    /**
+     * 将单个文档的抽象编号和编号实例加入目标文档
+     */
+    private static void mapDocumentNumbering(Numbering tempNumbering, NumberingRegistry numberingRegistry,
+                                             Map<BigInteger, BigInteger> numIdMap) {
+        // 1. 抽象编号：内容相同的复用目标文档中已有的定义，否则分配新ID后加入
+        Map<BigInteger, BigInteger> abstractNumIdMap = new HashMap<>();
+        for (Numbering.AbstractNum abstractNum : tempNumbering.getAbstractNum()) {
+            BigInteger oldId = abstractNum.getAbstractNumId();
+            if (oldId == null) {
+                continue;
+            }
+            String digest = numberingRegistry.digest(abstractNum);
+            BigInteger newId = numberingRegistry.findAbstractNum(digest);
+            if (newId == null) {
+                newId = numberingRegistry.addAbstractNum(abstractNum, digest);
+            }
+            abstractNumIdMap.put(oldId, newId);
+        }
 
-                    // 添加到 doc1 的编号定义中
-                    numbering1.getNum().add(num);
-                }
+        // 2. 编号实例：分配新的numId并指向新的抽象编号
+        Set<BigInteger> startedAbstractNums = new HashSet<>();
+        for (Numbering.Num num : tempNumbering.getNum()) {
+            BigInteger oldId = num.getNumId();
+            if (oldId == null || num.getAbstractNumId() == null) {
+                continue;
+            }
+            BigInteger oldAbstractId = num.getAbstractNumId().getVal();
+            BigInteger newAbstractId = abstractNumIdMap.get(oldAbstractId);
+            if (newAbstractId == null) {
+                logger.warn("编号 {} 引用的抽象编号 {} 不存在，跳过", oldId, oldAbstractId);
+                continue;
+            }
+            num.getAbstractNumId().setVal(newAbstractId);
 
-                // 4. 更新 合并 doc 内容中的编号引用（段落）
-                List<Object> content = docPath.get(i).getMainDocumentPart().getContent();
-                for (Object obj : content) {
-                    if (obj instanceof P) {
-                        P p = (P) obj;
-                        PPr ppr = p.getPPr();
-                        if (ppr != null && ppr.getNumPr() != null && ppr.getNumPr().getNumId() != null) {
-                            BigInteger ref = ppr.getNumPr().getNumId().getVal();
-                            if (ref != null && numIdMap.containsKey(ref)) {
-                                ppr.getNumPr().getNumId().setVal(numIdMap.get(ref));
-                                logger.debug("更新段落编号引用: {} -> {}", ref, numIdMap.get(ref));
-                            }
-                        }
-                    }
-                }
+            // 该文档中第一次使用的抽象编号已被其他编号实例引用时，重新开始编号，避免延续其他文档的列表
+            if (startedAbstractNums.add(oldAbstractId) && numberingRegistry.isReferenced(newAbstractId)
+                    && num.getLvlOverride().isEmpty()) {
+                addRestartOverrides(num, numberingRegistry.getAbstractNum(newAbstractId));
             }
+            numberingRegistry.markReferenced(newAbstractId);
 
-            logger.debug("编号映射完成，共处理 {} 个编号", numIdMap.size());
+            BigInteger newId = numberingRegistry.addNum(num);
+            numIdMap.put(oldId, newId);
+        }
+    }
 
-        } catch (Exception e) {
-            logger.error("编号映射失败：", e);
+    /**
+     * 为编号实例的每个级别添加起始值覆盖
+     */
+    private static void addRestartOverrides(Numbering.Num num, Numbering.AbstractNum abstractNum) {
+        if (abstractNum == null) {
+            return;
         }
+        for (Lvl lvl : abstractNum.getLvl()) {
+            if (lvl.getIlvl() == null || lvl.getStart() == null || lvl.getStart().getVal() == null) {
+                continue;
+            }
+            Numbering.Num.LvlOverride.StartOverride startOverride = new Numbering.Num.LvlOverride.StartOverride();
+            startOverride.setVal(lvl.getStart().getVal());
+            Numbering.Num.LvlOverride lvlOverride = new Numbering.Num.LvlOverride();
+            lvlOverride.setIlvl(lvl.getIlvl());
+            lvlOverride.setStartOverride(startOverride);
+            num.getLvlOverride().add(lvlOverride);
+        }
+    }
+
+    /**
+     * 创建更新编号引用的遍历步骤，文档中任意位置（包括表格、文本框中的段落）的numPr都会被更新
+     *
+     * @param numIdMap 旧numId到新numId的映射
+     * @return 遍历步骤，映射为空时返回null
+     */
+    public static TraversalStep<PPrBase.NumPr.NumId> createNumberingReferenceStep(Map<BigInteger, BigInteger> numIdMap) {
+        if (numIdMap == null || numIdMap.isEmpty()) {
+            return null;
+        }
+        return TraversalStep.of(PPrBase.NumPr.NumId.class, numId -> {
+            BigInteger newId = numIdMap.get(numId.getVal());
+            if (newId != null) {
+                numId.setVal(newId);
+            }
+        });
     }
-}
\ No newline at end of file
+}
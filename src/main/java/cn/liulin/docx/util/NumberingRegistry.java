@@ -0,0 +1,189 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.wml.Numbering;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 编号登记表
+ * 记录目标文档编号定义中已使用的最大numId和abstractNumId，新的编号ID单调递增分配，保证不同文档之间不会冲突；
+ * 并按内容摘要索引目标文档中的抽象编号定义，内容相同的抽象编号只保留一份。
+ * 一次合并过程使用同一个登记表，跨批次保持有效
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 17:05
+ */
+public class NumberingRegistry {
+
+    /**
+     * 计算抽象编号摘要时忽略的字段：编号ID以及Word为每个列表随机生成的nsid、tmpl标识
+     */
+    private static final List<String> IGNORED_FIELDS = Arrays.asList("abstractNumId", "nsid", "tmpl");
+
+    private Numbering targetNumbering;
+    private BigInteger maxNumId = BigInteger.ZERO;
+    private BigInteger maxAbstractNumId = BigInteger.valueOf(-1);
+
+    /**
+     * 抽象编号内容摘要到目标文档中abstractNumId的映射
+     */
+    private final Map<String, BigInteger> abstractNumIdByDigest = new HashMap<>();
+
+    /**
+     * 目标文档中的抽象编号，按abstractNumId索引
+     */
+    private final Map<BigInteger, Numbering.AbstractNum> abstractNumsById = new HashMap<>();
+
+    /**
+     * 目标文档中编号实例引用的抽象编号ID，按numId索引
+     */
+    private final Map<BigInteger, BigInteger> abstractNumIdByNumId = new HashMap<>();
+
+    /**
+     * 已被目标文档中的编号实例引用的abstractNumId
+     */
+    private final Set<BigInteger> referencedAbstractNumIds = new HashSet<>();
+
+    private int reused;
+
+    /**
+     * 登记目标文档中已有的编号定义，只在第一次调用时生效
+     *
+     * @param numbering 目标文档的编号定义
+     */
+    public void registerExisting(Numbering numbering) {
+        if (targetNumbering != null) {
+            return;
+        }
+        targetNumbering = numbering;
+        for (Numbering.AbstractNum abstractNum : numbering.getAbstractNum()) {
+            BigInteger id = abstractNum.getAbstractNumId();
+            if (id != null) {
+                maxAbstractNumId = maxAbstractNumId.max(id);
+                abstractNumIdByDigest.putIfAbsent(digest(abstractNum), id);
+                abstractNumsById.putIfAbsent(id, abstractNum);
+            }
+        }
+        for (Numbering.Num num : numbering.getNum()) {
+            if (num.getNumId() != null) {
+                maxNumId = maxNumId.max(num.getNumId());
+            }
+            if (num.getAbstractNumId() != null && num.getAbstractNumId().getVal() != null) {
+                referencedAbstractNumIds.add(num.getAbstractNumId().getVal());
+                if (num.getNumId() != null) {
+                    abstractNumIdByNumId.putIfAbsent(num.getNumId(), num.getAbstractNumId().getVal());
+                }
+            }
+        }
+    }
+
+    /**
+     * 是否已经登记了目标文档的编号定义
+     */
+    public boolean isRegistered() {
+        return targetNumbering != null;
+    }
+
+    /**
+     * 计算抽象编号的内容摘要，在修改abstractNumId之前或之后计算结果相同
+     */
+    public String digest(Numbering.AbstractNum abstractNum) {
+        return JaxbContentUtil.digest(abstractNum, IGNORED_FIELDS);
+    }
+
+    /**
+     * 查找内容相同的抽象编号在目标文档中的ID
+     *
+     * @param digest 抽象编号内容摘要
+     * @return abstractNumId，未登记时返回null
+     */
+    public BigInteger findAbstractNum(String digest) {
+        BigInteger id = abstractNumIdByDigest.get(digest);
+        if (id != null) {
+            reused++;
+        }
+        return id;
+    }
+
+    /**
+     * 为来源抽象编号分配新ID并加入目标文档
+     *
+     * @param abstractNum 来源抽象编号
+     * @param digest 抽象编号内容摘要
+     * @return 新的abstractNumId
+     */
+    public BigInteger addAbstractNum(Numbering.AbstractNum abstractNum, String digest) {
+        maxAbstractNumId = maxAbstractNumId.add(BigInteger.ONE);
+        abstractNum.setAbstractNumId(maxAbstractNumId);
+        // 抽象编号必须位于所有num之前，按顺序追加到已有抽象编号之后
+        targetNumbering.getAbstractNum().add(abstractNum);
+        abstractNumIdByDigest.put(digest, maxAbstractNumId);
+        abstractNumsById.put(maxAbstractNumId, abstractNum);
+        return maxAbstractNumId;
+    }
+
+    /**
+     * 为来源编号实例分配新ID并加入目标文档
+     *
+     * @param num 来源编号实例，其abstractNumId应已更新为目标文档中的ID
+     * @return 新的numId
+     */
+    public BigInteger addNum(Numbering.Num num) {
+        maxNumId = maxNumId.add(BigInteger.ONE);
+        num.setNumId(maxNumId);
+        targetNumbering.getNum().add(num);
+        if (num.getAbstractNumId() != null && num.getAbstractNumId().getVal() != null) {
+            abstractNumIdByNumId.put(maxNumId, num.getAbstractNumId().getVal());
+        }
+        return maxNumId;
+    }
+
+    /**
+     * 获取目标文档中编号实例所引用的抽象编号的内容摘要
+     * 每个来源文档的编号实例都会分配新的numId，比较样式中的numPr时按抽象编号的内容比较，
+     * 结构相同的列表绑定（如多级标题）在不同文档之间仍视为相同
+     *
+     * @param numId 目标文档中的numId
+     * @return 抽象编号内容摘要，numId未登记时返回null
+     */
+    public String abstractNumDigest(BigInteger numId) {
+        BigInteger abstractNumId = abstractNumIdByNumId.get(numId);
+        Numbering.AbstractNum abstractNum = abstractNumId == null ? null : abstractNumsById.get(abstractNumId);
+        return abstractNum == null ? null : digest(abstractNum);
+    }
+
+    /**
+     * 获取目标文档中指定ID的抽象编号
+     */
+    public Numbering.AbstractNum getAbstractNum(BigInteger abstractNumId) {
+        return abstractNumsById.get(abstractNumId);
+    }
+
+    /**
+     * 判断抽象编号是否已被目标文档中的编号实例引用，引用同一抽象编号的编号实例在Word中会延续编号
+     */
+    public boolean isReferenced(BigInteger abstractNumId) {
+        return referencedAbstractNumIds.contains(abstractNumId);
+    }
+
+    /**
+     * 记录抽象编号已被编号实例引用
+     */
+    public void markReferenced(BigInteger abstractNumId) {
+        referencedAbstractNumIds.add(abstractNumId);
+    }
+
+    /**
+     * 获取因内容相同而复用已有抽象编号的次数
+     */
+    public int getReused() {
+        return reused;
+    }
+}
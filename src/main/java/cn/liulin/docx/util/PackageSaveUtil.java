@@ -0,0 +1,147 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.openpackaging.io3.Save;
+import org.docx4j.openpackaging.io3.stores.PartStore;
+import org.docx4j.openpackaging.packages.OpcPackage;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * 文档包保存工具
+ * 使用{@link ParallelZipPartStore}多线程压缩保存文档包，替代docx4j默认的单线程保存
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 18:25
+ */
+public class PackageSaveUtil {
+
+    /**
+     * 本身已经压缩过、再次压缩几乎不能减小体积的图片类型
+     */
+    private static final Set<String> COMPRESSED_MEDIA_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            "image/png", "image/jpeg", "image/jpg", "image/gif")));
+
+    /**
+     * 并行压缩保存文档包到文件
+     *
+     * @param pkg 文档包
+     * @param file 输出文件
+     * @param parallelism 压缩线程数
+     * @param compressionLevel 压缩级别，取值为-1（默认级别）到9
+     * @param storeCompressedMedia 已压缩的图片是否以STORED方式保存
+     */
+    public static void save(OpcPackage pkg, File file, int parallelism, int compressionLevel,
+                            boolean storeCompressedMedia) throws Exception {
+        save(pkg, file, parallelism, compressionLevel, storeCompressedMedia, false);
+    }
+
+    /**
+     * 并行压缩保存文档包到文件
+     * 先写入同一目录下的临时文件，保存完成后再移动到输出路径，保存失败时输出路径上不会留下不完整的文档
+     *
+     * @param pkg 文档包
+     * @param file 输出文件
+     * @param parallelism 压缩线程数
+     * @param compressionLevel 压缩级别，取值为-1（默认级别）到9
+     * @param storeCompressedMedia 已压缩的图片是否以STORED方式保存
+     * @param inMemory 压缩暂存区是否保存在内存中
+     */
+    public static void save(OpcPackage pkg, File file, int parallelism, int compressionLevel,
+                            boolean storeCompressedMedia, boolean inMemory) throws Exception {
+        Path partial = createPartialFile(file.toPath());
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(partial.toFile()), 64 * 1024)) {
+                save(pkg, out, parallelism, compressionLevel, storeCompressedMedia, inMemory);
+            }
+            moveIntoPlace(partial, file.toPath());
+        } finally {
+            Files.deleteIfExists(partial);
+        }
+    }
+
+    /**
+     * 在输出文件所在目录中创建写入中的临时文件，与输出文件位于同一文件系统，完成后可以原子地移动到输出路径
+     *
+     * @param output 输出文件
+     * @return 临时文件
+     */
+    public static Path createPartialFile(Path output) throws IOException {
+        Path absolute = output.toAbsolutePath();
+        return Files.createTempFile(absolute.getParent(), "." + absolute.getFileName(), ".partial");
+    }
+
+    /**
+     * 将写完的临时文件移动到输出路径，替换已有的文件，文件系统不支持原子移动时退化为普通移动
+     *
+     * @param partial 写完的临时文件
+     * @param output 输出文件
+     */
+    public static void moveIntoPlace(Path partial, Path output) throws IOException {
+        try {
+            Files.move(partial, output, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(partial, output, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * 并行压缩保存文档包到输出流，输出流在保存完成或失败后都会被关闭
+     *
+     * @param pkg 文档包
+     * @param out 输出流
+     * @param parallelism 压缩线程数
+     * @param compressionLevel 压缩级别，取值为-1（默认级别）到9
+     * @param storeCompressedMedia 已压缩的图片是否以STORED方式保存
+     */
+    public static void save(OpcPackage pkg, OutputStream out, int parallelism, int compressionLevel,
+                            boolean storeCompressedMedia) throws Exception {
+        save(pkg, out, parallelism, compressionLevel, storeCompressedMedia, false);
+    }
+
+    /**
+     * 并行压缩保存文档包到输出流，输出流在保存完成或失败后都会被关闭
+     *
+     * @param pkg 文档包
+     * @param out 输出流
+     * @param parallelism 压缩线程数
+     * @param compressionLevel 压缩级别，取值为-1（默认级别）到9
+     * @param storeCompressedMedia 已压缩的图片是否以STORED方式保存
+     * @param inMemory 压缩暂存区是否保存在内存中，为true时保存过程不产生临时文件
+     */
+    public static void save(OpcPackage pkg, OutputStream out, int parallelism, int compressionLevel,
+                            boolean storeCompressedMedia, boolean inMemory) throws Exception {
+        PartStore previousTarget = pkg.getTargetPartStore();
+        ParallelZipPartStore partStore = new ParallelZipPartStore(parallelism, compressionLevel, storeCompressedMedia, inMemory);
+        try {
+            // Save会把部件存储设置为文档包的目标存储，保存完成后恢复，避免影响文档包后续的保存
+            new Save(pkg, partStore).save(out);
+        } finally {
+            // 保存中途失败时关闭压缩线程池和输出流
+            partStore.dispose();
+            pkg.setTargetPartStore(previousTarget);
+        }
+    }
+
+    /**
+     * 判断内容类型是否为本身已经压缩过的图片
+     *
+     * @param contentType 部件的内容类型
+     * @return 是否为PNG、JPEG、GIF图片
+     */
+    public static boolean isCompressedMedia(String contentType) {
+        return contentType != null && COMPRESSED_MEDIA_TYPES.contains(contentType.toLowerCase());
+    }
+}
@@ -0,0 +1,313 @@
+package cn.liulin.docx.util;
+
+import org.apache.commons.compress.archivers.zip.DefaultBackingStoreSupplier;
+import org.apache.commons.compress.archivers.zip.ParallelScatterZipCreator;
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.parallel.InputStreamSupplier;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStore;
+import org.apache.commons.compress.parallel.ScatterGatherBackingStoreSupplier;
+import org.apache.commons.io.IOUtils;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.contenttype.ContentTypeManager;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
+import org.docx4j.openpackaging.parts.CustomXmlDataStoragePart;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.XmlPart;
+import org.docx4j.openpackaging.io3.stores.PartStore;
+import org.slf4j.Logger;
+
+import javax.xml.transform.dom.DOMSource;
+import javax.xml.transform.stream.StreamResult;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 并行压缩的docx4j部件存储
+ * 保存文档时docx4j按顺序把每个部件交给部件存储，这里不直接写入压缩包，而是把部件的序列化和压缩
+ * 作为任务提交给{@link ParallelScatterZipCreator}，由多个线程分别写入各自的暂存区，最后依次拼接到输出压缩包中。
+ * 已压缩的图片（PNG、JPEG、GIF）可以不再压缩，直接以STORED方式保存。
+ * 各线程的暂存区默认为临时文件，内存模式下保存在内存中
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 18:10
+ */
+public class ParallelZipPartStore implements PartStore {
+    private static final Logger logger = LoggerUtil.getLogger(ParallelZipPartStore.class);
+
+    /**
+     * 保存失败后等待压缩线程结束的最长时间
+     */
+    private static final long DISPOSE_TIMEOUT_SECONDS = 30;
+
+    private final int parallelism;
+    private final int compressionLevel;
+    private final boolean storeCompressedMedia;
+    private final boolean inMemory;
+
+    private PartStore sourcePartStore;
+    private OutputStream outputStream;
+    private ZipArchiveOutputStream zipOutputStream;
+    private ExecutorService executor;
+    private ParallelScatterZipCreator creator;
+
+    /**
+     * 压缩线程创建的暂存区，保存失败时由{@link #dispose()}删除
+     */
+    private final List<ScatterGatherBackingStore> backingStores = Collections.synchronizedList(new ArrayList<>());
+    private boolean finished;
+
+    /**
+     * 创建并行压缩的部件存储
+     *
+     * @param parallelism 压缩线程数
+     * @param compressionLevel 压缩级别，取值为-1（默认级别）到9
+     * @param storeCompressedMedia 已压缩的图片是否以STORED方式保存
+     */
+    public ParallelZipPartStore(int parallelism, int compressionLevel, boolean storeCompressedMedia) {
+        this(parallelism, compressionLevel, storeCompressedMedia, false);
+    }
+
+    /**
+     * 创建并行压缩的部件存储
+     *
+     * @param parallelism 压缩线程数
+     * @param compressionLevel 压缩级别，取值为-1（默认级别）到9
+     * @param storeCompressedMedia 已压缩的图片是否以STORED方式保存
+     * @param inMemory 压缩线程的暂存区是否保存在内存中，为true时保存过程不产生临时文件
+     */
+    public ParallelZipPartStore(int parallelism, int compressionLevel, boolean storeCompressedMedia, boolean inMemory) {
+        this.parallelism = parallelism;
+        this.compressionLevel = compressionLevel;
+        this.storeCompressedMedia = storeCompressedMedia;
+        this.inMemory = inMemory;
+    }
+
+    @Override
+    public void setSourcePartStore(PartStore partStore) {
+        this.sourcePartStore = partStore;
+    }
+
+    @Override
+    public void setOutputStream(OutputStream outputStream) {
+        this.outputStream = outputStream;
+        zipOutputStream = new ZipArchiveOutputStream(outputStream);
+        // writeTo完成后会关闭线程池，保存中途失败时由dispose关闭
+        executor = Executors.newFixedThreadPool(parallelism, new NamedThreadFactory("docx-merge-save"));
+        ScatterGatherBackingStoreSupplier delegate = inMemory
+                ? MemoryBackingStore::new : new DefaultBackingStoreSupplier(null);
+        ScatterGatherBackingStoreSupplier backingStoreSupplier = () -> {
+            ScatterGatherBackingStore backingStore = delegate.get();
+            backingStores.add(backingStore);
+            return backingStore;
+        };
+        creator = new ParallelScatterZipCreator(executor, backingStoreSupplier, compressionLevel);
+    }
+
+    @Override
+    public void saveContentTypes(ContentTypeManager contentTypeManager) throws Docx4JException {
+        // [Content_Types].xml直接写在压缩包的最前面
+        try {
+            ZipArchiveEntry entry = new ZipArchiveEntry("[Content_Types].xml");
+            zipOutputStream.putArchiveEntry(entry);
+            contentTypeManager.marshal(zipOutputStream);
+            zipOutputStream.closeArchiveEntry();
+        } catch (Exception e) {
+            throw new Docx4JException("Error marshalling Content_Types", e);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public void saveJaxbXmlPart(JaxbXmlPart part) {
+        if (!part.isUnmarshalled() && sourcePartStore != null) {
+            // 未解析过的部件内容没有变化，直接复制原始内容
+            addEntry(part.getPartName(), ZipArchiveEntry.DEFLATED, () -> loadFromSource(part.getPartName()));
+            return;
+        }
+        addEntry(part.getPartName(), ZipArchiveEntry.DEFLATED, () -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            part.marshal(out);
+            return new ByteArrayInputStream(out.toByteArray());
+        });
+    }
+
+    @Override
+    public void saveCustomXmlDataStoragePart(CustomXmlDataStoragePart part) {
+        addEntry(part.getPartName(), ZipArchiveEntry.DEFLATED, () -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            part.getData().writeDocument(out);
+            return new ByteArrayInputStream(out.toByteArray());
+        });
+    }
+
+    @Override
+    public void saveXmlPart(XmlPart part) {
+        addEntry(part.getPartName(), ZipArchiveEntry.DEFLATED, () -> {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            XmlUtils.getTransformerFactory().newTransformer()
+                    .transform(new DOMSource(part.getDocument()), new StreamResult(out));
+            return new ByteArrayInputStream(out.toByteArray());
+        });
+    }
+
+    @Override
+    public void saveBinaryPart(Part part) {
+        int method = storeCompressedMedia && PackageSaveUtil.isCompressedMedia(part.getContentType())
+                ? ZipArchiveEntry.STORED : ZipArchiveEntry.DEFLATED;
+        if (part instanceof BinaryPart && ((BinaryPart) part).isLoaded()) {
+            ByteBuffer buffer = ((BinaryPart) part).getBuffer();
+            addEntry(part.getPartName(), method, () -> toInputStream(buffer));
+        } else {
+            addEntry(part.getPartName(), method, () -> loadFromSource(part.getPartName()));
+        }
+    }
+
+    @Override
+    public void finishSave() throws Docx4JException {
+        try {
+            creator.writeTo(zipOutputStream);
+            zipOutputStream.close();
+            finished = true;
+            logger.debug("并行压缩完成: {}", creator.getStatisticsMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new Docx4JException("Failed to save package", e);
+        } catch (Exception e) {
+            throw new Docx4JException("Failed to save package", e);
+        }
+    }
+
+    @Override
+    public InputStream loadPart(String partName) throws Docx4JException {
+        if (sourcePartStore == null) {
+            throw new Docx4JException("sourcePartStore not set");
+        }
+        return sourcePartStore.loadPart(partName);
+    }
+
+    @Override
+    public long getPartSize(String partName) throws Docx4JException {
+        if (sourcePartStore == null) {
+            throw new Docx4JException("sourcePartStore not set");
+        }
+        return sourcePartStore.getPartSize(partName);
+    }
+
+    @Override
+    public void rename(PartName oldName, PartName newName) {
+        if (sourcePartStore != null) {
+            sourcePartStore.rename(oldName, newName);
+        }
+    }
+
+    /**
+     * 释放保存过程中的资源，保存失败时同样需要调用
+     * 保存没有完成时关闭压缩线程池、删除暂存区，并关闭输出流，不写入压缩包的中央目录，避免留下看似完整的压缩包
+     */
+    @Override
+    public void dispose() {
+        if (executor == null || finished) {
+            return;
+        }
+        executor.shutdownNow();
+        try {
+            // 正在生成部件内容的任务不响应中断，等待其结束后再删除暂存区
+            if (!executor.awaitTermination(DISPOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("压缩线程在 {} 秒内没有结束", DISPOSE_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (backingStores) {
+            for (ScatterGatherBackingStore backingStore : backingStores) {
+                IOUtils.closeQuietly(backingStore);
+            }
+            backingStores.clear();
+        }
+        IOUtils.closeQuietly(outputStream);
+    }
+
+    /**
+     * 提交一个压缩任务，任务在压缩线程中生成部件内容
+     */
+    private void addEntry(PartName partName, int method, PartContentSupplier supplier) {
+        ZipArchiveEntry entry = new ZipArchiveEntry(partName.getName().substring(1));
+        entry.setMethod(method);
+        InputStreamSupplier inputStreamSupplier = () -> {
+            try {
+                return supplier.get();
+            } catch (Exception e) {
+                throw new IllegalStateException("生成部件内容失败: " + partName.getName(), e);
+            }
+        };
+        creator.addArchiveEntry(entry, inputStreamSupplier);
+    }
+
+    private InputStream loadFromSource(PartName partName) throws Exception {
+        if (sourcePartStore == null) {
+            throw new Docx4JException("part store has changed, and sourcePartStore not set");
+        }
+        try (InputStream in = sourcePartStore.loadPart(partName.getName().substring(1))) {
+            return new ByteArrayInputStream(IOUtils.toByteArray(in));
+        }
+    }
+
+    /**
+     * 直接读取部件的数据缓冲区，不复制数据
+     */
+    private static InputStream toInputStream(ByteBuffer buffer) {
+        ByteBuffer data = buffer.duplicate();
+        data.rewind();
+        if (data.hasArray()) {
+            return new ByteArrayInputStream(data.array(), data.arrayOffset(), data.remaining());
+        }
+        byte[] bytes = new byte[data.remaining()];
+        data.get(bytes);
+        return new ByteArrayInputStream(bytes);
+    }
+
+    /**
+     * 内存中的压缩暂存区，拼接到输出压缩包时直接读取缓冲区，不复制数据
+     */
+    private static class MemoryBackingStore extends ByteArrayOutputStream implements ScatterGatherBackingStore {
+        MemoryBackingStore() {
+            super(64 * 1024);
+        }
+
+        @Override
+        public void writeOut(byte[] data, int offset, int length) {
+            write(data, offset, length);
+        }
+
+        @Override
+        public void closeForWriting() {
+            // 内存缓冲区不需要关闭
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new ByteArrayInputStream(buf, 0, count);
+        }
+    }
+
+    /**
+     * 在压缩线程中生成部件内容
+     */
+    private interface PartContentSupplier {
+        InputStream get() throws Exception;
+    }
+}
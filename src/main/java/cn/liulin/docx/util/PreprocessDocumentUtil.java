@@ -1,18 +1,21 @@
 package cn.liulin.docx.util;
 
+import org.apache.commons.compress.archivers.zip.ZipArchiveEntry;
+import org.apache.commons.compress.archivers.zip.ZipArchiveOutputStream;
+import org.apache.commons.compress.archivers.zip.ZipFile;
+
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
-import java.util.Enumeration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
-import java.util.zip.ZipOutputStream;
+import java.util.regex.Pattern;
 
 /**
  * @author liulin
@@ -20,7 +23,28 @@ import java.util.zip.ZipOutputStream;
  * @date 2025/10/15 15:21
  */
 public class PreprocessDocumentUtil {
+    /**
+     * 主文档在docx压缩包中的条目名称
+     */
+    private static final String DOCUMENT_ENTRY = "word/document.xml";
+
+    /**
+     * 页眉页脚在docx压缩包中的条目名称，如word/header1.xml、word/footer2.xml
+     */
+    private static final Pattern HEADER_FOOTER_ENTRY = Pattern.compile("word/(header|footer)\\d*\\.xml");
+
+    /**
+     * 读取document.xml时使用的缓冲区大小
+     */
+    private static final int BUFFER_SIZE = 64 * 1024;
 
+    /**
+     * 需要改写的标签名
+     */
+    private static final byte[] START_NAME = "w:start".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] END_NAME = "w:end".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] LEFT_NAME = "w:left".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RIGHT_NAME = "w:right".getBytes(StandardCharsets.US_ASCII);
 
     /**
      * 预处理文档列表，对列表中的每个文档执行预处理操作
@@ -43,74 +67,182 @@ public class PreprocessDocumentUtil {
 
     /**
      * 在docx4j加载前预处理文档，替换不兼容的标签
+     * 只读取一次原始文档：document.xml和页眉页脚以流式方式逐个标签改写，其余条目按原始压缩数据直接复制，不再解压和重新压缩
      *
      * @param docPath 原始文档路径
      * @return 处理后的文档路径
      * @throws Exception 处理异常
      */
-    private static String preprocessDocument(String docPath) throws Exception {
-        Path originalDoc = Paths.get(docPath);
-        Path processedDoc = Files.createTempFile("processed_", ".docx");
-
-        // 复制原始文档到临时文件
-        Files.copy(originalDoc, processedDoc, StandardCopyOption.REPLACE_EXISTING);
-
-        // 创建一个新的临时文件用于输出
-        Path outputDoc = Files.createTempFile("output_", ".docx");
-
-        try (ZipFile zipFile = new ZipFile(processedDoc.toFile());
-             ZipOutputStream zipOutputStream = new ZipOutputStream(Files.newOutputStream(outputDoc.toFile().toPath()))) {
-
-            Enumeration<? extends ZipEntry> entries = zipFile.entries();
-            while (entries.hasMoreElements()) {
-                ZipEntry entry = entries.nextElement();
-                zipOutputStream.putNextEntry(new ZipEntry(entry.getName()));
-
-                if ("word/document.xml".equals(entry.getName())) {
-                    // 处理document.xml内容
-                    try (InputStream inputStream = zipFile.getInputStream(entry);
-                         ByteArrayOutputStream buffer = new ByteArrayOutputStream()) {
-
-                        int nRead;
-                        byte[] data = new byte[1024];
-                        while ((nRead = inputStream.read(data, 0, data.length)) != -1) {
-                            buffer.write(data, 0, nRead);
-                        }
-                        buffer.flush();
-
-                        String xmlContent = new String(buffer.toByteArray(), StandardCharsets.UTF_8);
-
-                        // 处理不兼容的标签，将w:start和w:end替换为w:left和w:right
-                        xmlContent = xmlContent.replaceAll("<w:start\\b", "<w:left");
-                        xmlContent = xmlContent.replaceAll("</w:start>", "</w:left");
-                        xmlContent = xmlContent.replaceAll("<w:end\\b", "<w:right");
-                        xmlContent = xmlContent.replaceAll("</w:end>", "</w:right>");
-
-                        // 移除页眉页脚引用
-                        xmlContent = xmlContent.replaceAll("<w:headerReference[^>]*/>", "");
-                        xmlContent = xmlContent.replaceAll("<w:footerReference[^>]*/>", "");
-
-                        // 写入处理后的内容
-                        zipOutputStream.write(xmlContent.getBytes(StandardCharsets.UTF_8));
-                    }
-                } else {
-                    // 直接复制其他文件
-                    try (InputStream inputStream = zipFile.getInputStream(entry)) {
-                        byte[] buffer = new byte[1024];
-                        int length;
-                        while ((length = inputStream.read(buffer)) > 0) {
-                            zipOutputStream.write(buffer, 0, length);
-                        }
+    public static String preprocessDocument(String docPath) throws Exception {
+        return preprocessDocument(DocumentSource.of(docPath));
+    }
+
+    /**
+     * 预处理文档并将结果写入临时文件
+     *
+     * @param source 原始文档
+     * @return 处理后的文档路径
+     * @throws Exception 处理异常
+     */
+    public static String preprocessDocument(DocumentSource source) throws Exception {
+        Path outputDoc = Files.createTempFile("processed_", ".docx");
+
+        try (ZipFile zipFile = source.openZip();
+             ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(outputDoc)) {
+            preprocess(zipFile, zipOutputStream);
+        } catch (Exception e) {
+            Files.deleteIfExists(outputDoc);
+            throw e;
+        }
+
+        return outputDoc.toString();
+    }
+
+    /**
+     * 在内存中预处理文档，不产生任何临时文件
+     * 处理结果可直接通过{@code WordprocessingMLPackage.load(InputStream)}加载
+     *
+     * @param docPath 原始文档路径
+     * @return 处理后的docx文档内容
+     * @throws Exception 处理异常
+     */
+    public static byte[] preprocessDocumentToBytes(String docPath) throws Exception {
+        return preprocessDocumentToBytes(DocumentSource.of(docPath));
+    }
+
+    /**
+     * 在内存中预处理文档，不产生任何临时文件
+     *
+     * @param source 原始文档
+     * @return 处理后的docx文档内容
+     * @throws Exception 处理异常
+     */
+    public static byte[] preprocessDocumentToBytes(DocumentSource source) throws Exception {
+        // 改写后的文档大小与原始文档基本一致，按原始大小预分配缓冲区
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) Math.min(source.size() + BUFFER_SIZE, Integer.MAX_VALUE - 8));
+        try (ZipFile zipFile = source.openZip();
+             ZipArchiveOutputStream zipOutputStream = new ZipArchiveOutputStream(buffer)) {
+            preprocess(zipFile, zipOutputStream);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * 将原始文档的所有条目写入输出压缩包，document.xml和页眉页脚在写入时改写
+     *
+     * @param zipFile 原始文档
+     * @param zipOutputStream 输出压缩包
+     * @throws IOException 读写异常
+     */
+    private static void preprocess(ZipFile zipFile, ZipArchiveOutputStream zipOutputStream) throws IOException {
+        // 不需要改写的条目按原始压缩数据复制
+        zipFile.copyRawEntries(zipOutputStream, entry -> !isRewrittenEntry(entry.getName()));
+
+        for (ZipArchiveEntry entry : Collections.list(zipFile.getEntries())) {
+            if (!isRewrittenEntry(entry.getName())) {
+                continue;
+            }
+            zipOutputStream.putArchiveEntry(new ZipArchiveEntry(entry.getName()));
+            try (InputStream inputStream = zipFile.getInputStream(entry)) {
+                rewriteDocumentXml(inputStream, zipOutputStream);
+            }
+            zipOutputStream.closeArchiveEntry();
+        }
+    }
+
+    private static boolean isRewrittenEntry(String name) {
+        return DOCUMENT_ENTRY.equals(name) || HEADER_FOOTER_ENTRY.matcher(name).matches();
+    }
+
+    /**
+     * 流式改写document.xml或页眉页脚，按标签逐个处理，不在内存中保留完整的XML内容
+     * 将w:start和w:end替换为w:left和w:right
+     *
+     * @param inputStream document.xml或页眉页脚的输入流
+     * @param outputStream 改写后内容的输出流，方法结束时不会关闭
+     * @throws IOException 读写异常
+     */
+    private static void rewriteDocumentXml(InputStream inputStream, OutputStream outputStream) throws IOException {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        // 当前正在读取的标签内容（从'<'到'>'）
+        byte[] tag = new byte[256];
+        int tagLength = 0;
+        boolean inTag = false;
+
+        int nRead;
+        while ((nRead = inputStream.read(buffer)) != -1) {
+            int textStart = 0;
+            for (int i = 0; i < nRead; i++) {
+                byte b = buffer[i];
+                if (!inTag) {
+                    if (b == '<') {
+                        // 输出标签之前的文本内容
+                        outputStream.write(buffer, textStart, i - textStart);
+                        inTag = true;
+                        tagLength = 0;
+                    } else {
+                        continue;
                     }
                 }
-
-                zipOutputStream.closeEntry();
+                if (tagLength == tag.length) {
+                    tag = Arrays.copyOf(tag, tag.length * 2);
+                }
+                tag[tagLength++] = b;
+                if (b == '>') {
+                    writeTag(tag, tagLength, outputStream);
+                    inTag = false;
+                    textStart = i + 1;
+                }
+            }
+            if (!inTag) {
+                outputStream.write(buffer, textStart, nRead - textStart);
             }
         }
+        if (inTag) {
+            // 文档末尾存在未闭合的标签，原样输出
+            outputStream.write(tag, 0, tagLength);
+        }
+    }
 
-        // 删除中间文件
-        Files.deleteIfExists(processedDoc);
+    /**
+     * 输出单个标签，必要时替换标签名
+     */
+    private static void writeTag(byte[] tag, int length, OutputStream outputStream) throws IOException {
+        int nameStart = length > 1 && tag[1] == '/' ? 2 : 1;
+        if (matchesName(tag, length, nameStart, START_NAME)) {
+            writeRenamedTag(tag, length, nameStart, START_NAME.length, LEFT_NAME, outputStream);
+        } else if (matchesName(tag, length, nameStart, END_NAME)) {
+            writeRenamedTag(tag, length, nameStart, END_NAME.length, RIGHT_NAME, outputStream);
+        } else {
+            outputStream.write(tag, 0, length);
+        }
+    }
 
-        return outputDoc.toString();
+    /**
+     * 判断标签名是否与指定名称完全一致（名称之后必须是空白、'/'或'>'）
+     */
+    private static boolean matchesName(byte[] tag, int length, int nameStart, byte[] name) {
+        int nameEnd = nameStart + name.length;
+        if (nameEnd >= length) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (tag[nameStart + i] != name[i]) {
+                return false;
+            }
+        }
+        byte next = tag[nameEnd];
+        return next == '>' || next == '/' || next == ' ' || next == '\t' || next == '\r' || next == '\n';
+    }
+
+    /**
+     * 用新名称替换标签名后输出，保留原有属性
+     */
+    private static void writeRenamedTag(byte[] tag, int length, int nameStart, int nameLength, byte[] newName,
+                                        OutputStream outputStream) throws IOException {
+        outputStream.write(tag, 0, nameStart);
+        outputStream.write(newName);
+        int rest = nameStart + nameLength;
+        outputStream.write(tag, rest, length - rest);
     }
-}
\ No newline at end of file
+}
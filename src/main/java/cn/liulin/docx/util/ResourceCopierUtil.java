@@ -1,19 +1,54 @@
 package cn.liulin.docx.util;
 
-import org.docx4j.XmlUtils;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.Base;
+import org.docx4j.openpackaging.contenttype.ContentType;
+import org.docx4j.openpackaging.exceptions.Docx4JException;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.CustomXmlDataStoragePart;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
 import org.docx4j.openpackaging.parts.Part;
 import org.docx4j.openpackaging.parts.PartName;
-import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.Parts;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FooterPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.openpackaging.parts.XmlPart;
 import org.docx4j.openpackaging.parts.relationships.Namespaces;
 import org.docx4j.openpackaging.parts.relationships.RelationshipsPart;
+import org.docx4j.openpackaging.parts.relationships.RelationshipsPart.AddPartBehaviour;
 import org.docx4j.relationships.Relationship;
-import org.docx4j.wml.Document;
+import org.docx4j.wml.Body;
+import org.docx4j.wml.CTRel;
+import org.docx4j.wml.FooterReference;
+import org.docx4j.wml.Ftr;
+import org.docx4j.wml.HdrFtrRef;
+import org.docx4j.wml.Hdr;
+import org.docx4j.wml.HeaderReference;
+import org.docx4j.wml.ObjectFactory;
+import org.docx4j.wml.P;
+import org.docx4j.wml.SectPr;
 import org.slf4j.Logger;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
 
+import javax.xml.bind.annotation.XmlAttribute;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @author liulin
@@ -23,173 +58,570 @@ import java.util.Map;
 public class ResourceCopierUtil {
     private static final Logger logger = LoggerUtil.getLogger(ResourceCopierUtil.class);
 
+    /**
+     * 关系ID属性所在的命名空间(r:embed、r:id、r:link、r:dm等)
+     */
+    private static final String RELATIONSHIPS_NAMESPACE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    /**
+     * VML的o:relid属性同样引用关系ID
+     */
+    private static final String OFFICE_NAMESPACE = "urn:schemas-microsoft-com:office:office";
+
+    /**
+     * 由样式、编号等步骤单独合并或在合并中丢弃的主文档部件关系，这些部件不作为普通关系复制
+     */
+    private static final Set<String> MERGED_RELATIONSHIP_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            Namespaces.STYLES, Namespaces.NUMBERING, Namespaces.FONT_TABLE, Namespaces.SETTINGS, Namespaces.WEB_SETTINGS,
+            Namespaces.THEME, Namespaces.FOOTNOTES, Namespaces.ENDNOTES,
+            Namespaces.COMMENTS, Namespaces.COMMENTS_EXTENDED, Namespaces.COMMENTS_IDS, Namespaces.OFFICE_2011_PEOPLE,
+            Namespaces.GLOSSARY_DOCUMENT,
+            "http://schemas.microsoft.com/office/2007/relationships/stylesWithEffects",
+            "http://schemas.microsoft.com/office/2018/08/relationships/commentsExtensible")));
+
+    private static final org.docx4j.relationships.ObjectFactory RELATIONSHIP_FACTORY = new org.docx4j.relationships.ObjectFactory();
+
+    /**
+     * 每个JAXB类中保存关系ID的字符串字段，按类缓存以避免重复反射
+     */
+    private static final Map<Class<?>, Field[]> RELATIONSHIP_FIELD_CACHE = new ConcurrentHashMap<>();
+
     /**
      * 复制文档列表中除第一个文档外的所有文档的图片资源到第一个文档中
-     * 该方法会遍历文档列表，将每个文档中的图片复制到第一个文档，并更新图片引用关系
-     * 
+     *
      * @param docPath 包含WordprocessingMLPackage对象的文档列表，第一个文档作为目标文档
+     * @return 与文档列表下标一一对应的旧关系ID到新关系ID的映射，第一个文档对应空映射
+     * @see #copyRelationships(List, MediaRegistry)
      */
-    public static void copyImages(List<WordprocessingMLPackage> docPath) {
-        LoggerUtil.logMethodEntry(logger, "copyImages", docPath != null ? docPath.size() : 0);
+    public static List<Map<String, String>> copyImages(List<WordprocessingMLPackage> docPath) {
+        return copyRelationships(docPath, new MediaRegistry());
+    }
 
-        assert docPath != null;
-        WordprocessingMLPackage doc1 = docPath.get(0);
+    /**
+     * 复制图片等媒体资源到第一个文档中，内容相同的部件只复制一次
+     *
+     * @param docPath 包含WordprocessingMLPackage对象的文档列表，第一个文档作为目标文档
+     * @param mediaRegistry 目标文档的媒体登记表，多个批次合并到同一目标文档时应使用同一个登记表
+     * @return 与文档列表下标一一对应的旧关系ID到新关系ID的映射，第一个文档对应空映射
+     * @see #copyRelationships(List, MediaRegistry)
+     */
+    public static List<Map<String, String>> copyImages(List<WordprocessingMLPackage> docPath, MediaRegistry mediaRegistry) {
+        return copyRelationships(docPath, mediaRegistry);
+    }
+
+    /**
+     * 将文档列表中除第一个文档外的所有文档主文档部件的关系复制到第一个文档中
+     * 每个文档的关系只遍历一次：
+     * 1. 外部关系（超链接、链接的图片等）在目标文档中按类型和地址创建，相同的外部关系只创建一次
+     * 2. 没有下级关系的二进制部件（图片、OLE对象、嵌入的文档包等）和页眉页脚按内容摘要去重，内容相同时复用已有部件
+     * 3. 其余部件（图表、SmartArt、ActiveX控件等）以及不能复用的页眉页脚连同其可达的下级部件整体复制到目标文档，
+     *    部件使用新的名称，下级部件之间的关系ID保持不变，因此被复制部件内部的引用不需要修改，下级的图片同样按内容复用
+     * 页眉页脚中的样式和编号引用需要在调用前更新，参见{@link WordProcessingUtils#normalizeHeadersFooters}。
+     * 文档第一节没有引用某种页眉或页脚而之前的文档中已有页眉页脚时，为其引用一个空白的页眉或页脚，
+     * 避免继承上一个文档最后一节的页眉页脚。
+     * 样式、编号等由其他步骤处理的部件不在此复制，脚注、尾注和批注由{@link NoteMergerUtil#mergeNotes}追加到目标文档对应的部件中。
+     * 部件内容（JAXB对象、DOM或二进制数据）直接与源文档共享而不深拷贝，源文档在合并后即被丢弃。
+     * 文档中的引用不在此处修改，由{@link #createRelationshipReferenceSteps(Map)}在文档遍历时统一更新
+     *
+     * @param docList 包含WordprocessingMLPackage对象的文档列表，第一个文档作为目标文档
+     * @param mediaRegistry 目标文档的登记表，多个批次合并到同一目标文档时应使用同一个登记表
+     * @return 与文档列表下标一一对应的旧关系ID到新关系ID的映射，第一个文档对应空映射
+     */
+    public static List<Map<String, String>> copyRelationships(List<WordprocessingMLPackage> docList,
+                                                              MediaRegistry mediaRegistry) {
+        LoggerUtil.logMethodEntry(logger, "copyRelationships", docList != null ? docList.size() : 0);
+
+        assert docList != null;
+        WordprocessingMLPackage doc1 = docList.get(0);
+        MainDocumentPart targetMain = doc1.getMainDocumentPart();
+        List<Map<String, String>> relMaps = new ArrayList<>(docList.size());
+        for (int i = 0; i < docList.size(); i++) {
+            relMaps.add(new HashMap<>());
+        }
         try {
-            logger.info("开始复制图片资源...");
-            // 遍历除第一个文档外的所有文档，复制其中的图片资源
-            for (int i = 1; i < docPath.size(); i++) {
-                WordprocessingMLPackage tempDoc = docPath.get(i);
-                Map<String, String> imageRelMap = new HashMap<>();
-                RelationshipsPart relPart2 = tempDoc.getMainDocumentPart().getRelationshipsPart();
-                if (relPart2 == null) {
-                    logger.warn("文档没有关系部分，跳过图片复制");
+            logger.info("开始复制关系资源...");
+            mediaRegistry.registerExisting(doc1);
+            for (int i = 1; i < docList.size(); i++) {
+                RelationshipsPart relPart = docList.get(i).getMainDocumentPart().getRelationshipsPart();
+                if (relPart == null) {
+                    logger.warn("文档没有关系部分，跳过关系复制");
                     continue;
                 }
-
-                List<Relationship> relationships = relPart2.getRelationships().getRelationship();
+                Map<String, String> relMap = relMaps.get(i);
+                addMissingHeaderFooterReferences(targetMain, docList.get(i).getMainDocumentPart(), relPart, relMap,
+                        mediaRegistry);
+                // 同一个源部件被多个关系引用时只复制一次
+                Map<Part, Part> copies = new IdentityHashMap<>();
+                List<Relationship> relationships = relPart.getRelationships().getRelationship();
                 logger.debug("文档中共有 {} 个关系", relationships.size());
 
-                // 复制图片部件从doc到doc1
-                int copiedImages = 0;
+                int copiedParts = 0;
                 for (Relationship rel : relationships) {
-                    logger.debug("处理关系: ID={}, Type={}, Target={}", rel.getId(), rel.getType(), rel.getTarget());
-
-                    // 只处理图片关系
-                    if (Namespaces.IMAGE.equals(rel.getType())) {
-                        String target = rel.getTarget();
-                        logger.info("发现图片关系: {}", target);
-
-                        // 构造 PartName
-                        PartName partName = new PartName("/" + target);
-                        logger.debug("尝试通过PartName获取图片部件: {}", partName.getName());
-
-                        // 从 doc2 获取图片部件
-                        Part imgPart = tempDoc.getParts().get(partName);
-                        if (imgPart == null) {
-                            // 尝试通过关系获取图片部件
-                            try {
-                                logger.debug("通过关系获取图片部件...");
-                                imgPart = relPart2.getPart(rel);
-                            } catch (Exception e) {
-                                logger.error("无法通过关系获取图片部件: {}, 错误: {}", target, e.getMessage());
-                                continue;
-                            }
-                        }
-
-                        if (imgPart == null) {
-                            logger.error("图片部件不存在: {}", target);
-                            continue;
+                    if (MERGED_RELATIONSHIP_TYPES.contains(rel.getType())) {
+                        continue;
+                    }
+                    String oldId = rel.getId();
+                    if ("External".equals(rel.getTargetMode())) {
+                        String newId = mediaRegistry.findExternal(rel.getType(), rel.getTarget());
+                        if (newId == null) {
+                            newId = addExternalRelationship(targetMain.getRelationshipsPart(true), rel, null).getId();
+                            mediaRegistry.registerExternal(rel.getType(), rel.getTarget(), newId);
                         }
+                        relMap.put(oldId, newId);
+                        continue;
+                    }
 
-                        logger.debug("_TypeInfo: {}", imgPart.getClass().getName());
+                    Part part;
+                    try {
+                        part = relPart.getPart(rel);
+                    } catch (Exception e) {
+                        logger.error("无法通过关系获取部件: {}, 错误: {}", rel.getTarget(), e.getMessage());
+                        continue;
+                    }
+                    if (part == null) {
+                        logger.error("关系指向的部件不存在: {}", rel.getTarget());
+                        continue;
+                    }
 
-                        if (!(imgPart instanceof BinaryPartAbstractImage)) {
-                            logger.error("图片部件类型错误: {}, 实际类型: {}", target, imgPart.getClass().getName());
+                    // 内容相同的独立部件已经在目标文档中，直接复用
+                    String digest = MediaRegistry.digest(part);
+                    if (digest != null) {
+                        String existingId = findExisting(targetMain, rel.getType(), digest, mediaRegistry);
+                        if (existingId != null) {
+                            relMap.put(oldId, existingId);
+                            logger.debug("部件内容重复，复用已有部件: {}, 旧 relId: {}, 新 relId: {}", rel.getTarget(), oldId, existingId);
                             continue;
                         }
+                    }
 
-                        // 将图片部件添加到doc1中
-                        logger.debug("正在复制图片: {}", target);
-                        BinaryPartAbstractImage binaryImage = (BinaryPartAbstractImage) imgPart;
-                        BinaryPartAbstractImage newImagePart = BinaryPartAbstractImage.createImagePart(
-                                doc1,
-                                doc1.getMainDocumentPart(),
-                                binaryImage.getBytes()
-                        );
-
-                        // 获取新生成的关系 ID
-                        String newId = newImagePart.getSourceRelationships().get(0).getId();
-                        String oldId = rel.getId();
-
-                        // 建立旧ID到新ID的映射
-                        imageRelMap.put(oldId, newId);
-
-                        copiedImages++;
-                        logger.info("图片已复制: {}, 旧 relId: {}, 新 relId: {}", target, oldId, newId);
-                    } else {
-                        logger.debug("跳过非图片关系: {}", rel.getType());
+                    Relationship newRel;
+                    try {
+                        newRel = copyPart(targetMain, part, rel.getType(), null, copies, mediaRegistry);
+                    } catch (Exception e) {
+                        logger.error("复制部件失败: {}, 错误: {}", rel.getTarget(), e.getMessage());
+                        continue;
+                    }
+                    if (digest != null) {
+                        mediaRegistry.register(rel.getType(), digest, newRel.getId());
+                        mediaRegistry.registerPart(rel.getType(), digest, copies.get(part));
                     }
+                    relMap.put(oldId, newRel.getId());
+                    copiedParts++;
+                    logger.debug("部件已复制: {}, 旧 relId: {}, 新 relId: {}", rel.getTarget(), oldId, newRel.getId());
                 }
-                logger.info("文档{}图片复制完成，共复制 {} 张图片", (i + 1), copiedImages);
-                updateImageReferences(tempDoc, imageRelMap);
+                try {
+                    NoteMergerUtil.mergeNotes(targetMain, docList.get(i).getMainDocumentPart(), mediaRegistry);
+                } catch (Exception e) {
+                    logger.error("合并文档{}的脚注、尾注和批注失败: {}", (i + 1), e.getMessage(), e);
+                }
+                logger.info("文档{}关系复制完成，共复制 {} 个部件，{} 个关系需要更新", (i + 1), copiedParts, relMap.size());
             }
+            logger.info("目标文档共有 {} 个可共享的部件，重复部件复用 {} 次", mediaRegistry.size(), mediaRegistry.getHits());
 
         } catch (Exception e) {
-            LoggerUtil.logMethodException(logger, "copyImages", e);
+            LoggerUtil.logMethodException(logger, "copyRelationships", e);
         }
-        
-        LoggerUtil.logMethodExit(logger, "copyImages", "图片复制完成");
+
+        LoggerUtil.logMethodExit(logger, "copyRelationships", "关系复制完成");
+        return relMaps;
     }
 
+    /**
+     * 将源部件及其可达的下级部件复制到目标文档，并从父部件建立到新部件的关系
+     *
+     * @param parent 目标文档中的父部件
+     * @param source 源部件
+     * @param relationshipType 关系类型
+     * @param relId 关系ID，为null时由父部件分配
+     * @param copies 已复制的源部件到新部件的映射
+     * @param mediaRegistry 目标文档的登记表，下级的独立部件按内容复用
+     * @return 父部件到新部件的关系
+     */
+    private static Relationship copyPart(Base parent, Part source, String relationshipType, String relId,
+                                         Map<Part, Part> copies, MediaRegistry mediaRegistry) throws Exception {
+        Part copy = copies.get(source);
+        if (copy != null) {
+            return parent.addTargetPart(copy, AddPartBehaviour.REUSE_EXISTING, relId);
+        }
+        copy = newPart(source, uniquePartName(parent.getPackage().getParts(), source.getPartName()), relationshipType);
+        copies.put(source, copy);
+        // 先加入目标文档，下级部件才能从新部件建立关系
+        Relationship rel = parent.addTargetPart(copy, AddPartBehaviour.RENAME_IF_NAME_EXISTS, relId);
+
+        RelationshipsPart sourceRels = source.getRelationshipsPart(false);
+        if (sourceRels != null) {
+            for (Relationship childRel : sourceRels.getRelationships().getRelationship()) {
+                if ("External".equals(childRel.getTargetMode())) {
+                    addExternalRelationship(copy.getRelationshipsPart(true), childRel, childRel.getId());
+                    continue;
+                }
+                Part child = sourceRels.getPart(childRel);
+                if (child == null) {
+                    logger.warn("下级关系指向的部件不存在: {} -> {}", source.getPartName(), childRel.getTarget());
+                    continue;
+                }
+                String digest = copies.containsKey(child) ? null : MediaRegistry.digest(child);
+                if (digest != null) {
+                    Part existing = mediaRegistry.findPart(childRel.getType(), digest);
+                    if (existing != null) {
+                        copy.addTargetPart(existing, AddPartBehaviour.REUSE_EXISTING, childRel.getId());
+                        continue;
+                    }
+                }
+                copyPart(copy, child, childRel.getType(), childRel.getId(), copies, mediaRegistry);
+                if (digest != null) {
+                    mediaRegistry.registerPart(childRel.getType(), digest, copies.get(child));
+                }
+            }
+        }
+        return rel;
+    }
+
+    /**
+     * 将源部件的关系复制到目标文档中的另一个部件，用于内容被追加到目标部件中的脚注、尾注和批注
+     * 外部关系直接创建，没有下级关系的独立部件按内容复用，其余部件连同其下级部件整体复制
+     *
+     * @param source 源部件
+     * @param target 目标文档中接收源部件内容的部件
+     * @param mediaRegistry 目标文档的登记表
+     * @return 旧关系ID到新关系ID的映射
+     */
+    static Map<String, String> copyPartRelationships(Part source, Part target, MediaRegistry mediaRegistry) throws Exception {
+        Map<String, String> relMap = new HashMap<>();
+        RelationshipsPart sourceRels = source.getRelationshipsPart(false);
+        if (sourceRels == null) {
+            return relMap;
+        }
+        Map<Part, Part> copies = new IdentityHashMap<>();
+        for (Relationship rel : sourceRels.getRelationships().getRelationship()) {
+            if ("External".equals(rel.getTargetMode())) {
+                relMap.put(rel.getId(), addExternalRelationship(target.getRelationshipsPart(true), rel, null).getId());
+                continue;
+            }
+            Part part = sourceRels.getPart(rel);
+            if (part == null) {
+                logger.warn("关系指向的部件不存在: {} -> {}", source.getPartName(), rel.getTarget());
+                continue;
+            }
+            String digest = MediaRegistry.digest(part);
+            Part existing = digest == null ? null : mediaRegistry.findPart(rel.getType(), digest);
+            if (existing != null) {
+                relMap.put(rel.getId(), target.addTargetPart(existing, AddPartBehaviour.REUSE_EXISTING).getId());
+                continue;
+            }
+            Relationship newRel = copyPart(target, part, rel.getType(), null, copies, mediaRegistry);
+            if (digest != null) {
+                mediaRegistry.registerPart(rel.getType(), digest, copies.get(part));
+            }
+            relMap.put(rel.getId(), newRel.getId());
+        }
+        return relMap;
+    }
 
     /**
-     * 更新文档中的图片引用关系
+     * 查找内容相同的部件在目标文档主文档部件中的关系ID，部件只被页眉页脚等其他部件引用时为其建立关系
+     *
+     * @return 关系ID，目标文档中没有内容相同的部件时返回null
      */
-    private static void updateImageReferences(WordprocessingMLPackage doc2Package, Map<String, String> imageRelMap) {
-        if (imageRelMap.isEmpty()) {
-            logger.warn("没有图片关系需要更新");
+    private static String findExisting(MainDocumentPart targetMain, String relationshipType, String digest,
+                                       MediaRegistry mediaRegistry) throws Exception {
+        String relId = mediaRegistry.find(relationshipType, digest);
+        if (relId == null) {
+            Part existing = mediaRegistry.findPart(relationshipType, digest);
+            if (existing != null) {
+                relId = targetMain.addTargetPart(existing, AddPartBehaviour.REUSE_EXISTING).getId();
+                mediaRegistry.register(relationshipType, digest, relId);
+            }
+        }
+        return relId;
+    }
+
+    /**
+     * 在源文档的第一节中补充缺少的页眉页脚引用
+     * Word中没有引用某种页眉页脚的节沿用上一节的页眉页脚，文档追加到已有页眉页脚的目标文档后，
+     * 其第一节会显示上一个文档的页眉页脚。这里为缺少的类型引用空白的页眉页脚，新的引用使用源文档中未被占用的关系ID，
+     * 并记录到关系映射中，与其他引用一起在遍历时更新为目标文档中的关系ID
+     *
+     * @param targetMain 目标文档的主文档部件
+     * @param sourceMain 源文档的主文档部件
+     * @param sourceRels 源文档主文档部件的关系部件
+     * @param relMap 源文档的关系ID映射
+     * @param mediaRegistry 目标文档的登记表
+     */
+    private static void addMissingHeaderFooterReferences(MainDocumentPart targetMain, MainDocumentPart sourceMain,
+                                                         RelationshipsPart sourceRels, Map<String, String> relMap,
+                                                         MediaRegistry mediaRegistry) throws Exception {
+        RelationshipsPart targetRels = targetMain.getRelationshipsPart();
+        boolean targetHasHeader = targetRels != null && hasRelationship(targetRels, Namespaces.HEADER);
+        boolean targetHasFooter = targetRels != null && hasRelationship(targetRels, Namespaces.FOOTER);
+        if (!targetHasHeader && !targetHasFooter) {
             return;
         }
+        SectPr sectPr = findFirstSectPr(sourceMain.getJaxbElement().getBody());
+        if (sectPr == null) {
+            return;
+        }
+        Set<HdrFtrRef> headerTypes = EnumSet.noneOf(HdrFtrRef.class);
+        Set<HdrFtrRef> footerTypes = EnumSet.noneOf(HdrFtrRef.class);
+        for (CTRel ref : sectPr.getEGHdrFtrReferences()) {
+            if (ref instanceof HeaderReference) {
+                HdrFtrRef type = ((HeaderReference) ref).getType();
+                headerTypes.add(type != null ? type : HdrFtrRef.DEFAULT);
+            } else if (ref instanceof FooterReference) {
+                HdrFtrRef type = ((FooterReference) ref).getType();
+                footerTypes.add(type != null ? type : HdrFtrRef.DEFAULT);
+            }
+        }
 
-        logger.info("开始更新图片引用关系，共 {} 个关系需要更新", imageRelMap.size());
+        ObjectFactory factory = Context.getWmlObjectFactory();
+        String headerId = null;
+        String footerId = null;
+        for (HdrFtrRef type : HdrFtrRef.values()) {
+            if (targetHasHeader && !headerTypes.contains(type)) {
+                if (headerId == null) {
+                    headerId = unusedRelId(sourceRels, relMap);
+                    Hdr hdr = factory.createHdr();
+                    hdr.getContent().add(factory.createP());
+                    HeaderPart headerPart = new HeaderPart();
+                    headerPart.setJaxbElement(hdr);
+                    relMap.put(headerId, addBlankPart(targetMain, headerPart, Namespaces.HEADER, mediaRegistry));
+                }
+                HeaderReference reference = factory.createHeaderReference();
+                reference.setType(type);
+                reference.setId(headerId);
+                reference.setParent(sectPr);
+                sectPr.getEGHdrFtrReferences().add(reference);
+            }
+            if (targetHasFooter && !footerTypes.contains(type)) {
+                if (footerId == null) {
+                    footerId = unusedRelId(sourceRels, relMap);
+                    Ftr ftr = factory.createFtr();
+                    ftr.getContent().add(factory.createP());
+                    FooterPart footerPart = new FooterPart();
+                    footerPart.setJaxbElement(ftr);
+                    relMap.put(footerId, addBlankPart(targetMain, footerPart, Namespaces.FOOTER, mediaRegistry));
+                }
+                FooterReference reference = factory.createFooterReference();
+                reference.setType(type);
+                reference.setId(footerId);
+                reference.setParent(sectPr);
+                sectPr.getEGHdrFtrReferences().add(reference);
+            }
+        }
+    }
+
+    /**
+     * 将空白的页眉或页脚加入目标文档，目标文档中已有相同的空白部件时直接复用
+     *
+     * @return 目标文档主文档部件中的关系ID
+     */
+    private static String addBlankPart(MainDocumentPart targetMain, Part blankPart, String relationshipType,
+                                       MediaRegistry mediaRegistry) throws Exception {
+        String digest = MediaRegistry.digest(blankPart);
+        String relId = findExisting(targetMain, relationshipType, digest, mediaRegistry);
+        if (relId == null) {
+            blankPart.setPartName(uniquePartName(targetMain.getPackage().getParts(), blankPart.getPartName()));
+            relId = targetMain.addTargetPart(blankPart, AddPartBehaviour.RENAME_IF_NAME_EXISTS).getId();
+            mediaRegistry.register(relationshipType, digest, relId);
+            mediaRegistry.registerPart(relationshipType, digest, blankPart);
+        }
+        return relId;
+    }
+
+    /**
+     * 查找正文中的第一个节属性：第一个带有节属性的段落，没有时为body的节属性
+     */
+    private static SectPr findFirstSectPr(Body body) {
+        if (body == null) {
+            return null;
+        }
+        for (Object o : body.getContent()) {
+            if (o instanceof P && ((P) o).getPPr() != null && ((P) o).getPPr().getSectPr() != null) {
+                return ((P) o).getPPr().getSectPr();
+            }
+        }
+        return body.getSectPr();
+    }
+
+    private static boolean hasRelationship(RelationshipsPart relsPart, String relationshipType) {
+        for (Relationship rel : relsPart.getRelationships().getRelationship()) {
+            if (relationshipType.equals(rel.getType())) {
+                return true;
+            }
+        }
+        return false;
+    }
 
+    /**
+     * 生成源文档主文档部件中未被占用的关系ID
+     */
+    private static String unusedRelId(RelationshipsPart sourceRels, Map<String, String> relMap) {
+        for (int n = 1; ; n++) {
+            String relId = "rIdHf" + n;
+            if (sourceRels.getRelationshipByID(relId) == null && !relMap.containsKey(relId)) {
+                return relId;
+            }
+        }
+    }
+
+    /**
+     * 创建与源部件类型相同的新部件，新部件直接共享源部件已加载的内容，不经过序列化和重新解析
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Part newPart(Part source, PartName partName, String relationshipType) throws Exception {
+        Part copy;
         try {
-            // 获取文档的XML内容
-            String xmlContent = XmlUtils.marshaltoString(doc2Package.getMainDocumentPart().getJaxbElement(), true, true);
-
-            logger.debug("原始XML内容长度: {}", xmlContent.length());
-
-            // 创建临时映射，避免替换冲突
-            String updatedXmlContent = xmlContent;
-
-            // 使用临时标识符避免链式替换问题
-            String tempPrefix = "TEMP_REPLACE_";
-            int counter = 0;
-
-            // 第一步：将所有旧ID替换为临时ID
-            for (Map.Entry<String, String> entry : imageRelMap.entrySet()) {
-                String oldRelId = entry.getKey();
-                String tempId = tempPrefix + (counter++);
-
-                // 检查是否存在该引用
-                if (updatedXmlContent.contains("r:embed=\"" + oldRelId + "\"")) {
-                    logger.debug("第一步替换: {} -> {}", oldRelId, tempId);
-                    updatedXmlContent = updatedXmlContent.replace(
-                            "r:embed=\"" + oldRelId + "\"",
-                            "r:embed=\"" + tempId + "\""
-                    );
-                }
+            copy = source.getClass().getConstructor(PartName.class).newInstance(partName);
+        } catch (ReflectiveOperationException e) {
+            if (!(source instanceof BinaryPart)) {
+                throw new Docx4JException("无法创建部件: " + source.getClass().getName(), e);
+            }
+            copy = new BinaryPart(partName);
+        }
+        copy.setContentType(new ContentType(source.getContentType()));
+        copy.setRelationshipType(relationshipType);
+        if (source instanceof BinaryPart) {
+            ((BinaryPart) copy).setBinaryData(((BinaryPart) source).getBuffer());
+        } else if (source instanceof JaxbXmlPart) {
+            ((JaxbXmlPart) copy).setJaxbElement(((JaxbXmlPart) source).getJaxbElement());
+        } else if (source instanceof XmlPart) {
+            ((XmlPart) copy).setDocument(((XmlPart) source).getDocument());
+        } else if (source instanceof CustomXmlDataStoragePart) {
+            ((CustomXmlDataStoragePart) copy).setData(((CustomXmlDataStoragePart) source).getData());
+        } else {
+            throw new Docx4JException("不支持复制的部件类型: " + source.getClass().getName());
+        }
+        return copy;
+    }
+
+    /**
+     * 在关系部件中添加外部关系
+     *
+     * @param relsPart 关系部件
+     * @param source 源关系
+     * @param relId 关系ID，为null时分配新的ID
+     * @return 新关系
+     */
+    private static Relationship addExternalRelationship(RelationshipsPart relsPart, Relationship source, String relId) {
+        Relationship rel = RELATIONSHIP_FACTORY.createRelationship();
+        rel.setId(relId != null ? relId : relsPart.getNextId());
+        rel.setType(source.getType());
+        rel.setTarget(source.getTarget());
+        rel.setTargetMode("External");
+        relsPart.addRelationship(rel);
+        return rel;
+    }
+
+    /**
+     * 生成目标文档中未被使用的部件名称，如/word/media/image1.png已存在时依次尝试image1_1.png、image1_2.png
+     */
+    private static PartName uniquePartName(Parts parts, PartName sourceName) throws Exception {
+        String name = sourceName.getName();
+        PartName partName = new PartName(name);
+        if (parts.get(partName) == null) {
+            return partName;
+        }
+        int slash = name.lastIndexOf('/');
+        int dot = name.lastIndexOf('.');
+        String base = dot > slash ? name.substring(0, dot) : name;
+        String extension = dot > slash ? name.substring(dot) : "";
+        for (int n = 1; ; n++) {
+            partName = new PartName(base + "_" + n + extension);
+            if (parts.get(partName) == null) {
+                return partName;
             }
+        }
+    }
 
-            // 第二步：将临时ID替换为新ID
-            counter = 0;
-            for (Map.Entry<String, String> entry : imageRelMap.entrySet()) {
-                String newRelId = entry.getValue();
-                String tempId = tempPrefix + counter++;
+    /**
+     * 创建更新媒体引用关系的遍历步骤
+     *
+     * @param imageRelMap 旧关系ID到新关系ID的映射
+     * @return 遍历步骤列表，映射为空时返回空列表
+     * @see #createRelationshipReferenceSteps(Map)
+     */
+    public static List<TraversalStep<?>> createMediaReferenceSteps(Map<String, String> imageRelMap) {
+        return createRelationshipReferenceSteps(imageRelMap);
+    }
 
-                if (updatedXmlContent.contains("r:embed=\"" + tempId + "\"")) {
-                    logger.debug("第二步替换: {} -> {}", tempId, newRelId);
-                    updatedXmlContent = updatedXmlContent.replace(
-                            "r:embed=\"" + tempId + "\"",
-                            "r:embed=\"" + newRelId + "\""
-                    );
+    /**
+     * 创建更新关系引用的遍历步骤，将旧关系ID替换为新关系ID
+     * 不再按元素类型逐个处理，而是改写每个节点上所有r:命名空间的属性（a:blip的r:embed和r:link、w:hyperlink的r:id、
+     * c:chart的r:id、dgm:relIds的r:dm等）以及VML的o:relid，docx4j无法绑定而保留为DOM的扩展内容同样处理。
+     * 每个节点类型需要检查的字段只反射一次，整个文档只遍历一次
+     *
+     * @param relMap 旧关系ID到新关系ID的映射
+     * @return 遍历步骤列表，映射为空时返回空列表
+     */
+    public static List<TraversalStep<?>> createRelationshipReferenceSteps(Map<String, String> relMap) {
+        if (relMap == null || relMap.isEmpty()) {
+            logger.debug("没有关系引用需要更新");
+            return Collections.emptyList();
+        }
+        logger.info("更新关系引用，共 {} 个关系需要更新", relMap.size());
+        List<TraversalStep<?>> steps = new ArrayList<>(2);
+        steps.add(TraversalStep.of(Object.class, node -> {
+            for (Field field : getRelationshipFields(node.getClass())) {
+                try {
+                    String newId = relMap.get((String) field.get(node));
+                    if (newId != null) {
+                        field.set(node, newId);
+                    }
+                } catch (IllegalAccessException e) {
+                    logger.debug("无法更新字段 {}.{}", node.getClass().getName(), field.getName());
                 }
             }
+        }));
+        steps.add(TraversalStep.of(Element.class, element -> remapElement(element, relMap)));
+        return steps;
+    }
 
-            // 检查是否真的有更新
-            if (!updatedXmlContent.equals(xmlContent)) {
-                logger.debug("XML内容已更新");
-                // 将更新后的XML内容重新设置到文档中
-                Document document = (Document)
-                        XmlUtils.unmarshalString(updatedXmlContent);
-                doc2Package.getMainDocumentPart().setJaxbElement(document);
-            } else {
-                logger.debug("XML内容未发生变化");
+    /**
+     * 获取JAXB类中对应r:命名空间属性或o:relid属性的字符串字段，包括父类中声明的字段
+     */
+    private static Field[] getRelationshipFields(Class<?> clazz) {
+        Field[] fields = RELATIONSHIP_FIELD_CACHE.get(clazz);
+        if (fields != null) {
+            return fields;
+        }
+        List<Field> list = new ArrayList<>();
+        for (Class<?> c = clazz; c != null && c != Object.class; c = c.getSuperclass()) {
+            for (Field field : c.getDeclaredFields()) {
+                XmlAttribute attribute = field.getAnnotation(XmlAttribute.class);
+                if (attribute == null || field.getType() != String.class || Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                if (RELATIONSHIPS_NAMESPACE.equals(attribute.namespace())
+                        || OFFICE_NAMESPACE.equals(attribute.namespace()) && "relid".equals(attribute.name())) {
+                    field.setAccessible(true);
+                    list.add(field);
+                }
             }
+        }
+        fields = list.toArray(new Field[0]);
+        RELATIONSHIP_FIELD_CACHE.put(clazz, fields);
+        return fields;
+    }
 
-            logger.info("图片引用关系更新完成");
-        } catch (Exception e) {
-            logger.error("更新图片引用关系失败: {}", e.getMessage(), e);
+    /**
+     * 改写DOM元素及其所有后代元素上的关系ID属性
+     */
+    private static void remapElement(Element element, Map<String, String> relMap) {
+        NamedNodeMap attributes = element.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Attr attr = (Attr) attributes.item(i);
+            if (RELATIONSHIPS_NAMESPACE.equals(attr.getNamespaceURI())
+                    || OFFICE_NAMESPACE.equals(attr.getNamespaceURI()) && "relid".equals(attr.getLocalName())) {
+                String newId = relMap.get(attr.getValue());
+                if (newId != null) {
+                    attr.setValue(newId);
+                }
+            }
+        }
+        for (Node child = element.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element) {
+                remapElement((Element) child, relMap);
+            }
         }
     }
-}
\ No newline at end of file
+}
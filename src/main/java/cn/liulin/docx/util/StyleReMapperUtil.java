@@ -1,13 +1,23 @@
 package cn.liulin.docx.util;
 
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.NumberingDefinitionsPart;
 import org.docx4j.openpackaging.parts.WordprocessingML.StyleDefinitionsPart;
+import org.docx4j.wml.CTTblPrBase;
+import org.docx4j.wml.PPrBase;
+import org.docx4j.wml.RStyle;
 import org.docx4j.wml.Style;
 import org.docx4j.wml.Styles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * @author liulin
@@ -20,8 +30,47 @@ public class StyleReMapperUtil {
     /**
      * 合并样式，以第一个文档的样式为基准
      * @param docList 文档列表
+     * @return 与文档列表下标一一对应的旧样式ID到新样式ID的映射，只包含被重命名或合并到其他ID的样式
      */
-    public static void mergeStyles(List<WordprocessingMLPackage> docList) {
+    public static List<Map<String, String>> mergeStyles(List<WordprocessingMLPackage> docList) {
+        return mergeStyles(docList, new StyleRegistry());
+    }
+
+    /**
+     * 合并样式，以第一个文档的样式为基准
+     * 来源样式按类型、样式ID、默认标记和定义内容在登记表中查找：定义相同的样式直接复用，
+     * 目标文档中不存在的样式原样加入，样式ID相同但定义不同的样式重命名后加入，避免不同格式的文档被统一成基准文档的样式。
+     * 默认样式冲突时保留基准文档的定义，来源文档的默认格式由合并前保存的格式信息补充到运行元素上。
+     * 样式中的numPr引用必须已经由{@link NumberingMapperUtil#mapNumbering}更新为目标文档的numId，
+     * 不传入编号登记表时按numId比较，引用不同编号实例的样式不会被当作相同样式。
+     * 文档正文中的pStyle、rStyle、tblStyle引用不在此处修改，由{@link #createStyleReferenceSteps(Map)}在文档遍历时统一更新
+     *
+     * @param docList 文档列表
+     * @param styleRegistry 目标文档的样式登记表，多个批次合并到同一目标文档时应使用同一个登记表
+     * @return 与文档列表下标一一对应的旧样式ID到新样式ID的映射，只包含被重命名或合并到其他ID的样式
+     */
+    public static List<Map<String, String>> mergeStyles(List<WordprocessingMLPackage> docList, StyleRegistry styleRegistry) {
+        return mergeStyles(docList, styleRegistry, null, null);
+    }
+
+    /**
+     * 合并样式，以第一个文档的样式为基准
+     * 样式中的numPr按所引用抽象编号的内容比较，各文档中结构相同的编号绑定（如多级标题）合并为同一个样式
+     *
+     * @param docList 文档列表
+     * @param styleRegistry 目标文档的样式登记表
+     * @param numberingRegistry 目标文档的编号登记表，为null时numPr按numId比较
+     * @param sourceRegistry 来源文档是部分合并结果时其样式登记表，用于查找被重命名样式的原始ID，其余情况为null
+     * @return 与文档列表下标一一对应的旧样式ID到新样式ID的映射，只包含被重命名或合并到其他ID的样式
+     * @see #mergeStyles(List, StyleRegistry)
+     */
+    public static List<Map<String, String>> mergeStyles(List<WordprocessingMLPackage> docList, StyleRegistry styleRegistry,
+                                                        NumberingRegistry numberingRegistry,
+                                                        StyleRegistry sourceRegistry) {
+        List<Map<String, String>> styleIdMaps = new ArrayList<>(docList.size());
+        for (int i = 0; i < docList.size(); i++) {
+            styleIdMaps.add(new HashMap<>());
+        }
         try {
             logger.info("开始合并样式，以第一个文档为基准");
 
@@ -29,14 +78,22 @@ public class StyleReMapperUtil {
             StyleDefinitionsPart baseStylePart = docList.get(0).getMainDocumentPart().getStyleDefinitionsPart();
             if (baseStylePart == null) {
                 logger.warn("第一个文档没有样式定义部分");
-                return;
+                return styleIdMaps;
             }
 
             Styles baseStyles = baseStylePart.getJaxbElement();
             if (baseStyles == null) {
                 logger.warn("第一个文档没有样式定义");
-                return;
+                return styleIdMaps;
+            }
+            if (numberingRegistry != null && !numberingRegistry.isRegistered()) {
+                // 来源文档都没有编号定义时编号映射不会登记目标文档的编号，目标样式的numPr同样需要按抽象编号比较
+                NumberingDefinitionsPart baseNumberingPart = docList.get(0).getMainDocumentPart().getNumberingDefinitionsPart();
+                if (baseNumberingPart != null && baseNumberingPart.getJaxbElement() != null) {
+                    numberingRegistry.registerExisting(baseNumberingPart.getJaxbElement());
+                }
             }
+            styleRegistry.registerExisting(baseStyles, numberingRegistry);
 
             // 遍历后续文档，合并新增样式
             for (int i = 1; i < docList.size(); i++) {
@@ -59,39 +116,158 @@ public class StyleReMapperUtil {
                     continue;
                 }
 
-                // 遍历当前文档的样式
-                for (Style currentStyle : currentStyleList) {
-                    // 检查该样式是否已存在于基础文档中
-                    boolean styleExists = false;
-                    String currentStyleId = currentStyle.getStyleId();
-                    String currentStyleType = currentStyle.getType();
-                    boolean currentStyleDefault = currentStyle.isDefault();
-
-                    // 检查基础文档中是否已存在相同类型、ID和默认设置的样式
-                    for (Style baseStyle : baseStyles.getStyle()) {
-                        if (baseStyle.getType() != null && baseStyle.getType().equals(currentStyleType) &&
-                                baseStyle.getStyleId() != null && baseStyle.getStyleId().equals(currentStyleId) &&
-                                baseStyle.isDefault() == currentStyleDefault) {
-                            styleExists = true;
-                            break;
-                        }
-                    }
+                Map<String, String> styleIdMap = styleIdMaps.get(i);
+                List<Style> addedStyles = new ArrayList<>();
+                for (Style currentStyle : parentsFirst(currentStyleList)) {
+                    mergeStyle(currentStyle, styleRegistry, sourceRegistry, styleIdMap, addedStyles);
+                }
 
-                    // 如果样式不存在，则添加到基础文档中
-                    if (!styleExists) {
-                        baseStyles.getStyle().add(currentStyle);
-                        logger.debug("添加新样式: type={}, styleId={}, default={}",
-                                currentStyleType, currentStyleId, currentStyleDefault);
-                    } else {
-                        logger.debug("样式已存在，跳过: type={}, styleId={}, default={}",
-                                currentStyleType, currentStyleId, currentStyleDefault);
+                // 新加入样式的next、link引用可能指向在其之后处理的样式，全部样式合并后再更新
+                if (!styleIdMap.isEmpty()) {
+                    for (Style addedStyle : addedStyles) {
+                        updateStyleLinks(addedStyle, styleIdMap);
                     }
                 }
+                logger.debug("文档 {} 新增 {} 个样式，{} 个样式ID被重新映射", i, addedStyles.size(), styleIdMap.size());
             }
 
-            logger.info("样式合并完成");
+            logger.info("样式合并完成，目标文档共 {} 个样式，{} 个冲突样式被重命名",
+                    styleRegistry.size(), styleRegistry.getRenamed());
         } catch (Exception e) {
             logger.error("合并样式时出错: {}", e.getMessage(), e);
         }
+        return styleIdMaps;
+    }
+
+    /**
+     * 合并单个来源样式
+     */
+    private static void mergeStyle(Style currentStyle, StyleRegistry styleRegistry, StyleRegistry sourceRegistry,
+                                   Map<String, String> styleIdMap, List<Style> addedStyles) {
+        String currentStyleId = currentStyle.getStyleId();
+        String currentStyleType = currentStyle.getType();
+        boolean currentStyleDefault = currentStyle.isDefault();
+        if (currentStyleId == null) {
+            logger.debug("样式没有ID，跳过: type={}", currentStyleType);
+            return;
+        }
+
+        // 父样式已先于当前样式合并，basedOn先更新为父样式在目标文档中的ID再计算摘要，
+        // 父样式被重命名时，当前样式不会与目标文档中基于原父样式的同名样式误判为相同
+        if (currentStyle.getBasedOn() != null) {
+            currentStyle.getBasedOn().setVal(remap(styleIdMap, currentStyle.getBasedOn().getVal()));
+        }
+
+        // 定义相同的样式此前已经合并过，直接使用对应的目标样式
+        String originalId = sourceRegistry != null ? sourceRegistry.originalId(currentStyleId) : currentStyleId;
+        String digest = styleRegistry.definitionDigest(currentStyle);
+        String existingId = styleRegistry.find(currentStyle, originalId, digest);
+        if (existingId != null) {
+            if (!existingId.equals(currentStyleId)) {
+                styleIdMap.put(currentStyleId, existingId);
+            }
+            logger.debug("样式已存在，跳过: type={}, styleId={}, default={}",
+                    currentStyleType, currentStyleId, currentStyleDefault);
+            return;
+        }
+
+        Style baseStyle = styleRegistry.get(currentStyleId);
+        if (baseStyle == null) {
+            // 目标文档中已有同类型的默认样式时，新样式不能再作为默认样式
+            if (currentStyleDefault && styleRegistry.hasDefault(currentStyleType)) {
+                currentStyle.setDefault(null);
+            }
+            styleRegistry.add(currentStyle, originalId, currentStyleDefault, digest);
+            addedStyles.add(currentStyle);
+            logger.debug("添加新样式: type={}, styleId={}, default={}",
+                    currentStyleType, currentStyleId, currentStyleDefault);
+            return;
+        }
+
+        if (currentStyleDefault || baseStyle.isDefault()) {
+            logger.debug("默认样式定义不同，保留基准文档的定义: type={}, styleId={}", currentStyleType, currentStyleId);
+            return;
+        }
+
+        // 样式ID相同但定义不同，重命名后加入目标文档
+        String newStyleId = styleRegistry.uniqueStyleId(currentStyleId);
+        currentStyle.setStyleId(newStyleId);
+        if (currentStyle.getName() != null && currentStyle.getName().getVal() != null) {
+            currentStyle.getName().setVal(currentStyle.getName().getVal() + newStyleId.substring(currentStyleId.length()));
+        }
+        styleRegistry.add(currentStyle, originalId, currentStyleDefault, digest);
+        addedStyles.add(currentStyle);
+        styleIdMap.put(currentStyleId, newStyleId);
+        logger.debug("样式定义冲突，重命名: type={}, styleId={} -> {}", currentStyleType, currentStyleId, newStyleId);
+    }
+
+    /**
+     * 按basedOn排序，父样式排在子样式之前，其余样式保持原有顺序
+     */
+    private static List<Style> parentsFirst(List<Style> styles) {
+        Map<String, Style> stylesById = new HashMap<>();
+        for (Style style : styles) {
+            if (style.getStyleId() != null) {
+                stylesById.putIfAbsent(style.getStyleId(), style);
+            }
+        }
+        List<Style> ordered = new ArrayList<>(styles.size());
+        Set<Style> visited = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Style style : styles) {
+            addParentsFirst(style, stylesById, visited, ordered);
+        }
+        return ordered;
+    }
+
+    private static void addParentsFirst(Style style, Map<String, Style> stylesById, Set<Style> visited,
+                                        List<Style> ordered) {
+        // 已访问的样式不再处理，basedOn形成循环时也能结束
+        if (!visited.add(style)) {
+            return;
+        }
+        Style parent = style.getBasedOn() == null ? null : stylesById.get(style.getBasedOn().getVal());
+        if (parent != null) {
+            addParentsFirst(parent, stylesById, visited, ordered);
+        }
+        ordered.add(style);
+    }
+
+    /**
+     * 更新样式之间的next、link引用，basedOn在合并单个样式时已经更新
+     */
+    private static void updateStyleLinks(Style style, Map<String, String> styleIdMap) {
+        if (style.getNext() != null) {
+            style.getNext().setVal(remap(styleIdMap, style.getNext().getVal()));
+        }
+        if (style.getLink() != null) {
+            style.getLink().setVal(remap(styleIdMap, style.getLink().getVal()));
+        }
+    }
+
+    /**
+     * 创建更新样式引用的遍历步骤，将段落、运行和表格引用的样式ID替换为合并后的样式ID
+     *
+     * @param styleIdMap 旧样式ID到新样式ID的映射
+     * @return 遍历步骤列表，映射为空时返回空列表
+     */
+    public static List<TraversalStep<?>> createStyleReferenceSteps(Map<String, String> styleIdMap) {
+        if (styleIdMap == null || styleIdMap.isEmpty()) {
+            return Collections.emptyList();
+        }
+        logger.debug("更新样式引用，共 {} 个样式ID需要更新", styleIdMap.size());
+        List<TraversalStep<?>> steps = new ArrayList<>(3);
+        steps.add(TraversalStep.of(PPrBase.PStyle.class, pStyle -> pStyle.setVal(remap(styleIdMap, pStyle.getVal()))));
+        steps.add(TraversalStep.of(RStyle.class, rStyle -> rStyle.setVal(remap(styleIdMap, rStyle.getVal()))));
+        steps.add(TraversalStep.of(CTTblPrBase.TblStyle.class,
+                tblStyle -> tblStyle.setVal(remap(styleIdMap, tblStyle.getVal()))));
+        return steps;
+    }
+
+    private static String remap(Map<String, String> styleIdMap, String styleId) {
+        if (styleId == null) {
+            return null;
+        }
+        String newStyleId = styleIdMap.get(styleId);
+        return newStyleId != null ? newStyleId : styleId;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,225 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.wml.PPrBase;
+import org.docx4j.wml.Style;
+import org.docx4j.wml.Styles;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 样式登记表
+ * 按样式ID索引目标文档中的样式，并按（类型、样式ID、默认标记、定义内容摘要）记录每个来源样式最终对应的目标样式ID，
+ * 定义相同的样式在多个文档之间只保留一份，定义不同的同名样式被重命名后加入目标文档。
+ * 样式中的numPr按所引用抽象编号的内容比较，而不是按每个文档都不同的numId比较。
+ * 一次合并过程使用同一个登记表，跨批次保持有效
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 16:20
+ */
+public class StyleRegistry {
+
+    /**
+     * 计算定义摘要时忽略的字段：样式ID和名称，以及修订标识、在样式库中的排序和显示方式等不影响格式的字段
+     */
+    private static final List<String> IGNORED_FIELDS = Arrays.asList("styleId", "name", "rsid", "uiPriority",
+            "semiHidden", "unhideWhenUsed", "qFormat", "locked", "personal", "personalCompose", "personalReply");
+
+    private Styles targetStyles;
+
+    /**
+     * 目标文档的编号登记表，为null时样式中的numPr按numId比较
+     */
+    private NumberingRegistry numberingRegistry;
+
+    /**
+     * 被重命名的样式ID到来源文档中原始样式ID的映射，如Custom_1到Custom
+     */
+    private final Map<String, String> originalIds = new HashMap<>();
+
+    /**
+     * 目标文档中的样式，按样式ID索引
+     */
+    private final Map<String, Style> stylesById = new HashMap<>();
+
+    /**
+     * 来源样式的（类型、样式ID、默认标记、定义摘要）到目标样式ID的映射
+     */
+    private final Map<String, String> targetIdByDefinition = new HashMap<>();
+
+    /**
+     * 目标文档中已有默认样式的样式类型
+     */
+    private final Set<String> defaultTypes = new HashSet<>();
+
+    private int renamed;
+
+    /**
+     * 登记目标文档中已有的样式，只在第一次调用时生效
+     *
+     * @param styles 目标文档的样式定义
+     */
+    public void registerExisting(Styles styles) {
+        registerExisting(styles, null);
+    }
+
+    /**
+     * 登记目标文档中已有的样式，只在第一次调用时生效
+     *
+     * @param styles 目标文档的样式定义
+     * @param numberingRegistry 目标文档的编号登记表，样式中的numPr按其引用的抽象编号内容比较，为null时按numId比较
+     */
+    public void registerExisting(Styles styles, NumberingRegistry numberingRegistry) {
+        if (targetStyles != null) {
+            return;
+        }
+        targetStyles = styles;
+        this.numberingRegistry = numberingRegistry;
+        for (Style style : styles.getStyle()) {
+            index(style);
+            targetIdByDefinition.putIfAbsent(definitionKey(style, definitionDigest(style)), style.getStyleId());
+        }
+    }
+
+    /**
+     * 计算样式的定义摘要，在样式被重命名前、basedOn更新为目标样式ID、numPr更新为目标numId后计算
+     *
+     * @param style 样式
+     * @return 不包括样式ID、名称等非格式字段的内容摘要
+     */
+    public String definitionDigest(Style style) {
+        PPrBase.NumPr numPr = style.getPPr() == null ? null : style.getPPr().getNumPr();
+        PPrBase.NumPr.NumId numId = numPr == null ? null : numPr.getNumId();
+        String numDigest = numId == null || numId.getVal() == null || numberingRegistry == null
+                ? null : numberingRegistry.abstractNumDigest(numId.getVal());
+        if (numDigest == null) {
+            return JaxbContentUtil.digest(style, IGNORED_FIELDS);
+        }
+        // numId换成所引用抽象编号的内容摘要参与计算
+        numPr.setNumId(null);
+        try {
+            return JaxbContentUtil.digest(style, IGNORED_FIELDS) + "#num:" + numDigest;
+        } finally {
+            numPr.setNumId(numId);
+        }
+    }
+
+    /**
+     * 查找定义相同的来源样式此前对应的目标样式ID
+     *
+     * @param style 来源样式
+     * @param originalId 来源样式在原始文档中的样式ID，来自已重命名过样式的部分合并结果时与当前样式ID不同
+     * @param digest 来源样式的定义摘要
+     * @return 目标样式ID，未登记时返回null
+     */
+    public String find(Style style, String originalId, String digest) {
+        String targetId = targetIdByDefinition.get(definitionKey(style, digest));
+        if (targetId == null && originalId != null && !originalId.equals(style.getStyleId())) {
+            targetId = targetIdByDefinition.get(definitionKey(style, originalId, digest));
+        }
+        return targetId;
+    }
+
+    /**
+     * 获取样式在原始文档中的样式ID，未被重命名的样式返回其本身的ID
+     *
+     * @param styleId 目标文档中的样式ID
+     */
+    public String originalId(String styleId) {
+        String originalId = originalIds.get(styleId);
+        return originalId != null ? originalId : styleId;
+    }
+
+    /**
+     * 获取目标文档中指定ID的样式
+     */
+    public Style get(String styleId) {
+        return stylesById.get(styleId);
+    }
+
+    /**
+     * 判断目标文档中是否已有指定类型的默认样式
+     */
+    public boolean hasDefault(String type) {
+        return defaultTypes.contains(type);
+    }
+
+    /**
+     * 生成目标文档中未被使用的样式ID，如Custom已存在时依次尝试Custom_1、Custom_2
+     *
+     * @param styleId 原样式ID
+     * @return 未被使用的样式ID
+     */
+    public String uniqueStyleId(String styleId) {
+        for (int n = 1; ; n++) {
+            String candidate = styleId + "_" + n;
+            if (!stylesById.containsKey(candidate)) {
+                renamed++;
+                return candidate;
+            }
+        }
+    }
+
+    /**
+     * 将来源样式加入目标文档并登记
+     * 按原始样式ID和加入后的样式ID分别登记，并记录重命名前的原始ID，
+     * 合并已经重命名过样式的部分合并结果时（如另一个文档中的Custom_1），定义相同的样式可以直接复用
+     *
+     * @param style 来源样式，样式ID可能已被重命名
+     * @param originalId 来源样式在原始文档中的样式ID
+     * @param originalDefault 来源样式修改前的默认标记
+     * @param digest 来源样式的定义摘要
+     */
+    public void add(Style style, String originalId, boolean originalDefault, String digest) {
+        targetStyles.getStyle().add(style);
+        index(style);
+        targetIdByDefinition.put(definitionKey(style.getType(), originalId, originalDefault, digest), style.getStyleId());
+        targetIdByDefinition.putIfAbsent(definitionKey(style, digest), style.getStyleId());
+        if (!originalId.equals(style.getStyleId())) {
+            originalIds.put(style.getStyleId(), originalId);
+        }
+    }
+
+    /**
+     * 生成样式的定义键：类型、样式ID、默认标记和定义摘要
+     */
+    public String definitionKey(Style style, String digest) {
+        return definitionKey(style, style.getStyleId(), digest);
+    }
+
+    private static String definitionKey(Style style, String styleId, String digest) {
+        return definitionKey(style.getType(), styleId, style.isDefault(), digest);
+    }
+
+    private static String definitionKey(String type, String styleId, boolean isDefault, String digest) {
+        return type + '#' + styleId + '#' + isDefault + '#' + digest;
+    }
+
+    /**
+     * 获取登记的样式数量
+     */
+    public int size() {
+        return stylesById.size();
+    }
+
+    /**
+     * 获取因定义冲突而重命名的样式数量
+     */
+    public int getRenamed() {
+        return renamed;
+    }
+
+    private void index(Style style) {
+        if (style.getStyleId() != null) {
+            stylesById.putIfAbsent(style.getStyleId(), style);
+        }
+        if (style.isDefault() && style.getType() != null) {
+            defaultTypes.add(style.getType());
+        }
+    }
+}
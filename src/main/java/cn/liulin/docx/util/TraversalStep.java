@@ -0,0 +1,52 @@
+package cn.liulin.docx.util;
+
+import java.util.function.Consumer;
+
+/**
+ * 文档遍历步骤
+ * 在{@link DocumentTraversalUtil}遍历JAXB对象树时，每遇到一个指定类型的节点就会调用一次{@link #visit(Object)}，
+ * 多个步骤可以注册到同一次遍历中，避免对同一文档进行多次序列化和解析
+ *
+ * @param <T> 关注的节点类型
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 10:05
+ */
+public interface TraversalStep<T> {
+
+    /**
+     * 获取该步骤关注的节点类型，子类型节点同样会被处理
+     *
+     * @return 节点类型
+     */
+    Class<T> getNodeType();
+
+    /**
+     * 处理单个节点，可以直接修改节点的属性
+     *
+     * @param node 节点
+     */
+    void visit(T node);
+
+    /**
+     * 根据节点类型和处理逻辑创建遍历步骤
+     *
+     * @param nodeType 关注的节点类型
+     * @param visitor 处理逻辑
+     * @param <T> 节点类型
+     * @return 遍历步骤
+     */
+    static <T> TraversalStep<T> of(Class<T> nodeType, Consumer<T> visitor) {
+        return new TraversalStep<T>() {
+            @Override
+            public Class<T> getNodeType() {
+                return nodeType;
+            }
+
+            @Override
+            public void visit(T node) {
+                visitor.accept(node);
+            }
+        };
+    }
+}
@@ -0,0 +1,124 @@
+package cn.liulin.docx.util;
+
+import cn.liulin.docx.DocxMerger;
+import cn.liulin.docx.MergeConfig;
+import org.docx4j.XmlUtils;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.NumberingDefinitionsPart;
+import org.docx4j.wml.RPr;
+import org.docx4j.wml.Style;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * 预热工具
+ * 初始化docx4j的JAXB上下文和部件类型，并生成几个小文档执行完整的合并，使合并过程中用到的类在第一个真实任务之前完成加载和初始化，
+ * 热点方法完成初步编译。用于按任务启动JVM的场景，也用于生成AppCDS归档时的训练运行
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/16 23:00
+ */
+public class WarmUpUtil {
+    private static final Logger logger = LoggerUtil.getLogger(WarmUpUtil.class);
+
+    private static final String W = "xmlns:w=\"http://schemas.openxmlformats.org/wordprocessingml/2006/main\"";
+
+    /**
+     * 生成的文档数量，包含样式冲突和编号，覆盖样式重命名和编号映射
+     */
+    private static final int DOC_COUNT = 3;
+
+    /**
+     * 预热
+     *
+     * @param config 合并配置，与实际任务使用相同的配置时预热覆盖的代码路径与实际任务一致，配置中的监听器同样会收到预热合并的回调
+     * @param iterations 合并次数
+     * @return 预热耗时，单位毫秒
+     */
+    public static long warmUp(MergeConfig config, int iterations) throws Exception {
+        if (iterations < 1) {
+            throw new IllegalArgumentException("预热次数必须大于0: " + iterations);
+        }
+        long start = System.nanoTime();
+        // JAXB上下文在Context类初始化时全部创建，是冷启动中耗时最多的部分
+        logger.debug("JAXB实现: {}", Context.getJaxbImplementation());
+
+        Path dir = Files.createTempDirectory("docx-merge-warmup");
+        try {
+            List<String> docPaths = new ArrayList<>(DOC_COUNT);
+            for (int i = 0; i < DOC_COUNT; i++) {
+                File doc = dir.resolve("doc" + i + ".docx").toFile();
+                createDocument(i).save(doc);
+                docPaths.add(doc.getPath());
+            }
+            DocxMerger merger = new DocxMerger(config);
+            for (int i = 0; i < iterations; i++) {
+                merger.mergeList(docPaths, dir.resolve("merged" + i + ".docx").toString());
+            }
+        } finally {
+            deleteRecursively(dir);
+        }
+        long elapsed = (System.nanoTime() - start) / 1_000_000;
+        logger.info("预热完成，合并 {} 次，耗时 {} ms", iterations, elapsed);
+        return elapsed;
+    }
+
+    /**
+     * 生成包含标题、自定义样式、编号列表和表格的文档，奇偶文档中同名样式的定义不同
+     */
+    private static WordprocessingMLPackage createDocument(int index) throws Exception {
+        WordprocessingMLPackage pkg = WordprocessingMLPackage.createPackage();
+        MainDocumentPart mdp = pkg.getMainDocumentPart();
+        NumberingDefinitionsPart ndp = new NumberingDefinitionsPart();
+        mdp.addTargetPart(ndp);
+        ndp.unmarshalDefaultNumbering();
+
+        String color = index % 2 == 0 ? "00AA00" : "FF0000";
+        mdp.getStyleDefinitionsPart().getJaxbElement().getStyle().add((Style) XmlUtils.unmarshalString(
+                "<w:style " + W + " w:type=\"paragraph\" w:styleId=\"Custom\"><w:name w:val=\"Custom\"/>"
+                        + "<w:rPr><w:color w:val=\"" + color + "\"/></w:rPr></w:style>"));
+        for (Style style : mdp.getStyleDefinitionsPart().getJaxbElement().getStyle()) {
+            if ("Normal".equals(style.getStyleId())) {
+                style.setRPr((RPr) XmlUtils.unmarshalString("<w:rPr " + W + "><w:sz w:val=\"" + (20 + index)
+                        + "\"/></w:rPr>"));
+            }
+        }
+
+        mdp.addStyledParagraphOfText("Title", "Document " + index);
+        mdp.addStyledParagraphOfText("Custom", "Custom styled paragraph");
+        mdp.addParagraphOfText("Paragraph");
+        mdp.addObject(XmlUtils.unmarshalString("<w:p " + W + "><w:pPr><w:numPr><w:ilvl w:val=\"0\"/>"
+                + "<w:numId w:val=\"1\"/></w:numPr><w:jc/></w:pPr><w:r><w:t>List item</w:t></w:r></w:p>"));
+        mdp.addObject(XmlUtils.unmarshalString("<w:tbl " + W + "><w:tblPr><w:tblW w:w=\"5000\" w:type=\"pct\"/></w:tblPr>"
+                + "<w:tblGrid><w:gridCol w:w=\"3000\"/></w:tblGrid><w:tr><w:trPr><w:trHeight w:val=\"400\"/></w:trPr>"
+                + "<w:tc><w:p><w:r><w:t>" + index + "</w:t></w:r></w:p></w:tc></w:tr></w:tbl>"));
+        return pkg;
+    }
+
+    private static void deleteRecursively(Path dir) {
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted((a, b) -> b.compareTo(a)).forEach(path -> path.toFile().delete());
+        } catch (IOException e) {
+            logger.warn("删除预热临时目录失败: {}", dir, e);
+        }
+    }
+
+    /**
+     * 执行预热后退出，用于生成AppCDS归档的训练运行
+     * 参数：[合并次数]，默认为3
+     */
+    public static void main(String[] args) throws Exception {
+        int iterations = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        System.out.println("warm-up " + warmUp(new MergeConfig(), iterations) + " ms");
+    }
+}
@@ -1,18 +1,40 @@
 package cn.liulin.docx.util;
 
+import cn.liulin.docx.metrics.MergeMetrics;
+import cn.liulin.docx.metrics.MergePhase;
+import cn.liulin.docx.metrics.PhaseMetrics;
+import cn.liulin.docx.metrics.PhaseTimer;
 import org.docx4j.XmlUtils;
 import org.docx4j.jaxb.Context;
 import org.docx4j.openpackaging.exceptions.Docx4JException;
 import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.JaxbXmlPart;
+import org.docx4j.openpackaging.parts.Part;
 import org.docx4j.openpackaging.parts.WordprocessingML.MainDocumentPart;
 import org.docx4j.openpackaging.parts.WordprocessingML.StyleDefinitionsPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+import org.docx4j.openpackaging.parts.relationships.RelationshipsPart;
+import org.docx4j.relationships.Relationship;
 import org.docx4j.wml.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
 import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * @author liulin
@@ -22,6 +44,12 @@ import java.util.List;
 public class WordProcessingUtils {
     private static final Logger logger = LoggerFactory.getLogger(WordProcessingUtils.class);
 
+    /**
+     * 正文之外包含段落内容的部件的关系类型，其中的样式和编号引用与正文一起更新
+     */
+    private static final Set<String> STORY_RELATIONSHIP_TYPES = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(
+            Namespaces.HEADER, Namespaces.FOOTER, Namespaces.FOOTNOTES, Namespaces.ENDNOTES, Namespaces.COMMENTS)));
+
     /**
      * 根据处理后的文档路径列表加载Word文档
      * 该方法会遍历路径列表，将每个路径对应的文档加载为WordprocessingMLPackage对象
@@ -40,6 +68,198 @@ public class WordProcessingUtils {
         return docList;
     }
 
+    /**
+     * 并发预处理并加载原始文档列表
+     * 每个文档的预处理和加载作为一个独立任务提交到线程池中执行，
+     * 返回的文档列表顺序与传入的路径顺序一致，预处理产生的临时文件在加载后立即删除
+     *
+     * @param docPathList 原始文档路径列表
+     * @param executor 执行预处理和加载任务的线程池，为null时在当前线程中按顺序处理
+     * @param inMemory 是否在内存中完成预处理，为true时不产生临时文件
+     * @return 按输入顺序排列的WordprocessingMLPackage对象列表
+     * @throws Exception 任一文档预处理或加载失败时抛出，其余未完成的任务会被取消
+     */
+    public static List<WordprocessingMLPackage> preprocessAndLoadDocList(List<String> docPathList, ExecutorService executor,
+                                                                         boolean inMemory) throws Exception {
+        return preprocessAndLoadDocList(docPathList, executor, inMemory, null, null, 0);
+    }
+
+    /**
+     * 并发预处理并加载原始文档列表，并按文档记录预处理和加载阶段的度量数据
+     *
+     * @param docPathList 原始文档路径列表
+     * @param executor 执行预处理和加载任务的线程池，为null时在当前线程中按顺序处理
+     * @param inMemory 是否在内存中完成预处理，为true时不产生临时文件
+     * @param cache 预处理结果缓存，为null时不使用缓存
+     * @param metrics 度量数据，为null时不记录
+     * @param batch 批次序号
+     * @return 按输入顺序排列的WordprocessingMLPackage对象列表
+     * @throws Exception 任一文档预处理或加载失败时抛出，其余未完成的任务会被取消
+     */
+    public static List<WordprocessingMLPackage> preprocessAndLoadDocList(List<String> docPathList, ExecutorService executor,
+                                                                         boolean inMemory, DocumentCache cache,
+                                                                         MergeMetrics metrics, int batch) throws Exception {
+        return preprocessAndLoadSourceList(DocumentSource.of(docPathList), executor, inMemory, cache, metrics, batch);
+    }
+
+    /**
+     * 并发预处理并加载文档来源列表，并按文档记录预处理和加载阶段的度量数据
+     *
+     * @param sourceList 原始文档来源列表
+     * @param executor 执行预处理和加载任务的线程池，为null时在当前线程中按顺序处理
+     * @param inMemory 文件来源的文档是否在内存中完成预处理，非文件来源的文档始终在内存中预处理
+     * @param cache 预处理结果缓存，为null时不使用缓存
+     * @param metrics 度量数据，为null时不记录
+     * @param batch 批次序号
+     * @return 按输入顺序排列的WordprocessingMLPackage对象列表
+     * @throws Exception 任一文档预处理或加载失败时抛出，其余未完成的任务会被取消
+     */
+    public static List<WordprocessingMLPackage> preprocessAndLoadSourceList(List<DocumentSource> sourceList,
+                                                                            ExecutorService executor, boolean inMemory,
+                                                                            DocumentCache cache, MergeMetrics metrics,
+                                                                            int batch) throws Exception {
+        List<WordprocessingMLPackage> docList = new ArrayList<>(sourceList.size());
+        if (executor == null) {
+            for (DocumentSource source : sourceList) {
+                docList.add(preprocessAndLoad(source, inMemory, cache, metrics, batch));
+            }
+            return docList;
+        }
+
+        List<Future<WordprocessingMLPackage>> futures = new ArrayList<>(sourceList.size());
+        for (DocumentSource source : sourceList) {
+            futures.add(executor.submit(() -> preprocessAndLoad(source, inMemory, cache, metrics, batch)));
+        }
+        try {
+            // 按提交顺序获取结果，保证文档顺序不变
+            for (Future<WordprocessingMLPackage> future : futures) {
+                docList.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            cancelAll(futures);
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        } catch (InterruptedException e) {
+            cancelAll(futures);
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+        return docList;
+    }
+
+    /**
+     * 预处理并加载单个文档
+     * 内存模式下预处理结果直接交给docx4j加载，否则写入临时文件并在加载完成后删除
+     *
+     * @param docPath 原始文档路径
+     * @param inMemory 是否在内存中完成预处理
+     * @return 加载后的文档
+     */
+    public static WordprocessingMLPackage preprocessAndLoad(String docPath, boolean inMemory) throws Exception {
+        return preprocessAndLoad(docPath, inMemory, null, null, 0);
+    }
+
+    /**
+     * 预处理并加载单个文档，并记录预处理和加载阶段的度量数据
+     * 使用缓存时预处理在内存中完成，命中缓存时跳过读取和预处理，直接从缓存的预处理结果加载
+     *
+     * @param docPath 原始文档路径
+     * @param inMemory 是否在内存中完成预处理
+     * @param cache 预处理结果缓存，为null时不使用缓存
+     * @param metrics 度量数据，为null时不记录
+     * @param batch 批次序号
+     * @return 加载后的文档
+     */
+    public static WordprocessingMLPackage preprocessAndLoad(String docPath, boolean inMemory, DocumentCache cache,
+                                                            MergeMetrics metrics, int batch) throws Exception {
+        return preprocessAndLoad(DocumentSource.of(docPath), inMemory, cache, metrics, batch);
+    }
+
+    /**
+     * 预处理并加载单个文档，非文件来源的文档始终在内存中预处理，不产生临时文件
+     *
+     * @param source 原始文档
+     * @param inMemory 文件来源的文档是否在内存中完成预处理
+     * @param cache 预处理结果缓存，为null时不使用缓存
+     * @param metrics 度量数据，为null时不记录
+     * @param batch 批次序号
+     * @return 加载后的文档
+     */
+    public static WordprocessingMLPackage preprocessAndLoad(DocumentSource source, boolean inMemory, DocumentCache cache,
+                                                            MergeMetrics metrics, int batch) throws Exception {
+        if (metrics == null) {
+            return load(source, inMemory, cache, null, batch);
+        }
+        metrics.checkCancelled();
+        WordprocessingMLPackage doc = load(source, inMemory, cache, metrics, batch);
+        metrics.documentLoaded(source.getName(), batch);
+        return doc;
+    }
+
+    private static WordprocessingMLPackage load(DocumentSource source, boolean inMemory, DocumentCache cache,
+                                                MergeMetrics metrics, int batch) throws Exception {
+        PhaseTimer timer = PhaseTimer.start();
+        if (cache != null) {
+            String key = cache.key(source);
+            byte[] processedDoc = cache.get(key);
+            if (processedDoc == null) {
+                processedDoc = PreprocessDocumentUtil.preprocessDocumentToBytes(source);
+                cache.put(key, processedDoc);
+            }
+            recordDocument(metrics, timer, MergePhase.PREPROCESS, batch, null);
+            timer = PhaseTimer.start();
+            WordprocessingMLPackage doc = WordprocessingMLPackage.load(new ByteArrayInputStream(processedDoc));
+            recordDocument(metrics, timer, MergePhase.LOAD, batch, doc);
+            return doc;
+        }
+        if (inMemory || source.getPath() == null) {
+            byte[] processedDoc = PreprocessDocumentUtil.preprocessDocumentToBytes(source);
+            recordDocument(metrics, timer, MergePhase.PREPROCESS, batch, null);
+            timer = PhaseTimer.start();
+            WordprocessingMLPackage doc = WordprocessingMLPackage.load(new ByteArrayInputStream(processedDoc));
+            recordDocument(metrics, timer, MergePhase.LOAD, batch, doc);
+            return doc;
+        }
+        String processedDocPath = PreprocessDocumentUtil.preprocessDocument(source);
+        try {
+            recordDocument(metrics, timer, MergePhase.PREPROCESS, batch, null);
+            timer = PhaseTimer.start();
+            WordprocessingMLPackage doc = WordprocessingMLPackage.load(new File(processedDocPath));
+            recordDocument(metrics, timer, MergePhase.LOAD, batch, doc);
+            return doc;
+        } finally {
+            Files.deleteIfExists(Paths.get(processedDocPath));
+        }
+    }
+
+    /**
+     * 记录单个文档的预处理或加载阶段，加载阶段同时记录文档包中的部件数量
+     */
+    private static void recordDocument(MergeMetrics metrics, PhaseTimer timer, MergePhase phase, int batch,
+                                       WordprocessingMLPackage doc) {
+        if (metrics == null) {
+            return;
+        }
+        PhaseMetrics phaseMetrics = timer.stop(phase, batch);
+        phaseMetrics.setDocuments(1);
+        if (doc != null) {
+            phaseMetrics.setParts(doc.getParts().getParts().size());
+        }
+        metrics.record(phaseMetrics);
+    }
+
+    /**
+     * 取消所有尚未完成的任务
+     */
+    private static void cancelAll(List<? extends Future<?>> futures) {
+        for (Future<?> future : futures) {
+            future.cancel(true);
+        }
+    }
+
     /**
      * 移除文档列表中所有文档的网格设置
      * 该方法会遍历文档列表，为每个文档调用移除网格设置的方法
@@ -101,28 +321,9 @@ public class WordProcessingUtils {
             WordprocessingMLPackage wordprocessingMLPackage = docList.get(i);
             MainDocumentPart mainDocumentPart = wordprocessingMLPackage.getMainDocumentPart();
             if (i == 0) {
-                // 保存第一个文档的节设置
-                SectPr firstDocSectPr = getPgSzSettings(mainDocumentPart);
-                // 删除第一个word的body的SectPr属性
-                Document wmlDocument = mainDocumentPart.getJaxbElement();
-                if (wmlDocument != null && wmlDocument.getBody() != null) {
-                    wmlDocument.getBody().setSectPr(null);
-                    logger.debug("已移除文档的节属性设置");
-                }
-                // 获取第一个word最后一个content的内容，将内容的分节属性设置为body的SectPr属性
-                List<Object> content = wmlDocument.getBody().getContent();
-                Object o = content.get(content.size() - 1);
-                if (o instanceof P) {
-                    P p = (P) o;
-                    PPr pPr = p.getPPr();
-                    if (pPr == null) {
-                        p.setPPr(createSectionPPr(firstDocSectPr));
-                    } else {
-                        p.getPPr().setSectPr(firstDocSectPr);
-                    }
-                } else {
-                    P sectionParagraph = createSectionParagraph(firstDocSectPr);
-                    content.add(sectionParagraph);
+                // 将第一个word的body的SectPr属性移动到最后一个段落，只有一个文档时保留为整个文档的节属性
+                if (docList.size() > 1) {
+                    moveBodySectPrToLastParagraph(mainDocumentPart);
                 }
             } else if (i == docList.size() - 1) {
                 // 如果是最后一个word，则获取word的body的SectPr属性
@@ -134,24 +335,9 @@ public class WordProcessingUtils {
                     main1.addObject(o);
                 }
             } else {
-                // 如果不是最后一个word，则获取word的body的SectPr属性
-                SectPr docSectPr = getPgSzSettings(mainDocumentPart);
-                // 获取word的最后一个content的内容，将内容的分节属性设置为body的SectPr属性
-                List<Object> content = mainDocumentPart.getJaxbElement().getBody().getContent();
-                Object lastContent = content.get(content.size() - 1);
-                if (lastContent instanceof P) {
-                    P p = (P) lastContent;
-                    PPr pPr = p.getPPr();
-                    if (pPr == null) {
-                        p.setPPr(createSectionPPr(docSectPr));
-                    } else {
-                        p.getPPr().setSectPr(docSectPr);
-                    }
-                } else {
-                    P sectionParagraph = createSectionParagraph(docSectPr);
-                    content.add(sectionParagraph);
-                }
-                for (Object co : content) {
+                // 如果不是最后一个word，将body的SectPr属性移动到最后一个段落后追加全部内容
+                moveBodySectPrToLastParagraph(mainDocumentPart);
+                for (Object co : mainDocumentPart.getJaxbElement().getBody().getContent()) {
                     main1.addObject(co);
                 }
             }
@@ -162,6 +348,41 @@ public class WordProcessingUtils {
         logger.info("对齐元素修复完成");
     }
 
+    /**
+     * 将文档body的节属性移动到最后一个段落中，使文档内容追加到其他文档后仍保持自己的页面设置
+     * 如果最后一个元素不是段落（如表格），则追加一个只包含节属性的段落
+     *
+     * @param mainDocumentPart 文档的主要部分
+     */
+    public static void moveBodySectPrToLastParagraph(MainDocumentPart mainDocumentPart) {
+        // 保存文档的节设置
+        SectPr docSectPr = getPgSzSettings(mainDocumentPart);
+        Document wmlDocument = mainDocumentPart.getJaxbElement();
+        if (wmlDocument == null || wmlDocument.getBody() == null) {
+            logger.warn("未找到文档主体");
+            return;
+        }
+        // 删除body的SectPr属性
+        wmlDocument.getBody().setSectPr(null);
+        logger.debug("已移除文档的节属性设置");
+
+        // 获取最后一个content的内容，将内容的分节属性设置为body的SectPr属性
+        List<Object> content = wmlDocument.getBody().getContent();
+        Object lastContent = content.isEmpty() ? null : content.get(content.size() - 1);
+        if (lastContent instanceof P) {
+            P p = (P) lastContent;
+            PPr pPr = p.getPPr();
+            if (pPr == null) {
+                p.setPPr(createSectionPPr(docSectPr));
+            } else {
+                p.getPPr().setSectPr(docSectPr);
+            }
+        } else {
+            P sectionParagraph = createSectionParagraph(docSectPr);
+            content.add(sectionParagraph);
+        }
+    }
+
     /**
      * 创建带有指定节设置的段落
      * @param sectPr 节属性设置
@@ -199,36 +420,18 @@ public class WordProcessingUtils {
     }
 
     /**
-     * 修复对齐元素，确保所有 jc 元素都有 val 属性
+     * 修复样式文档中的对齐元素，确保所有 jc 元素都有 val 属性
+     * 主文档中的对齐元素已在合并前由{@link #normalizeDocList(List, List, List, List, List)}逐个文档修复
+     *
+     * @param doc 合并后的文档
      */
-    private static void fixJustificationElements(WordprocessingMLPackage doc) {
+    public static void fixJustificationElements(WordprocessingMLPackage doc) {
         try {
-            // 直接使用docx4j API获取XML内容，不再需要通过ZIP方式读取
-            String xmlContent = XmlUtils.marshaltoString(doc.getMainDocumentPart().getJaxbElement(), true, true);
-            logger.debug("docx4j读取的主文档XML内容长度: {}", xmlContent.length());
-
-            // 使用replace方法修复所有缺失val属性的jc标签
-            xmlContent = fixMissingValAttributes(xmlContent);
-
-            // 将更新后的XML内容重新设置到文档对象中
-            Document document = (Document)
-                    XmlUtils.unmarshalString(xmlContent);
-            doc.getMainDocumentPart().setJaxbElement(document);
-
-            // 修复样式文档中的对齐元素
             StyleDefinitionsPart stylePart = doc.getMainDocumentPart().getStyleDefinitionsPart();
             if (stylePart != null) {
-                String styleXmlContent = XmlUtils.marshaltoString(stylePart.getJaxbElement(), true, true);
-                logger.debug("原始样式XML内容长度: {}", styleXmlContent.length());
-
-                // 使用replace方法修复所有缺失val属性的jc标签
-                styleXmlContent = fixMissingValAttributes(styleXmlContent);
-
-                // 将更新后的XML内容重新设置到样式部分中
-                Styles styles = (Styles) XmlUtils.unmarshalString(styleXmlContent);
-                stylePart.setJaxbElement(styles);
+                DocumentTraversalUtil.traverse(stylePart.getJaxbElement(),
+                        Collections.singletonList(createJustificationStep()));
             }
-
             logger.info("对齐元素修复完成");
         } catch (Exception e) {
             logger.error("修复对齐元素时出错: {}", e.getMessage(), e);
@@ -236,18 +439,172 @@ public class WordProcessingUtils {
     }
 
     /**
-     * 修复XML中缺失val属性的jc元素
+     * 创建修复对齐元素的遍历步骤
+     * docx4j无法识别的对齐值（如start、end）在加载后为空，保存时会输出不合规范的<w:jc/>，这里统一设置为left
+     *
+     * @return 遍历步骤
+     */
+    public static TraversalStep<Jc> createJustificationStep() {
+        return TraversalStep.of(Jc.class, jc -> {
+            if (jc.getVal() == null) {
+                jc.setVal(JcEnumeration.LEFT);
+            }
+        });
+    }
+
+    /**
+     * 在合并前对文档列表中的每个文档主体执行一次遍历，同时完成以下处理：
+     * 1. 更新样式、编号引用以及图片、超链接、图表等关系引用
+     * 2. 应用默认字体大小
+     * 3. 修复缺失val属性的对齐元素
+     *
+     * @param docList 文档列表
+     * @param formatProfiles 每个文档的格式信息，由TableFormatPreserverUtil.saveDocumentFormat生成
+     * @param styleIdMaps 每个文档的样式ID映射，由StyleReMapperUtil.mergeStyles生成
+     * @param numIdMaps 每个文档的编号ID映射，由NumberingMapperUtil.mapNumbering生成
+     * @param relMaps 每个文档的关系ID映射，由ResourceCopierUtil.copyRelationships生成
      */
-    private static String fixMissingValAttributes(String xmlContent) {
-        logger.debug("开始修复缺失val属性的对齐元素");
+    public static void normalizeDocList(List<WordprocessingMLPackage> docList, List<DocumentFormatProfile> formatProfiles,
+                                        List<Map<String, String>> styleIdMaps, List<Map<BigInteger, BigInteger>> numIdMaps,
+                                        List<Map<String, String>> relMaps) {
+        logger.info("开始遍历处理文档内容...");
+        for (int i = 0; i < docList.size(); i++) {
+            List<TraversalStep<?>> steps = createReferenceSteps(styleIdMaps.get(i), numIdMaps.get(i), relMaps.get(i));
+            steps.addAll(FontMapperUtil.createDefaultFontSizeSteps(formatProfiles.get(i), "文档" + (i + 1)));
+            steps.add(createJustificationStep());
+
+            DocumentTraversalUtil.traverse(docList.get(i).getMainDocumentPart().getJaxbElement(), steps);
+        }
+        logger.info("文档内容遍历处理完成");
+    }
 
-        // 使用replace方法修复所有缺失val属性的jc标签
-        int beforeFix = xmlContent.length();
-        xmlContent = xmlContent.replace("<w:jc/>", "<w:jc w:val=\"left\"/>");
-        int afterFix = xmlContent.length();
-        logger.debug("修复缺失val属性的jc标签: {} 字符变化", (afterFix - beforeFix));
+    /**
+     * 更新文档列表中每个文档的页眉页脚、脚注、尾注和批注中的样式、编号引用，应用默认字体大小并修复对齐元素，与正文的处理保持一致
+     * 需要在页眉页脚复制到目标文档之前调用，复制时按处理后的内容判断页眉页脚是否重复。
+     * 页眉页脚中的关系ID在复制时保持不变，不需要更新。节属性中指向不存在的页眉页脚的引用同时被移除
+     *
+     * @param docList 文档列表
+     * @param formatProfiles 每个文档的格式信息，由TableFormatPreserverUtil.saveDocumentFormat生成
+     * @param styleIdMaps 每个文档的样式ID映射，由StyleReMapperUtil.mergeStyles生成
+     * @param numIdMaps 每个文档的编号ID映射，由NumberingMapperUtil.mapNumbering生成
+     */
+    public static void normalizeHeadersFooters(List<WordprocessingMLPackage> docList, List<DocumentFormatProfile> formatProfiles,
+                                               List<Map<String, String>> styleIdMaps,
+                                               List<Map<BigInteger, BigInteger>> numIdMaps) {
+        for (int i = 0; i < docList.size(); i++) {
+            removeDanglingHeaderFooterReferences(docList.get(i));
+            List<JaxbXmlPart<?>> parts = getStoryParts(docList.get(i));
+            if (parts.isEmpty()) {
+                continue;
+            }
+            List<TraversalStep<?>> steps = createReferenceSteps(styleIdMaps.get(i), numIdMaps.get(i), null);
+            steps.addAll(FontMapperUtil.createDefaultFontSizeSteps(formatProfiles.get(i), "文档" + (i + 1)));
+            steps.add(createJustificationStep());
+            for (JaxbXmlPart<?> part : parts) {
+                DocumentTraversalUtil.traverse(part.getJaxbElement(), steps);
+            }
+        }
+    }
 
-        return xmlContent;
+    /**
+     * 只更新文档页眉页脚、脚注、尾注和批注中的样式和编号引用，用于合并两个已经规范化过的部分合并结果
+     *
+     * @param doc 文档
+     * @param styleIdMap 样式ID映射
+     * @param numIdMap 编号ID映射
+     */
+    public static void remapHeaderFooterReferences(WordprocessingMLPackage doc, Map<String, String> styleIdMap,
+                                                   Map<BigInteger, BigInteger> numIdMap) {
+        List<TraversalStep<?>> steps = createReferenceSteps(styleIdMap, numIdMap, null);
+        if (steps.isEmpty()) {
+            return;
+        }
+        for (JaxbXmlPart<?> part : getStoryParts(doc)) {
+            DocumentTraversalUtil.traverse(part.getJaxbElement(), steps);
+        }
+    }
+
+    /**
+     * 移除正文各节中关系不存在或不是页眉页脚的引用，只检查body下的段落和body的节属性
+     */
+    private static void removeDanglingHeaderFooterReferences(WordprocessingMLPackage doc) {
+        MainDocumentPart mainDocumentPart = doc.getMainDocumentPart();
+        Body body = mainDocumentPart.getJaxbElement().getBody();
+        if (body == null) {
+            return;
+        }
+        RelationshipsPart relPart = mainDocumentPart.getRelationshipsPart();
+        for (Object o : body.getContent()) {
+            if (o instanceof P && ((P) o).getPPr() != null && ((P) o).getPPr().getSectPr() != null) {
+                removeDanglingHeaderFooterReferences(((P) o).getPPr().getSectPr(), relPart);
+            }
+        }
+        if (body.getSectPr() != null) {
+            removeDanglingHeaderFooterReferences(body.getSectPr(), relPart);
+        }
+    }
+
+    private static void removeDanglingHeaderFooterReferences(SectPr sectPr, RelationshipsPart relPart) {
+        sectPr.getEGHdrFtrReferences().removeIf(reference -> {
+            Relationship rel = relPart != null ? relPart.getRelationshipByID(reference.getId()) : null;
+            if (rel != null && (Namespaces.HEADER.equals(rel.getType()) || Namespaces.FOOTER.equals(rel.getType()))) {
+                return false;
+            }
+            logger.warn("移除指向不存在的页眉页脚的引用: {}", reference.getId());
+            return true;
+        });
+    }
+
+    /**
+     * 获取主文档部件引用的页眉页脚、脚注、尾注和批注部件，同一个部件被多次引用时只返回一次
+     */
+    private static List<JaxbXmlPart<?>> getStoryParts(WordprocessingMLPackage doc) {
+        RelationshipsPart relPart = doc.getMainDocumentPart().getRelationshipsPart();
+        if (relPart == null) {
+            return Collections.emptyList();
+        }
+        List<JaxbXmlPart<?>> parts = new ArrayList<>();
+        Set<Part> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Relationship rel : relPart.getRelationships().getRelationship()) {
+            if (!STORY_RELATIONSHIP_TYPES.contains(rel.getType()) || "External".equals(rel.getTargetMode())) {
+                continue;
+            }
+            Part part = relPart.getPart(rel);
+            if (part instanceof JaxbXmlPart && seen.add(part)) {
+                parts.add((JaxbXmlPart<?>) part);
+            }
+        }
+        return parts;
+    }
+
+    /**
+     * 只更新文档正文中的样式、编号和关系引用，不再保存格式或应用默认字体大小
+     * 用于合并两个已经规范化过的部分合并结果
+     *
+     * @param doc 文档
+     * @param styleIdMap 样式ID映射
+     * @param numIdMap 编号ID映射
+     * @param relMap 关系ID映射
+     */
+    public static void remapReferences(WordprocessingMLPackage doc, Map<String, String> styleIdMap,
+                                       Map<BigInteger, BigInteger> numIdMap, Map<String, String> relMap) {
+        List<TraversalStep<?>> steps = createReferenceSteps(styleIdMap, numIdMap, relMap);
+        if (!steps.isEmpty()) {
+            DocumentTraversalUtil.traverse(doc.getMainDocumentPart().getJaxbElement(), steps);
+        }
+    }
+
+    private static List<TraversalStep<?>> createReferenceSteps(Map<String, String> styleIdMap,
+                                                               Map<BigInteger, BigInteger> numIdMap,
+                                                               Map<String, String> relMap) {
+        List<TraversalStep<?>> steps = new ArrayList<>();
+        steps.addAll(StyleReMapperUtil.createStyleReferenceSteps(styleIdMap));
+        TraversalStep<?> numberingStep = NumberingMapperUtil.createNumberingReferenceStep(numIdMap);
+        if (numberingStep != null) {
+            steps.add(numberingStep);
+        }
+        steps.addAll(ResourceCopierUtil.createRelationshipReferenceSteps(relMap));
+        return steps;
     }
 
     /**
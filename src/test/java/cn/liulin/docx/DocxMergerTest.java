@@ -0,0 +1,982 @@
+package cn.liulin.docx;
+
+import cn.liulin.docx.metrics.MergeListener;
+import cn.liulin.docx.metrics.MergeMetrics;
+import cn.liulin.docx.metrics.MergePhase;
+import cn.liulin.docx.metrics.MergeProgress;
+import cn.liulin.docx.metrics.PhaseMetrics;
+import cn.liulin.docx.util.DocumentCache;
+import cn.liulin.docx.util.DocumentSource;
+import cn.liulin.docx.util.MemoryEstimateUtil;
+import org.apache.commons.compress.utils.SeekableInMemoryByteChannel;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FootnotesPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.CTFtnEdn;
+import org.docx4j.wml.CTRel;
+import org.docx4j.wml.Comments;
+import org.docx4j.wml.HdrFtrRef;
+import org.docx4j.wml.HeaderReference;
+import org.docx4j.wml.P;
+import org.docx4j.wml.SectPr;
+import org.docx4j.wml.Style;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static cn.liulin.docx.TestDocuments.addHeader;
+import static cn.liulin.docx.TestDocuments.addHyperlink;
+import static cn.liulin.docx.TestDocuments.addImage;
+import static cn.liulin.docx.TestDocuments.addParagraph;
+import static cn.liulin.docx.TestDocuments.addContent;
+import static cn.liulin.docx.TestDocuments.addStyle;
+import static cn.liulin.docx.TestDocuments.addStyledParagraph;
+import static cn.liulin.docx.TestDocuments.findStyle;
+import static cn.liulin.docx.TestDocuments.newDocument;
+import static cn.liulin.docx.TestDocuments.png;
+import static cn.liulin.docx.TestDocuments.relatedPart;
+import static cn.liulin.docx.TestDocuments.setComments;
+import static cn.liulin.docx.TestDocuments.setEndnotes;
+import static cn.liulin.docx.TestDocuments.setFootnotes;
+import static cn.liulin.docx.TestDocuments.setNumbering;
+import static cn.liulin.docx.TestDocuments.toBytes;
+import static cn.liulin.docx.TestDocuments.zipEntries;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 端到端合并测试，输入和输出都在内存中
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 14:40
+ */
+public class DocxMergerTest {
+
+    private static final String NUMBERING = "<w:abstractNum w:abstractNumId=\"0\"><w:multiLevelType w:val=\"singleLevel\"/>"
+            + "<w:lvl w:ilvl=\"0\"><w:start w:val=\"1\"/><w:numFmt w:val=\"decimal\"/><w:lvlText w:val=\"%1.\"/></w:lvl>"
+            + "</w:abstractNum><w:num w:numId=\"1\"><w:abstractNumId w:val=\"0\"/></w:num>";
+
+    private static final String LIST_STYLE = "<w:style w:type=\"paragraph\" w:styleId=\"ListItem\"><w:name w:val=\"ListItem\"/>"
+            + "<w:pPr><w:numPr><w:ilvl w:val=\"0\"/><w:numId w:val=\"1\"/></w:numPr></w:pPr></w:style>";
+
+    private static final String HEADING_STYLE = "<w:style w:type=\"paragraph\" w:styleId=\"Heading1\"><w:name w:val=\"heading 1\"/>"
+            + "<w:pPr><w:numPr><w:numId w:val=\"1\"/></w:numPr><w:outlineLvl w:val=\"0\"/></w:pPr>"
+            + "<w:rPr><w:b/><w:sz w:val=\"32\"/></w:rPr></w:style>";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void childStyleFollowsRenamedParent() throws Exception {
+        WordprocessingMLPackage doc1 = newDocument();
+        addStyle(doc1, "<w:style w:type=\"paragraph\" w:styleId=\"Base\"><w:name w:val=\"Base\"/>"
+                + "<w:rPr><w:sz w:val=\"40\"/></w:rPr></w:style>");
+        addStyle(doc1, "<w:style w:type=\"paragraph\" w:styleId=\"Child\"><w:name w:val=\"Child\"/>"
+                + "<w:basedOn w:val=\"Base\"/></w:style>");
+        addStyledParagraph(doc1, "Child", "first");
+        WordprocessingMLPackage doc2 = newDocument();
+        addStyle(doc2, "<w:style w:type=\"paragraph\" w:styleId=\"Base\"><w:name w:val=\"Base\"/>"
+                + "<w:rPr><w:sz w:val=\"16\"/></w:rPr></w:style>");
+        addStyle(doc2, "<w:style w:type=\"paragraph\" w:styleId=\"Child\"><w:name w:val=\"Child\"/>"
+                + "<w:basedOn w:val=\"Base\"/></w:style>");
+        addStyledParagraph(doc2, "Child", "second");
+
+        WordprocessingMLPackage result = merge(doc1, doc2);
+
+        assertEquals("Child", paragraphStyle(result, "first"));
+        String secondStyle = paragraphStyle(result, "second");
+        assertNotEquals("Child", secondStyle);
+        Style parent = findStyle(result, findStyle(result, secondStyle).getBasedOn().getVal());
+        assertEquals(BigInteger.valueOf(16), parent.getRPr().getSz().getVal());
+    }
+
+    /**
+     * 每个文档的编号实例都会分配新的numId，引用相同抽象编号的多级标题样式仍然只保留一份
+     */
+    @Test
+    public void numberedStyleIsMergedAcrossInputs() throws Exception {
+        MergeConfig tree = new MergeConfig();
+        tree.setTreeMerge(true);
+        tree.setTreeLeafSize(1);
+        MergeConfig streaming = new MergeConfig();
+        streaming.setStreaming(true);
+        for (MergeConfig config : Arrays.asList(new MergeConfig(), tree, streaming)) {
+            WordprocessingMLPackage[] docs = new WordprocessingMLPackage[3];
+            for (int i = 0; i < docs.length; i++) {
+                docs[i] = newDocument();
+                setNumbering(docs[i], NUMBERING);
+                addStyle(docs[i], HEADING_STYLE);
+                addStyledParagraph(docs[i], "Heading1", "heading" + i);
+            }
+
+            WordprocessingMLPackage result = TestDocuments.load(mergeBytes(config, docs));
+
+            for (int i = 0; i < docs.length; i++) {
+                assertEquals("Heading1", paragraphStyle(result, "heading" + i));
+            }
+            assertNull(findStyle(result, "Heading1_1"));
+        }
+    }
+
+    @Test
+    public void styleWithDifferentNumberingIsRenamed() throws Exception {
+        WordprocessingMLPackage doc1 = newDocument();
+        setNumbering(doc1, NUMBERING);
+        addStyle(doc1, LIST_STYLE);
+        addStyledParagraph(doc1, "ListItem", "first");
+        WordprocessingMLPackage doc2 = newDocument();
+        setNumbering(doc2, NUMBERING.replace("decimal", "lowerLetter"));
+        addStyle(doc2, LIST_STYLE);
+        addStyledParagraph(doc2, "ListItem", "second");
+
+        WordprocessingMLPackage result = merge(doc1, doc2);
+
+        // 第二个文档的列表样式引用格式不同的编号，不能复用第一个文档的同名样式
+        String secondStyle = paragraphStyle(result, "second");
+        assertNotEquals("ListItem", secondStyle);
+        BigInteger firstNumId = findStyle(result, "ListItem").getPPr().getNumPr().getNumId().getVal();
+        BigInteger secondNumId = findStyle(result, secondStyle).getPPr().getNumPr().getNumId().getVal();
+        assertNotEquals(firstNumId, secondNumId);
+        assertNotNull(result.getMainDocumentPart().getNumberingDefinitionsPart().getInstanceListDefinitions()
+                .get(secondNumId.toString()));
+    }
+
+    /**
+     * 形如Table_2024的样式ID是来源文档中的原始ID，不能当作Table重命名后的ID与Table合并
+     */
+    @Test
+    public void underscoredStyleIdIsNotTreatedAsRenamed() throws Exception {
+        WordprocessingMLPackage doc1 = newDocument();
+        addStyle(doc1, "<w:style w:type=\"paragraph\" w:styleId=\"Table\"><w:name w:val=\"Table\"/>"
+                + "<w:rPr><w:sz w:val=\"20\"/></w:rPr></w:style>");
+        addStyledParagraph(doc1, "Table", "first");
+        WordprocessingMLPackage doc2 = newDocument();
+        addStyle(doc2, "<w:style w:type=\"paragraph\" w:styleId=\"Table_2024\"><w:name w:val=\"Table 2024\"/>"
+                + "<w:rPr><w:sz w:val=\"20\"/></w:rPr></w:style>");
+        addStyledParagraph(doc2, "Table_2024", "second");
+
+        WordprocessingMLPackage result = merge(doc1, doc2);
+
+        assertEquals("Table_2024", paragraphStyle(result, "second"));
+        assertNotNull(findStyle(result, "Table_2024"));
+    }
+
+    /**
+     * 分治合并时叶子任务的异常与顺序合并一样以原始类型抛出，不带CompletionException包装
+     */
+    @Test
+    public void treeMergeThrowsOriginalException() throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            File file = folder.newFile("doc" + i + ".docx");
+            Files.write(file.toPath(), toBytes(newDocument()));
+            paths.add(file.getPath());
+        }
+        paths.set(3, new File(folder.getRoot(), "missing.docx").getPath());
+        String output = new File(folder.getRoot(), "out.docx").getPath();
+
+        for (boolean treeMerge : Arrays.asList(false, true)) {
+            MergeConfig config = new MergeConfig();
+            config.setTreeMerge(treeMerge);
+            config.setTreeLeafSize(1);
+            config.setParallelism(2);
+            try {
+                new DocxMerger(config).mergeList(paths, output);
+                fail("缺少文档时应当失败");
+            } catch (Exception e) {
+                assertTrue("treeMerge=" + treeMerge + ": " + e, e instanceof NoSuchFileException);
+            }
+        }
+    }
+
+    /**
+     * 不同输入中内容相同的页眉只保留一份，各文档的节都引用同一个页眉部件
+     */
+    @Test
+    public void identicalHeadersAreSharedAcrossInputs() throws Exception {
+        WordprocessingMLPackage doc1 = newDocument();
+        addHeader(doc1, "Company");
+        addStyledParagraph(doc1, "Normal", "first");
+        WordprocessingMLPackage doc2 = newDocument();
+        addHeader(doc2, "Company");
+        addStyledParagraph(doc2, "Normal", "second");
+        WordprocessingMLPackage doc3 = newDocument();
+        addHeader(doc3, "Other");
+        addStyledParagraph(doc3, "Normal", "third");
+
+        WordprocessingMLPackage result = merge(doc1, doc2, doc3);
+
+        List<String> defaultHeaders = new ArrayList<>();
+        for (SectPr sectPr : sections(result)) {
+            for (CTRel ref : sectPr.getEGHdrFtrReferences()) {
+                if (ref instanceof HeaderReference && ((HeaderReference) ref).getType() == HdrFtrRef.DEFAULT) {
+                    defaultHeaders.add(ref.getId());
+                }
+            }
+        }
+        assertEquals(3, defaultHeaders.size());
+        assertEquals(defaultHeaders.get(0), defaultHeaders.get(1));
+        assertNotEquals(defaultHeaders.get(0), defaultHeaders.get(2));
+        assertEquals("Company", headerText(relatedPart(result, defaultHeaders.get(0))));
+        assertEquals("Other", headerText(relatedPart(result, defaultHeaders.get(2))));
+        assertEquals(1, countHeaders(result, "Company"));
+        assertEquals(1, countHeaders(result, "Other"));
+    }
+
+    /**
+     * 没有页眉的文档使用共用的空白页眉，不沿用上一个文档的页眉；页眉中的样式引用与正文一样随样式重命名更新
+     */
+    @Test
+    public void sectionsWithoutHeaderGetBlankHeader() throws Exception {
+        String customStyle = "<w:style w:type=\"paragraph\" w:styleId=\"Custom\"><w:name w:val=\"Custom\"/>"
+                + "<w:rPr><w:color w:val=\"%s\"/></w:rPr></w:style>";
+        List<WordprocessingMLPackage> docs = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            WordprocessingMLPackage doc = newDocument();
+            addStyle(doc, String.format(customStyle, i == 2 ? "FF0000" : "00AA00"));
+            addStyledParagraph(doc, "Custom", "text" + i);
+            docs.add(doc);
+        }
+        addHeader(docs.get(0), "Company");
+        HeaderPart styledHeader = addHeader(docs.get(2), "Other");
+        styledHeader.getJaxbElement().getContent().set(0, addStyledParagraph(newDocument(), "Custom", "Other"));
+
+        MergeConfig tree = new MergeConfig();
+        tree.setTreeMerge(true);
+        tree.setTreeLeafSize(1);
+        MergeConfig streaming = new MergeConfig();
+        streaming.setStreaming(true);
+        for (MergeConfig config : Arrays.asList(new MergeConfig(), tree, streaming)) {
+            WordprocessingMLPackage result = TestDocuments.load(mergeBytes(config, copies(docs)));
+
+            List<String> defaultHeaders = new ArrayList<>();
+            for (SectPr sectPr : sections(result)) {
+                for (CTRel ref : sectPr.getEGHdrFtrReferences()) {
+                    if (ref instanceof HeaderReference && ((HeaderReference) ref).getType() == HdrFtrRef.DEFAULT) {
+                        defaultHeaders.add(ref.getId());
+                    }
+                }
+            }
+            assertEquals(4, defaultHeaders.size());
+            assertEquals("Company", headerText(relatedPart(result, defaultHeaders.get(0))));
+            assertEquals("", headerText(relatedPart(result, defaultHeaders.get(1))));
+            assertEquals("Other", headerText(relatedPart(result, defaultHeaders.get(2))));
+            assertEquals(defaultHeaders.get(1), defaultHeaders.get(3));
+
+            String renamed = paragraphStyle(result, "text2");
+            assertNotEquals("Custom", renamed);
+            P headerParagraph = (P) ((HeaderPart) relatedPart(result, defaultHeaders.get(2))).getJaxbElement().getContent().get(0);
+            assertEquals(renamed, headerParagraph.getPPr().getPStyle().getVal());
+        }
+    }
+
+    /**
+     * 流式输出在正文拼接时直接写出XML，结果应当与按批次合并后整体保存的文档一致
+     */
+    @Test
+    public void streamingOutputMatchesRangeOutput() throws Exception {
+        List<WordprocessingMLPackage> docs = sampleDocuments(3);
+        MergeConfig streaming = new MergeConfig();
+        streaming.setStreaming(true);
+
+        assertSameResult(TestDocuments.load(mergeBytes(new MergeConfig(), copies(docs))),
+                TestDocuments.load(mergeBytes(streaming, copies(docs))));
+    }
+
+    /**
+     * 分治合并先合并子区间再合并相邻结果，叶子大小不同时结果都应当与按顺序合并的文档一致
+     */
+    @Test
+    public void treeMergeMatchesRangeOutput() throws Exception {
+        List<WordprocessingMLPackage> docs = sampleDocuments(5);
+        WordprocessingMLPackage expected = TestDocuments.load(mergeBytes(new MergeConfig(), copies(docs)));
+        for (int leafSize : Arrays.asList(1, 2)) {
+            MergeConfig tree = new MergeConfig();
+            tree.setTreeMerge(true);
+            tree.setTreeLeafSize(leafSize);
+            tree.setParallelism(2);
+
+            assertSameResult(expected, TestDocuments.load(mergeBytes(tree, copies(docs))));
+        }
+    }
+
+    /**
+     * 每批只加载一个文档时，已合并的文档不会在后续批次中再次处理，结果与一次合并全部文档一致
+     */
+    @Test
+    public void batchedMergeMatchesSingleBatch() throws Exception {
+        List<WordprocessingMLPackage> docs = sampleDocuments(5);
+        MergeConfig batched = new MergeConfig();
+        batched.setBatchMemoryBudget(1);
+        List<Integer> batches = new CopyOnWriteArrayList<>();
+        batched.addListener(metrics -> {
+            if (metrics.getPhase() == MergePhase.LOAD) {
+                batches.add(metrics.getBatch());
+            }
+        });
+
+        WordprocessingMLPackage single = TestDocuments.load(mergeBytes(new MergeConfig(), copies(docs)));
+        WordprocessingMLPackage result = TestDocuments.load(mergeBytes(batched, copies(docs)));
+
+        batches.sort(null);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), batches);
+        assertSameResult(single, result);
+    }
+
+    /**
+     * 按估算的内存占用分批：内存上限容纳两个小文档，超过上限的文档单独成批，其后的文档另起一批
+     */
+    @Test
+    public void oversizedDocumentIsBatchedAlone() throws Exception {
+        List<WordprocessingMLPackage> docs = sampleDocuments(4);
+        for (int i = 0; i < 2000; i++) {
+            addStyledParagraph(docs.get(2), "ListItem", "large paragraph " + i);
+        }
+        long[] costs = new long[docs.size()];
+        for (int i = 0; i < docs.size(); i++) {
+            costs[i] = MemoryEstimateUtil.estimateHeapCost(DocumentSource.of("doc" + i + ".docx", toBytes(docs.get(i))), false);
+        }
+        long budget = costs[0] + costs[1] + costs[3] / 2;
+        assertTrue(costs[2] > budget);
+
+        MergeConfig batched = new MergeConfig();
+        batched.setBatchMemoryBudget(budget);
+        Map<Integer, Long> documents = new ConcurrentSkipListMap<>();
+        batched.addListener(metrics -> {
+            if (metrics.getPhase() == MergePhase.LOAD) {
+                documents.merge(metrics.getBatch(), metrics.getDocuments(), Long::sum);
+            }
+        });
+
+        WordprocessingMLPackage result = TestDocuments.load(mergeBytes(batched, copies(docs)));
+
+        assertEquals(Arrays.asList(2L, 1L, 1L), new ArrayList<>(documents.values()));
+        assertSameResult(TestDocuments.load(mergeBytes(new MergeConfig(), copies(docs))), result);
+    }
+
+    /**
+     * 再次合并相同的文件时预处理结果全部命中缓存，修改过的文件重新预处理，结果与不使用缓存时一致
+     */
+    @Test
+    public void cachedMergeMatchesUncachedMerge() throws Exception {
+        List<WordprocessingMLPackage> docs = sampleDocuments(3);
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < docs.size(); i++) {
+            File file = folder.newFile("cached" + i + ".docx");
+            Files.write(file.toPath(), toBytes(docs.get(i)));
+            paths.add(file.getPath());
+        }
+        File uncachedOutput = new File(folder.getRoot(), "uncached.docx");
+        File cachedOutput = new File(folder.getRoot(), "cached.docx");
+        new DocxMerger(new MergeConfig()).mergeList(paths, uncachedOutput.getPath());
+
+        DocumentCache cache = new DocumentCache(64 * 1024 * 1024, folder.newFolder("spill").toPath(), false);
+        MergeConfig config = new MergeConfig();
+        config.setDocumentCache(cache);
+        new DocxMerger(config).mergeList(paths, cachedOutput.getPath());
+        assertEquals(0, cache.getHits());
+        assertEquals(3, cache.size());
+
+        new DocxMerger(config).mergeList(paths, cachedOutput.getPath());
+        assertEquals(3, cache.getHits());
+        assertSameResult(TestDocuments.load(Files.readAllBytes(uncachedOutput.toPath())),
+                TestDocuments.load(Files.readAllBytes(cachedOutput.toPath())));
+
+        // 修改后的文件大小或修改时间不同，缓存键随之改变
+        addStyledParagraph(docs.get(1), "ListItem", "changed");
+        Files.write(new File(paths.get(1)).toPath(), toBytes(docs.get(1)));
+        new DocxMerger(config).mergeList(paths, cachedOutput.getPath());
+        assertEquals(5, cache.getHits());
+        assertEquals(4, cache.size());
+        assertNotNull(paragraphXml(TestDocuments.load(Files.readAllBytes(cachedOutput.toPath())), "changed"));
+    }
+
+    /**
+     * 文件、字节数组、输入流和字节通道来源混合合并，写入输出流或字节通道时，结果与合并文件一致；调用方提供的字节通道不会被关闭
+     */
+    @Test
+    public void sourcesAndSinksMatchFileMerge() throws Exception {
+        List<WordprocessingMLPackage> docs = sampleDocuments(4);
+        List<String> paths = new ArrayList<>();
+        List<byte[]> data = new ArrayList<>();
+        for (int i = 0; i < docs.size(); i++) {
+            File file = folder.newFile("source" + i + ".docx");
+            data.add(toBytes(docs.get(i)));
+            Files.write(file.toPath(), data.get(i));
+            paths.add(file.getPath());
+        }
+        File fileOutput = new File(folder.getRoot(), "files.docx");
+        new DocxMerger(new MergeConfig()).mergeList(paths, fileOutput.getPath());
+        WordprocessingMLPackage expected = TestDocuments.load(Files.readAllBytes(fileOutput.toPath()));
+
+        for (boolean streaming : Arrays.asList(false, true)) {
+            MergeConfig config = new MergeConfig();
+            config.setStreaming(streaming);
+            SeekableInMemoryByteChannel channel = new SeekableInMemoryByteChannel(data.get(3));
+            List<DocumentSource> sources = Arrays.asList(DocumentSource.of(paths.get(0)),
+                    DocumentSource.of("bytes.docx", data.get(1)),
+                    DocumentSource.of("stream.docx", new ByteArrayInputStream(data.get(2))),
+                    DocumentSource.of("channel.docx", channel));
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new DocxMerger(config).mergeSources(sources, out);
+            assertTrue(channel.isOpen());
+            assertSameResult(expected, TestDocuments.load(out.toByteArray()));
+
+            ByteArrayOutputStream channelOut = new ByteArrayOutputStream();
+            new DocxMerger(config).mergeSources(DocumentSource.of(paths), Channels.newChannel(channelOut));
+            assertSameResult(expected, TestDocuments.load(channelOut.toByteArray()));
+        }
+    }
+
+    /**
+     * 每个文档中都有的图片在合并结果中只保存一份，各文档自己的图片分别保存，引用指向内容对应的图片
+     */
+    @Test
+    public void repeatedImageIsStoredOnce() throws Exception {
+        MergeConfig tree = new MergeConfig();
+        tree.setTreeMerge(true);
+        tree.setTreeLeafSize(1);
+        MergeConfig streaming = new MergeConfig();
+        streaming.setStreaming(true);
+        for (MergeConfig config : Arrays.asList(new MergeConfig(), tree, streaming)) {
+            WordprocessingMLPackage[] docs = new WordprocessingMLPackage[3];
+            for (int i = 0; i < docs.length; i++) {
+                docs[i] = newDocument();
+                addImage(docs[i], png(0));
+                addImage(docs[i], png(i + 1));
+            }
+
+            WordprocessingMLPackage result = TestDocuments.load(mergeBytes(config, docs));
+
+            List<String> ids = new ArrayList<>();
+            Matcher matcher = Pattern.compile("r:embed=\"([^\"]+)\"")
+                    .matcher(XmlUtils.marshaltoString(result.getMainDocumentPart().getJaxbElement()));
+            while (matcher.find()) {
+                ids.add(matcher.group(1));
+            }
+            assertEquals(2 * docs.length, ids.size());
+            for (int i = 0; i < docs.length; i++) {
+                assertEquals(ids.get(0), ids.get(2 * i));
+                assertArrayEquals(png(0), imageBytes(result, ids.get(2 * i)));
+                assertArrayEquals(png(i + 1), imageBytes(result, ids.get(2 * i + 1)));
+            }
+            long images = result.getParts().getParts().values().stream().filter(part -> part instanceof BinaryPart).count();
+            assertEquals(1 + docs.length, images);
+        }
+    }
+
+    /**
+     * 图片以原始字节写入合并结果，不能解码的图片数据同样原样保留
+     */
+    @Test
+    public void mediaBytesAreWrittenUnchanged() throws Exception {
+        WordprocessingMLPackage first = newDocument();
+        addImage(first, png(1));
+        WordprocessingMLPackage second = newDocument();
+        ((BinaryPart) relatedPart(second, addImage(second, png(2)))).setBinaryData(new byte[]{7, 8, 9});
+
+        List<byte[]> media = new ArrayList<>();
+        for (Map.Entry<String, byte[]> entry : zipEntries(mergeBytes(new MergeConfig(), first, second)).entrySet()) {
+            if (entry.getKey().startsWith("word/media/")) {
+                media.add(entry.getValue());
+            }
+        }
+        byte[] png = png(1);
+        assertEquals(2, media.size());
+        assertTrue(media.stream().anyMatch(data -> Arrays.equals(png, data)));
+        assertTrue(media.stream().anyMatch(data -> Arrays.equals(new byte[]{7, 8, 9}, data)));
+    }
+
+    /**
+     * 后续文档的脚注、尾注和批注追加到目标文档中并重新编号，正文中的引用指向各自的内容
+     */
+    @Test
+    public void notesAndCommentsAreMergedWithNewIds() throws Exception {
+        MergeConfig tree = new MergeConfig();
+        tree.setTreeMerge(true);
+        tree.setTreeLeafSize(1);
+        MergeConfig streaming = new MergeConfig();
+        streaming.setStreaming(true);
+        for (MergeConfig config : Arrays.asList(new MergeConfig(), tree, streaming)) {
+            WordprocessingMLPackage[] docs = new WordprocessingMLPackage[3];
+            for (int i = 0; i < docs.length; i++) {
+                docs[i] = newDocument();
+                FootnotesPart footnotes = setFootnotes(docs[i], "<w:footnote w:type=\"separator\" w:id=\"-1\"><w:p><w:r><w:separator/></w:r></w:p></w:footnote>"
+                        + "<w:footnote w:type=\"continuationSeparator\" w:id=\"0\"><w:p><w:r><w:continuationSeparator/></w:r></w:p></w:footnote>"
+                        + "<w:footnote w:id=\"1\"><w:p><w:r><w:t>footnote" + i + "</w:t></w:r></w:p></w:footnote>");
+                setEndnotes(docs[i], "<w:endnote w:id=\"1\"><w:p><w:r><w:t>endnote" + i + "</w:t></w:r></w:p></w:endnote>");
+                setComments(docs[i], "<w:comment w:id=\"0\" w:author=\"a\"><w:p><w:r><w:t>comment" + i + "</w:t></w:r></w:p></w:comment>");
+                // 脚注中的超链接是脚注部件自己的关系
+                Relationship link = new org.docx4j.relationships.ObjectFactory().createRelationship();
+                link.setType(Namespaces.HYPERLINK);
+                link.setTarget("https://example.com/" + i);
+                link.setTargetMode("External");
+                footnotes.getRelationshipsPart(true).addRelationship(link);
+                ((P) XmlUtils.unwrap(footnotes.getJaxbElement().getFootnote().get(2).getContent().get(0))).getContent()
+                        .add(XmlUtils.unmarshalString("<w:hyperlink xmlns:w=\"" + TestDocuments.W_NAMESPACE + "\" xmlns:r=\""
+                                + TestDocuments.R_NAMESPACE + "\" r:id=\"" + link.getId() + "\"><w:r><w:t>link" + i
+                                + "</w:t></w:r></w:hyperlink>"));
+                addParagraph(docs[i], "<w:p><w:commentRangeStart w:id=\"0\"/><w:r><w:t>text" + i + "</w:t></w:r>"
+                        + "<w:commentRangeEnd w:id=\"0\"/><w:r><w:commentReference w:id=\"0\"/></w:r>"
+                        + "<w:r><w:footnoteReference w:id=\"1\"/></w:r><w:r><w:endnoteReference w:id=\"1\"/></w:r></w:p>");
+            }
+
+            WordprocessingMLPackage result = TestDocuments.load(mergeBytes(config, docs));
+
+            FootnotesPart footnotes = result.getMainDocumentPart().getFootnotesPart();
+            assertEquals(2 + docs.length, footnotes.getJaxbElement().getFootnote().size());
+            for (int i = 0; i < docs.length; i++) {
+                String paragraph = paragraphXml(result, "text" + i);
+                String footnote = noteText(footnotes.getJaxbElement().getFootnote(), attribute(paragraph, "footnoteReference"));
+                assertEquals("footnote" + i + "link" + i, footnote);
+                assertEquals("endnote" + i, noteText(result.getMainDocumentPart().getEndNotesPart().getJaxbElement().getEndnote(),
+                        attribute(paragraph, "endnoteReference")));
+                String commentId = attribute(paragraph, "commentReference");
+                assertEquals(commentId, attribute(paragraph, "commentRangeStart"));
+                assertEquals("comment" + i, commentText(result, commentId));
+            }
+            List<String> links = new ArrayList<>();
+            for (Relationship rel : footnotes.getRelationshipsPart().getRelationships().getRelationship()) {
+                links.add(rel.getTarget());
+            }
+            links.sort(null);
+            assertEquals(Arrays.asList("https://example.com/0", "https://example.com/1", "https://example.com/2"), links);
+            String footnotesXml = XmlUtils.marshaltoString(footnotes.getJaxbElement());
+            for (Relationship rel : footnotes.getRelationshipsPart().getRelationships().getRelationship()) {
+                assertTrue(footnotesXml.contains("\"" + rel.getId() + "\""));
+            }
+        }
+    }
+
+    /**
+     * 内存模式下预处理结果不写入临时文件，合并结果与使用临时文件时一致
+     */
+    @Test
+    public void inMemoryModeWritesNoPreprocessedFiles() throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            File file = folder.newFile("memory" + i + ".docx");
+            WordprocessingMLPackage doc = newDocument();
+            addStyledParagraph(doc, "Normal", "text" + i);
+            Files.write(file.toPath(), toBytes(doc));
+            paths.add(file.getPath());
+        }
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+        List<String> existing = Arrays.asList(tmpDir.list());
+
+        List<String> texts = new ArrayList<>();
+        for (boolean inMemory : Arrays.asList(false, true)) {
+            // 每个文档预处理完成、开始加载前检查临时目录中新出现的预处理文件
+            List<String> seen = new CopyOnWriteArrayList<>();
+            MergeConfig config = new MergeConfig();
+            config.setInMemory(inMemory);
+            config.addListener(metrics -> {
+                if (metrics.getPhase() == MergePhase.PREPROCESS) {
+                    for (String name : tmpDir.list()) {
+                        if (name.startsWith("processed_") && !existing.contains(name)) {
+                            seen.add(name);
+                        }
+                    }
+                }
+            });
+            File output = new File(folder.getRoot(), "memory-" + inMemory + ".docx");
+            new DocxMerger(config).mergeList(paths, output.getPath());
+            assertEquals("inMemory=" + inMemory, !inMemory, !seen.isEmpty());
+            texts.add(XmlUtils.marshaltoString(TestDocuments.load(Files.readAllBytes(output.toPath()))
+                    .getMainDocumentPart().getJaxbElement().getBody()));
+        }
+        assertEquals(texts.get(0), texts.get(1));
+        assertTrue(texts.get(1).contains("text0") && texts.get(1).contains("text2"));
+    }
+
+    /**
+     * 默认不预检查，设置了大小上限时合并前总是预检查
+     */
+    @Test
+    public void preScanRunsOnlyWhenRequestedOrLimited() throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            File file = folder.newFile("scan" + i + ".docx");
+            WordprocessingMLPackage doc = newDocument();
+            addStyledParagraph(doc, "Normal", "text" + i);
+            Files.write(file.toPath(), toBytes(doc));
+            paths.add(file.getPath());
+        }
+        String output = new File(folder.getRoot(), "out.docx").getPath();
+
+        MergeMetrics metrics = new DocxMerger(new MergeConfig()).mergeListWithMetrics(paths, output);
+        assertFalse(metrics.getTotals().containsKey(MergePhase.SCAN));
+
+        MergeConfig explicit = new MergeConfig();
+        explicit.setPreScan(true);
+        metrics = new DocxMerger(explicit).mergeListWithMetrics(paths, output);
+        assertTrue(metrics.getTotals().containsKey(MergePhase.SCAN));
+
+        MergeConfig limited = new MergeConfig();
+        limited.setMaxDocumentSize(1);
+        try {
+            new DocxMerger(limited).mergeList(paths, output);
+            fail("超过大小上限的文档应当在预检查时被拒绝");
+        } catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("预检查"));
+        }
+    }
+
+    /**
+     * 合并中途失败时输出路径上不留下不完整的文档，同一目录中也不残留临时文件
+     */
+    @Test
+    public void failedMergeLeavesNoOutput() throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            File file = folder.newFile("input" + i + ".docx");
+            WordprocessingMLPackage doc = newDocument();
+            addStyledParagraph(doc, "Normal", "text" + i);
+            Files.write(file.toPath(), toBytes(doc));
+            paths.add(file.getPath());
+        }
+        // 前两个文档已经写出后第三个文档加载失败
+        paths.add(new File(folder.getRoot(), "missing.docx").getPath());
+        File outputDir = folder.newFolder("out");
+
+        for (boolean streaming : Arrays.asList(false, true)) {
+            MergeConfig config = new MergeConfig();
+            config.setStreaming(streaming);
+            File output = new File(outputDir, "merged-" + streaming + ".docx");
+            try {
+                new DocxMerger(config).mergeList(paths, output.getPath());
+                fail("缺少文档时应当失败");
+            } catch (NoSuchFileException e) {
+                // 预期的失败
+            }
+            assertFalse("streaming=" + streaming, output.exists());
+        }
+        assertArrayEquals(new String[0], outputDir.list());
+    }
+
+    /**
+     * 超时后执行合并的线程被中断，阻塞中的步骤立即结束，线程池中的线程随即可以执行下一个任务
+     */
+    @Test
+    public void timeoutInterruptsMergeThread() throws Exception {
+        List<String> paths = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            File file = folder.newFile("input" + i + ".docx");
+            WordprocessingMLPackage doc = newDocument();
+            addStyledParagraph(doc, "Normal", "text" + i);
+            Files.write(file.toPath(), toBytes(doc));
+            paths.add(file.getPath());
+        }
+        AtomicBoolean blocked = new AtomicBoolean();
+        CountDownLatch interrupted = new CountDownLatch(1);
+        MergeConfig config = new MergeConfig();
+        config.setParallelism(1);
+        config.addListener(new MergeListener() {
+            @Override
+            public void onPhase(PhaseMetrics metrics) {
+            }
+
+            @Override
+            public void onProgress(MergeProgress progress) {
+                // 第一次进度回调时模拟一个长时间阻塞的步骤
+                if (blocked.compareAndSet(false, true)) {
+                    try {
+                        Thread.sleep(60_000);
+                    } catch (InterruptedException e) {
+                        interrupted.countDown();
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        });
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            DocxMerger merger = new DocxMerger(config);
+            File output = new File(folder.getRoot(), "timeout.docx");
+            try {
+                merger.mergeListAsync(paths, output.getPath(), executor, 200, TimeUnit.MILLISECONDS).get();
+                fail("合并应当超时");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+            assertTrue("合并线程没有被中断", interrupted.await(10, TimeUnit.SECONDS));
+
+            File second = new File(folder.getRoot(), "second.docx");
+            merger.mergeListAsync(paths, second.getPath(), executor).get(30, TimeUnit.SECONDS);
+            assertTrue(second.exists());
+            assertFalse(output.exists());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 分批合并时记录每个阶段，合计中的文档数与输入一致，进度依次递增，完成通知只发送一次
+     */
+    @Test
+    public void metricsCoverEveryPhaseAndProgress() throws Exception {
+        List<String> paths = new ArrayList<>();
+        List<WordprocessingMLPackage> docs = sampleDocuments(3);
+        for (int i = 0; i < docs.size(); i++) {
+            File file = folder.newFile("metrics" + i + ".docx");
+            Files.write(file.toPath(), toBytes(docs.get(i)));
+            paths.add(file.getPath());
+        }
+        List<MergeProgress> progress = new CopyOnWriteArrayList<>();
+        List<MergeMetrics> completed = new CopyOnWriteArrayList<>();
+        MergeConfig config = new MergeConfig();
+        config.setBatchMemoryBudget(1);
+        config.addListener(new MergeListener() {
+            @Override
+            public void onPhase(PhaseMetrics metrics) {
+            }
+
+            @Override
+            public void onProgress(MergeProgress event) {
+                progress.add(event);
+            }
+
+            @Override
+            public void onComplete(MergeMetrics metrics) {
+                completed.add(metrics);
+            }
+        });
+
+        MergeMetrics metrics = new DocxMerger(config).mergeListWithMetrics(paths,
+                new File(folder.getRoot(), "metrics.docx").getPath());
+
+        Map<MergePhase, PhaseMetrics> totals = metrics.getTotals();
+        for (MergePhase phase : Arrays.asList(MergePhase.PREPROCESS, MergePhase.LOAD, MergePhase.FORMAT_CAPTURE,
+                MergePhase.STYLES, MergePhase.NUMBERING, MergePhase.IMAGES, MergePhase.NORMALIZE, MergePhase.APPEND,
+                MergePhase.SAVE)) {
+            assertTrue(phase.name(), totals.containsKey(phase));
+            assertEquals(-1, totals.get(phase).getBatch());
+        }
+        assertEquals(3, totals.get(MergePhase.LOAD).getDocuments());
+        assertEquals(Arrays.asList(metrics), completed);
+        assertTrue(metrics.getTotalWallNanos() > 0);
+
+        List<Integer> loaded = new ArrayList<>();
+        int merged = 0;
+        for (MergeProgress event : progress) {
+            assertEquals(3, event.getTotalDocuments());
+            if (event.getStage() == MergeProgress.Stage.LOADED) {
+                loaded.add(event.getCompletedDocuments());
+            } else {
+                assertTrue(event.getCompletedDocuments() > merged);
+                merged = event.getCompletedDocuments();
+            }
+        }
+        loaded.sort(null);
+        assertEquals(Arrays.asList(1, 2, 3), loaded);
+        assertEquals(3, merged);
+    }
+
+    static WordprocessingMLPackage merge(WordprocessingMLPackage... docs) throws Exception {
+        return TestDocuments.load(mergeBytes(new MergeConfig(), docs));
+    }
+
+    static byte[] mergeBytes(MergeConfig config, WordprocessingMLPackage... docs) throws Exception {
+        List<DocumentSource> sources = new ArrayList<>();
+        for (int i = 0; i < docs.length; i++) {
+            sources.add(DocumentSource.of("doc" + i + ".docx", toBytes(docs[i])));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new DocxMerger(config).mergeSources(sources, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 构造使用编号样式、页眉、超链接和表格的文档，奇偶文档的样式字号、页眉和超链接地址不同
+     */
+    private static List<WordprocessingMLPackage> sampleDocuments(int count) throws Exception {
+        List<WordprocessingMLPackage> docs = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            WordprocessingMLPackage doc = newDocument();
+            setNumbering(doc, NUMBERING);
+            addStyle(doc, LIST_STYLE.replace("<w:pPr>", "<w:rPr><w:sz w:val=\"" + (20 + i % 2 * 4) + "\"/></w:rPr><w:pPr>"));
+            addHeader(doc, i % 2 == 1 ? "Other" : "Company");
+            addStyledParagraph(doc, "ListItem", "item" + i);
+            addHyperlink(doc, "https://example.com/" + i % 2, "link" + i);
+            addContent(doc, "<w:tbl><w:tr><w:tc><w:p><w:r><w:t>cell" + i + "</w:t></w:r></w:p></w:tc></w:tr></w:tbl>");
+            docs.add(doc);
+        }
+        return docs;
+    }
+
+    /**
+     * 比较两个合并结果的正文、样式、编号和主文档关系
+     */
+    private static void assertSameResult(WordprocessingMLPackage expected, WordprocessingMLPackage actual) {
+        assertEquals(XmlUtils.marshaltoString(expected.getMainDocumentPart().getJaxbElement()),
+                XmlUtils.marshaltoString(actual.getMainDocumentPart().getJaxbElement()));
+        assertEquals(XmlUtils.marshaltoString(expected.getMainDocumentPart().getStyleDefinitionsPart().getJaxbElement()),
+                XmlUtils.marshaltoString(actual.getMainDocumentPart().getStyleDefinitionsPart().getJaxbElement()));
+        assertEquals(XmlUtils.marshaltoString(expected.getMainDocumentPart().getNumberingDefinitionsPart().getJaxbElement()),
+                XmlUtils.marshaltoString(actual.getMainDocumentPart().getNumberingDefinitionsPart().getJaxbElement()));
+        assertEquals(relationships(expected), relationships(actual));
+    }
+
+    /**
+     * 重新加载文档，每次合并都使用未被修改过的输入
+     */
+    private static WordprocessingMLPackage[] copies(List<WordprocessingMLPackage> docs) throws Exception {
+        WordprocessingMLPackage[] copies = new WordprocessingMLPackage[docs.size()];
+        for (int i = 0; i < docs.size(); i++) {
+            copies[i] = TestDocuments.load(toBytes(docs.get(i)));
+        }
+        return copies;
+    }
+
+    /**
+     * 按正文顺序获取所有节属性，包括段落中的节属性和正文最后的节属性
+     */
+    private static List<SectPr> sections(WordprocessingMLPackage doc) {
+        List<SectPr> sections = new ArrayList<>();
+        for (Object content : doc.getMainDocumentPart().getContent()) {
+            if (content instanceof P && ((P) content).getPPr() != null && ((P) content).getPPr().getSectPr() != null) {
+                sections.add(((P) content).getPPr().getSectPr());
+            }
+        }
+        sections.add(doc.getMainDocumentPart().getJaxbElement().getBody().getSectPr());
+        return sections;
+    }
+
+    private static String headerText(Part part) {
+        return XmlUtils.marshaltoString(((HeaderPart) part).getJaxbElement()).replaceAll("<[^>]*>", "").trim();
+    }
+
+    private static int countHeaders(WordprocessingMLPackage doc, String text) {
+        int count = 0;
+        for (Part part : doc.getParts().getParts().values()) {
+            if (part instanceof HeaderPart && text.equals(headerText(part))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 主文档部件的关系，按关系ID排列为"ID 类型 目标"
+     */
+    private static List<String> relationships(WordprocessingMLPackage doc) {
+        List<String> list = new ArrayList<>();
+        for (Relationship rel : doc.getMainDocumentPart().getRelationshipsPart().getRelationships().getRelationship()) {
+            list.add(rel.getId() + " " + rel.getType() + " " + rel.getTarget());
+        }
+        list.sort(null);
+        return list;
+    }
+
+    /**
+     * 获取包含指定文本的段落的XML
+     */
+    private static String paragraphXml(WordprocessingMLPackage doc, String text) {
+        for (Object content : doc.getMainDocumentPart().getContent()) {
+            String xml = XmlUtils.marshaltoString(content);
+            if (content instanceof P && xml.contains(">" + text + "<")) {
+                return xml;
+            }
+        }
+        fail("找不到段落: " + text);
+        return null;
+    }
+
+    private static byte[] imageBytes(WordprocessingMLPackage doc, String relId) {
+        ByteBuffer buffer = ((BinaryPart) relatedPart(doc, relId)).getBuffer().duplicate();
+        buffer.rewind();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.get(data);
+        return data;
+    }
+
+    /**
+     * 读取XML中第一个指定元素的w:id属性
+     */
+    private static String attribute(String xml, String element) {
+        Matcher matcher = Pattern.compile("<w:" + element + " [^>]*w:id=\"(-?\\d+)\"").matcher(xml);
+        assertTrue("找不到元素: " + element, matcher.find());
+        return matcher.group(1);
+    }
+
+    private static String noteText(List<CTFtnEdn> notes, String id) {
+        for (CTFtnEdn note : notes) {
+            if (id.equals(String.valueOf(note.getId()))) {
+                return text(note.getContent());
+            }
+        }
+        fail("找不到脚注或尾注: " + id);
+        return null;
+    }
+
+    private static String commentText(WordprocessingMLPackage doc, String id) {
+        for (Comments.Comment comment : doc.getMainDocumentPart().getCommentsPart().getJaxbElement().getComment()) {
+            if (id.equals(String.valueOf(comment.getId()))) {
+                return text(comment.getContent());
+            }
+        }
+        fail("找不到批注: " + id);
+        return null;
+    }
+
+    private static String text(List<Object> blocks) {
+        StringBuilder text = new StringBuilder();
+        for (Object block : blocks) {
+            Matcher matcher = Pattern.compile("<w:t[^>]*>([^<]*)</w:t>").matcher(XmlUtils.marshaltoString(block));
+            while (matcher.find()) {
+                text.append(matcher.group(1));
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * 获取包含指定文本的段落使用的样式ID
+     */
+    static String paragraphStyle(WordprocessingMLPackage doc, String text) {
+        for (Object content : doc.getMainDocumentPart().getContent()) {
+            if (content instanceof P && XmlUtils.marshaltoString(content).contains(">" + text + "<")) {
+                P p = (P) content;
+                return p.getPPr() == null || p.getPPr().getPStyle() == null ? null : p.getPPr().getPStyle().getVal();
+            }
+        }
+        fail("找不到段落: " + text);
+        return null;
+    }
+}
@@ -0,0 +1,277 @@
+package cn.liulin.docx;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.dml.wordprocessingDrawing.Inline;
+import org.docx4j.jaxb.Context;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPartAbstractImage;
+import org.docx4j.openpackaging.parts.WordprocessingML.CommentsPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.EndnotesPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.FootnotesPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.HeaderPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.NumberingDefinitionsPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.CTEndnotes;
+import org.docx4j.wml.CTFootnotes;
+import org.docx4j.wml.Comments;
+import org.docx4j.wml.Drawing;
+import org.docx4j.wml.Hdr;
+import org.docx4j.wml.HdrFtrRef;
+import org.docx4j.wml.HeaderReference;
+import org.docx4j.wml.Numbering;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.docx4j.wml.SectPr;
+import org.docx4j.wml.Style;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * 测试用文档的构造方法
+ * 样式、编号和段落以WordprocessingML片段给出，省略w命名空间声明
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 14:10
+ */
+public final class TestDocuments {
+    public static final String W_NAMESPACE = "http://schemas.openxmlformats.org/wordprocessingml/2006/main";
+    public static final String R_NAMESPACE = "http://schemas.openxmlformats.org/officeDocument/2006/relationships";
+
+    private TestDocuments() {
+    }
+
+    /**
+     * 创建只包含docx4j默认样式的空文档
+     */
+    public static WordprocessingMLPackage newDocument() throws Exception {
+        return WordprocessingMLPackage.createPackage();
+    }
+
+    /**
+     * 解析样式片段，如 {@code <w:style w:type="paragraph" w:styleId="Custom">...</w:style>}
+     */
+    public static Style style(String xml) throws Exception {
+        return (Style) XmlUtils.unmarshalString(withNamespaces(xml));
+    }
+
+    /**
+     * 向文档加入样式
+     */
+    public static Style addStyle(WordprocessingMLPackage doc, String xml) throws Exception {
+        Style style = style(xml);
+        doc.getMainDocumentPart().getStyleDefinitionsPart().getJaxbElement().getStyle().add(style);
+        return style;
+    }
+
+    /**
+     * 设置文档的编号定义，片段为 {@code <w:numbering>} 的内容
+     */
+    public static void setNumbering(WordprocessingMLPackage doc, String content) throws Exception {
+        NumberingDefinitionsPart ndp = doc.getMainDocumentPart().getNumberingDefinitionsPart();
+        if (ndp == null) {
+            ndp = new NumberingDefinitionsPart();
+            doc.getMainDocumentPart().addTargetPart(ndp);
+        }
+        ndp.setJaxbElement((Numbering) XmlUtils.unmarshalString(withNamespaces("<w:numbering>" + content + "</w:numbering>")));
+    }
+
+    /**
+     * 向正文末尾加入段落片段，如 {@code <w:p><w:r><w:t>text</w:t></w:r></w:p>}
+     */
+    public static P addParagraph(WordprocessingMLPackage doc, String xml) throws Exception {
+        return (P) addContent(doc, xml);
+    }
+
+    /**
+     * 向正文末尾加入块级元素片段，如 {@code <w:tbl>...</w:tbl>}
+     */
+    public static Object addContent(WordprocessingMLPackage doc, String xml) throws Exception {
+        Object content = XmlUtils.unmarshalString(withNamespaces(xml));
+        doc.getMainDocumentPart().getContent().add(content);
+        return content;
+    }
+
+    /**
+     * 加入使用指定样式的段落
+     */
+    public static P addStyledParagraph(WordprocessingMLPackage doc, String styleId, String text) throws Exception {
+        return addParagraph(doc, "<w:p><w:pPr><w:pStyle w:val=\"" + styleId + "\"/></w:pPr><w:r><w:t>" + text
+                + "</w:t></w:r></w:p>");
+    }
+
+    /**
+     * 加入指向外部地址的超链接段落
+     *
+     * @return 超链接的关系ID
+     */
+    public static String addHyperlink(WordprocessingMLPackage doc, String url, String text) throws Exception {
+        Relationship rel = new org.docx4j.relationships.ObjectFactory().createRelationship();
+        rel.setType(Namespaces.HYPERLINK);
+        rel.setTarget(url);
+        rel.setTargetMode("External");
+        doc.getMainDocumentPart().getRelationshipsPart().addRelationship(rel);
+        addParagraph(doc, "<w:p><w:hyperlink r:id=\"" + rel.getId() + "\"><w:r><w:t>" + text
+                + "</w:t></w:r></w:hyperlink></w:p>");
+        return rel.getId();
+    }
+
+    /**
+     * 生成内容由种子决定的PNG图片
+     */
+    public static byte[] png(int seed) throws Exception {
+        Random random = new Random(seed);
+        BufferedImage image = new BufferedImage(16, 16, BufferedImage.TYPE_INT_RGB);
+        for (int i = 0; i < 16; i++) {
+            image.setRGB(random.nextInt(16), random.nextInt(16), random.nextInt(0xFFFFFF));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, "png", out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 加入只包含一张内嵌图片的段落
+     *
+     * @return 图片的关系ID
+     */
+    public static String addImage(WordprocessingMLPackage doc, byte[] png) throws Exception {
+        BinaryPartAbstractImage imagePart = BinaryPartAbstractImage.createImagePart(doc, png);
+        Inline inline = imagePart.createImageInline("image", "image", 1, 2, false);
+        Drawing drawing = Context.getWmlObjectFactory().createDrawing();
+        drawing.getAnchorOrInline().add(inline);
+        R r = Context.getWmlObjectFactory().createR();
+        r.getContent().add(drawing);
+        P p = Context.getWmlObjectFactory().createP();
+        p.getContent().add(r);
+        doc.getMainDocumentPart().getContent().add(p);
+        return inline.getGraphic().getGraphicData().getPic().getBlipFill().getBlip().getEmbed();
+    }
+
+    /**
+     * 为文档最后一节加入只有一段文字的默认页眉
+     *
+     * @return 页眉部件
+     */
+    public static HeaderPart addHeader(WordprocessingMLPackage doc, String text) throws Exception {
+        HeaderPart headerPart = new HeaderPart(new PartName("/word/header1.xml"));
+        Hdr hdr = (Hdr) XmlUtils.unmarshalString(withNamespaces("<w:hdr><w:p><w:r><w:t>" + text
+                + "</w:t></w:r></w:p></w:hdr>"));
+        headerPart.setJaxbElement(hdr);
+        Relationship rel = doc.getMainDocumentPart().addTargetPart(headerPart);
+
+        SectPr sectPr = doc.getMainDocumentPart().getJaxbElement().getBody().getSectPr();
+        if (sectPr == null) {
+            sectPr = Context.getWmlObjectFactory().createSectPr();
+            doc.getMainDocumentPart().getJaxbElement().getBody().setSectPr(sectPr);
+        }
+        HeaderReference reference = Context.getWmlObjectFactory().createHeaderReference();
+        reference.setType(HdrFtrRef.DEFAULT);
+        reference.setId(rel.getId());
+        sectPr.getEGHdrFtrReferences().add(reference);
+        return headerPart;
+    }
+
+    /**
+     * 设置文档的脚注，片段为 {@code <w:footnotes>} 的内容
+     */
+    public static FootnotesPart setFootnotes(WordprocessingMLPackage doc, String content) throws Exception {
+        FootnotesPart part = new FootnotesPart();
+        part.setJaxbElement((CTFootnotes) XmlUtils.unwrap(XmlUtils.unmarshalString(withNamespaces("<w:footnotes>" + content + "</w:footnotes>"))));
+        doc.getMainDocumentPart().addTargetPart(part);
+        return part;
+    }
+
+    /**
+     * 设置文档的尾注，片段为 {@code <w:endnotes>} 的内容
+     */
+    public static EndnotesPart setEndnotes(WordprocessingMLPackage doc, String content) throws Exception {
+        EndnotesPart part = new EndnotesPart();
+        part.setJaxbElement((CTEndnotes) XmlUtils.unwrap(XmlUtils.unmarshalString(withNamespaces("<w:endnotes>" + content + "</w:endnotes>"))));
+        doc.getMainDocumentPart().addTargetPart(part);
+        return part;
+    }
+
+    /**
+     * 设置文档的批注，片段为 {@code <w:comments>} 的内容
+     */
+    public static CommentsPart setComments(WordprocessingMLPackage doc, String content) throws Exception {
+        CommentsPart part = new CommentsPart();
+        part.setJaxbElement((Comments) XmlUtils.unwrap(XmlUtils.unmarshalString(withNamespaces("<w:comments>" + content + "</w:comments>"))));
+        doc.getMainDocumentPart().addTargetPart(part);
+        return part;
+    }
+
+    /**
+     * 按关系ID查找主文档部件关系指向的部件
+     */
+    public static Part relatedPart(WordprocessingMLPackage doc, String relId) {
+        return doc.getMainDocumentPart().getRelationshipsPart().getPart(relId);
+    }
+
+    /**
+     * 保存为docx字节数组
+     */
+    public static byte[] toBytes(WordprocessingMLPackage doc) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        doc.save(out);
+        return out.toByteArray();
+    }
+
+    /**
+     * 加载docx字节数组
+     */
+    public static WordprocessingMLPackage load(byte[] data) throws Exception {
+        return WordprocessingMLPackage.load(new ByteArrayInputStream(data));
+    }
+
+    /**
+     * 按顺序读取docx压缩包中各条目解压后的内容
+     */
+    public static Map<String, byte[]> zipEntries(byte[] docx) throws Exception {
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(docx))) {
+            ZipEntry entry;
+            byte[] buffer = new byte[8192];
+            while ((entry = zip.getNextEntry()) != null) {
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                int n;
+                while ((n = zip.read(buffer)) != -1) {
+                    content.write(buffer, 0, n);
+                }
+                entries.put(entry.getName(), content.toByteArray());
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * 查找目标文档中指定ID的样式，不存在时返回null
+     */
+    public static Style findStyle(WordprocessingMLPackage doc, String styleId) {
+        for (Style style : doc.getMainDocumentPart().getStyleDefinitionsPart().getJaxbElement().getStyle()) {
+            if (styleId.equals(style.getStyleId())) {
+                return style;
+            }
+        }
+        return null;
+    }
+
+    private static String withNamespaces(String xml) {
+        int end = xml.indexOf('>');
+        int insert = xml.charAt(end - 1) == '/' ? end - 1 : end;
+        return xml.substring(0, insert) + " xmlns:w=\"" + W_NAMESPACE + "\" xmlns:r=\"" + R_NAMESPACE + "\""
+                + xml.substring(insert);
+    }
+}
@@ -0,0 +1,137 @@
+package cn.liulin.docx.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 合并度量数据测试
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 17:30
+ */
+public class MergeMetricsTest {
+
+    /**
+     * 同一批次的同阶段记录累加，合计跨批次累加，CPU时间或分配字节数不可用时合计同样不可用
+     */
+    @Test
+    public void recordsAreAggregatedByPhaseAndBatch() {
+        MergeMetrics metrics = new MergeMetrics();
+        metrics.record(documents(new PhaseMetrics(MergePhase.LOAD, 0, 10, 5, 100), 1));
+        metrics.record(documents(new PhaseMetrics(MergePhase.LOAD, 0, 20, 5, 100), 1));
+        metrics.record(new PhaseMetrics(MergePhase.STYLES, 0, 7, 7, 70));
+        metrics.record(documents(new PhaseMetrics(MergePhase.LOAD, 1, 30, -1, 100), 1));
+
+        List<PhaseMetrics> phases = metrics.getPhases();
+        assertEquals(3, phases.size());
+        assertEquals(MergePhase.LOAD, phases.get(0).getPhase());
+        assertEquals(0, phases.get(0).getBatch());
+        assertEquals(30, phases.get(0).getWallNanos());
+        assertEquals(2, phases.get(0).getInvocations());
+        assertEquals(2, phases.get(0).getDocuments());
+        assertEquals(MergePhase.STYLES, phases.get(1).getPhase());
+        assertEquals(1, phases.get(2).getBatch());
+
+        Map<MergePhase, PhaseMetrics> totals = metrics.getTotals();
+        assertEquals(Arrays.asList(MergePhase.LOAD, MergePhase.STYLES), new ArrayList<>(totals.keySet()));
+        PhaseMetrics load = totals.get(MergePhase.LOAD);
+        assertEquals(-1, load.getBatch());
+        assertEquals(60, load.getWallNanos());
+        assertEquals(-1, load.getCpuNanos());
+        assertEquals(300, load.getAllocatedBytes());
+        assertEquals(3, load.getDocuments());
+
+        // 返回的是副本，调用方修改不影响后续汇总
+        phases.get(0).setDocuments(100);
+        assertEquals(2, metrics.getPhases().get(0).getDocuments());
+    }
+
+    /**
+     * 监听器依次收到每条记录、进度和完成通知，监听器抛出异常不影响合并
+     */
+    @Test
+    public void listenersReceiveRecordsProgressAndCompletion() {
+        List<String> events = Collections.synchronizedList(new ArrayList<>());
+        MergeListener failing = phase -> {
+            throw new IllegalStateException("listener");
+        };
+        MergeListener recording = new MergeListener() {
+            @Override
+            public void onPhase(PhaseMetrics metrics) {
+                events.add(metrics.getPhase().name());
+            }
+
+            @Override
+            public void onProgress(MergeProgress progress) {
+                events.add(progress.getStage() + " " + progress.getCompletedDocuments() + "/" + progress.getTotalDocuments());
+            }
+
+            @Override
+            public void onComplete(MergeMetrics metrics) {
+                events.add("complete " + metrics.getTotalWallNanos());
+            }
+        };
+        MergeMetrics metrics = new MergeMetrics(Arrays.asList(failing, recording));
+        metrics.setTotalDocuments(2);
+
+        metrics.record(new PhaseMetrics(MergePhase.LOAD, 0, 1, 1, 1));
+        metrics.documentLoaded("a.docx", 0);
+        metrics.documentLoaded("b.docx", 0);
+        metrics.documentsMerged(2, 0);
+        metrics.complete(42);
+
+        assertEquals(Arrays.asList("LOAD", "LOADED 1/2", "LOADED 2/2", "MERGED 2/2", "complete 42"), events);
+        assertEquals(42, metrics.getTotalWallNanos());
+    }
+
+    /**
+     * 取消后记录阶段时抛出CancellationException，已记录的数据保留
+     */
+    @Test
+    public void recordAfterCancelThrows() {
+        MergeMetrics metrics = new MergeMetrics();
+        metrics.record(new PhaseMetrics(MergePhase.LOAD, 0, 1, 1, 1));
+        metrics.cancel();
+        try {
+            metrics.record(new PhaseMetrics(MergePhase.SAVE, 0, 1, 1, 1));
+            fail("取消后应当抛出CancellationException");
+        } catch (CancellationException e) {
+            // 预期的异常
+        }
+        assertTrue(metrics.isCancelled());
+        assertEquals(1, metrics.getPhases().size());
+    }
+
+    /**
+     * JSON中先列出合计再列出按批次的明细
+     */
+    @Test
+    public void jsonListsTotalsAndPhases() {
+        MergeMetrics metrics = new MergeMetrics();
+        metrics.record(new PhaseMetrics(MergePhase.SAVE, 0, 5, 4, 3));
+        metrics.complete(9);
+
+        String phase = "{\"phase\":\"SAVE\",\"batch\":%d,\"wallNanos\":5,\"cpuNanos\":4,\"allocatedBytes\":3,"
+                + "\"invocations\":1,\"documents\":0,\"parts\":0,\"images\":0,\"styles\":0}";
+        assertEquals("{\"totalWallNanos\":9,\"totals\":[" + String.format(phase, -1) + "],\"phases\":["
+                + String.format(phase, 0) + "]}", metrics.toJson());
+        assertSame(MergePhase.SAVE, metrics.getTotals().keySet().iterator().next());
+    }
+
+    private static PhaseMetrics documents(PhaseMetrics metrics, long documents) {
+        metrics.setDocuments(documents);
+        return metrics;
+    }
+}
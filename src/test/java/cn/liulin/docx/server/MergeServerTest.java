@@ -0,0 +1,156 @@
+package cn.liulin.docx.server;
+
+import cn.liulin.docx.MergeConfig;
+import cn.liulin.docx.TestDocuments;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static cn.liulin.docx.TestDocuments.addStyledParagraph;
+import static cn.liulin.docx.TestDocuments.newDocument;
+import static cn.liulin.docx.TestDocuments.toBytes;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 常驻合并服务测试
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 18:30
+ */
+public class MergeServerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MergeServer server;
+
+    private File outputRoot;
+
+    private List<String> docPaths;
+
+    @Before
+    public void setUp() throws Exception {
+        docPaths = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            File file = folder.newFile("input" + i + ".docx");
+            WordprocessingMLPackage doc = newDocument();
+            addStyledParagraph(doc, "Normal", "text" + i);
+            Files.write(file.toPath(), toBytes(doc));
+            docPaths.add(file.getPath());
+        }
+        outputRoot = folder.newFolder("out");
+        server = new MergeServer(0, new MergeConfig(), 1, 1, outputRoot.toPath(),
+                folder.getRoot().toPath().resolve("server.token"));
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        if (server != null) {
+            server.stop(5);
+        }
+    }
+
+    /**
+     * 客户端带令牌提交任务，相对路径的输出文档写在输出根目录中，停止服务后删除令牌文件
+     */
+    @Test
+    public void clientMergesIntoOutputRoot() throws Exception {
+        MergeClient client = new MergeClient(server.getPort(), server.getTokenFile());
+
+        String response = client.merge(docPaths, "merged.docx", 0);
+
+        assertTrue(response, response.contains("\"documents\":2"));
+        WordprocessingMLPackage merged = TestDocuments.load(Files.readAllBytes(new File(outputRoot, "merged.docx").toPath()));
+        String xml = XmlUtils.marshaltoString(merged.getMainDocumentPart().getJaxbElement());
+        assertTrue(xml.contains("text0") && xml.contains("text1"));
+        assertTrue(client.health().contains("\"completedJobs\":1"));
+
+        server.stop(5);
+        assertFalse(Files.exists(server.getTokenFile()));
+        server = null;
+    }
+
+    /**
+     * 令牌缺失或不匹配、带Origin头、请求体类型不对或输出路径越界的请求不执行合并
+     */
+    @Test
+    public void invalidRequestsAreRejected() throws Exception {
+        String token = MergeServer.readToken(server.getTokenFile());
+        String body = "merged.docx\n" + String.join("\n", docPaths);
+
+        assertEquals(401, post(null, "text/plain", null, body));
+        assertEquals(401, post("wrong", "text/plain", null, body));
+        assertEquals(403, post(token, "text/plain", "http://example.com", body));
+        assertEquals(415, post(token, "application/x-www-form-urlencoded", null, body));
+        assertEquals(400, post(token, "text/plain", null, "merged.docx"));
+
+        File outside = folder.newFolder("outside");
+        assertEquals(403, post(token, "text/plain", null, body.replace("merged.docx", "../outside/merged.docx")));
+        assertEquals(403, post(token, "text/plain", null,
+                body.replace("merged.docx", new File(outside, "merged.docx").getPath())));
+        assertEquals(403, post(token, "text/plain", null, body.replace("merged.docx", "")));
+        Path link = outputRoot.toPath().resolve("link");
+        try {
+            Files.createSymbolicLink(link, outside.toPath());
+            assertEquals(403, post(token, "text/plain", null, body.replace("merged.docx", "link/merged.docx")));
+        } catch (UnsupportedOperationException | IOException e) {
+            // 不支持符号链接的文件系统
+        }
+
+        assertArrayEquals(new String[0], outside.list());
+        assertFalse(new File(outputRoot, "merged.docx").exists());
+        assertEquals(200, post(token, "text/plain; charset=utf-8", null, body));
+        assertTrue(new File(outputRoot, "merged.docx").exists());
+    }
+
+    /**
+     * 通过套接字直接发送合并请求，HttpURLConnection会丢弃Origin等受限请求头
+     *
+     * @return 响应状态码
+     */
+    private int post(String token, String contentType, String origin, String body) throws IOException {
+        byte[] content = body.getBytes(StandardCharsets.UTF_8);
+        StringBuilder request = new StringBuilder("POST /merge HTTP/1.1\r\n")
+                .append("Host: 127.0.0.1:").append(server.getPort()).append("\r\n")
+                .append("Content-Type: ").append(contentType).append("\r\n")
+                .append("Content-Length: ").append(content.length).append("\r\n")
+                .append("Connection: close\r\n");
+        if (token != null) {
+            request.append("Authorization: Bearer ").append(token).append("\r\n");
+        }
+        if (origin != null) {
+            request.append("Origin: ").append(origin).append("\r\n");
+        }
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort())) {
+            OutputStream out = socket.getOutputStream();
+            out.write(request.append("\r\n").toString().getBytes(StandardCharsets.US_ASCII));
+            out.write(content);
+            out.flush();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+            // 状态行：HTTP/1.1 200 OK
+            return Integer.parseInt(in.readLine().split(" ")[1]);
+        }
+    }
+}
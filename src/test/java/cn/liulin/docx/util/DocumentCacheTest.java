@@ -0,0 +1,115 @@
+package cn.liulin.docx.util;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 预处理结果缓存测试
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 16:20
+ */
+public class DocumentCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * 溢出目录中的文件随淘汰删除，被淘汰的键可以再次缓存
+     */
+    @Test
+    public void spilledEntriesAreEvictedAndRecached() throws Exception {
+        Path dir = folder.getRoot().toPath().resolve("spill");
+        DocumentCache cache = new DocumentCache(10, dir, false);
+        cache.put("a", new byte[]{1, 2, 3, 4, 5, 6});
+        cache.put("b", new byte[]{7, 8, 9, 10, 11, 12});
+
+        assertNull(cache.get("a"));
+        assertArrayEquals(new byte[]{7, 8, 9, 10, 11, 12}, cache.get("b"));
+        assertEquals(1, cache.getEvictions());
+        assertEquals(1, fileCount(dir));
+
+        cache.put("a", new byte[]{1, 2, 3, 4, 5, 6});
+        assertArrayEquals(new byte[]{1, 2, 3, 4, 5, 6}, cache.get("a"));
+        assertEquals(1, fileCount(dir));
+        assertEquals(6, cache.getTotalBytes());
+
+        cache.clear();
+        assertEquals(0, fileCount(dir));
+        assertEquals(0, cache.getTotalBytes());
+    }
+
+    /**
+     * 溢出文件被外部删除时视为未缓存
+     */
+    @Test
+    public void missingSpillFileIsAMiss() throws Exception {
+        Path dir = folder.getRoot().toPath().resolve("spill");
+        DocumentCache cache = new DocumentCache(100, dir, false);
+        cache.put("a", new byte[]{1});
+        for (File file : dir.toFile().listFiles()) {
+            Files.delete(file.toPath());
+        }
+
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getTotalBytes());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    /**
+     * 多个线程同时查找、缓存和淘汰时，字节数与保留的条目和溢出文件一致
+     */
+    @Test
+    public void concurrentAccessKeepsAccountingConsistent() throws Exception {
+        Path dir = folder.getRoot().toPath().resolve("spill");
+        DocumentCache cache = new DocumentCache(64, dir, false);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int seed = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 200; i++) {
+                        String key = "k" + (i * 7 + seed) % 20;
+                        byte[] data = cache.get(key);
+                        if (data == null) {
+                            cache.put(key, new byte[16]);
+                        } else {
+                            assertEquals(16, data.length);
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(cache.size() * 16L, cache.getTotalBytes());
+        assertEquals(cache.size(), fileCount(dir));
+    }
+
+    private static int fileCount(Path dir) {
+        File[] files = dir.toFile().listFiles();
+        return files == null ? 0 : files.length;
+    }
+}
@@ -0,0 +1,114 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.DocDefaults;
+import org.docx4j.wml.Styles;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static cn.liulin.docx.TestDocuments.addStyle;
+import static cn.liulin.docx.TestDocuments.findStyle;
+import static cn.liulin.docx.TestDocuments.newDocument;
+import static cn.liulin.docx.TestDocuments.style;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 文档格式信息测试
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 18:10
+ */
+public class DocumentFormatProfileTest {
+
+    /**
+     * Normal样式定义的属性优先，Normal样式没有定义的属性取文档默认值
+     */
+    @Test
+    public void normalStyleOverridesDocDefaults() throws Exception {
+        WordprocessingMLPackage doc = documentWithDefaults(20, 22);
+        findStyle(doc, "Normal").setRPr(style("<w:style><w:rPr><w:sz w:val=\"24\"/></w:rPr></w:style>").getRPr());
+
+        DocumentFormatProfile profile = DocumentFormatProfile.capture(doc, FontMapperUtil.REQUIRED_FORMAT_PROPERTIES);
+
+        assertEquals(BigInteger.valueOf(24), profile.getFontSize());
+        assertEquals(BigInteger.valueOf(22), profile.getFontSizeCs());
+    }
+
+    /**
+     * 自身或基于链上定义了字体大小的样式才视为有字体大小，基于链到达Normal样式时停止，循环引用不会导致死循环
+     */
+    @Test
+    public void sizedStylesFollowBasedOnChain() throws Exception {
+        WordprocessingMLPackage doc = documentWithDefaults(20, 20);
+        findStyle(doc, "Normal").setRPr(style("<w:style><w:rPr><w:sz w:val=\"21\"/></w:rPr></w:style>").getRPr());
+        addStyle(doc, "<w:style w:type=\"paragraph\" w:styleId=\"Big\"><w:name w:val=\"Big\"/>"
+                + "<w:rPr><w:sz w:val=\"32\"/></w:rPr></w:style>");
+        addStyle(doc, "<w:style w:type=\"paragraph\" w:styleId=\"BigChild\"><w:name w:val=\"Big Child\"/>"
+                + "<w:basedOn w:val=\"Big\"/></w:style>");
+        addStyle(doc, "<w:style w:type=\"paragraph\" w:styleId=\"Plain\"><w:name w:val=\"Plain\"/>"
+                + "<w:basedOn w:val=\"Normal\"/></w:style>");
+        addStyle(doc, "<w:style w:type=\"character\" w:styleId=\"Emphasis\"><w:name w:val=\"Emphasis\"/>"
+                + "<w:rPr><w:sz w:val=\"18\"/></w:rPr></w:style>");
+        addStyle(doc, "<w:style w:type=\"numbering\" w:styleId=\"SizedList\"><w:name w:val=\"Sized List\"/>"
+                + "<w:rPr><w:sz w:val=\"18\"/></w:rPr></w:style>");
+        addStyle(doc, "<w:style w:type=\"paragraph\" w:styleId=\"LoopA\"><w:name w:val=\"Loop A\"/>"
+                + "<w:basedOn w:val=\"LoopB\"/></w:style>");
+        addStyle(doc, "<w:style w:type=\"paragraph\" w:styleId=\"LoopB\"><w:name w:val=\"Loop B\"/>"
+                + "<w:basedOn w:val=\"LoopA\"/></w:style>");
+
+        DocumentFormatProfile profile = DocumentFormatProfile.capture(doc, FontMapperUtil.REQUIRED_FORMAT_PROPERTIES);
+
+        assertTrue(profile.isSizedStyle("Big"));
+        assertTrue(profile.isSizedStyle("BigChild"));
+        assertTrue(profile.isSizedStyle("Emphasis"));
+        assertFalse(profile.isSizedStyle("Plain"));
+        assertFalse(profile.isSizedStyle("SizedList"));
+        assertFalse(profile.isSizedStyle("LoopA"));
+        assertFalse(profile.isSizedStyle("Normal"));
+        assertFalse(profile.isSizedStyle(null));
+    }
+
+    /**
+     * 只读取声明过的属性，保存的格式信息与文档列表顺序一致
+     */
+    @Test
+    public void onlyRequestedPropertiesAreCaptured() throws Exception {
+        List<WordprocessingMLPackage> docs = Arrays.asList(documentWithDefaults(20, 20), documentWithDefaults(28, 28));
+        addStyle(docs.get(0), "<w:style w:type=\"paragraph\" w:styleId=\"Big\"><w:name w:val=\"Big\"/>"
+                + "<w:rPr><w:sz w:val=\"32\"/></w:rPr></w:style>");
+
+        List<DocumentFormatProfile> profiles = TableFormatPreserverUtil.saveDocumentFormat(docs);
+        assertEquals(BigInteger.valueOf(20), profiles.get(0).getFontSize());
+        assertEquals(BigInteger.valueOf(28), profiles.get(1).getFontSize());
+
+        DocumentFormatProfile empty = TableFormatPreserverUtil.saveDocumentFormat(docs,
+                Collections.<FormatProperty>emptySet()).get(0);
+        assertNull(empty.getFontSize());
+        assertNull(empty.getFontSizeCs());
+        assertFalse(empty.isSizedStyle("Big"));
+    }
+
+    /**
+     * 创建文档默认字体大小为指定值、Normal样式没有字体大小的文档
+     */
+    private static WordprocessingMLPackage documentWithDefaults(int sz, int szCs) throws Exception {
+        WordprocessingMLPackage doc = newDocument();
+        findStyle(doc, "Normal").setRPr(null);
+        Styles styles = doc.getMainDocumentPart().getStyleDefinitionsPart().getJaxbElement();
+        DocDefaults.RPrDefault rPrDefault = new DocDefaults.RPrDefault();
+        rPrDefault.setRPr(style("<w:style><w:rPr><w:sz w:val=\"" + sz + "\"/><w:szCs w:val=\"" + szCs
+                + "\"/></w:rPr></w:style>").getRPr());
+        DocDefaults docDefaults = new DocDefaults();
+        docDefaults.setRPrDefault(rPrDefault);
+        styles.setDocDefaults(docDefaults);
+        return doc;
+    }
+}
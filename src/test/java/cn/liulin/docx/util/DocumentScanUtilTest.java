@@ -0,0 +1,38 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.junit.Test;
+
+import static cn.liulin.docx.TestDocuments.addParagraph;
+import static cn.liulin.docx.TestDocuments.newDocument;
+import static cn.liulin.docx.TestDocuments.toBytes;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 文档预检查测试
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 15:40
+ */
+public class DocumentScanUtilTest {
+
+    /**
+     * 大量空段落的document.xml压缩比远超100:1，默认不检查压缩比，只在指定上限时拒绝
+     */
+    @Test
+    public void compressionRatioIsCheckedOnlyWhenConfigured() throws Exception {
+        WordprocessingMLPackage doc = newDocument();
+        for (int i = 0; i < 60000; i++) {
+            addParagraph(doc, "<w:p><w:pPr><w:spacing w:after=\"0\"/></w:pPr></w:p>");
+        }
+        DocumentSource source = DocumentSource.of("empty.docx", toBytes(doc));
+
+        DocumentScan scan = DocumentScanUtil.scan(source, false, 0, 0);
+        assertTrue(scan.getProblems().toString(), scan.isValid());
+        assertTrue(scan.getMainPartSize() > 1024 * 1024);
+
+        assertFalse(DocumentScanUtil.scan(source, false, 0, 100).isValid());
+    }
+}
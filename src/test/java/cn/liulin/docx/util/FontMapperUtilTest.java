@@ -0,0 +1,150 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.P;
+import org.docx4j.wml.R;
+import org.docx4j.wml.Tbl;
+import org.docx4j.wml.Tc;
+import org.docx4j.wml.Tr;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static cn.liulin.docx.TestDocuments.addContent;
+import static cn.liulin.docx.TestDocuments.addParagraph;
+import static cn.liulin.docx.TestDocuments.addStyle;
+import static cn.liulin.docx.TestDocuments.findStyle;
+import static cn.liulin.docx.TestDocuments.newDocument;
+import static cn.liulin.docx.TestDocuments.style;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 16:20
+ */
+public class FontMapperUtilTest {
+
+    private static final String V_NAMESPACE = "urn:schemas-microsoft-com:vml";
+
+    /**
+     * 标题段落中嵌套文本框时，文本框中的段落不影响标题中其后运行元素的判断
+     */
+    @Test
+    public void nestedParagraphDoesNotResetEnclosingParagraph() throws Exception {
+        WordprocessingMLPackage doc = newDocumentWithDefaultSize();
+        addStyle(doc, "<w:style w:type=\"paragraph\" w:styleId=\"Heading1\"><w:name w:val=\"heading 1\"/>"
+                + "<w:rPr><w:sz w:val=\"32\"/></w:rPr></w:style>");
+        P heading = addParagraph(doc, "<w:p><w:pPr><w:pStyle w:val=\"Heading1\"/></w:pPr>"
+                + "<w:r><w:t>before</w:t></w:r>"
+                + "<w:r><w:pict><v:shape xmlns:v=\"" + V_NAMESPACE + "\"><v:textbox><w:txbxContent>"
+                + "<w:p><w:r><w:t>inside</w:t></w:r></w:p>"
+                + "</w:txbxContent></v:textbox></v:shape></w:pict></w:r>"
+                + "<w:r><w:t>after</w:t></w:r></w:p>");
+
+        applyDefaultFontSize(doc);
+
+        List<R> runs = runs(heading);
+        assertNull(size(runs.get(0)));
+        assertEquals(BigInteger.valueOf(21), size(findRun(runs.get(1), "inside")));
+        assertNull(size(runs.get(2)));
+    }
+
+    /**
+     * 表格样式定义了字体大小时，表格中没有段落样式的文字保持由表格样式决定
+     */
+    @Test
+    public void runsInSizedTableStyleAreLeftToStyle() throws Exception {
+        WordprocessingMLPackage doc = newDocumentWithDefaultSize();
+        addStyle(doc, "<w:style w:type=\"table\" w:styleId=\"SmallGrid\"><w:name w:val=\"Small Grid\"/>"
+                + "<w:rPr><w:sz w:val=\"16\"/></w:rPr></w:style>");
+        Tbl styled = (Tbl) addContent(doc, "<w:tbl><w:tblPr><w:tblStyle w:val=\"SmallGrid\"/></w:tblPr>"
+                + "<w:tr><w:tc><w:p><w:r><w:t>styled</w:t></w:r></w:p></w:tc></w:tr></w:tbl>");
+        Tbl plain = (Tbl) addContent(doc, "<w:tbl><w:tr><w:tc><w:p><w:r><w:t>plain</w:t></w:r></w:p></w:tc></w:tr></w:tbl>");
+
+        applyDefaultFontSize(doc);
+
+        assertNull(size(firstRun(styled)));
+        assertEquals(BigInteger.valueOf(21), size(firstRun(plain)));
+    }
+
+    /**
+     * 与样式引用更新在同一次遍历中执行时，按合并前的段落样式和表格样式ID判断
+     */
+    @Test
+    public void sizedStylesAreCheckedBeforeReferencesAreRemapped() throws Exception {
+        WordprocessingMLPackage doc = newDocumentWithDefaultSize();
+        addStyle(doc, "<w:style w:type=\"paragraph\" w:styleId=\"Heading1\"><w:name w:val=\"heading 1\"/>"
+                + "<w:rPr><w:sz w:val=\"32\"/></w:rPr></w:style>");
+        addStyle(doc, "<w:style w:type=\"table\" w:styleId=\"SmallGrid\"><w:name w:val=\"Small Grid\"/>"
+                + "<w:rPr><w:sz w:val=\"16\"/></w:rPr></w:style>");
+        P heading = addParagraph(doc, "<w:p><w:pPr><w:pStyle w:val=\"Heading1\"/></w:pPr><w:r><w:t>title</w:t></w:r></w:p>");
+        Tbl styled = (Tbl) addContent(doc, "<w:tbl><w:tblPr><w:tblStyle w:val=\"SmallGrid\"/></w:tblPr>"
+                + "<w:tr><w:tc><w:p><w:r><w:t>styled</w:t></w:r></w:p></w:tc></w:tr></w:tbl>");
+        Map<String, String> styleIdMap = new HashMap<>();
+        styleIdMap.put("Heading1", "Heading1_1");
+        styleIdMap.put("SmallGrid", "SmallGrid_1");
+
+        DocumentFormatProfile profile = DocumentFormatProfile.capture(doc, FontMapperUtil.REQUIRED_FORMAT_PROPERTIES);
+        List<TraversalStep<?>> steps = new ArrayList<>(StyleReMapperUtil.createStyleReferenceSteps(styleIdMap));
+        steps.addAll(FontMapperUtil.createDefaultFontSizeSteps(profile, "文档1"));
+        DocumentTraversalUtil.traverse(doc.getMainDocumentPart().getJaxbElement(), steps);
+
+        assertEquals("Heading1_1", heading.getPPr().getPStyle().getVal());
+        assertNull(size(runs(heading).get(0)));
+        assertNull(size(firstRun(styled)));
+    }
+
+    private static WordprocessingMLPackage newDocumentWithDefaultSize() throws Exception {
+        WordprocessingMLPackage doc = newDocument();
+        findStyle(doc, "Normal").setRPr(style("<w:style><w:rPr><w:sz w:val=\"21\"/></w:rPr></w:style>").getRPr());
+        return doc;
+    }
+
+    private static void applyDefaultFontSize(WordprocessingMLPackage doc) {
+        DocumentFormatProfile profile = DocumentFormatProfile.capture(doc, FontMapperUtil.REQUIRED_FORMAT_PROPERTIES);
+        DocumentTraversalUtil.traverse(doc.getMainDocumentPart().getJaxbElement(),
+                FontMapperUtil.createDefaultFontSizeSteps(profile, "文档1"));
+    }
+
+    private static List<R> runs(P p) {
+        List<R> runs = new ArrayList<>();
+        for (Object content : p.getContent()) {
+            Object value = XmlUtils.unwrap(content);
+            if (value instanceof R) {
+                runs.add((R) value);
+            }
+        }
+        return runs;
+    }
+
+    private static R firstRun(Tbl tbl) {
+        Tr tr = (Tr) XmlUtils.unwrap(tbl.getContent().get(0));
+        Tc tc = (Tc) XmlUtils.unwrap(tr.getContent().get(0));
+        return runs((P) XmlUtils.unwrap(tc.getContent().get(0))).get(0);
+    }
+
+    /**
+     * 在运行元素的子树中查找包含指定文本的运行元素
+     */
+    private static R findRun(Object root, String text) {
+        List<R> found = new ArrayList<>();
+        DocumentTraversalUtil.traverse(root, Collections.singletonList(TraversalStep.of(R.class, r -> {
+            if (XmlUtils.marshaltoString(r).contains(">" + text + "<")) {
+                found.add(r);
+            }
+        })));
+        return found.get(found.size() - 1);
+    }
+
+    private static BigInteger size(R r) {
+        return r.getRPr() == null || r.getRPr().getSz() == null ? null : r.getRPr().getSz().getVal();
+    }
+}
@@ -0,0 +1,86 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static cn.liulin.docx.TestDocuments.addParagraph;
+import static cn.liulin.docx.TestDocuments.newDocument;
+import static cn.liulin.docx.TestDocuments.toBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 文档内存占用估算测试
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 17:50
+ */
+public class MemoryEstimateUtilTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * XML条目按膨胀倍数计算，二进制条目按原始大小计算；内存中预处理或非文件来源时另加压缩后的大小
+     */
+    @Test
+    public void costFollowsEntrySizes() throws Exception {
+        byte[] xml = new byte[1000];
+        Arrays.fill(xml, (byte) ' ');
+        byte[] media = new byte[3000];
+        new Random(1).nextBytes(media);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long compressed;
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.putNextEntry(new ZipEntry("word/document.xml"));
+            zip.write(xml);
+            zip.putNextEntry(new ZipEntry("word/_rels/document.xml.rels"));
+            zip.write(xml, 0, 100);
+            zip.putNextEntry(new ZipEntry("word/media/"));
+            ZipEntry image = new ZipEntry("word/media/image1.PNG");
+            zip.putNextEntry(image);
+            zip.write(media);
+            zip.closeEntry();
+            compressed = image.getCompressedSize();
+        }
+        File file = folder.newFile("sizes.docx");
+        Files.write(file.toPath(), out.toByteArray());
+
+        long cost = MemoryEstimateUtil.PACKAGE_OVERHEAD + 8 * 1000 + 8 * 100 + 3000;
+        assertEquals(cost, MemoryEstimateUtil.estimateHeapCost(file.getPath(), false));
+
+        long zipped = MemoryEstimateUtil.estimateHeapCost(file.getPath(), true) - cost;
+        assertEquals(zipped, MemoryEstimateUtil.estimateHeapCost(DocumentSource.of("sizes.docx", out.toByteArray()), false) - cost);
+        // 随机数据几乎不可压缩，压缩后的大小至少包含图片条目
+        assertTrue(zipped >= compressed && compressed >= 3000);
+    }
+
+    /**
+     * 预检查过的文档直接使用预检查统计的大小，与读取中央目录的估算一致
+     */
+    @Test
+    public void scannedSourceUsesScanEstimate() throws Exception {
+        WordprocessingMLPackage doc = newDocument();
+        for (int i = 0; i < 100; i++) {
+            addParagraph(doc, "<w:p><w:r><w:t>paragraph " + i + "</w:t></w:r></w:p>");
+        }
+        byte[] data = toBytes(doc);
+        long expected = MemoryEstimateUtil.estimateHeapCost(DocumentSource.of("doc.docx", data), true);
+
+        DocumentSource scanned = DocumentSource.of("doc.docx", data);
+        DocumentScanUtil.scan(scanned, false, 0, 0);
+        assertEquals(expected, MemoryEstimateUtil.estimateHeapCost(scanned, true));
+        assertEquals(expected, scanned.getScan().getHeapCost() + scanned.getScan().getCompressedSize());
+    }
+}
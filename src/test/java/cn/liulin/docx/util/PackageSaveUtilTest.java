@@ -0,0 +1,135 @@
+package cn.liulin.docx.util;
+
+import cn.liulin.docx.TestDocuments;
+import org.docx4j.openpackaging.contenttype.ContentType;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static cn.liulin.docx.TestDocuments.addHeader;
+import static cn.liulin.docx.TestDocuments.addHyperlink;
+import static cn.liulin.docx.TestDocuments.addImage;
+import static cn.liulin.docx.TestDocuments.addStyledParagraph;
+import static cn.liulin.docx.TestDocuments.newDocument;
+import static cn.liulin.docx.TestDocuments.png;
+import static cn.liulin.docx.TestDocuments.toBytes;
+import static cn.liulin.docx.TestDocuments.zipEntries;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 16:50
+ */
+public class PackageSaveUtilTest {
+
+    /**
+     * 部件已经提交给压缩线程后保存失败，压缩线程池被关闭，输出流同样被关闭
+     */
+    @Test
+    public void failedSaveShutsDownCompressionThreads() throws Exception {
+        WordprocessingMLPackage doc = newDocument();
+        addStyledParagraph(doc, "Normal", "text");
+        BinaryPart broken = new BinaryPart(new PartName("/word/media/broken.bin")) {
+            @Override
+            public boolean isLoaded() {
+                return true;
+            }
+
+            @Override
+            public ByteBuffer getBuffer() {
+                throw new IllegalStateException("broken");
+            }
+        };
+        broken.setContentType(new ContentType("application/octet-stream"));
+        broken.setRelationshipType(Namespaces.IMAGE);
+        doc.getMainDocumentPart().addTargetPart(broken);
+        boolean[] closed = {false};
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+
+        try {
+            PackageSaveUtil.save(doc, out, 4, -1, true, true);
+            fail("部件内容读取失败时保存应当失败");
+        } catch (Exception e) {
+            // 预期的失败
+        }
+
+        assertEquals(new ArrayList<String>(), saveThreads());
+        assertTrue(closed[0]);
+    }
+
+    /**
+     * 并行保存的文档包与docx4j默认保存的各条目内容一致，PNG图片以STORED方式保存，其余条目压缩保存
+     */
+    @Test
+    public void parallelSaveMatchesDocx4jSave() throws Exception {
+        WordprocessingMLPackage doc = newDocument();
+        for (int i = 0; i < 50; i++) {
+            addStyledParagraph(doc, "Normal", "text" + i);
+        }
+        addHeader(doc, "header");
+        addHyperlink(doc, "https://example.com/", "link");
+        addImage(doc, png(1));
+        Map<String, byte[]> expected = zipEntries(toBytes(doc));
+
+        for (boolean inMemory : Arrays.asList(false, true)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            PackageSaveUtil.save(doc, out, 4, -1, true, inMemory);
+
+            Map<String, byte[]> actual = zipEntries(out.toByteArray());
+            assertEquals(expected.keySet(), actual.keySet());
+            for (String name : expected.keySet()) {
+                assertArrayEquals(name, expected.get(name), actual.get(name));
+            }
+            Map<String, Integer> methods = zipMethods(out.toByteArray());
+            for (Map.Entry<String, Integer> entry : methods.entrySet()) {
+                int method = entry.getKey().endsWith(".png") ? ZipEntry.STORED : ZipEntry.DEFLATED;
+                assertEquals(entry.getKey(), method, (int) entry.getValue());
+            }
+            assertTrue(methods.keySet().stream().anyMatch(name -> name.endsWith(".png")));
+            assertEquals(52, TestDocuments.load(out.toByteArray()).getMainDocumentPart().getContent().size());
+        }
+    }
+
+    private static Map<String, Integer> zipMethods(byte[] docx) throws Exception {
+        Map<String, Integer> methods = new LinkedHashMap<>();
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(docx))) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                methods.put(entry.getName(), entry.getMethod());
+            }
+        }
+        return methods;
+    }
+
+    private static List<String> saveThreads() {
+        List<String> names = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("docx-merge-save") && thread.isAlive()) {
+                names.add(thread.getName());
+            }
+        }
+        return names;
+    }
+}
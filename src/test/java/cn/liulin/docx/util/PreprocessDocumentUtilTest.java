@@ -0,0 +1,163 @@
+package cn.liulin.docx.util;
+
+import cn.liulin.docx.DocxMerger;
+import cn.liulin.docx.MergeConfig;
+import cn.liulin.docx.TestDocuments;
+import org.docx4j.XmlUtils;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.Hdr;
+import org.docx4j.wml.P;
+import org.docx4j.wml.Tbl;
+import org.docx4j.wml.Tc;
+import org.docx4j.wml.TcPr;
+import org.docx4j.wml.Tr;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static cn.liulin.docx.TestDocuments.addHeader;
+import static cn.liulin.docx.TestDocuments.newDocument;
+import static cn.liulin.docx.TestDocuments.toBytes;
+import static cn.liulin.docx.TestDocuments.zipEntries;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 文档预处理测试
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 16:20
+ */
+public class PreprocessDocumentUtilTest {
+
+    private static final String DOCUMENT_START = "<w:document xmlns:w=\"" + TestDocuments.W_NAMESPACE + "\" xmlns:r=\""
+            + TestDocuments.R_NAMESPACE + "\"><w:body>"
+            + "<w:p><w:r><w:t>";
+
+    /**
+     * 正文表格边框的w:start跨越读取缓冲区边界时同样被改写
+     */
+    private static final String DOCUMENT_END = "</w:t></w:r></w:p>"
+            + "<w:tbl><w:tblGrid><w:gridCol w:w=\"2000\"/></w:tblGrid><w:tr><w:tc><w:tcPr><w:tcBorders>"
+            + "<w:start w:val=\"single\" w:sz=\"4\"/><w:end w:val=\"double\" w:sz=\"4\"/>"
+            + "</w:tcBorders></w:tcPr><w:p><w:r><w:t>&lt;w:start&gt; cell</w:t></w:r></w:p></w:tc></w:tr></w:tbl>"
+            + "<w:sectPr><w:headerReference w:type=\"default\" r:id=\"%s\"/></w:sectPr></w:body></w:document>";
+
+    private static final String HEADER = "<w:hdr xmlns:w=\"" + TestDocuments.W_NAMESPACE + "\"><w:p><w:pPr><w:pBdr>"
+            + "<w:start w:val=\"single\" w:sz=\"4\"/></w:pBdr></w:pPr><w:r><w:t>header</w:t></w:r></w:p></w:hdr>";
+
+    /**
+     * 正文和页眉中的w:start、w:end改写为w:left、w:right，其余条目原样复制，写入文件和写入内存的结果一致
+     */
+    @Test
+    public void startAndEndAreRenamedInDocumentAndHeaders() throws Exception {
+        byte[] original = rawDocument("text");
+        DocumentSource source = DocumentSource.of("raw.docx", original);
+
+        byte[] processed = PreprocessDocumentUtil.preprocessDocumentToBytes(source);
+        Path processedFile = Paths.get(PreprocessDocumentUtil.preprocessDocument(source));
+        try {
+            assertEquals(zipEntries(processed).keySet(), zipEntries(Files.readAllBytes(processedFile)).keySet());
+            for (Map.Entry<String, byte[]> entry : zipEntries(Files.readAllBytes(processedFile)).entrySet()) {
+                assertArrayEquals(entry.getKey(), entry.getValue(), zipEntries(processed).get(entry.getKey()));
+            }
+        } finally {
+            Files.delete(processedFile);
+        }
+
+        Map<String, byte[]> before = zipEntries(original);
+        Map<String, byte[]> after = zipEntries(processed);
+        assertEquals(before.keySet(), after.keySet());
+        for (String name : before.keySet()) {
+            if (!name.equals("word/document.xml") && !name.equals("word/header1.xml")) {
+                assertArrayEquals(name, before.get(name), after.get(name));
+            }
+        }
+        String document = new String(after.get("word/document.xml"), "UTF-8");
+        assertFalse(document.contains("<w:start "));
+        assertFalse(document.contains("<w:end "));
+        assertTrue(document.contains("&lt;w:start&gt; cell"));
+        assertEquals(new String(before.get("word/document.xml"), "UTF-8").replace("<w:start ", "<w:left ")
+                .replace("<w:end ", "<w:right "), document);
+
+        assertBordersLoaded(WordprocessingMLPackage.load(new ByteArrayInputStream(processed)), 1);
+    }
+
+    /**
+     * 合并包含w:start、w:end的文档，每个文档的边框在合并结果中都保留为左右边框
+     */
+    @Test
+    public void preprocessedDocumentsSurviveMerge() throws Exception {
+        for (boolean inMemory : Arrays.asList(false, true)) {
+            MergeConfig config = new MergeConfig();
+            config.setInMemory(inMemory);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            new DocxMerger(config).mergeSources(Arrays.asList(DocumentSource.of("a.docx", rawDocument("first")),
+                    DocumentSource.of("b.docx", rawDocument("second"))), out);
+
+            WordprocessingMLPackage result = TestDocuments.load(out.toByteArray());
+            String xml = XmlUtils.marshaltoString(result.getMainDocumentPart().getJaxbElement());
+            assertTrue(xml.contains("first") && xml.contains("second"));
+            assertBordersLoaded(result, 2);
+        }
+    }
+
+    /**
+     * 检查正文表格的左右边框和第一个页眉段落的左边框
+     */
+    private static void assertBordersLoaded(WordprocessingMLPackage doc, int tables) throws Exception {
+        int found = 0;
+        for (Object content : doc.getMainDocumentPart().getContent()) {
+            if (XmlUtils.unwrap(content) instanceof Tbl) {
+                String xml = XmlUtils.marshaltoString(content);
+                assertTrue(xml, xml.contains("&lt;w:start&gt; cell"));
+                Tr tr = (Tr) ((Tbl) XmlUtils.unwrap(content)).getContent().get(0);
+                TcPr tcPr = ((Tc) XmlUtils.unwrap(tr.getContent().get(0))).getTcPr();
+                assertEquals("single", tcPr.getTcBorders().getLeft().getVal().value());
+                assertEquals("double", tcPr.getTcBorders().getRight().getVal().value());
+                found++;
+            }
+        }
+        assertEquals(tables, found);
+        Hdr hdr = doc.getDocumentModel().getSections().get(0).getHeaderFooterPolicy().getDefaultHeader().getJaxbElement();
+        assertEquals("single", ((P) hdr.getContent().get(0)).getPPr().getPBdr().getLeft().getVal().value());
+    }
+
+    /**
+     * 构造正文和页眉使用w:start、w:end的文档，正文第一段的文字使表格边框标签跨越64 KB的读取缓冲区边界
+     */
+    private static byte[] rawDocument(String text) throws Exception {
+        WordprocessingMLPackage doc = newDocument();
+        String headerId = addHeader(doc, "header").getSourceRelationships().get(0).getId();
+        StringBuilder document = new StringBuilder(DOCUMENT_START).append(text);
+        int boundary = 64 * 1024 - 3 - DOCUMENT_END.indexOf("<w:start");
+        while (document.length() < boundary) {
+            document.append(' ');
+        }
+        document.append(String.format(DOCUMENT_END, headerId));
+
+        Map<String, byte[]> entries = zipEntries(toBytes(doc));
+        entries.put("word/document.xml", document.toString().getBytes("UTF-8"));
+        entries.put("word/header1.xml", HEADER.getBytes("UTF-8"));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(out)) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                zip.putNextEntry(new ZipEntry(entry.getKey()));
+                zip.write(entry.getValue());
+                zip.closeEntry();
+            }
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,288 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.XmlUtils;
+import org.docx4j.dml.chart.CTChartSpace;
+import org.docx4j.openpackaging.contenttype.ContentType;
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.openpackaging.parts.DrawingML.Chart;
+import org.docx4j.openpackaging.parts.Part;
+import org.docx4j.openpackaging.parts.PartName;
+import org.docx4j.openpackaging.parts.WordprocessingML.BinaryPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.EmbeddedPackagePart;
+import org.docx4j.openpackaging.parts.WordprocessingML.ImagePngPart;
+import org.docx4j.openpackaging.parts.WordprocessingML.OleObjectBinaryPart;
+import org.docx4j.openpackaging.parts.relationships.Namespaces;
+import org.docx4j.relationships.Relationship;
+import org.docx4j.wml.P;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static cn.liulin.docx.TestDocuments.addHyperlink;
+import static cn.liulin.docx.TestDocuments.addImage;
+import static cn.liulin.docx.TestDocuments.addParagraph;
+import static cn.liulin.docx.TestDocuments.newDocument;
+import static cn.liulin.docx.TestDocuments.png;
+import static cn.liulin.docx.TestDocuments.relatedPart;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 关系复制测试：复制超链接、图表和OLE对象的关系及部件，并按映射更新正文中的引用
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 16:50
+ */
+public class ResourceCopierUtilTest {
+
+    private static final Pattern REL_ID = Pattern.compile("r:id=\"([^\"]+)\"");
+
+    private static final Pattern EMBED_ID = Pattern.compile("r:embed=\"([^\"]+)\"");
+
+    private static final String CHART_PARAGRAPH = "<w:p><w:r><w:drawing>"
+            + "<wp:inline xmlns:wp=\"http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing\">"
+            + "<wp:extent cx=\"5486400\" cy=\"3200400\"/><wp:docPr id=\"1\" name=\"Chart 1\"/>"
+            + "<a:graphic xmlns:a=\"http://schemas.openxmlformats.org/drawingml/2006/main\">"
+            + "<a:graphicData uri=\"http://schemas.openxmlformats.org/drawingml/2006/chart\">"
+            + "<c:chart xmlns:c=\"http://schemas.openxmlformats.org/drawingml/2006/chart\" r:id=\"%s\"/>"
+            + "</a:graphicData></a:graphic></wp:inline></w:drawing></w:r></w:p>";
+
+    private static final String OLE_PARAGRAPH = "<w:p><w:r><w:object>"
+            + "<o:OLEObject xmlns:o=\"urn:schemas-microsoft-com:office:office\" Type=\"Embed\" ProgID=\"Package\""
+            + " ShapeID=\"_x0000_i1025\" DrawAspect=\"Icon\" ObjectID=\"_1\" r:id=\"%s\"/>"
+            + "</w:object></w:r></w:p>";
+
+    private static final String BLIP_PARAGRAPH = "<w:p><w:r><w:drawing>"
+            + "<wp:inline xmlns:wp=\"http://schemas.openxmlformats.org/drawingml/2006/wordprocessingDrawing\">"
+            + "<wp:extent cx=\"1\" cy=\"1\"/><wp:docPr id=\"1\" name=\"Picture 1\"/>"
+            + "<a:graphic xmlns:a=\"http://schemas.openxmlformats.org/drawingml/2006/main\">"
+            + "<a:graphicData uri=\"http://schemas.openxmlformats.org/drawingml/2006/picture\">"
+            + "<pic:pic xmlns:pic=\"http://schemas.openxmlformats.org/drawingml/2006/picture\"><pic:nvPicPr>"
+            + "<pic:cNvPr id=\"0\" name=\"image1.png\"/><pic:cNvPicPr/></pic:nvPicPr>"
+            + "<pic:blipFill><a:blip r:embed=\"%s\"/></pic:blipFill><pic:spPr/></pic:pic>"
+            + "</a:graphicData></a:graphic></wp:inline></w:drawing></w:r></w:p>";
+
+    /**
+     * 超链接在目标文档中重建为外部关系，地址相同的超链接共用一个关系
+     */
+    @Test
+    public void hyperlinksAreRecreatedAndShared() throws Exception {
+        WordprocessingMLPackage target = newDocument();
+        // 目标文档多占用一个关系ID，源文档的关系ID必须改写
+        addHyperlink(target, "https://example.com/target", "target");
+        WordprocessingMLPackage first = newDocument();
+        WordprocessingMLPackage second = newDocument();
+        String oldA1 = addHyperlink(first, "https://example.com/a", "a");
+        String oldA2 = addHyperlink(second, "https://example.com/a", "a");
+        String oldB = addHyperlink(second, "https://example.com/b", "b");
+
+        List<Map<String, String>> relMaps = copyAndRemap(target, first, second);
+
+        String a1 = relIds(first).get(0);
+        List<String> secondIds = relIds(second);
+        assertNotEquals(oldA1, a1);
+        assertEquals(relMaps.get(1).get(oldA1), a1);
+        assertEquals(relMaps.get(2).get(oldA2), secondIds.get(0));
+        assertEquals(relMaps.get(2).get(oldB), secondIds.get(1));
+        assertEquals(a1, secondIds.get(0));
+        assertNotEquals(a1, secondIds.get(1));
+        assertExternal(target, a1, "https://example.com/a");
+        assertExternal(target, secondIds.get(1), "https://example.com/b");
+    }
+
+    /**
+     * 图表连同其嵌入的工作簿复制到目标文档，同名部件被重命名，图表内部的关系ID不变
+     */
+    @Test
+    public void chartIsCopiedWithEmbeddedWorkbook() throws Exception {
+        WordprocessingMLPackage target = newDocument();
+        String targetChartId = addChart(target, new byte[]{1});
+        WordprocessingMLPackage source = newDocument();
+        String sourceChartId = addChart(source, new byte[]{2, 3});
+        Chart sourceChart = (Chart) relatedPart(source, sourceChartId);
+        String workbookRelId = sourceChart.getRelationshipsPart().getRelationships().getRelationship().get(0).getId();
+
+        copyAndRemap(target, source);
+
+        String newId = relIds(source).get(0);
+        assertNotEquals(sourceChartId, newId);
+        assertNotEquals(targetChartId, newId);
+        Chart copy = (Chart) relatedPart(target, newId);
+        assertEquals("/word/charts/chart1_1.xml", copy.getPartName().getName());
+        assertSame(sourceChart.getJaxbElement(), copy.getJaxbElement());
+        Relationship workbookRel = copy.getRelationshipsPart().getRelationshipByID(workbookRelId);
+        assertNotNull(workbookRel);
+        Part workbook = copy.getRelationshipsPart().getPart(workbookRel);
+        assertSame(target, workbook.getPackage());
+        assertArrayEquals(new byte[]{2, 3}, bytes((EmbeddedPackagePart) workbook));
+    }
+
+    /**
+     * 内容相同的OLE对象只复制一次，各文档中的引用都指向同一个部件
+     */
+    @Test
+    public void oleObjectsAreSharedByContent() throws Exception {
+        WordprocessingMLPackage target = newDocument();
+        // 目标文档多占用一个关系ID，源文档的关系ID必须改写
+        addHyperlink(target, "https://example.com/target", "target");
+        WordprocessingMLPackage first = newDocument();
+        WordprocessingMLPackage second = newDocument();
+        String oldId = addOleObject(first, new byte[]{4, 5, 6});
+        addOleObject(second, new byte[]{4, 5, 6});
+
+        copyAndRemap(target, first, second);
+
+        String firstId = relIds(first).get(0);
+        assertNotEquals(oldId, firstId);
+        assertEquals(firstId, relIds(second).get(0));
+        Part ole = relatedPart(target, firstId);
+        assertTrue(ole instanceof OleObjectBinaryPart);
+        assertSame(target, ole.getPackage());
+        assertArrayEquals(new byte[]{4, 5, 6}, bytes((OleObjectBinaryPart) ole));
+        long oleRels = target.getMainDocumentPart().getRelationshipsPart().getRelationships().getRelationship().stream()
+                .filter(rel -> Namespaces.OLE_OBJECT.equals(rel.getType())).count();
+        assertEquals(1, oleRels);
+    }
+
+    /**
+     * 内容相同的图片只保存一份，包括目标文档中原有的图片，各文档中的引用都指向同一个关系
+     */
+    @Test
+    public void imagesAreSharedByContent() throws Exception {
+        WordprocessingMLPackage target = newDocument();
+        String logoId = addImage(target, png(1));
+        WordprocessingMLPackage first = newDocument();
+        WordprocessingMLPackage second = newDocument();
+        addImage(first, png(1));
+        addImage(first, png(2));
+        addImage(second, png(2));
+
+        copyAndRemap(target, first, second);
+
+        List<String> firstIds = embedIds(first);
+        assertEquals(logoId, firstIds.get(0));
+        assertNotEquals(logoId, firstIds.get(1));
+        assertEquals(firstIds.get(1), embedIds(second).get(0));
+        assertArrayEquals(png(2), bytes((BinaryPart) relatedPart(target, firstIds.get(1))));
+        long imageRels = target.getMainDocumentPart().getRelationshipsPart().getRelationships().getRelationship().stream()
+                .filter(rel -> Namespaces.IMAGE.equals(rel.getType())).count();
+        assertEquals(2, imageRels);
+    }
+
+    /**
+     * 图片不经解码直接复制：目标部件共享源部件的数据，保留内容类型和部件名称，无法识别格式的数据同样原样复制
+     */
+    @Test
+    public void mediaIsTransferredWithoutDecoding() throws Exception {
+        WordprocessingMLPackage target = newDocument();
+        addPngPart(target, new byte[]{1});
+        WordprocessingMLPackage source = newDocument();
+        ImagePngPart image = addPngPart(source, new byte[]{7, 8, 9});
+
+        copyAndRemap(target, source);
+
+        Part copy = relatedPart(target, embedIds(source).get(0));
+        assertTrue(copy instanceof ImagePngPart);
+        assertSame(target, copy.getPackage());
+        assertEquals("/word/media/image1_1.png", copy.getPartName().getName());
+        assertEquals(image.getContentType(), copy.getContentType());
+        assertSame(image.getBuffer().array(), ((BinaryPart) copy).getBuffer().array());
+        assertArrayEquals(new byte[]{7, 8, 9}, bytes((BinaryPart) copy));
+    }
+
+    /**
+     * 复制关系后按映射更新各源文档正文中的引用
+     */
+    private static List<Map<String, String>> copyAndRemap(WordprocessingMLPackage... docs) {
+        List<Map<String, String>> relMaps = ResourceCopierUtil.copyRelationships(Arrays.asList(docs), new MediaRegistry());
+        for (int i = 1; i < docs.length; i++) {
+            DocumentTraversalUtil.traverse(docs[i].getMainDocumentPart().getJaxbElement().getBody(),
+                    ResourceCopierUtil.createRelationshipReferenceSteps(relMaps.get(i)));
+        }
+        return relMaps;
+    }
+
+    private static String addChart(WordprocessingMLPackage doc, byte[] workbookData) throws Exception {
+        Chart chart = new Chart(new PartName("/word/charts/chart1.xml"));
+        chart.setJaxbElement(new CTChartSpace());
+        String chartId = doc.getMainDocumentPart().addTargetPart(chart).getId();
+        EmbeddedPackagePart workbook = new EmbeddedPackagePart(
+                new PartName("/word/embeddings/Microsoft_Excel_Worksheet1.xlsx"));
+        workbook.setContentType(new ContentType("application/vnd.openxmlformats-officedocument.spreadsheetml.sheet"));
+        workbook.setBinaryData(workbookData);
+        chart.addTargetPart(workbook);
+        addParagraph(doc, String.format(CHART_PARAGRAPH, chartId));
+        return chartId;
+    }
+
+    private static ImagePngPart addPngPart(WordprocessingMLPackage doc, byte[] data) throws Exception {
+        ImagePngPart image = new ImagePngPart(new PartName("/word/media/image1.png"));
+        image.setBinaryData(data);
+        String relId = doc.getMainDocumentPart().addTargetPart(image).getId();
+        addParagraph(doc, String.format(BLIP_PARAGRAPH, relId));
+        return image;
+    }
+
+    private static String addOleObject(WordprocessingMLPackage doc, byte[] data) throws Exception {
+        OleObjectBinaryPart ole = new OleObjectBinaryPart(new PartName("/word/embeddings/oleObject1.bin"));
+        ole.setContentType(new ContentType("application/vnd.openxmlformats-officedocument.oleObject"));
+        ole.setBinaryData(data);
+        String relId = doc.getMainDocumentPart().addTargetPart(ole).getId();
+        addParagraph(doc, String.format(OLE_PARAGRAPH, relId));
+        return relId;
+    }
+
+    /**
+     * 按顺序获取正文段落中引用的关系ID
+     */
+    private static List<String> relIds(WordprocessingMLPackage doc) {
+        List<String> ids = new ArrayList<>();
+        for (Object content : doc.getMainDocumentPart().getContent()) {
+            if (content instanceof P) {
+                Matcher matcher = REL_ID.matcher(XmlUtils.marshaltoString(content));
+                while (matcher.find()) {
+                    ids.add(matcher.group(1));
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * 按顺序获取正文中图片引用的关系ID
+     */
+    private static List<String> embedIds(WordprocessingMLPackage doc) {
+        List<String> ids = new ArrayList<>();
+        Matcher matcher = EMBED_ID.matcher(XmlUtils.marshaltoString(doc.getMainDocumentPart().getJaxbElement()));
+        while (matcher.find()) {
+            ids.add(matcher.group(1));
+        }
+        return ids;
+    }
+
+    private static void assertExternal(WordprocessingMLPackage doc, String relId, String url) {
+        Relationship rel = doc.getMainDocumentPart().getRelationshipsPart().getRelationshipByID(relId);
+        assertNotNull(relId, rel);
+        assertEquals("External", rel.getTargetMode());
+        assertEquals(Namespaces.HYPERLINK, rel.getType());
+        assertEquals(url, rel.getTarget());
+    }
+
+    private static byte[] bytes(BinaryPart part) {
+        ByteBuffer buffer = part.getBuffer();
+        byte[] data = new byte[buffer.remaining()];
+        buffer.duplicate().get(data);
+        return data;
+    }
+}
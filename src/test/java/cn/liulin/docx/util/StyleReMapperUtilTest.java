@@ -0,0 +1,90 @@
+package cn.liulin.docx.util;
+
+import org.docx4j.openpackaging.packages.WordprocessingMLPackage;
+import org.docx4j.wml.Style;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static cn.liulin.docx.TestDocuments.addStyle;
+import static cn.liulin.docx.TestDocuments.findStyle;
+import static cn.liulin.docx.TestDocuments.newDocument;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 14:25
+ */
+public class StyleReMapperUtilTest {
+
+    @Test
+    public void stylesDifferingOnlyInNonFormattingFieldsAreMerged() throws Exception {
+        WordprocessingMLPackage doc1 = newDocument();
+        addStyle(doc1, "<w:style w:type=\"paragraph\" w:customStyle=\"1\" w:styleId=\"Custom\"><w:name w:val=\"Custom\"/>"
+                + "<w:uiPriority w:val=\"1\"/><w:qFormat/><w:rsid w:val=\"00A10001\"/><w:rPr><w:b/></w:rPr></w:style>");
+        WordprocessingMLPackage doc2 = newDocument();
+        addStyle(doc2, "<w:style w:type=\"paragraph\" w:customStyle=\"1\" w:styleId=\"Custom\"><w:name w:val=\"Custom\"/>"
+                + "<w:uiPriority w:val=\"9\"/><w:semiHidden/><w:unhideWhenUsed/><w:rsid w:val=\"00B20002\"/>"
+                + "<w:rPr><w:b/></w:rPr></w:style>");
+        WordprocessingMLPackage doc3 = newDocument();
+        addStyle(doc3, "<w:style w:type=\"paragraph\" w:customStyle=\"1\" w:styleId=\"Custom\"><w:name w:val=\"Custom\"/>"
+                + "<w:locked/><w:personal/><w:rsid w:val=\"00C30003\"/><w:rPr><w:b/></w:rPr></w:style>");
+
+        List<Map<String, String>> styleIdMaps = StyleReMapperUtil.mergeStyles(Arrays.asList(doc1, doc2, doc3));
+
+        assertNotNull(findStyle(doc1, "Custom"));
+        assertNull(findStyle(doc1, "Custom_1"));
+        assertNull(findStyle(doc1, "Custom_2"));
+        assertTrue(styleIdMaps.get(1).isEmpty());
+        assertTrue(styleIdMaps.get(2).isEmpty());
+    }
+
+    @Test
+    public void childOfRenamedParentIsRenamedAndPointsToRenamedParent() throws Exception {
+        WordprocessingMLPackage doc1 = newDocument();
+        addStyle(doc1, "<w:style w:type=\"paragraph\" w:styleId=\"Base\"><w:name w:val=\"Base\"/>"
+                + "<w:rPr><w:sz w:val=\"40\"/></w:rPr></w:style>");
+        addStyle(doc1, "<w:style w:type=\"paragraph\" w:styleId=\"Child\"><w:name w:val=\"Child\"/>"
+                + "<w:basedOn w:val=\"Base\"/><w:rPr><w:i/></w:rPr></w:style>");
+        WordprocessingMLPackage doc2 = newDocument();
+        // 子样式排在父样式之前，合并时仍需先处理父样式
+        addStyle(doc2, "<w:style w:type=\"paragraph\" w:styleId=\"Child\"><w:name w:val=\"Child\"/>"
+                + "<w:basedOn w:val=\"Base\"/><w:rPr><w:i/></w:rPr></w:style>");
+        addStyle(doc2, "<w:style w:type=\"paragraph\" w:styleId=\"Base\"><w:name w:val=\"Base\"/>"
+                + "<w:rPr><w:sz w:val=\"16\"/></w:rPr></w:style>");
+
+        Map<String, String> styleIdMap = StyleReMapperUtil.mergeStyles(Arrays.asList(doc1, doc2)).get(1);
+
+        assertEquals("Base_1", styleIdMap.get("Base"));
+        assertEquals("Child_1", styleIdMap.get("Child"));
+        Style child = findStyle(doc1, "Child_1");
+        assertNotNull(child);
+        assertEquals("Base_1", child.getBasedOn().getVal());
+        assertEquals("Base", findStyle(doc1, "Child").getBasedOn().getVal());
+    }
+
+    @Test
+    public void childOfMatchingParentIsReused() throws Exception {
+        WordprocessingMLPackage doc1 = newDocument();
+        addStyle(doc1, "<w:style w:type=\"paragraph\" w:styleId=\"Base\"><w:name w:val=\"Base\"/>"
+                + "<w:rPr><w:sz w:val=\"40\"/></w:rPr></w:style>");
+        addStyle(doc1, "<w:style w:type=\"paragraph\" w:styleId=\"Child\"><w:name w:val=\"Child\"/>"
+                + "<w:basedOn w:val=\"Base\"/><w:rPr><w:i/></w:rPr></w:style>");
+        WordprocessingMLPackage doc2 = newDocument();
+        addStyle(doc2, "<w:style w:type=\"paragraph\" w:styleId=\"Child\"><w:name w:val=\"Child\"/>"
+                + "<w:basedOn w:val=\"Base\"/><w:rPr><w:i/></w:rPr></w:style>");
+        addStyle(doc2, "<w:style w:type=\"paragraph\" w:styleId=\"Base\"><w:name w:val=\"Base\"/>"
+                + "<w:rPr><w:sz w:val=\"40\"/></w:rPr></w:style>");
+
+        Map<String, String> styleIdMap = StyleReMapperUtil.mergeStyles(Arrays.asList(doc1, doc2)).get(1);
+
+        assertTrue(styleIdMap.isEmpty());
+        assertNull(findStyle(doc1, "Child_1"));
+    }
+}
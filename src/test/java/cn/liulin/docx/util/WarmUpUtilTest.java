@@ -0,0 +1,73 @@
+package cn.liulin.docx.util;
+
+import cn.liulin.docx.DocxMerger;
+import cn.liulin.docx.MergeConfig;
+import cn.liulin.docx.metrics.MergeListener;
+import cn.liulin.docx.metrics.MergeMetrics;
+import cn.liulin.docx.metrics.MergePhase;
+import cn.liulin.docx.metrics.PhaseMetrics;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * 预热测试
+ *
+ * @author liulin
+ * @version 1.0
+ * @date 2026/10/17 18:50
+ */
+public class WarmUpUtilTest {
+
+    /**
+     * 每次预热都完整合并生成的文档，配置中的监听器收到每次合并的回调，结束后不留下临时目录
+     */
+    @Test
+    public void warmUpMergesGeneratedDocumentsAndCleansUp() throws Exception {
+        Set<String> before = warmUpDirectories();
+        List<MergeMetrics> completed = new CopyOnWriteArrayList<>();
+        MergeConfig config = new MergeConfig();
+        config.addListener(new MergeListener() {
+            @Override
+            public void onPhase(PhaseMetrics metrics) {
+            }
+
+            @Override
+            public void onComplete(MergeMetrics metrics) {
+                completed.add(metrics);
+            }
+        });
+
+        DocxMerger.warmUp(config, 2);
+
+        assertEquals(2, completed.size());
+        for (MergeMetrics metrics : completed) {
+            assertEquals(3, metrics.getTotals().get(MergePhase.LOAD).getDocuments());
+            assertEquals(1, metrics.getTotals().get(MergePhase.SAVE).getInvocations());
+        }
+        assertEquals(before, warmUpDirectories());
+    }
+
+    @Test
+    public void iterationsMustBePositive() throws Exception {
+        try {
+            DocxMerger.warmUp(new MergeConfig(), 0);
+            fail("预热次数为0时应当拒绝");
+        } catch (IllegalArgumentException e) {
+            // 预期的异常
+        }
+    }
+
+    private static Set<String> warmUpDirectories() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list((dir, name) -> name.startsWith("docx-merge-warmup"));
+        return names == null ? new HashSet<>() : new HashSet<>(Arrays.asList(names));
+    }
+}